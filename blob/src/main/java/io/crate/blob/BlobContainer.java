@@ -22,6 +22,7 @@
 package io.crate.blob;
 
 import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.stats.BlobShardStats;
 import io.crate.common.Hex;
 import org.elasticsearch.ElasticsearchIllegalStateException;
 import org.elasticsearch.common.io.FileSystemUtils;
@@ -31,6 +32,7 @@ import org.elasticsearch.common.logging.Loggers;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
@@ -56,6 +58,8 @@ public class BlobContainer {
     private final File baseDirectory;
     private final File tmpDirectory;
     private final File varDirectory;
+    private final BlobShardStats stats;
+    private final BlobDigestManifest digestManifest = new BlobDigestManifest();
 
     public BlobContainer(File baseDirectory) {
         this.baseDirectory = baseDirectory;
@@ -65,6 +69,7 @@ public class BlobContainer {
         FileSystemUtils.mkdirs(this.tmpDirectory);
 
         createSubDirectories(this.varDirectory);
+        this.stats = new BlobShardStats(this.varDirectory, SUB_DIRS.length);
     }
 
     /**
@@ -101,6 +106,37 @@ public class BlobContainer {
         }
     }
 
+    /**
+     * walks the blob files of one prefix after the other and replaces the stats of the prefix with the result.
+     * The lock of the prefix is held while walking it, so blobs added or deleted meanwhile
+     * are either counted by the walk or applied to the stats afterwards.
+     *
+     * @param visitor called for every file, if it returns false the walk is aborted
+     * @return false if the walk was aborted, the stats of the prefixes walked so far are reconciled then
+     */
+    public boolean reconcileStats(FileVisitor visitor) {
+        for (int i = 0; i < subDirs.length; i++) {
+            synchronized (digestManifest.lock(i)) {
+                File[] files = subDirs[i].listFiles();
+                if (files == null) {
+                    continue;
+                }
+                long count = 0;
+                long totalUsage = 0;
+                for (File file : files) {
+                    if (!visitor.visit(file)) {
+                        return false;
+                    }
+                    count++;
+                    totalUsage += file.length();
+                }
+                stats.reconciled(i, count, totalUsage);
+            }
+        }
+        stats.reconciled();
+        return true;
+    }
+
     /**
      * get all digests in a subfolder
      * the digests are returned as byte[][] instead as String[] to save overhead in the BlobRecovery
@@ -159,6 +195,70 @@ public class BlobContainer {
         return varDirectory;
     }
 
+    /**
+     * counters of the blobs in this container, must be updated if a blob is added or deleted
+     */
+    public BlobShardStats stats() {
+        return stats;
+    }
+
+    /**
+     * @return the digest manifest with all prefixes loaded
+     */
+    public BlobDigestManifest digestManifest() {
+        for (int i = 0; i < subDirs.length; i++) {
+            synchronized (digestManifest.lock(i)) {
+                if (!digestManifest.loaded(i)) {
+                    digestManifest.load(i, subDirs[i].list());
+                }
+            }
+        }
+        return digestManifest;
+    }
+
+    /**
+     * moves a completely written blob file into the var directory
+     *
+     * @return false if a blob with the given digest exists already, the source file is left untouched then
+     * @throws IOException if the file couldn't be moved
+     */
+    public boolean commitBlob(File source, String digest) throws IOException {
+        int prefixIndex = prefixIndex(digest);
+        synchronized (digestManifest.lock(prefixIndex)) {
+            File target = getFile(digest);
+            if (target.exists()) {
+                return false;
+            }
+            if (!source.renameTo(target)) {
+                throw new IOException(String.format("could not move %s to %s", source, target));
+            }
+            stats.added(prefixIndex, target.length());
+            digestManifest.added(prefixIndex, digest);
+            return true;
+        }
+    }
+
+    /**
+     * @return false if no blob with the given digest exists
+     */
+    public boolean deleteBlob(String digest) {
+        int prefixIndex = prefixIndex(digest);
+        synchronized (digestManifest.lock(prefixIndex)) {
+            File file = getFile(digest);
+            long length = file.length();
+            if (!file.delete()) {
+                return false;
+            }
+            stats.removed(prefixIndex, length);
+            digestManifest.removed(prefixIndex, digest);
+            return true;
+        }
+    }
+
+    private static int prefixIndex(String digest) {
+        return Integer.parseInt(digest.substring(0, 2), 16);
+    }
+
     public File getFile(String digest) {
         return new File(getVarDirectory(), digest.substring(0, 2) + File.separator + digest);
     }
@@ -0,0 +1,333 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import io.crate.blob.exceptions.DigestNotFoundException;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.DefaultFileRegion;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide cache in front of the blob files which are served via HTTP.
+ *
+ * The content of small blobs is kept in memory, bounded by the total number of bytes.
+ * Larger blobs keep their file channel open, bounded by the number of open files.
+ * A file channel is only closed once it got evicted and all requests using it released it.
+ *
+ * Entries are keyed by the blob container instance and the digest.
+ * Blobs deleted from a container have to be removed using {@link #invalidate(BlobContainer, String)},
+ * all entries of a container are removed using {@link #invalidate(BlobContainer)} once its shard is closed,
+ * e.g. because the table got dropped or the shard relocated.
+ */
+@Singleton
+public class BlobContentCache {
+
+    public static final String SETTING_SIZE = "blobs.cache.size";
+    public static final String SETTING_MAX_BLOB_SIZE = "blobs.cache.max_blob_size";
+    public static final String SETTING_OPEN_FILES = "blobs.cache.open_files";
+
+    public static final ByteSizeValue DEFAULT_SIZE = new ByteSizeValue(64, ByteSizeUnit.MB);
+    public static final ByteSizeValue DEFAULT_MAX_BLOB_SIZE = new ByteSizeValue(64, ByteSizeUnit.KB);
+    public static final int DEFAULT_OPEN_FILES = 256;
+
+    private final long maxBlobSize;
+    private final Cache<Key, ChannelBuffer> contents;
+    private final Cache<Key, CachedBlob> files;
+
+    private final AtomicLong contentBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Inject
+    public BlobContentCache(Settings settings) {
+        this(settings.getAsBytesSize(SETTING_SIZE, DEFAULT_SIZE).bytes(),
+                settings.getAsBytesSize(SETTING_MAX_BLOB_SIZE, DEFAULT_MAX_BLOB_SIZE).bytes(),
+                settings.getAsInt(SETTING_OPEN_FILES, DEFAULT_OPEN_FILES));
+    }
+
+    BlobContentCache(long size, long maxBlobSize, int openFiles) {
+        this.maxBlobSize = size > 0 ? Math.min(maxBlobSize, size) : -1;
+        this.contents = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(size, 0))
+                .weigher(new Weigher<Key, ChannelBuffer>() {
+                    @Override
+                    public int weigh(Key key, ChannelBuffer value) {
+                        return value.capacity();
+                    }
+                })
+                .removalListener(new RemovalListener<Key, ChannelBuffer>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, ChannelBuffer> notification) {
+                        contentBytes.addAndGet(-notification.getValue().capacity());
+                        if (notification.wasEvicted()) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        this.files = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(openFiles, 0))
+                .removalListener(new RemovalListener<Key, CachedBlob>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, CachedBlob> notification) {
+                        if (notification.wasEvicted()) {
+                            evictions.incrementAndGet();
+                        }
+                        // drop the reference held by the cache
+                        notification.getValue().release();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * get the blob with the given digest, the returned blob must be released once it isn't used anymore.
+     *
+     * @throws DigestNotFoundException if the blob doesn't exist
+     */
+    public CachedBlob acquire(BlobContainer container, String digest) throws IOException {
+        Key key = new Key(container, digest);
+        ChannelBuffer content = contents.getIfPresent(key);
+        if (content != null) {
+            hits.incrementAndGet();
+            return new CachedBlob(content);
+        }
+        CachedBlob file = files.getIfPresent(key);
+        if (file != null && file.tryAcquire()) {
+            hits.incrementAndGet();
+            return file;
+        }
+        misses.incrementAndGet();
+
+        FileChannel channel;
+        try {
+            channel = new RandomAccessFile(container.getFile(digest), "r").getChannel();
+        } catch (FileNotFoundException e) {
+            throw new DigestNotFoundException(digest);
+        }
+        long length;
+        try {
+            length = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (length <= maxBlobSize) {
+            try {
+                content = ChannelBuffers.wrappedBuffer(readFully(channel, (int) length));
+            } finally {
+                channel.close();
+            }
+            if (contents.asMap().putIfAbsent(key, content) == null) {
+                contentBytes.addAndGet(content.capacity());
+            }
+            return new CachedBlob(content);
+        }
+
+        // the new blob holds one reference for the cache and one for the caller
+        CachedBlob blob = new CachedBlob(channel, length);
+        blob.tryAcquire();
+        CachedBlob existing = files.asMap().putIfAbsent(key, blob);
+        if (existing != null) {
+            // the existing channel doesn't replace ours, so the reference of the cache is given up
+            blob.release();
+        }
+        return blob;
+    }
+
+    /**
+     * remove a blob, e.g. because it got deleted
+     */
+    public void invalidate(BlobContainer container, String digest) {
+        Key key = new Key(container, digest);
+        contents.invalidate(key);
+        files.invalidate(key);
+    }
+
+    /**
+     * remove all blobs of a container, e.g. because its shard got closed.
+     * Open file channels are closed once the requests which are still using them released them.
+     */
+    public void invalidate(BlobContainer container) {
+        invalidate(contents.asMap().keySet().iterator(), container);
+        invalidate(files.asMap().keySet().iterator(), container);
+    }
+
+    private static void invalidate(Iterator<Key> keys, BlobContainer container) {
+        while (keys.hasNext()) {
+            if (keys.next().container == container) {
+                keys.remove();
+            }
+        }
+    }
+
+    private static byte[] readFully(FileChannel channel, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("blob is shorter than " + length + " bytes");
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of bytes of the cached blob contents
+     */
+    public long size() {
+        return contentBytes.get();
+    }
+
+    public long openFiles() {
+        return files.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * a blob served either from memory or from an open file channel
+     */
+    public static class CachedBlob {
+
+        private final ChannelBuffer content;
+        private final FileChannel channel;
+        private final long length;
+        private final AtomicInteger refCount;
+
+        private CachedBlob(ChannelBuffer content) {
+            this.content = content;
+            this.channel = null;
+            this.length = content.capacity();
+            this.refCount = null;
+        }
+
+        private CachedBlob(FileChannel channel, long length) {
+            this.content = null;
+            this.channel = channel;
+            this.length = length;
+            this.refCount = new AtomicInteger(1);
+        }
+
+        public long length() {
+            return length;
+        }
+
+        /**
+         * @return true if the content is held in memory
+         */
+        public boolean inMemory() {
+            return content != null;
+        }
+
+        /**
+         * @return a {@link ChannelBuffer} or a {@link org.jboss.netty.channel.FileRegion}
+         *         which can be written to a netty channel
+         */
+        public Object region(long position, long count) {
+            if (content != null) {
+                return content.slice((int) position, (int) count);
+            }
+            // the channel is shared, so it must not be released after the transfer
+            return new DefaultFileRegion(channel, position, count, false);
+        }
+
+        private boolean tryAcquire() {
+            if (refCount == null) {
+                return true;
+            }
+            int count;
+            do {
+                count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        public void release() {
+            if (refCount != null && refCount.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // nothing left to clean up
+                }
+            }
+        }
+    }
+
+    private static class Key {
+
+        private final BlobContainer container;
+        private final String digest;
+
+        private Key(BlobContainer container, String digest) {
+            this.container = container;
+            this.digest = digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return container == key.container && digest.equals(key.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(container) + digest.hashCode();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+
+/**
+ * order independent hash and number of the digests in each prefix directory of a {@link BlobContainer}.
+ *
+ * The hash of a prefix is the XOR of the first 8 bytes of its digests, so it can be updated
+ * whenever a blob is added or deleted without listing the directory again.
+ * The recovery uses it to skip all prefixes which are equal on source and target.
+ *
+ * A prefix is only listed once on first access, this happens with the lock of the prefix held
+ * which the container also holds when moving or deleting blob files.
+ * It isn't persisted on purpose: after a crash a persisted manifest might not match the files
+ * and the recovery would skip prefixes that actually differ.
+ */
+public class BlobDigestManifest {
+
+    private final Object[] locks = new Object[BlobContainer.PREFIXES.length];
+    private final boolean[] loaded = new boolean[BlobContainer.PREFIXES.length];
+    private final long[] hashes = new long[BlobContainer.PREFIXES.length];
+    private final int[] counts = new int[BlobContainer.PREFIXES.length];
+
+    BlobDigestManifest() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    Object lock(int prefixIndex) {
+        return locks[prefixIndex];
+    }
+
+    boolean loaded(int prefixIndex) {
+        return loaded[prefixIndex];
+    }
+
+    /**
+     * must be called with the lock of the prefix held
+     *
+     * @param names the file names of the prefix directory
+     */
+    void load(int prefixIndex, String[] names) {
+        long hash = 0;
+        int count = 0;
+        if (names != null) {
+            for (String name : names) {
+                if (name.contains(".")) {
+                    // leftover of an interrupted recovery
+                    continue;
+                }
+                hash ^= digestHash(name);
+                count++;
+            }
+        }
+        hashes[prefixIndex] = hash;
+        counts[prefixIndex] = count;
+        loaded[prefixIndex] = true;
+    }
+
+    /**
+     * must be called with the lock of the prefix held
+     */
+    void added(int prefixIndex, String digest) {
+        if (loaded[prefixIndex]) {
+            hashes[prefixIndex] ^= digestHash(digest);
+            counts[prefixIndex]++;
+        }
+    }
+
+    /**
+     * must be called with the lock of the prefix held
+     */
+    void removed(int prefixIndex, String digest) {
+        if (loaded[prefixIndex]) {
+            hashes[prefixIndex] ^= digestHash(digest);
+            counts[prefixIndex]--;
+        }
+    }
+
+    public long hash(int prefixIndex) {
+        synchronized (locks[prefixIndex]) {
+            return hashes[prefixIndex];
+        }
+    }
+
+    public int count(int prefixIndex) {
+        synchronized (locks[prefixIndex]) {
+            return counts[prefixIndex];
+        }
+    }
+
+    static long digestHash(String digest) {
+        byte[] bytes;
+        try {
+            bytes = Hex.decodeHex(digest);
+        } catch (ElasticsearchIllegalStateException e) {
+            return 0;
+        }
+        long hash = 0;
+        for (int i = 0; i < 8 && i < bytes.length; i++) {
+            hash = (hash << 8) | (bytes[i] & 0xFF);
+        }
+        return hash;
+    }
+}
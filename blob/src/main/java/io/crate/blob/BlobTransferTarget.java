@@ -21,16 +21,21 @@
 
 package io.crate.blob;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.blob.exceptions.DigestMismatchException;
 import io.crate.blob.pending_transfer.*;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.ElasticsearchIllegalStateException;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -44,9 +49,18 @@ import java.util.concurrent.*;
 
 public class BlobTransferTarget extends AbstractComponent {
 
+    public static final String SETTING_RANGED_UPLOAD_IDLE_TIMEOUT = "blobs.upload.idle_timeout";
+    public static final String SETTING_RANGED_UPLOAD_MAX_SIZE = "blobs.upload.max_size";
+
     private final ConcurrentMap<UUID, BlobTransferStatus> activeTransfers =
         ConcurrentCollections.newConcurrentMap();
 
+    /**
+     * uploads which receive their ranges in parallel, keyed by shard and digest
+     */
+    private final ConcurrentMap<String, RangedDigestBlob> rangedUploads =
+        ConcurrentCollections.newConcurrentMap();
+
     private final BlobIndices blobIndices;
     private final ThreadPool threadPool;
     private final TransportService transportService;
@@ -59,6 +73,8 @@ public class BlobTransferTarget extends AbstractComponent {
     private final Object lock = new Object();
     private final List<UUID> finishedUploads = new ArrayList<>();
     private final TimeValue STATE_REMOVAL_DELAY;
+    private final TimeValue rangedUploadIdleTimeout;
+    private final ByteSizeValue rangedUploadMaxSize;
 
     @Inject
     public BlobTransferTarget(Settings settings, BlobIndices blobIndices,
@@ -72,6 +88,10 @@ public class BlobTransferTarget extends AbstractComponent {
         } else {
             STATE_REMOVAL_DELAY = new TimeValue(2, TimeUnit.SECONDS);
         }
+        this.rangedUploadIdleTimeout = settings.getAsTime(
+            SETTING_RANGED_UPLOAD_IDLE_TIMEOUT, new TimeValue(30, TimeUnit.MINUTES));
+        this.rangedUploadMaxSize = settings.getAsBytesSize(
+            SETTING_RANGED_UPLOAD_MAX_SIZE, new ByteSizeValue(100, ByteSizeUnit.GB));
         this.blobIndices = blobIndices;
         this.threadPool = threadPool;
         this.transportService = transportService;
@@ -216,6 +236,136 @@ public class BlobTransferTarget extends AbstractComponent {
         }
     }
 
+    /**
+     * writes a range of a blob which is uploaded in parallel ranges.
+     * The upload state is kept until the blob is complete or no range arrived for
+     * {@link #SETTING_RANGED_UPLOAD_IDLE_TIMEOUT}, so an interrupted upload can be resumed
+     * by sending the missing ranges only.
+     */
+    public void putRange(int shardId, PutBlobRangeRequest request, PutBlobRangeResponse response) {
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
+        BlobContainer container = blobShard.blobContainer();
+        File existing = container.getFile(request.id());
+        if (existing.exists()) {
+            response.status(RemoteDigestBlob.Status.EXISTS);
+            response.size(existing.length());
+            return;
+        }
+
+        String key = rangedUploadKey(request.index(), shardId, request.id());
+        RangedDigestBlob blob = rangedUploads.get(key);
+        if (blob == null) {
+            synchronized (rangedUploads) {
+                blob = rangedUploads.get(key);
+                if (blob == null) {
+                    checkRangedUploadSize(container, request);
+                    blob = new RangedDigestBlob(container, request.id(), request.totalSize());
+                    rangedUploads.put(key, blob);
+                    threadPool.schedule(rangedUploadIdleTimeout, ThreadPool.Names.GENERIC,
+                        new RangedUploadExpiry(key, blob));
+                }
+            }
+        }
+        if (blob.size() != request.totalSize()) {
+            throw new ElasticsearchIllegalArgumentException(String.format(
+                "blob %s is uploaded with a size of %d, got %d", request.id(), blob.size(), request.totalSize()));
+        }
+
+        RemoteDigestBlob.Status status;
+        try {
+            status = blob.write(request.position(), request.content());
+        } catch (BlobWriteException e) {
+            rangedUploads.remove(key, blob);
+            blob.discard();
+            throw e;
+        }
+        if (status != RemoteDigestBlob.Status.PARTIAL) {
+            rangedUploads.remove(key, blob);
+        }
+        if (status == RemoteDigestBlob.Status.FULL || status == RemoteDigestBlob.Status.EXISTS) {
+            response.ranges(ImmutableList.of(new long[]{0, blob.size() - 1}));
+            response.size(blob.size());
+        } else {
+            response.ranges(blob.receivedRanges());
+            response.size(blob.received());
+        }
+        response.status(status);
+        logger.trace("putRange digest:{} position:{} status:{}", request.id(), request.position(), status);
+    }
+
+    /**
+     * like {@link #putRange(int, PutBlobRangeRequest, PutBlobRangeResponse)} but fails if the primary
+     * completed the blob with this range but the replica couldn't, e.g. because it is still missing ranges.
+     * That happens if the replica started recovering while the upload was in progress,
+     * failing the replica makes it recover the blob from the primary.
+     */
+    public void putRangeOnReplica(int shardId, PutBlobRangeRequest request, PutBlobRangeResponse response) {
+        putRange(shardId, request, response);
+        if (request.completed()
+            && response.status() != RemoteDigestBlob.Status.FULL
+            && response.status() != RemoteDigestBlob.Status.EXISTS) {
+            RangedDigestBlob blob = rangedUploads.remove(rangedUploadKey(request.index(), shardId, request.id()));
+            if (blob != null) {
+                blob.discard();
+            }
+            throw new ElasticsearchIllegalStateException(String.format(
+                "replica of shard [%s][%d] is missing ranges of blob %s", request.index(), shardId, request.id()));
+        }
+    }
+
+    /**
+     * the tmp file of a ranged upload is allocated with the total size given by the client,
+     * so it must neither exceed the configured maximum nor the usable space of the disk.
+     */
+    private void checkRangedUploadSize(BlobContainer container, PutBlobRangeRequest request) {
+        long totalSize = request.totalSize();
+        if (totalSize > rangedUploadMaxSize.bytes()) {
+            throw new ElasticsearchIllegalArgumentException(String.format(
+                "blob %s with a size of %d exceeds the maximum size of ranged uploads %s",
+                request.id(), totalSize, rangedUploadMaxSize));
+        }
+        long usableSpace = container.getTmpDirectory().getUsableSpace();
+        if (totalSize > usableSpace) {
+            throw new ElasticsearchIllegalArgumentException(String.format(
+                "blob %s with a size of %d exceeds the usable disk space of %d",
+                request.id(), totalSize, usableSpace));
+        }
+    }
+
+    private static String rangedUploadKey(String index, int shardId, String digest) {
+        return index + "/" + shardId + "/" + digest;
+    }
+
+    /**
+     * discards a ranged upload if it didn't receive any range within the idle timeout
+     */
+    private class RangedUploadExpiry implements Runnable {
+
+        private final String key;
+        private final RangedDigestBlob blob;
+
+        private RangedUploadExpiry(String key, RangedDigestBlob blob) {
+            this.key = key;
+            this.blob = blob;
+        }
+
+        @Override
+        public void run() {
+            if (blob.status() != RemoteDigestBlob.Status.PARTIAL) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - blob.lastAccess();
+            if (idle < rangedUploadIdleTimeout.millis()) {
+                threadPool.schedule(new TimeValue(rangedUploadIdleTimeout.millis() - idle),
+                    ThreadPool.Names.GENERIC, this);
+                return;
+            }
+            logger.info("ranged upload of {} timed out, discarding {} received bytes", blob.digest(), blob.received());
+            rangedUploads.remove(key, blob);
+            blob.discard();
+        }
+    }
+
     private void removeTransferAfterRecovery(UUID transferId) {
         boolean toSchedule = false;
         synchronized (lock) {
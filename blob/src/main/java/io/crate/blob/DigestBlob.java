@@ -40,6 +40,19 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public class DigestBlob {
 
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * direct buffer used to write chunks to the file channel and to feed the digest.
+     * Writing heap buffers would make the channel copy them into a temporary direct buffer anyway.
+     */
+    private static final ThreadLocal<ByteBuffer> WRITE_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        }
+    };
+
     private final String digest;
     private final BlobContainer container;
     private final UUID transferId;
@@ -52,6 +65,14 @@ public class DigestBlob {
     private MessageDigest md;
     private long chunks;
     private CountDownLatch headCatchedUpLatch;
+
+    /**
+     * guards the digest while a resumed transfer receives the head and the tail concurrently.
+     * Until the head is complete, tail chunks are only written and the digest of the tail bytes
+     * which arrived meanwhile is caught up once the last head chunk was added.
+     */
+    private final Object digestLock = new Object();
+    private boolean digestCatchedUp = true;
     private static final ESLogger logger = Loggers.getLogger(DigestBlob.class);
 
     public DigestBlob(BlobContainer container, String digest, UUID transferId) {
@@ -84,7 +105,7 @@ public class DigestBlob {
         return tmpFile;
     }
 
-    private void updateDigest(ByteBuffer bbf) throws IOException {
+    private MessageDigest messageDigest() throws IOException {
         if (md == null){
             try {
                 md = MessageDigest.getInstance("SHA-1");
@@ -92,13 +113,16 @@ public class DigestBlob {
                 throw new IOException(e);
             }
         }
-        md.update(bbf.slice());
+        return md;
+    }
+
+    private void updateDigest(ByteBuffer bbf) throws IOException {
+        messageDigest().update(bbf.slice());
     }
 
     private void addContent(ChannelBuffer buffer, boolean last) throws IOException {
         if (buffer != null) {
             int readableBytes = buffer.readableBytes();
-            ByteBuffer byteBuffer = buffer.toByteBuffer();
             if (file == null) {
                 file = createTmpFile();
             }
@@ -107,15 +131,26 @@ public class DigestBlob {
                 fileChannel = outputStream.getChannel();
             }
 
-            int written = 0;
-            do {
-                if (headLength == 0) {
-                    updateDigest(byteBuffer);
+            ByteBuffer writeBuffer = WRITE_BUFFER.get();
+            int index = buffer.readerIndex();
+            int end = index + readableBytes;
+            synchronized (digestLock) {
+                while (index < end) {
+                    writeBuffer.clear();
+                    writeBuffer.limit(Math.min(writeBuffer.capacity(), end - index));
+                    buffer.getBytes(index, writeBuffer);
+                    writeBuffer.flip();
+                    index += writeBuffer.remaining();
+                    if (digestCatchedUp) {
+                        updateDigest(writeBuffer);
+                    }
+                    while (writeBuffer.hasRemaining()) {
+                        fileChannel.write(writeBuffer);
+                    }
                 }
-                written += fileChannel.write(byteBuffer);
-            } while (written < readableBytes);
-            size += readableBytes;
-            buffer.readerIndex(buffer.readerIndex() + written);
+                size += readableBytes;
+            }
+            buffer.readerIndex(end);
             chunks ++;
         }
         if (last) {
@@ -136,41 +171,56 @@ public class DigestBlob {
         }
     }
 
-    private void calculateDigest() {
-        assert headSize.get() == headLength : "Head hasn't catched up, can't calculate digest";
-        try {
-            FileInputStream stream = new FileInputStream(file);
-            stream.skip(headLength);
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = stream.read(buffer, 0, 4096)) > 0) {
-                md.update(buffer, 0, bytesRead);
+    /**
+     * feeds the tail bytes which were written before the head was complete into the digest
+     */
+    private void catchUpDigest() throws IOException {
+        synchronized (digestLock) {
+            if (size > 0) {
+                ByteBuffer readBuffer = WRITE_BUFFER.get();
+                try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                    long position = headLength;
+                    long end = headLength + size;
+                    while (position < end) {
+                        readBuffer.clear();
+                        readBuffer.limit((int) Math.min(readBuffer.capacity(), end - position));
+                        int read = channel.read(readBuffer, position);
+                        if (read < 0) {
+                            throw new EOFException("tail of " + file + " is shorter than expected");
+                        }
+                        readBuffer.flip();
+                        updateDigest(readBuffer);
+                        position += read;
+                    }
+                }
             }
-            stream.close();
-        } catch (IOException ex) {
-            logger.error("error accessing file to calculate digest", ex);
+            digestCatchedUp = true;
         }
     }
 
     public File commit() throws DigestMismatchException {
-        if (headLength > 0) {
-            calculateDigest();
-        }
-
-        assert md != null;
+        assert digestCatchedUp : "Head hasn't catched up, can't calculate digest";
         try {
-            String contentDigest = Hex.encodeHexString(md.digest());
+            String contentDigest = Hex.encodeHexString(messageDigest().digest());
             if (!contentDigest.equals(digest)) {
                 file.delete();
                 throw new DigestMismatchException(digest, contentDigest);
             }
+        } catch (IOException e) {
+            throw new BlobWriteException(digest, size, e);
         } finally {
             IOUtils.closeWhileHandlingException(headFileChannel);
             headFileChannel = null;
         }
-        File newFile = container.getFile(digest);
-        file.renameTo(newFile);
-        return newFile;
+        try {
+            if (!container.commitBlob(file, digest)) {
+                // same digest, so the existing file has the same content
+                file.delete();
+            }
+        } catch (IOException e) {
+            throw new BlobWriteException(digest, size, e);
+        }
+        return container.getFile(digest);
     }
 
     public void addContent(BytesReference content, boolean last){
@@ -192,12 +242,12 @@ public class DigestBlob {
         assert readableBytes + headSize.get() <= headLength : "Got too many bytes in addToHead()";
 
         ByteBuffer byteBuffer = channelBuffer.toByteBuffer();
+        updateDigest(byteBuffer);
         while (written < readableBytes) {
-            updateDigest(byteBuffer);
             written += headFileChannel.write(byteBuffer);
         }
-        headSize.addAndGet(written);
-        if (headSize.get() == headLength) {
+        if (headSize.addAndGet(written) == headLength) {
+            catchUpDigest();
             headCatchedUpLatch.countDown();
         }
     }
@@ -223,6 +273,7 @@ public class DigestBlob {
             digestBlob.headLength = currentPos;
             digestBlob.headSize = new AtomicLong();
             digestBlob.headCatchedUpLatch = new CountDownLatch(1);
+            digestBlob.digestCatchedUp = currentPos == 0;
 
             RandomAccessFile raf = new RandomAccessFile(digestBlob.file, "rw");
             raf.setLength(currentPos);
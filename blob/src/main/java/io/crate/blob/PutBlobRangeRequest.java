@@ -0,0 +1,105 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * writes a range of a blob whose total size is declared up front,
+ * ranges may be sent in any order and concurrently.
+ */
+public class PutBlobRangeRequest extends ShardReplicationOperationRequest<PutBlobRangeRequest> {
+
+    private byte[] digest;
+    private long totalSize;
+    private long position;
+    private BytesReference content;
+
+    /**
+     * set by the primary if the range completed the blob there,
+     * a replica which is still missing ranges at that point can't complete the blob anymore.
+     */
+    private boolean completed = false;
+
+    public PutBlobRangeRequest() {
+    }
+
+    public PutBlobRangeRequest(String index, byte[] digest, long totalSize, long position, BytesReference content) {
+        this.index = index;
+        this.digest = digest;
+        this.totalSize = totalSize;
+        this.position = position;
+        this.content = content;
+    }
+
+    public String id() {
+        return Hex.encodeHexString(digest);
+    }
+
+    public long totalSize() {
+        return totalSize;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public BytesReference content() {
+        return content;
+    }
+
+    public boolean completed() {
+        return completed;
+    }
+
+    public PutBlobRangeRequest completed(boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        digest = new byte[20];
+        in.read(digest);
+        totalSize = in.readVLong();
+        position = in.readVLong();
+        content = in.readBytesReference();
+        completed = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.write(digest);
+        out.writeVLong(totalSize);
+        out.writeVLong(position);
+        out.writeBytesReference(content);
+        out.writeBoolean(completed);
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A blob whose total size is known up front and whose content arrives in ranges,
+ * in any order and possibly concurrently.
+ *
+ * Every range is written at its position into a pre-sized tmp file using positional writes.
+ * A write only fills the gaps of its range which haven't been received or claimed by a
+ * concurrent write yet, so bytes are never overwritten once they are written.
+ * The digest is fed from the file with the contiguous received prefix as soon as it grows,
+ * so a roughly sequential upload doesn't have to re-read the whole file once all ranges are present.
+ * The digest range is claimed under the monitor but read outside of it, by one write at a time,
+ * so concurrent writes aren't blocked by the file read.
+ *
+ * The write which completes the digest verifies it and commits the file.
+ */
+public class RangedDigestBlob {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final BlobContainer container;
+    private final String digest;
+    private final long size;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final MessageDigest md;
+
+    /**
+     * writes hold the read lock, commit and discard hold the write lock
+     * so that the channel is never closed while a range is being written.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * received ranges, start -> end (exclusive), merged so that no two ranges touch each other
+     */
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+    /**
+     * gaps which are currently written by a concurrent write, start -> end (exclusive)
+     */
+    private final TreeMap<Long, Long> claimed = new TreeMap<>();
+    private long received = 0;
+    private long digestPosition = 0;
+    /**
+     * true while a write feeds the digest, only one write at a time updates it
+     */
+    private boolean digesting = false;
+    private boolean completing = false;
+
+    private volatile RemoteDigestBlob.Status status = RemoteDigestBlob.Status.PARTIAL;
+    private volatile long lastAccess;
+
+    public RangedDigestBlob(BlobContainer container, String digest, long size) {
+        this.container = container;
+        this.digest = digest;
+        this.size = size;
+        this.file = getTmpFilePath(container, digest);
+        try {
+            this.md = MessageDigest.getInstance("SHA-1");
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            // drop leftovers of a previous upload of the same digest
+            randomAccessFile.setLength(0);
+            randomAccessFile.setLength(size);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new BlobWriteException(digest, size, e);
+        }
+        file.deleteOnExit();
+        channel = randomAccessFile.getChannel();
+        lastAccess = System.currentTimeMillis();
+    }
+
+    private static File getTmpFilePath(BlobContainer container, String digest) {
+        return new File(container.getTmpDirectory(), String.format("%s.ranged", digest));
+    }
+
+    public String digest() {
+        return digest;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public File file() {
+        return file;
+    }
+
+    public RemoteDigestBlob.Status status() {
+        return status;
+    }
+
+    /**
+     * @return the time in millis of the last write
+     */
+    public long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * @return the number of distinct bytes received so far
+     */
+    public synchronized long received() {
+        return received;
+    }
+
+    /**
+     * @return the received ranges as <code>{start, end}</code> pairs, both inclusive
+     */
+    public synchronized List<long[]> receivedRanges() {
+        List<long[]> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Long, Long> entry : ranges.entrySet()) {
+            result.add(new long[]{entry.getKey(), entry.getValue() - 1});
+        }
+        return result;
+    }
+
+    /**
+     * writes the content at the given position.
+     * Parts of the content which overlap already received ranges are ignored.
+     * An empty content doesn't change the blob and can be used to query its status.
+     *
+     * @return {@link RemoteDigestBlob.Status#FULL} or {@link RemoteDigestBlob.Status#MISMATCH}
+     * if this write completed the blob, {@link RemoteDigestBlob.Status#PARTIAL} if ranges are still missing
+     * and {@link RemoteDigestBlob.Status#EXISTS} if the blob had been completed by a previous write.
+     */
+    public RemoteDigestBlob.Status write(long position, BytesReference content) {
+        int length = content.length();
+        if (position < 0 || position + length > size) {
+            throw new ElasticsearchIllegalArgumentException(String.format(
+                    "range [%d-%d] exceeds the blob size %d", position, position + length - 1, size));
+        }
+        lastAccess = System.currentTimeMillis();
+        boolean complete;
+        List<long[]> gaps = null;
+        long[] digestRange;
+        closeLock.readLock().lock();
+        try {
+            RemoteDigestBlob.Status currentStatus = status;
+            if (currentStatus != RemoteDigestBlob.Status.PARTIAL) {
+                return currentStatus == RemoteDigestBlob.Status.FULL ? RemoteDigestBlob.Status.EXISTS : currentStatus;
+            }
+            ChannelBuffer buffer = content.toChannelBuffer();
+            synchronized (this) {
+                gaps = claimGaps(position, position + length);
+            }
+            for (long[] gap : gaps) {
+                writeFully(buffer.toByteBuffer(
+                        buffer.readerIndex() + (int) (gap[0] - position), (int) (gap[1] - gap[0])), gap[0]);
+            }
+            synchronized (this) {
+                for (long[] gap : gaps) {
+                    claimed.remove(gap[0]);
+                    addRange(gap[0], gap[1]);
+                }
+                gaps = null;
+                digestRange = claimDigestRange();
+                complete = digestRange == null && claimCompletion();
+            }
+            while (digestRange != null) {
+                // if the read fails the digest stays claimed, the blob can't complete anymore and gets discarded
+                digestFromFile(digestRange[0], digestRange[1]);
+                synchronized (this) {
+                    digestPosition = digestRange[1];
+                    digesting = false;
+                    // catch up with the ranges received by concurrent writes in the meantime
+                    digestRange = claimDigestRange();
+                    complete = digestRange == null && claimCompletion();
+                }
+            }
+        } catch (IOException e) {
+            throw new BlobWriteException(digest, size, e);
+        } finally {
+            if (gaps != null) {
+                releaseClaims(gaps);
+            }
+            closeLock.readLock().unlock();
+        }
+        if (!complete) {
+            return RemoteDigestBlob.Status.PARTIAL;
+        }
+        closeLock.writeLock().lock();
+        try {
+            commit();
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        return status;
+    }
+
+    /**
+     * closes and deletes an incomplete blob
+     */
+    public void discard() {
+        closeLock.writeLock().lock();
+        try {
+            if (status == RemoteDigestBlob.Status.PARTIAL) {
+                status = RemoteDigestBlob.Status.FAILED;
+                IOUtils.closeWhileHandlingException(randomAccessFile);
+                file.delete();
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * claims the parts of <code>[start, end)</code> which are neither received nor claimed yet
+     *
+     * @return the claimed gaps as <code>{start, end}</code> pairs, end exclusive
+     */
+    private List<long[]> claimGaps(long start, long end) {
+        List<long[]> gaps = new ArrayList<>();
+        long position = start;
+        while (position < end) {
+            long coveredUntil = Math.max(coveredUntil(ranges, position), coveredUntil(claimed, position));
+            if (coveredUntil > position) {
+                position = coveredUntil;
+                continue;
+            }
+            long gapEnd = Math.min(end, Math.min(nextStart(ranges, position), nextStart(claimed, position)));
+            claimed.put(position, gapEnd);
+            gaps.add(new long[]{position, gapEnd});
+            position = gapEnd;
+        }
+        return gaps;
+    }
+
+    private synchronized void releaseClaims(List<long[]> gaps) {
+        for (long[] gap : gaps) {
+            claimed.remove(gap[0]);
+        }
+    }
+
+    /**
+     * @return the end of the range which contains position or position if there is none
+     */
+    private static long coveredUntil(TreeMap<Long, Long> ranges, long position) {
+        Map.Entry<Long, Long> floor = ranges.floorEntry(position);
+        if (floor != null && floor.getValue() > position) {
+            return floor.getValue();
+        }
+        return position;
+    }
+
+    private static long nextStart(TreeMap<Long, Long> ranges, long position) {
+        Long next = ranges.higherKey(position);
+        return next == null ? Long.MAX_VALUE : next;
+    }
+
+    private void addRange(long start, long end) {
+        if (start == end) {
+            return;
+        }
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+            removeRange(floor);
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            removeRange(next);
+        }
+        ranges.put(start, end);
+        received += end - start;
+    }
+
+    private void removeRange(Map.Entry<Long, Long> range) {
+        ranges.remove(range.getKey());
+        received -= range.getValue() - range.getKey();
+    }
+
+    /**
+     * claims the part of the contiguous received prefix which hasn't been digested yet,
+     * unless another write is currently feeding the digest.
+     * Received bytes are never written again, so the digest covers exactly what is committed.
+     *
+     * @return the claimed range as <code>{start, end}</code> pair, end exclusive, or null
+     */
+    private long[] claimDigestRange() {
+        if (digesting) {
+            return null;
+        }
+        Map.Entry<Long, Long> first = ranges.firstEntry();
+        if (first == null || first.getKey() > 0 || first.getValue() <= digestPosition) {
+            return null;
+        }
+        digesting = true;
+        return new long[]{digestPosition, first.getValue()};
+    }
+
+    /**
+     * @return true if the blob is complete and digested and no other write is completing it
+     */
+    private boolean claimCompletion() {
+        if (completing || digesting || digestPosition != size) {
+            return false;
+        }
+        completing = true;
+        return true;
+    }
+
+    private void digestFromFile(long position, long end) throws IOException {
+        ByteBuffer readBuffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, end - position));
+        while (position < end) {
+            readBuffer.clear();
+            readBuffer.limit((int) Math.min(readBuffer.capacity(), end - position));
+            int read = channel.read(readBuffer, position);
+            if (read < 0) {
+                throw new EOFException(file + " is shorter than expected");
+            }
+            readBuffer.flip();
+            md.update(readBuffer);
+            position += read;
+        }
+    }
+
+    private void commit() {
+        assert digestPosition == size : "digest must have caught up before commit";
+        try {
+            channel.force(false);
+            randomAccessFile.close();
+            String contentDigest = Hex.encodeHexString(md.digest());
+            if (!contentDigest.equals(digest)) {
+                file.delete();
+                status = RemoteDigestBlob.Status.MISMATCH;
+                return;
+            }
+            if (!container.commitBlob(file, digest)) {
+                // same digest, so the existing file has the same content
+                file.delete();
+            }
+            status = RemoteDigestBlob.Status.FULL;
+        } catch (IOException e) {
+            status = RemoteDigestBlob.Status.FAILED;
+            file.delete();
+            throw new BlobWriteException(digest, size, e);
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package io.crate.blob;
 
+import com.google.common.collect.ImmutableList;
 import io.crate.common.Hex;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.client.Client;
@@ -29,6 +30,7 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.util.List;
 import java.util.UUID;
 
 public class RemoteDigestBlob {
@@ -85,6 +87,13 @@ public class RemoteDigestBlob {
     private StartBlobResponse startResponse;
     private UUID transferId;
 
+    // set if the content is a range of a blob which is uploaded in parallel ranges
+    private boolean ranged = false;
+    private long rangePosition;
+    private long rangeEnd;
+    private long totalSize;
+    private List<long[]> receivedRanges = ImmutableList.of();
+
 
     public RemoteDigestBlob(BlobService blobService, String index, String digest) {
         this.digest = digest;
@@ -140,7 +149,72 @@ public class RemoteDigestBlob {
         status = response.status();
     }
 
+    /**
+     * makes the content of this blob the range <code>[start, end)</code> of a blob with the given total size.
+     * The range may be empty to just query which ranges have been received already.
+     */
+    public void range(long start, long end, long totalSize) {
+        assert (startResponse == null && !ranged);
+        this.ranged = true;
+        this.rangePosition = start;
+        this.rangeEnd = end;
+        this.totalSize = totalSize;
+    }
+
+    public boolean isRanged() {
+        return ranged;
+    }
+
+    /**
+     * @return true if all the content of the declared range has been sent
+     */
+    public boolean rangeComplete() {
+        return rangePosition == rangeEnd;
+    }
+
+    /**
+     * @return the ranges of the blob that have been received, as {start, end} pairs, both inclusive
+     */
+    public List<long[]> receivedRanges() {
+        return receivedRanges;
+    }
+
+    private void putRange(ChannelBuffer buffer) {
+        int length = buffer.readableBytes();
+        if (rangePosition + length > rangeEnd) {
+            throw new ElasticsearchIllegalArgumentException("content exceeds the range given by the Content-Range header");
+        }
+        PutBlobRangeRequest request = new PutBlobRangeRequest(
+            index,
+            Hex.decodeHex(digest),
+            totalSize,
+            rangePosition,
+            bytes(buffer)
+        );
+        rangePosition += length;
+        size += length;
+        PutBlobRangeResponse response = client.execute(PutBlobRangeAction.INSTANCE, request).actionGet();
+        status = response.status();
+        receivedRanges = response.ranges();
+    }
+
+    private static BytesArray bytes(ChannelBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new BytesArray(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), buffer.readableBytes());
+        }
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return new BytesArray(bytes);
+    }
+
     public Status addContent(ChannelBuffer buffer, boolean last) {
+        if (ranged) {
+            if (status == null || status == Status.PARTIAL) {
+                putRange(buffer);
+            }
+            // otherwise the blob is complete already, the remaining content is ignored
+            return status;
+        }
         if (startResponse == null) {
             // this is the first call to addContent
             start(buffer, last);
@@ -0,0 +1,114 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.replication.TransportShardReplicationOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportPutBlobRangeAction
+        extends TransportShardReplicationOperationAction<PutBlobRangeRequest, PutBlobRangeRequest, PutBlobRangeResponse> {
+
+    private final BlobTransferTarget transferTarget;
+
+    @Inject
+    public TransportPutBlobRangeAction(Settings settings,
+                                       TransportService transportService,
+                                       ClusterService clusterService,
+                                       IndicesService indicesService,
+                                       ThreadPool threadPool,
+                                       ShardStateAction shardStateAction,
+                                       BlobTransferTarget transferTarget,
+                                       ActionFilters actionFilters) {
+        super(settings, PutBlobRangeAction.NAME, transportService, clusterService,
+                indicesService, threadPool, shardStateAction, actionFilters);
+        this.transferTarget = transferTarget;
+    }
+
+    @Override
+    protected PutBlobRangeRequest newRequestInstance() {
+        return new PutBlobRangeRequest();
+    }
+
+    @Override
+    protected PutBlobRangeRequest newReplicaRequestInstance() {
+        return new PutBlobRangeRequest();
+    }
+
+    @Override
+    protected PutBlobRangeResponse newResponseInstance() {
+        return new PutBlobRangeResponse();
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.INDEX;
+    }
+
+    @Override
+    protected PrimaryResponse<PutBlobRangeResponse, PutBlobRangeRequest> shardOperationOnPrimary(ClusterState clusterState,
+            PrimaryOperationRequest shardRequest) {
+        logger.trace("shardOperationOnPrimary {}", shardRequest);
+        final PutBlobRangeRequest request = shardRequest.request;
+        final PutBlobRangeResponse response = newResponseInstance();
+        transferTarget.putRange(shardRequest.shardId.id(), request, response);
+        request.completed(response.status() == RemoteDigestBlob.Status.FULL);
+        return new PrimaryResponse<>(request, response, null);
+    }
+
+    @Override
+    protected void shardOperationOnReplica(ReplicaOperationRequest shardRequest) {
+        logger.trace("shardOperationOnReplica operating on replica {}", shardRequest);
+        final PutBlobRangeRequest request = shardRequest.request;
+        final PutBlobRangeResponse response = newResponseInstance();
+        transferTarget.putRangeOnReplica(shardRequest.shardId.id(), request, response);
+    }
+
+    @Override
+    protected ShardIterator shards(ClusterState clusterState, InternalRequest request) throws ElasticsearchException {
+        return clusterService.operationRouting()
+                .indexShards(clusterService.state(),
+                        request.concreteIndex(),
+                        null,
+                        request.request().id(),
+                        null);
+    }
+
+    @Override
+    protected boolean checkWriteConsistency() {
+        return true;
+    }
+
+    @Override
+    protected boolean resolveIndex() {
+        return false;
+    }
+}
@@ -22,32 +22,45 @@
 package io.crate.blob.recovery;
 
 import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobDigestManifest;
 import io.crate.blob.BlobTransferTarget;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.common.Hex;
+import org.apache.lucene.store.RateLimiter;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.index.shard.IndexShardClosedException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
 import org.elasticsearch.indices.recovery.*;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class BlobRecoveryHandler {
 
+    private static final int MAX_CHUNKS_IN_FLIGHT_PER_FILE = 4;
+
     private final ESLogger logger = Loggers.getLogger(getClass());
     private final StartRecoveryRequest request;
     private final TransportService transportService;
@@ -99,6 +112,21 @@ public class BlobRecoveryHandler {
         return result;
     }
 
+    private BlobDigestManifestResponse getDigestManifestFromTarget() {
+        return (BlobDigestManifestResponse)transportService.submitRequest(
+            request.targetNode(),
+            BlobRecoveryTarget.Actions.DIGEST_MANIFEST,
+            new BlobDigestManifestRequest(request.recoveryId()),
+            TransportRequestOptions.options(),
+            new FutureTransportResponseHandler<TransportResponse>() {
+                @Override
+                public TransportResponse newInstance() {
+                    return new BlobDigestManifestResponse();
+                }
+            }
+        ).txGet();
+    }
+
     public void phase1() throws Exception {
         logger.debug("[{}][{}] recovery [phase1] to {}: start",
             request.shardId().index().name(), request.shardId().id(), request.targetNode().getName());
@@ -153,8 +181,18 @@ public class BlobRecoveryHandler {
     }
 
     private void syncVarFiles(AtomicReference<Exception> lastException) throws InterruptedException {
+        BlobDigestManifest localManifest = blobShard.blobContainer().digestManifest();
+        BlobDigestManifestResponse remoteManifest = getDigestManifestFromTarget();
 
+        int skipped = 0;
         for (byte prefix : BlobContainer.PREFIXES) {
+            int prefixIndex = prefix & 0xFF;
+            if (localManifest.hash(prefixIndex) == remoteManifest.hashes[prefixIndex]
+                    && localManifest.count(prefixIndex) == remoteManifest.counts[prefixIndex]) {
+                // same digests on both nodes, no need to exchange them
+                skipped++;
+                continue;
+            }
             // byte[1] and byte[1] have different hashCodes
             // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
             Set<BytesArray> remoteDigests = getExistingDigestsFromTarget(prefix);
@@ -166,16 +204,46 @@ public class BlobRecoveryHandler {
             Set<BytesArray> localButNotRemoteDigests = new HashSet<BytesArray>(localDigests);
             localButNotRemoteDigests.removeAll(remoteDigests);
 
-            final CountDownLatch latch = new CountDownLatch(localButNotRemoteDigests.size());
+            // small blobs are sent in batches, all others chunk by chunk
+            long chunkSize = recoverySettings.fileChunkSize().bytes();
+            List<File> largeFiles = new ArrayList<File>();
+            List<List<File>> batches = new ArrayList<List<File>>();
+            List<File> batch = new ArrayList<File>();
+            long batchSize = 0;
             for (BytesArray digestBytes : localButNotRemoteDigests) {
-                final String digest = Hex.encodeHexString(digestBytes.toBytes());
+                File file = blobShard.blobContainer().getFile(Hex.encodeHexString(digestBytes.toBytes()));
+                long fileSize = file.length();
+                if (fileSize >= chunkSize) {
+                    largeFiles.add(file);
+                    continue;
+                }
+                if (batchSize + fileSize > chunkSize) {
+                    batches.add(batch);
+                    batch = new ArrayList<File>();
+                    batchSize = 0;
+                }
+                batch.add(file);
+                batchSize += fileSize;
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+
+            final CountDownLatch latch = new CountDownLatch(largeFiles.size() + batches.size());
+            for (List<File> files : batches) {
+                logger.trace("[{}][{}] start to transfer batch of {} files to {}",
+                    request.shardId().index().name(), request.shardId().id(), files.size(),
+                    request.targetNode().getName());
+                recoverySettings.concurrentSmallFileStreamPool().execute(
+                    new TransferBatchRunnable(files, lastException, latch)
+                );
+            }
+            for (File file : largeFiles) {
                 logger.trace("[{}][{}] start to transfer file var/{} to {}",
-                    request.shardId().index().name(), request.shardId().id(), digest,
+                    request.shardId().index().name(), request.shardId().id(), file.getName(),
                     request.targetNode().getName());
-
                 recoverySettings.concurrentStreamPool().execute(
-                    new TransferFileRunnable(blobShard.blobContainer().getFile(digest),
-                        lastException, latch)
+                    new TransferFileRunnable(file, lastException, latch)
                 );
             }
             latch.await();
@@ -185,6 +253,8 @@ public class BlobRecoveryHandler {
                 deleteFilesRequest(remoteDigests.toArray(new BytesArray[remoteDigests.size()]));
             }
         }
+        logger.debug("[{}][{}] skipped {} of {} prefixes with equal digests",
+            request.shardId().index().name(), request.shardId().id(), skipped, BlobContainer.PREFIXES.length);
     }
 
     private void deleteFilesRequest(BytesArray[] digests) {
@@ -215,107 +285,196 @@ public class BlobRecoveryHandler {
         ).txGet();
     }
 
+    private String relativePath(File file) {
+        String baseDir = blobShard.blobContainer().getBaseDirectory().getAbsolutePath();
+        String filePath = file.getAbsolutePath();
+        return filePath.substring(baseDir.length(), filePath.length());
+    }
+
+    private void checkShardOpen() {
+        if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+            throw new IndexShardClosedException(shard.shardId());
+        }
+    }
+
+    private void pause(long bytes) throws IOException {
+        RateLimiter rateLimiter = recoverySettings.rateLimiter();
+        if (rateLimiter != null) {
+            rateLimiter.pause(bytes);
+        }
+    }
+
+    /**
+     * fill <code>buffer</code> up to <code>length</code> with the bytes of the channel starting at <code>position</code>
+     */
+    private static void readFully(FileChannel channel, long position, byte[] buffer, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+        while (byteBuffer.hasRemaining()) {
+            if (channel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+                throw new EOFException(String.format("unexpected end of file at position %d",
+                    position + byteBuffer.position()));
+            }
+        }
+    }
+
+    /**
+     * sends the content of multiple small files within one request
+     */
+    private class TransferBatchRunnable implements Runnable {
+        private final List<File> files;
+        private final AtomicReference<Exception> lastException;
+        private final CountDownLatch latch;
+
+        public TransferBatchRunnable(List<File> files, AtomicReference<Exception> lastException,
+                                     CountDownLatch latch) {
+            this.files = files;
+            this.lastException = lastException;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                checkShardOpen();
+                String[] paths = new String[files.size()];
+                BytesReference[] contents = new BytesReference[files.size()];
+                long batchSize = 0;
+                for (int i = 0; i < paths.length; i++) {
+                    File file = files.get(i);
+                    paths[i] = relativePath(file);
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        byte[] content = new byte[(int) channel.size()];
+                        readFully(channel, 0, content, content.length);
+                        contents[i] = new BytesArray(content);
+                        batchSize += content.length;
+                    }
+                }
+                pause(batchSize);
+                transportService.submitRequest(
+                    request.targetNode(),
+                    BlobRecoveryTarget.Actions.TRANSFER_BATCH,
+                    new BlobRecoveryBatchTransferRequest(request.recoveryId(), paths, contents),
+                    TransportRequestOptions.options(),
+                    EmptyTransportResponseHandler.INSTANCE_SAME
+                ).txGet();
+
+                logger.trace("[{}][{}] completed to transfer batch of {} files to {}",
+                    request.shardId().index().name(), request.shardId().id(), paths.length,
+                    request.targetNode().getName());
+            } catch (Exception ex) {
+                logger.error("exception while file transfer", ex);
+                lastException.set(ex);
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * sends a file chunk by chunk, keeping up to {@link #MAX_CHUNKS_IN_FLIGHT_PER_FILE} chunks in flight.
+     * Every chunk in flight occupies one of the chunk buffers, which is released once the target
+     * acknowledged it.
+     */
     private class TransferFileRunnable implements Runnable {
         private final AtomicReference<Exception> lastException;
-        private final String baseDir;
         private final File file;
         private final CountDownLatch latch;
 
-        public TransferFileRunnable(File filePath, AtomicReference<Exception> lastException,
+        public TransferFileRunnable(File file, AtomicReference<Exception> lastException,
                                     CountDownLatch latch) {
-            this.file = filePath;
+            this.file = file;
             this.lastException = lastException;
             this.latch = latch;
-            this.baseDir = blobShard.blobContainer().getBaseDirectory().getAbsolutePath();
         }
 
         @Override
         public void run() {
-
             try {
-                final int BUFFER_SIZE = 4 * 4096;
-
-                long fileSize = file.length();
+                transfer();
+                logger.trace("[{}][{}] completed to transfer file {} to {}",
+                    request.shardId().index().name(), request.shardId().id(), file.getName(),
+                    request.targetNode().getName());
+            } catch (Exception ex) {
+                logger.error("exception while file transfer", ex);
+                lastException.set(ex);
+            } finally {
+                latch.countDown();
+            }
+        }
 
-                if (fileSize == 0) {
-                    logger.warn("[{}][{}] empty file: {}",
-                        request.shardId().index().name(), request.shardId().id(), file.getName());
+        private void transfer() throws Exception {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                String relPath = relativePath(file);
+                long fileSize = channel.size();
+                int chunkSize = (int) Math.min(recoverySettings.fileChunkSize().bytes(), fileSize);
+                int numBuffers = (int) Math.min(MAX_CHUNKS_IN_FLIGHT_PER_FILE, (fileSize + chunkSize - 1) / chunkSize);
+                final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(numBuffers);
+                for (int i = 0; i < numBuffers; i++) {
+                    buffers.add(new byte[chunkSize]);
                 }
-
-                try (FileInputStream fileStream = new FileInputStream(file)) {
-                    String filePath = file.getAbsolutePath();
-                    String relPath = filePath.substring(baseDir.length(), filePath.length());
-                    byte[] buf = new byte[BUFFER_SIZE];
-                    int bytesRead = fileStream.read(buf, 0, BUFFER_SIZE);
-                    long bytesReadTotal = 0;
-                    BytesArray content = new BytesArray(buf, 0, bytesRead);
-                    BlobRecoveryStartTransferRequest startTransferRequest =
-                        new BlobRecoveryStartTransferRequest(request.recoveryId(), relPath, content,
-                            fileSize
-                        );
-
-                    if (bytesRead > 0) {
-                        bytesReadTotal += bytesRead;
-
-                        logger.trace("[{}][{}] send BlobRecoveryStartTransferRequest to {} for file {} with size {}",
-                            request.shardId().index().name(), request.shardId().id(),
-                            request.targetNode().getName(),
-                            relPath,
-                            fileSize
-                        );
-                        transportService.submitRequest(
-                            request.targetNode(),
-                            BlobRecoveryTarget.Actions.START_TRANSFER,
-                            startTransferRequest,
-                            TransportRequestOptions.options(),
-                            EmptyTransportResponseHandler.INSTANCE_SAME
-                        ).txGet();
-
-                        boolean isLast = false;
-                        boolean sentChunks = false;
-                        while ((bytesRead = fileStream.read(buf, 0, BUFFER_SIZE)) > 0) {
-
-                            sentChunks = true;
-                            bytesReadTotal += bytesRead;
-
-                            if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
-                                throw new IndexShardClosedException(shard.shardId());
-                            }
-                            if (bytesReadTotal == fileSize) {
-                                isLast = true;
+                final AtomicReference<Exception> chunkFailure = new AtomicReference<Exception>();
+
+                byte[] buffer = buffers.take();
+                readFully(channel, 0, buffer, chunkSize);
+                pause(chunkSize);
+                BlobRecoveryStartTransferRequest startTransferRequest =
+                    new BlobRecoveryStartTransferRequest(request.recoveryId(), relPath,
+                        new BytesArray(buffer, 0, chunkSize), fileSize);
+                logger.trace("[{}][{}] send BlobRecoveryStartTransferRequest to {} for file {} with size {}",
+                    request.shardId().index().name(), request.shardId().id(),
+                    request.targetNode().getName(),
+                    relPath,
+                    fileSize
+                );
+                transportService.submitRequest(
+                    request.targetNode(),
+                    BlobRecoveryTarget.Actions.START_TRANSFER,
+                    startTransferRequest,
+                    TransportRequestOptions.options(),
+                    EmptyTransportResponseHandler.INSTANCE_SAME
+                ).txGet();
+                buffers.add(buffer);
+
+                long position = chunkSize;
+                while (position < fileSize) {
+                    checkShardOpen();
+                    final byte[] chunkBuffer = buffers.take();
+                    if (chunkFailure.get() != null) {
+                        buffers.add(chunkBuffer);
+                        break;
+                    }
+                    int length = (int) Math.min(chunkSize, fileSize - position);
+                    readFully(channel, position, chunkBuffer, length);
+                    pause(length);
+                    transportService.sendRequest(request.targetNode(),
+                        BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
+                        new BlobRecoveryChunkRequest(request.recoveryId(),
+                            startTransferRequest.transferId(), new BytesArray(chunkBuffer, 0, length), position),
+                        TransportRequestOptions.options(),
+                        new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                            @Override
+                            public void handleResponse(TransportResponse.Empty response) {
+                                buffers.add(chunkBuffer);
                             }
-                            content = new BytesArray(buf, 0, bytesRead);
-
-                            transportService.submitRequest(request.targetNode(),
-                                BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
-                                new BlobRecoveryChunkRequest(request.recoveryId(),
-                                    startTransferRequest.transferId(), content, isLast),
-                                TransportRequestOptions.options(),
-                                EmptyTransportResponseHandler.INSTANCE_SAME
-                            ).txGet();
-                        }
 
-                        if (!isLast && sentChunks) {
-                            logger.error("Sending isLast because it wasn't sent before for {}", relPath);
-                            transportService.submitRequest(request.targetNode(),
-                                BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
-                                new BlobRecoveryChunkRequest(request.recoveryId(),
-                                    startTransferRequest.transferId(), BytesArray.EMPTY, true),
-                                TransportRequestOptions.options(),
-                                EmptyTransportResponseHandler.INSTANCE_SAME
-                            ).txGet();
+                            @Override
+                            public void handleException(TransportException exp) {
+                                chunkFailure.compareAndSet(null, exp);
+                                buffers.add(chunkBuffer);
+                            }
                         }
-                    }
+                    );
+                    position += length;
+                }
 
-                    logger.trace("[{}][{}] completed to transfer file {} to {}",
-                        request.shardId().index().name(), request.shardId().id(), file.getName(),
-                        request.targetNode().getName());
+                // wait for all chunks in flight
+                for (int i = 0; i < numBuffers; i++) {
+                    buffers.take();
+                }
+                Exception exception = chunkFailure.get();
+                if (exception != null) {
+                    throw exception;
                 }
-            } catch (IOException ex) {
-                logger.error("exception while file transfer", ex);
-                lastException.set(ex);
-            } finally {
-                latch.countDown();
             }
         }
     }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob.stats;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * number and total size of the blobs stored in a blob container.
+ *
+ * The counters are updated whenever a blob is added or deleted and are persisted
+ * in the var directory of the container, so the blob files don't have to be walked
+ * to get the stats. Changes are persisted at most once per second, so after a crash
+ * the counters might be off and have to be reconciled by walking the blob files.
+ *
+ * The counters are kept per digest prefix, so the files of a prefix can be walked while
+ * the lock of the prefix is held and the counters of the prefix are replaced with the result,
+ * without being affected by blobs added to or deleted from other prefixes meanwhile.
+ */
+public class BlobShardStats {
+
+    public static final String FILE_NAME = "blob_stats";
+
+    private static final ESLogger logger = Loggers.getLogger(BlobShardStats.class);
+    private static final long PERSIST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final File file;
+    private final int numPrefixes;
+    private final AtomicLongArray prefixCounts;
+    private final AtomicLongArray prefixUsages;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalUsage = new AtomicLong();
+
+    private volatile boolean initialized;
+    private volatile boolean dirty = false;
+    private volatile long lastPersisted = System.nanoTime();
+
+    public BlobShardStats(File varDirectory, int numPrefixes) {
+        this.file = new File(varDirectory, FILE_NAME);
+        this.numPrefixes = numPrefixes;
+        this.prefixCounts = new AtomicLongArray(numPrefixes);
+        this.prefixUsages = new AtomicLongArray(numPrefixes);
+        this.initialized = load();
+    }
+
+    /**
+     * @return false if no persisted stats were found, the counters need to be reconciled then
+     */
+    public boolean initialized() {
+        return initialized;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long totalUsage() {
+        return totalUsage.get();
+    }
+
+    public void added(int prefixIndex, long size) {
+        prefixCounts.incrementAndGet(prefixIndex);
+        prefixUsages.addAndGet(prefixIndex, size);
+        count.incrementAndGet();
+        totalUsage.addAndGet(size);
+        changed();
+    }
+
+    public void removed(int prefixIndex, long size) {
+        prefixCounts.decrementAndGet(prefixIndex);
+        prefixUsages.addAndGet(prefixIndex, -size);
+        count.decrementAndGet();
+        totalUsage.addAndGet(-size);
+        changed();
+    }
+
+    /**
+     * replace the counters of a prefix with the result of walking its blob files,
+     * must be called with the lock of the prefix held which is also held while adding or deleting blobs.
+     */
+    public void reconciled(int prefixIndex, long count, long totalUsage) {
+        this.count.addAndGet(count - prefixCounts.getAndSet(prefixIndex, count));
+        this.totalUsage.addAndGet(totalUsage - prefixUsages.getAndSet(prefixIndex, totalUsage));
+        dirty = true;
+    }
+
+    /**
+     * to be called once the counters of all prefixes have been reconciled
+     */
+    public void reconciled() {
+        initialized = true;
+        dirty = true;
+        persist();
+    }
+
+    private void changed() {
+        dirty = true;
+        if (System.nanoTime() - lastPersisted > PERSIST_INTERVAL_NANOS) {
+            persist();
+        }
+    }
+
+    public synchronized void persist() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        lastPersisted = System.nanoTime();
+        File tmpFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile))) {
+            out.writeInt(numPrefixes);
+            for (int i = 0; i < numPrefixes; i++) {
+                out.writeLong(prefixCounts.get(i));
+                out.writeLong(prefixUsages.get(i));
+            }
+        } catch (IOException e) {
+            logger.warn("could not write blob stats to {}", e, tmpFile);
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            logger.warn("could not rename blob stats file {}", tmpFile);
+        }
+    }
+
+    private boolean load() {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != numPrefixes) {
+                logger.warn("ignoring blob stats of {} with a different number of prefixes", file);
+                return false;
+            }
+            for (int i = 0; i < numPrefixes; i++) {
+                long prefixCount = in.readLong();
+                long prefixUsage = in.readLong();
+                prefixCounts.set(i, prefixCount);
+                prefixUsages.set(i, prefixUsage);
+                count.addAndGet(prefixCount);
+                totalUsage.addAndGet(prefixUsage);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("could not read blob stats from {}", e, file);
+            resetCounters();
+            return false;
+        }
+    }
+
+    private void resetCounters() {
+        for (int i = 0; i < numPrefixes; i++) {
+            prefixCounts.set(i, 0);
+            prefixUsages.set(i, 0);
+        }
+        count.set(0);
+        totalUsage.set(0);
+    }
+}
@@ -43,6 +43,7 @@ import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Injector;
@@ -53,6 +54,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
 
@@ -104,6 +106,17 @@ public class BlobIndices extends AbstractComponent implements ClusterStateListen
         this.blobEnvironment = blobEnvironment;
         clusterService.addLast(this);
         logger.setLevel("debug");
+        indicesLifecycle.addListener(new IndicesLifecycle.Listener() {
+            @Override
+            public void beforeIndexShardClosed(ShardId shardId, @Nullable IndexShard indexShard) {
+                if (isBlobShard(shardId)) {
+                    BlobShard blobShard = blobShard(shardId.getIndex(), shardId.id());
+                    if (blobShard != null) {
+                        blobShard.close();
+                    }
+                }
+            }
+        });
     }
 
     public BlobShard blobShardSafe(ShardId shardId) {
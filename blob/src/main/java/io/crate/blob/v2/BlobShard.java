@@ -22,29 +22,53 @@
 package io.crate.blob.v2;
 
 import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobContentCache;
 import io.crate.blob.BlobEnvironment;
+import io.crate.blob.stats.BlobShardStats;
 import io.crate.blob.stats.BlobStats;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BlobShard extends AbstractIndexShardComponent {
 
+    public static final String SETTING_STATS_RECONCILE_INTERVAL = "index.blobs.stats.reconcile_interval";
+
+    /**
+     * the background reconciliation pauses after this many files to limit the IO load
+     */
+    private static final int RECONCILE_THROTTLE_FILES = 1000;
+    private static final long RECONCILE_THROTTLE_PAUSE_MS = 10;
+
     private final BlobContainer blobContainer;
+    private final BlobContentCache blobCache;
     private final IndexShard indexShard;
+    private final ThreadPool threadPool;
+    private final long reconcileIntervalNanos;
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+    private volatile long lastReconciled = System.nanoTime();
 
     @Inject
     protected BlobShard(ShardId shardId, @IndexSettings Settings indexSettings,
                         BlobEnvironment blobEnvironment,
-                        IndexShard indexShard) {
+                        BlobContentCache blobCache,
+                        IndexShard indexShard,
+                        ThreadPool threadPool) {
         super(shardId, indexSettings);
+        this.blobCache = blobCache;
         this.indexShard = indexShard;
+        this.threadPool = threadPool;
+        this.reconcileIntervalNanos = indexSettings.getAsTime(
+                SETTING_STATS_RECONCILE_INTERVAL, TimeValue.timeValueHours(1)).nanos();
         File blobDir = blobDir(blobEnvironment);
         logger.info("creating BlobContainer at {}", blobDir);
         this.blobContainer = new BlobContainer(blobDir);
@@ -55,7 +79,16 @@ public class BlobShard extends AbstractIndexShardComponent {
     }
 
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        boolean deleted = blobContainer.deleteBlob(digest);
+        blobCache.invalidate(blobContainer, digest);
+        return deleted;
+    }
+
+    /**
+     * drops the cached content of the blobs of this shard, called before the shard is closed
+     */
+    public void close() {
+        blobCache.invalidate(blobContainer);
     }
 
     public BlobContainer blobContainer() {
@@ -66,21 +99,63 @@ public class BlobShard extends AbstractIndexShardComponent {
         return indexShard.routingEntry();
     }
 
+    /**
+     * returns the stats of the shard using the counters of the blob container.
+     *
+     * If no counters have been persisted yet the blob files are walked once,
+     * afterwards the counters are reconciled with the files in the background
+     * every {@link #SETTING_STATS_RECONCILE_INTERVAL}.
+     */
     public BlobStats blobStats() {
-        final BlobStats stats = new BlobStats();
+        BlobShardStats shardStats = blobContainer.stats();
+        if (!shardStats.initialized()) {
+            reconcileStats(false);
+        } else if (System.nanoTime() - lastReconciled > reconcileIntervalNanos
+                && reconciling.compareAndSet(false, true)) {
+            threadPool.generic().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reconcileStats(true);
+                    } catch (Throwable t) {
+                        logger.warn("failed to reconcile blob stats", t);
+                    } finally {
+                        reconciling.set(false);
+                    }
+                }
+            });
+        }
+        shardStats.persist();
 
+        final BlobStats stats = new BlobStats();
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
         stats.availableSpace(blobContainer().getBaseDirectory().getFreeSpace());
-        blobContainer().walkFiles(null, new BlobContainer.FileVisitor() {
+        stats.count(shardStats.count());
+        stats.totalUsage(shardStats.totalUsage());
+        return stats;
+    }
+
+    private void reconcileStats(final boolean throttle) {
+        final int[] visited = new int[1];
+        boolean completed = blobContainer.reconcileStats(new BlobContainer.FileVisitor() {
             @Override
             public boolean visit(File file) {
-                stats.totalUsage(stats.totalUsage() + file.length());
-                stats.count(stats.count() + 1);
+                if (throttle && ++visited[0] % RECONCILE_THROTTLE_FILES == 0) {
+                    try {
+                        Thread.sleep(RECONCILE_THROTTLE_PAUSE_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
                 return true;
             }
         });
-
-        return stats;
+        if (completed) {
+            lastReconciled = System.nanoTime();
+        } else {
+            logger.debug("reconciling the blob stats was interrupted");
+        }
     }
 
     private File blobDir(BlobEnvironment blobEnvironment) {
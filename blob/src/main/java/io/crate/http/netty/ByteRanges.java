@@ -0,0 +1,147 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.http.netty;
+
+import org.elasticsearch.common.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * parser for the values of <code>Range</code> and <code>Content-Range</code> headers,
+ * only byte ranges are supported
+ */
+class ByteRanges {
+
+    /**
+     * more ranges are ignored and the full content is returned instead
+     */
+    static final int MAX_RANGES = 64;
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final Pattern rangeSpecPattern = Pattern.compile("^(\\d*)-(\\d*)$");
+    private static final Pattern contentRangePattern = Pattern.compile("^bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+)$");
+
+    private ByteRanges() {
+    }
+
+    /**
+     * @param length the length of the requested content
+     * @return the satisfiable ranges as pairs of the first and the last byte position,
+     *         an empty list if no range is satisfiable
+     *         or null if the header is invalid and should be ignored
+     */
+    @Nullable
+    static List<long[]> parse(String header, long length) {
+        if (!header.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            Matcher matcher = rangeSpecPattern.matcher(spec.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+            long start;
+            long end;
+            try {
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    // suffix range: the last n bytes
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength == 0 || length == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (end < start) {
+                        return null;
+                    }
+                    if (start >= length) {
+                        continue;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            ranges.add(new long[]{start, end});
+        }
+        return ranges;
+    }
+
+    /**
+     * parses the <code>Content-Range</code> of an upload, e.g. <code>bytes 0-99/1000</code>.
+     * <code>bytes *&#47;1000</code> declares the total length only.
+     *
+     * @return <code>{start, end, total}</code> where start and end are inclusive and
+     *         both -1 if no range was given, or null if the header is invalid
+     */
+    @Nullable
+    static long[] parseContentRange(String header) {
+        Matcher matcher = contentRangePattern.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            long total = Long.parseLong(matcher.group(3));
+            if (matcher.group(1) == null) {
+                return new long[]{-1, -1, total};
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long end = Long.parseLong(matcher.group(2));
+            if (end < start || end >= total) {
+                return null;
+            }
+            return new long[]{start, end, total};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the ranges formatted like a <code>Range</code> header value, e.g. <code>bytes=0-99,200-299</code>
+     */
+    static String format(List<long[]> ranges) {
+        StringBuilder sb = new StringBuilder(BYTES_UNIT);
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(ranges.get(i)[0]).append('-').append(ranges.get(i)[1]);
+        }
+        return sb.toString();
+    }
+}
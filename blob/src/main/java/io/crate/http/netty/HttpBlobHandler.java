@@ -21,6 +21,7 @@
 
 package io.crate.http.netty;
 
+import io.crate.blob.BlobContentCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.DigestBlob;
 import io.crate.blob.RemoteDigestBlob;
@@ -30,6 +31,9 @@ import io.crate.blob.exceptions.MissingHTTPEndpointException;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.blob.v2.BlobsDisabledException;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.indices.IndexMissingException;
@@ -40,16 +44,18 @@ import org.jboss.netty.handler.codec.http.*;
 import org.jboss.netty.util.CharsetUtil;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.jboss.netty.channel.Channels.succeededFuture;
 import static org.jboss.netty.channel.Channels.write;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.*;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.PARTIAL_CONTENT;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -67,15 +73,16 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobContentCache blobCache;
     private HttpMessage currentMessage;
     private ChannelHandlerContext ctx;
-    private static final Pattern contentRangePattern = Pattern.compile("^bytes=(\\d+)-(\\d*)$");
 
     private RemoteDigestBlob digestBlob;
 
-    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices) {
+    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices, BlobContentCache blobCache) {
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
     }
 
 
@@ -226,7 +233,8 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         } else if (ex instanceof DigestNotFoundException) {
             status = HttpResponseStatus.NOT_FOUND;
             body = null;
-        } else if (ex instanceof BlobsDisabledException || ex instanceof IndexMissingException) {
+        } else if (ex instanceof BlobsDisabledException || ex instanceof IndexMissingException
+                || ExceptionsHelper.unwrapCause(ex) instanceof ElasticsearchIllegalArgumentException) {
             status = HttpResponseStatus.BAD_REQUEST;
             body = ex.getMessage();
         } else {
@@ -242,14 +250,25 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         // should be a redirect upfront if data is not local
 
         BlobShard blobShard = localBlobShard(index, digest);
-        long length = blobShard.blobContainer().getFile(digest).length();
+        long length;
+        BlobContentCache.CachedBlob blob = blobCache.acquire(blobShard.blobContainer(), digest);
+        try {
+            length = blob.length();
+        } finally {
+            blob.release();
+        }
         if (length < 1) {
             simpleResponse(HttpResponseStatus.NOT_FOUND, null);
             return;
         }
-        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
-        HttpHeaders.setContentLength(response, length);
-        setDefaultGetHeaders(response);
+        HttpResponse response;
+        if (etagMatches(request.headers().get(IF_NONE_MATCH), digest)) {
+            response = new DefaultHttpResponse(HTTP_1_1, NOT_MODIFIED);
+        } else {
+            response = new DefaultHttpResponse(HTTP_1_1, OK);
+            HttpHeaders.setContentLength(response, length);
+        }
+        setDefaultGetHeaders(response, digest);
         ChannelFuture cf = ctx.getChannel().write(response);
         if (!HttpHeaders.isKeepAlive(request)) {
             cf.addListener(ChannelFutureListener.CLOSE);
@@ -257,101 +276,192 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     }
 
     private void get(HttpRequest request, String index, final String digest) throws IOException {
-        String range = request.headers().get(RANGE);
-        if (range != null) {
-            partialContentResponse(range, request, index, digest);
-        } else {
-            fullContentResponse(request, index, digest);
+        BlobShard blobShard = localBlobShard(index, digest);
+        final BlobContentCache.CachedBlob blob = blobCache.acquire(blobShard.blobContainer(), digest);
+        ChannelFuture lastWrite = null;
+        try {
+            lastWrite = writeGetResponse(request, digest, blob);
+        } finally {
+            if (lastWrite == null) {
+                blob.release();
+            } else {
+                // the blob content is written asynchronously
+                lastWrite.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        blob.release();
+                    }
+                });
+            }
         }
     }
 
-    private BlobShard localBlobShard(String index, String digest){
-        return blobIndices.localBlobShard(index, digest);
-    }
-
-    private void partialContentResponse(String range, HttpRequest request, String index, final String digest)
-        throws  IOException
-    {
-        assert(range != null);
-        Matcher matcher = contentRangePattern.matcher(range);
-        if (!matcher.matches()) {
-            logger.warn("Invalid byte-range: {}; returning full content", range);
-            fullContentResponse(request, index, digest);
-            return;
+    /**
+     * @return the future of the last write which uses the blob or null if the blob isn't used by any write
+     */
+    @Nullable
+    private ChannelFuture writeGetResponse(HttpRequest request, String digest, BlobContentCache.CachedBlob blob) {
+        if (etagMatches(request.headers().get(IF_NONE_MATCH), digest)) {
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, NOT_MODIFIED);
+            setDefaultGetHeaders(response, digest);
+            finishResponse(request, ctx.getChannel().write(response));
+            return null;
         }
-        BlobShard blobShard = localBlobShard(index, digest);
 
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
-        long start;
-        long end;
-        try {
-            start = Long.parseLong(matcher.group(1));
-            if (start > raf.length()) {
+        String range = request.headers().get(RANGE);
+        String ifRange = request.headers().get(IF_RANGE);
+        // a range request with an outdated If-Range validator gets the full content
+        if (range != null && (ifRange == null || ifRangeMatches(ifRange, digest))) {
+            List<long[]> ranges = ByteRanges.parse(range, blob.length());
+            if (ranges == null) {
+                logger.warn("Invalid byte-range: {}; returning full content", range);
+            } else if (ranges.isEmpty()) {
                 logger.warn("416 Requested Range not satisfiable");
                 simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
-                raf.close();
-                return;
-            }
-            end = raf.length() - 1 ;
-            if (!matcher.group(2).equals("")) {
-                end = Long.parseLong(matcher.group(2));
+                return null;
+            } else if (ranges.size() == 1) {
+                return partialContentResponse(request, digest, blob, ranges.get(0));
+            } else {
+                return multipartContentResponse(request, digest, blob, ranges);
             }
-        } catch (NumberFormatException ex) {
-            logger.error("Couldn't parse Range Header", ex);
-            start = 0;
-            end = raf.length();
         }
+        return fullContentResponse(request, digest, blob);
+    }
 
+    private BlobShard localBlobShard(String index, String digest){
+        return blobIndices.localBlobShard(index, digest);
+    }
+
+    private ChannelFuture partialContentResponse(HttpRequest request,
+                                                 String digest,
+                                                 BlobContentCache.CachedBlob blob,
+                                                 long[] range) {
+        long start = range[0];
+        long end = range[1];
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
         HttpHeaders.setContentLength(response, end - start + 1);
-        response.headers().set(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + raf.length());
-        setDefaultGetHeaders(response);
+        response.headers().set(CONTENT_RANGE, contentRange(start, end, blob.length()));
+        setDefaultGetHeaders(response, digest);
 
         ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, start, end - start + 1);
-        if (!HttpHeaders.isKeepAlive(request)) {
-            writeFuture.addListener(ChannelFutureListener.CLOSE);
+        return finishResponse(request, transferBlob(digest, blob, start, end - start + 1));
+    }
+
+    /**
+     * writes multiple ranges as <code>multipart/byteranges</code> response
+     */
+    private ChannelFuture multipartContentResponse(HttpRequest request,
+                                                   String digest,
+                                                   BlobContentCache.CachedBlob blob,
+                                                   List<long[]> ranges) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        ChannelBuffer[] partHeaders = new ChannelBuffer[ranges.size()];
+        long contentLength = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            partHeaders[i] = ChannelBuffers.copiedBuffer(
+                    "\r\n--" + boundary + "\r\n" +
+                    CONTENT_TYPE + ": application/octet-stream\r\n" +
+                    CONTENT_RANGE + ": " + contentRange(range[0], range[1], blob.length()) + "\r\n\r\n",
+                    CharsetUtil.US_ASCII);
+            contentLength += partHeaders[i].readableBytes() + range[1] - range[0] + 1;
+        }
+        ChannelBuffer closeDelimiter = ChannelBuffers.copiedBuffer(
+                "\r\n--" + boundary + "--\r\n", CharsetUtil.US_ASCII);
+        contentLength += closeDelimiter.readableBytes();
+
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
+        HttpHeaders.setContentLength(response, contentLength);
+        response.headers().set(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        setDefaultGetHeaders(response, digest);
+
+        Channel channel = ctx.getChannel();
+        channel.write(response);
+        ChannelFuture lastBlobWrite = null;
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            channel.write(partHeaders[i]);
+            lastBlobWrite = transferBlob(digest, blob, range[0], range[1] - range[0] + 1);
         }
+        finishResponse(request, channel.write(closeDelimiter));
+        return lastBlobWrite;
     }
 
-    private void fullContentResponse(HttpRequest request, String index, final String digest) throws  IOException {
-        BlobShard blobShard = localBlobShard(index, digest);
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
+    private ChannelFuture fullContentResponse(HttpRequest request,
+                                              String digest,
+                                              BlobContentCache.CachedBlob blob) {
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
-        HttpHeaders.setContentLength(response, raf.length());
-        setDefaultGetHeaders(response);
+        HttpHeaders.setContentLength(response, blob.length());
+        setDefaultGetHeaders(response, digest);
         logger.trace("HttpResponse: {}", response);
         ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, 0, raf.length());
+        return finishResponse(request, transferBlob(digest, blob, 0, blob.length()));
+    }
+
+    private ChannelFuture finishResponse(HttpRequest request, ChannelFuture lastWrite) {
         if (!HttpHeaders.isKeepAlive(request)) {
-            writeFuture.addListener(ChannelFutureListener.CLOSE);
+            lastWrite.addListener(ChannelFutureListener.CLOSE);
         }
+        return lastWrite;
     }
 
-    private ChannelFuture transferFile(final String digest, RandomAccessFile raf, long position, long count)
-        throws IOException
-    {
-        final FileRegion region = new DefaultFileRegion(raf.getChannel(), position, count);
-        ChannelFuture writeFuture = ctx.getChannel().write(region);
-        writeFuture.addListener(new ChannelFutureProgressListener() {
-            @Override
-            public void operationProgressed(ChannelFuture future, long amount, long current, long total) throws Exception {
-                logger.debug("{}: {} / {} (+{})", digest, current, total, amount);
-            }
+    private ChannelFuture transferBlob(final String digest, BlobContentCache.CachedBlob blob, long position, long count) {
+        ChannelFuture writeFuture = ctx.getChannel().write(blob.region(position, count));
+        if (logger.isDebugEnabled() && !blob.inMemory()) {
+            writeFuture.addListener(new ChannelFutureProgressListener() {
+                @Override
+                public void operationProgressed(ChannelFuture future, long amount, long current, long total) throws Exception {
+                    logger.debug("{}: {} / {} (+{})", digest, current, total, amount);
+                }
 
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                region.releaseExternalResources();
-                logger.trace("file transfer completed");
-            }
-        });
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    logger.trace("file transfer completed");
+                }
+            });
+        }
         return writeFuture;
     }
 
-    private void setDefaultGetHeaders(HttpResponse response) {
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static String etag(String digest) {
+        return "\"" + digest + "\"";
+    }
+
+    /**
+     * @param header the value of a If-None-Match header
+     * @return true if the header contains the entity tag of the blob
+     */
+    private static boolean etagMatches(@Nullable String header, String digest) {
+        if (header == null) {
+            return false;
+        }
+        String etag = etag(digest);
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-Range contains a single validator which has to match using the strong comparison,
+     * so neither weak entity tags nor dates (blobs don't have a Last-Modified header) match.
+     */
+    private static boolean ifRangeMatches(String header, String digest) {
+        return header.trim().equals(etag(digest));
+    }
+
+    private void setDefaultGetHeaders(HttpResponse response, String digest) {
         response.headers().set(ACCEPT_RANGES, "bytes");
         response.headers().set(EXPIRES, EXPIRES_VALUE);
         response.headers().set(CACHE_CONTROL, CACHE_CONTROL_VALUE);
+        response.headers().set(ETAG, etag(digest));
     }
 
     private void put(HttpRequest request, String index, String digest) throws IOException {
@@ -372,6 +482,20 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         digestBlob = blobService.newBlob(index, digest);
         currentMessage = request;
 
+        String contentRange = request.headers().get(CONTENT_RANGE);
+        if (contentRange != null) {
+            long[] range = ByteRanges.parseContentRange(contentRange);
+            if (range == null) {
+                simpleResponse(HttpResponseStatus.BAD_REQUEST, "invalid Content-Range header: " + contentRange);
+                return;
+            }
+            if (range[0] < 0) {
+                digestBlob.range(0, 0, range[2]);
+            } else {
+                digestBlob.range(range[0], range[1] + 1, range[2]);
+            }
+        }
+
         if (request.isChunked()) {
             writeToFile(request.getContent(), false, HttpHeaders.is100ContinueExpected(request));
         } else {
@@ -396,12 +520,21 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         }
 
         HttpResponseStatus exitStatus = null;
+        RemoteDigestBlob.Status previousStatus = digestBlob.status();
         RemoteDigestBlob.Status status = digestBlob.addContent(input, last);
+        if (digestBlob.isRanged() && previousStatus != null && previousStatus != RemoteDigestBlob.Status.PARTIAL) {
+            // the response has been sent already, the rest of the body is dropped
+            return;
+        }
         switch (status) {
             case FULL:
                 exitStatus = HttpResponseStatus.CREATED;
                 break;
             case PARTIAL:
+                if (digestBlob.isRanged() && last) {
+                    rangeAccepted();
+                    return;
+                }
                 // tell the client to continue
                 if (continueExpected) {
                     write(ctx, succeededFuture(ctx.getChannel()), CONTINUE.duplicate());
@@ -428,6 +561,26 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         }
     }
 
+    /**
+     * responds to a ranged upload which didn't complete the blob with the ranges received so far
+     */
+    private void rangeAccepted() {
+        if (!digestBlob.rangeComplete()) {
+            simpleResponse(HttpResponseStatus.BAD_REQUEST, "body is shorter than the range given by the Content-Range header");
+            return;
+        }
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.ACCEPTED);
+        List<long[]> receivedRanges = digestBlob.receivedRanges();
+        if (!receivedRanges.isEmpty()) {
+            response.headers().set(RANGE, ByteRanges.format(receivedRanges));
+        }
+        HttpHeaders.setContentLength(response, 0);
+        ChannelFuture cf = ctx.getChannel().write(response);
+        if (currentMessage == null || !HttpHeaders.isKeepAlive(currentMessage)) {
+            cf.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
     public void beforeAdd(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
@@ -22,6 +22,7 @@
 package io.crate.http.netty;
 
 import com.google.common.collect.ImmutableMap;
+import io.crate.blob.BlobContentCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.v2.BlobIndices;
 import org.elasticsearch.ElasticsearchException;
@@ -130,6 +131,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     final int maxCompositeBufferComponents;
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobContentCache blobCache;
 
     private volatile ServerBootstrap serverBootstrap;
 
@@ -147,6 +149,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     public NettyHttpServerTransport(Settings settings, NetworkService networkService,
             BlobService blobService,
             BlobIndices blobIndices,
+            BlobContentCache blobCache,
             DiscoveryNodeService discoveryNodeService,
             BigArrays bigArrays) {
         super(settings);
@@ -154,6 +157,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
         this.bigArrays = bigArrays;
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
         this.discoveryNodeService = discoveryNodeService;
 
         if (settings.getAsBoolean("netty.epollBugWorkaround", false)) {
@@ -417,7 +421,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
             }
             pipeline.addLast("decoder", requestDecoder);
             pipeline.addLast("decoder_compress", new ESHttpContentDecompressor(transport.compression));
-            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices);
+            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices, transport.blobCache);
             pipeline.addLast("blob_handler", blobHandler);
             HttpChunkAggregator httpChunkAggregator = new HttpChunkAggregator((int) transport.maxContentLength.bytes());
             if (transport.maxCompositeBufferComponents != -1) {
@@ -98,6 +98,7 @@ public class BlobPlugin extends AbstractPlugin {
     public void onModule(ActionModule module) {
         module.registerAction(PutChunkAction.INSTANCE, TransportPutChunkAction.class);
         module.registerAction(StartBlobAction.INSTANCE, TransportStartBlobAction.class);
+        module.registerAction(PutBlobRangeAction.INSTANCE, TransportPutBlobRangeAction.class);
         module.registerAction(DeleteBlobAction.INSTANCE, TransportDeleteBlobAction.class);
     }
 }
\ No newline at end of file
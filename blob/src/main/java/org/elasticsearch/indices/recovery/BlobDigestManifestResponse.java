@@ -0,0 +1,71 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package org.elasticsearch.indices.recovery;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobDigestManifest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportResponse;
+
+import java.io.IOException;
+
+public class BlobDigestManifestResponse extends TransportResponse {
+
+    public long[] hashes;
+    public int[] counts;
+
+    public BlobDigestManifestResponse() {
+    }
+
+    public BlobDigestManifestResponse(BlobDigestManifest manifest) {
+        hashes = new long[BlobContainer.PREFIXES.length];
+        counts = new int[BlobContainer.PREFIXES.length];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = manifest.hash(i);
+            counts[i] = manifest.count(i);
+        }
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        int size = in.readVInt();
+        hashes = new long[size];
+        counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = in.readLong();
+            counts[i] = in.readVInt();
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(hashes.length);
+        for (int i = 0; i < hashes.length; i++) {
+            out.writeLong(hashes[i]);
+            out.writeVInt(counts[i]);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package org.elasticsearch.indices.recovery;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * transfers the whole content of multiple small files at once
+ */
+public class BlobRecoveryBatchTransferRequest extends BlobRecoveryRequest {
+
+    private static final AtomicLong transferIdGenerator = new AtomicLong();
+    private String[] paths;
+    private BytesReference[] contents;
+    private long transferId;
+
+    public BlobRecoveryBatchTransferRequest() {
+    }
+
+    public BlobRecoveryBatchTransferRequest(long recoveryId, String[] paths, BytesReference[] contents) {
+        super(recoveryId);
+        assert paths.length == contents.length : "every path requires a content";
+        this.paths = paths;
+        this.contents = contents;
+        this.transferId = transferIdGenerator.incrementAndGet();
+    }
+
+    public String[] paths() {
+        return paths;
+    }
+
+    public BytesReference[] contents() {
+        return contents;
+    }
+
+    public long transferId() {
+        return transferId;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        int size = in.readVInt();
+        paths = new String[size];
+        contents = new BytesReference[size];
+        for (int i = 0; i < size; i++) {
+            paths[i] = in.readString();
+            contents[i] = in.readBytesReference();
+        }
+        transferId = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            out.writeString(paths[i]);
+            out.writeBytesReference(contents[i]);
+        }
+        out.writeVLong(transferId);
+    }
+}
@@ -32,17 +32,17 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
 
     private long transferId;
     private BytesReference content;
-    private boolean isLast;
+    private long position;
 
     public BlobRecoveryChunkRequest() {
 
     }
 
-    public BlobRecoveryChunkRequest(long requestId, long transferId, BytesArray content, boolean isLast) {
+    public BlobRecoveryChunkRequest(long requestId, long transferId, BytesArray content, long position) {
         super(requestId);
         this.transferId = transferId;
         this.content = content;
-        this.isLast = isLast;
+        this.position = position;
     }
 
     public BytesReference content() {
@@ -53,8 +53,12 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
         return transferId;
     }
 
-    public boolean isLast() {
-        return isLast;
+    /**
+     * @return the offset of the content within the transferred file,
+     *         chunks of the same transfer may arrive in any order
+     */
+    public long position() {
+        return position;
     }
 
     @Override
@@ -62,7 +66,7 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
         super.readFrom(in);
         transferId = in.readVLong();
         content = in.readBytesReference();
-        isLast = in.readBoolean();
+        position = in.readVLong();
     }
 
     @Override
@@ -70,6 +74,6 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
         super.writeTo(out);
         out.writeVLong(transferId);
         out.writeBytesReference(content);
-        out.writeBoolean(isLast);
+        out.writeVLong(position);
     }
 }
@@ -42,6 +42,9 @@ import org.elasticsearch.transport.*;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 
 public class BlobRecoveryTarget extends AbstractComponent {
@@ -52,17 +55,26 @@ public class BlobRecoveryTarget extends AbstractComponent {
     * actor SourceNode as s
     * actor TargetNode as t
     *
-    * group for every two char prefix
+    * s -> t:DigestManifest
+    * t --> s:hash and number of digests per prefix
+    * group for every two char prefix whose hash or number of digests differ
     * s -> t:StartPrefixSync(prefix)
     * t -> t:getDigests for prefix
     * t --> s:found digests
     * s -> s: get missing digests
-    * group for every missing digest
-    *  s -> t:BlobSyncStartRequest(transferId, digest, contents, totalsize)
+    * group for every batch of missing digests smaller than the chunk size
+    *  s -> t:BlobSyncBatchRequest(transferId, digests, contents)
+    *  t -> t: move all to final
     *  t -> s: ack
-    *  s -> s: BlobSyncChunkRequest(transferid, contents, isLast)
-    *  t -> t: if isLast move to final
+    * end
+    * group for every other missing digest
+    *  s -> t:BlobSyncStartRequest(transferId, digest, contents, totalsize)
     *  t -> s: ack
+    *  group for every further chunk, multiple chunks in flight
+    *   s -> t: BlobSyncChunkRequest(transferid, contents, position)
+    *   t -> t: if all bytes are written move to final
+    *   t -> s: ack
+    *  end
     * end
     * s -> t:FinishPrefixSync(deletableDigests)
     * t -> t: delete deletable digests
@@ -83,8 +95,10 @@ public class BlobRecoveryTarget extends AbstractComponent {
         public static final String DELETE_FILE = "crate/blob/shard/recovery/delete_file";
         public static final String START_RECOVERY = "crate/blob/shard/recovery/start";
         public static final String START_PREFIX = "crate/blob/shard/recovery/start_prefix";
+        public static final String DIGEST_MANIFEST = "crate/blob/shard/recovery/digest_manifest";
         public static final String TRANSFER_CHUNK = "crate/blob/shard/recovery/transfer_chunk";
         public static final String START_TRANSFER = "crate/blob/shard/recovery/start_transfer";
+        public static final String TRANSFER_BATCH = "crate/blob/shard/recovery/transfer_batch";
     }
 
     @Inject
@@ -96,8 +110,10 @@ public class BlobRecoveryTarget extends AbstractComponent {
 
         transportService.registerHandler(Actions.START_RECOVERY, new StartRecoveryRequestHandler());
         transportService.registerHandler(Actions.START_PREFIX, new StartPrefixSyncRequestHandler());
+        transportService.registerHandler(Actions.DIGEST_MANIFEST, new DigestManifestRequestHandler());
         transportService.registerHandler(Actions.TRANSFER_CHUNK, new TransferChunkRequestHandler());
         transportService.registerHandler(Actions.START_TRANSFER, new StartTransferRequestHandler());
+        transportService.registerHandler(Actions.TRANSFER_BATCH, new BatchTransferRequestHandler());
         transportService.registerHandler(Actions.DELETE_FILE, new DeleteFileRequestHandler());
         transportService.registerHandler(Actions.FINALIZE_RECOVERY, new FinalizeRecoveryRequestHandler());
 
@@ -200,11 +216,15 @@ public class BlobRecoveryTarget extends AbstractComponent {
             if (!content.hasArray()) {
                 content = content.toBytesArray();
             }
-            transferStatus.outputStream().write(
-                content.array(), content.arrayOffset(), content.length()
-            );
+            // chunks are sent concurrently and might arrive out of order, so write them positional
+            FileChannel fileChannel = transferStatus.outputStream().getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(content.array(), content.arrayOffset(), content.length());
+            long position = request.position();
+            while (buffer.hasRemaining()) {
+                position += fileChannel.write(buffer, position);
+            }
 
-            if (request.isLast()) {
+            if (transferStatus.written(content.length())) {
                 transferStatus.outputStream().close();
                 File source = new File(shard.blobContainer().getBaseDirectory(),
                     transferStatus.sourcePath()
@@ -213,14 +233,14 @@ public class BlobRecoveryTarget extends AbstractComponent {
                     transferStatus.targetPath()
                 );
 
-                if (target.exists()) {
-                    logger.info("target file {} exists already.", target.getName());
-                    // this might happen on bad timing while recovering/relocating.
-                    // noop
-                } else {
-                    if (!source.renameTo(target)) {
-                        throw new BlobWriteException(target.getName(), target.length(), null);
+                try {
+                    if (!shard.blobContainer().commitBlob(source, target.getName())) {
+                        logger.info("target file {} exists already.", target.getName());
+                        // this might happen on bad timing while recovering/relocating.
+                        // noop
                     }
+                } catch (IOException e) {
+                    throw new BlobWriteException(target.getName(), target.length(), e);
                 }
 
                 onGoingRecovery.onGoingTransfers().remove(request.transferId());
@@ -256,6 +276,29 @@ public class BlobRecoveryTarget extends AbstractComponent {
     }
 
 
+    class DigestManifestRequestHandler extends BaseHandler<BlobDigestManifestRequest> {
+
+        @Override
+        public BlobDigestManifestRequest newInstance() {
+            return new BlobDigestManifestRequest();
+        }
+
+        @Override
+        public void messageReceived(BlobDigestManifestRequest request, TransportChannel channel) throws Exception {
+            BlobRecoveryStatus status = onGoingRecoveries.get(request.recoveryId());
+            if (status == null) {
+                throw new IllegalBlobRecoveryStateException(
+                    "could not retrieve BlobRecoveryStatus"
+                );
+            }
+            if (status.canceled()) {
+                throw new IndexShardClosedException(status.shardId());
+            }
+            channel.sendResponse(new BlobDigestManifestResponse(status.blobShard.blobContainer().digestManifest()));
+        }
+    }
+
+
     private class StartTransferRequestHandler extends BaseHandler<BlobRecoveryStartTransferRequest> {
 
 
@@ -292,16 +335,17 @@ public class BlobRecoveryTarget extends AbstractComponent {
                 outputStream.close();
                 File source = new File(shard.blobContainer().getBaseDirectory(), tmpPath);
                 File target = new File(shard.blobContainer().getBaseDirectory(), request.path());
-                if (!target.exists()) {
-                    if (!source.renameTo(target)) {
-                        throw new IllegalBlobRecoveryStateException(
-                            "couldn't rename file to " + request.path()
-                        );
-                    }
+                try {
+                    shard.blobContainer().commitBlob(source, target.getName());
+                } catch (IOException e) {
+                    throw new IllegalBlobRecoveryStateException(
+                        "couldn't rename file to " + request.path()
+                    );
                 }
             } else {
                 BlobRecoveryTransferStatus transferStatus= new BlobRecoveryTransferStatus(
-                    request.transferId(), outputStream, tmpPath, request.path()
+                    request.transferId(), outputStream, tmpPath, request.path(),
+                    request.size(), content.length()
                 );
                 status.onGoingTransfers().put(request.transferId(), transferStatus);
             }
@@ -310,6 +354,49 @@ public class BlobRecoveryTarget extends AbstractComponent {
         }
     }
 
+    private class BatchTransferRequestHandler extends BaseHandler<BlobRecoveryBatchTransferRequest> {
+
+        @Override
+        public BlobRecoveryBatchTransferRequest newInstance() {
+            return new BlobRecoveryBatchTransferRequest();
+        }
+
+        @Override
+        public void messageReceived(BlobRecoveryBatchTransferRequest request, TransportChannel channel) throws Exception {
+            BlobRecoveryStatus status = onGoingRecoveries.get(request.recoveryId());
+            logger.debug("received BlobRecoveryBatchTransferRequest with {} files", request.paths().length);
+            if (status == null) {
+                throw new IllegalBlobRecoveryStateException("Could not retrieve onGoingRecoveryStatus");
+            }
+            if (status.canceled()) {
+                throw new IndexShardClosedException(status.shardId());
+            }
+
+            BlobShard shard = status.blobShard;
+            for (int i = 0; i < request.paths().length; i++) {
+                String path = request.paths()[i];
+                File source = new File(shard.blobContainer().getBaseDirectory(),
+                    path + "." + request.transferId());
+                BytesReference content = request.contents()[i];
+                if (!content.hasArray()) {
+                    content = content.toBytesArray();
+                }
+                try (FileOutputStream outputStream = new FileOutputStream(source)) {
+                    outputStream.write(content.array(), content.arrayOffset(), content.length());
+                }
+                File target = new File(shard.blobContainer().getBaseDirectory(), path);
+                try {
+                    if (!shard.blobContainer().commitBlob(source, target.getName())) {
+                        source.delete();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalBlobRecoveryStateException("couldn't rename file to " + path);
+                }
+            }
+            channel.sendResponse(TransportResponse.Empty.INSTANCE);
+        }
+    }
+
     private class DeleteFileRequestHandler extends BaseHandler<BlobRecoveryDeleteRequest> {
         @Override
         public BlobRecoveryDeleteRequest newInstance() {
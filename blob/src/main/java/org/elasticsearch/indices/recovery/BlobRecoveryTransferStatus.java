@@ -22,7 +22,7 @@
 package org.elasticsearch.indices.recovery;
 
 import java.io.FileOutputStream;
-import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlobRecoveryTransferStatus {
 
@@ -30,13 +30,31 @@ public class BlobRecoveryTransferStatus {
     private final FileOutputStream outputStream;
     private final String sourcePath;
     private final String targetPath;
+    private final long size;
+    private final AtomicLong bytesWritten;
 
     public BlobRecoveryTransferStatus(long transferId, FileOutputStream outputStream,
-                                      String sourcePath, String targetPath) {
+                                      String sourcePath, String targetPath,
+                                      long size, long bytesWritten) {
         this.transferId = transferId;
         this.outputStream = outputStream;
         this.sourcePath = sourcePath;
         this.targetPath = targetPath;
+        this.size = size;
+        this.bytesWritten = new AtomicLong(bytesWritten);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * records that a chunk of the given length has been written
+     *
+     * @return true if this chunk completed the file
+     */
+    public boolean written(long length) {
+        return bytesWritten.addAndGet(length) == size;
     }
 
     public String sourcePath() {
@@ -23,6 +23,7 @@ package io.crate;
 
 import io.crate.blob.BlobContainer;
 import io.crate.blob.DigestBlob;
+import io.crate.common.Hex;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.junit.After;
 import org.junit.Before;
@@ -36,9 +37,13 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DigestBlobTests {
@@ -170,4 +175,56 @@ public class DigestBlobTests {
         assertTrue(file.delete());
     }
 
+    @Test
+    public void testResumeLargeDigestBlobAddHeadAfterContentInChunks() throws Exception {
+        byte[] content = new byte[300 * 1024];
+        new Random(42).nextBytes(content);
+        String digest = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(content));
+        int headLength = 100 * 1024;
+        int chunkSize = 70 * 1024;
+
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = DigestBlob.resumeTransfer(container, digest, UUID.randomUUID(), headLength);
+
+        // the part of the tail that arrives before the head has to be added to the digest later on
+        int pos = headLength;
+        digestBlob.addContent(new BytesArray(content, pos, chunkSize), false);
+        pos += chunkSize;
+        for (int headPos = 0; headPos < headLength; headPos += chunkSize) {
+            digestBlob.addToHead(new BytesArray(content, headPos, Math.min(chunkSize, headLength - headPos)));
+        }
+        while (pos < content.length) {
+            int length = Math.min(chunkSize, content.length - pos);
+            digestBlob.addContent(new BytesArray(content, pos, length), pos + length == content.length);
+            pos += length;
+        }
+
+        File file = digestBlob.commit();
+        assertTrue(Arrays.equals(content, Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void testCommitUpdatesPersistentContainerStats() throws IOException {
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        assertFalse(container.stats().initialized());
+
+        DigestBlob digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+        assertEquals(1L, container.stats().count());
+        assertEquals(15L, container.stats().totalUsage());
+
+        // committing the same blob again doesn't change the stats
+        digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+        assertEquals(1L, container.stats().count());
+
+        container.stats().persist();
+        BlobContainer reopened = new BlobContainer(tmpDir.toFile());
+        assertTrue(reopened.stats().initialized());
+        assertEquals(1L, reopened.stats().count());
+        assertEquals(15L, reopened.stats().totalUsage());
+    }
+
 }
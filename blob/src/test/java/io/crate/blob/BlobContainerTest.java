@@ -0,0 +1,158 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class BlobContainerTest {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+    private static final int PREFIX = 0x41;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private void addBlob(BlobContainer container, String content) throws Exception {
+        DigestBlob digestBlob = container.createBlob(DIGEST, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray(content.getBytes()), true);
+        digestBlob.commit();
+    }
+
+    @Test
+    public void testDigestManifestIsUpdatedOnCommitAndDelete() throws Exception {
+        BlobContainer container = new BlobContainer(tmpFolder.getRoot());
+        BlobDigestManifest manifest = container.digestManifest();
+        assertThat(manifest.count(PREFIX), is(0));
+        assertThat(manifest.hash(PREFIX), is(0L));
+
+        addBlob(container, "ABCDEFGHIJKLMNO");
+        assertThat(manifest.count(PREFIX), is(1));
+        assertThat(manifest.hash(PREFIX), is(0x417de3231e23dcd6L));
+
+        // a container listing the same files must have the same manifest
+        BlobDigestManifest reloaded = new BlobContainer(tmpFolder.getRoot()).digestManifest();
+        assertThat(reloaded.count(PREFIX), is(1));
+        assertThat(reloaded.hash(PREFIX), is(manifest.hash(PREFIX)));
+
+        assertThat(container.deleteBlob(DIGEST), is(true));
+        assertThat(container.deleteBlob(DIGEST), is(false));
+        assertThat(manifest.count(PREFIX), is(0));
+        assertThat(manifest.hash(PREFIX), is(0L));
+        assertThat(container.stats().count(), is(0L));
+    }
+
+    @Test
+    public void testLeftoverRecoveryFilesAreIgnoredByDigestManifest() throws Exception {
+        BlobContainer container = new BlobContainer(tmpFolder.getRoot());
+        assertThat(container.getFile(DIGEST + "." + UUID.randomUUID()).createNewFile(), is(true));
+        assertThat(container.digestManifest().count(PREFIX), is(0));
+
+        addBlob(container, "ABCDEFGHIJKLMNO");
+        assertThat(container.digestManifest().hash(PREFIX), not(0L));
+    }
+
+    private static void writeFile(File file, String content) throws Exception {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes());
+        }
+    }
+
+    @Test
+    public void testReconcileStats() throws Exception {
+        BlobContainer container = new BlobContainer(tmpFolder.getRoot());
+        addBlob(container, "ABCDEFGHIJKLMNO");
+        // files which aren't reflected in the stats, e.g. after a crash
+        writeFile(container.getFile("00" + DIGEST.substring(2)), "ABC");
+        writeFile(container.getFile("ff" + DIGEST.substring(2)), "ABCDE");
+        assertThat(container.stats().count(), is(1L));
+
+        assertThat(container.reconcileStats(new BlobContainer.FileVisitor() {
+            @Override
+            public boolean visit(File file) {
+                return true;
+            }
+        }), is(true));
+        assertThat(container.stats().initialized(), is(true));
+        assertThat(container.stats().count(), is(3L));
+        assertThat(container.stats().totalUsage(), is(23L));
+
+        BlobContainer reopened = new BlobContainer(tmpFolder.getRoot());
+        assertThat(reopened.stats().count(), is(3L));
+        assertThat(reopened.stats().totalUsage(), is(23L));
+    }
+
+    @Test
+    public void testBlobCommittedWhileReconcilingIsCountedOnce() throws Exception {
+        final BlobContainer container = new BlobContainer(tmpFolder.getRoot());
+        writeFile(container.getFile("00" + DIGEST.substring(2)), "ABC");
+        final File source = new File(container.getTmpDirectory(), "source");
+        writeFile(source, "ABCDE");
+
+        container.reconcileStats(new BlobContainer.FileVisitor() {
+            @Override
+            public boolean visit(File file) {
+                if (file.getName().startsWith("00")) {
+                    try {
+                        // commit into a prefix which hasn't been walked yet
+                        assertThat(container.commitBlob(source, "ff" + DIGEST.substring(2)), is(true));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return true;
+            }
+        });
+        assertThat(container.stats().count(), is(2L));
+        assertThat(container.stats().totalUsage(), is(8L));
+    }
+
+    @Test
+    public void testAbortedReconcileDoesNotInitializeStats() throws Exception {
+        BlobContainer container = new BlobContainer(tmpFolder.getRoot());
+        writeFile(container.getFile("00" + DIGEST.substring(2)), "ABC");
+        writeFile(container.getFile("ff" + DIGEST.substring(2)), "ABCDE");
+
+        assertThat(container.reconcileStats(new BlobContainer.FileVisitor() {
+            @Override
+            public boolean visit(File file) {
+                return !file.getName().startsWith("ff");
+            }
+        }), is(false));
+        assertThat(container.stats().initialized(), is(false));
+        // only the prefixes which have been walked completely are reconciled
+        assertThat(container.stats().count(), is(1L));
+        assertThat(container.stats().totalUsage(), is(3L));
+    }
+}
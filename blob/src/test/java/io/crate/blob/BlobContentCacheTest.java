@@ -0,0 +1,153 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.exceptions.DigestNotFoundException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BlobContentCacheTest {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private BlobContainer container;
+
+    @Before
+    public void prepare() throws Exception {
+        container = new BlobContainer(tmpFolder.getRoot());
+        DigestBlob digestBlob = container.createBlob(DIGEST, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+    }
+
+    private static String read(BlobContentCache.CachedBlob blob, long position, long count) throws Exception {
+        Object region = blob.region(position, count);
+        if (region instanceof ChannelBuffer) {
+            return ((ChannelBuffer) region).toString(CharsetUtil.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((FileRegion) region).transferTo(Channels.newChannel(out), 0);
+        return new String(out.toByteArray(), CharsetUtil.UTF_8);
+    }
+
+    @Test
+    public void testSmallBlobIsServedFromMemory() throws Exception {
+        BlobContentCache cache = new BlobContentCache(1024, 64, 4);
+        BlobContentCache.CachedBlob blob = cache.acquire(container, DIGEST);
+        assertThat(blob.inMemory(), is(true));
+        assertThat(blob.length(), is(15L));
+        assertThat(read(blob, 2, 3), is("CDE"));
+        blob.release();
+
+        blob = cache.acquire(container, DIGEST);
+        assertThat(read(blob, 0, 15), is("ABCDEFGHIJKLMNO"));
+        blob.release();
+
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.size(), is(15L));
+        assertThat(cache.openFiles(), is(0L));
+    }
+
+    @Test
+    public void testLargeBlobKeepsFileOpenUntilReleased() throws Exception {
+        BlobContentCache cache = new BlobContentCache(1024, 10, 4);
+        BlobContentCache.CachedBlob blob = cache.acquire(container, DIGEST);
+        assertThat(blob.inMemory(), is(false));
+        assertThat(cache.openFiles(), is(1L));
+        assertThat(cache.acquire(container, DIGEST), is(blob));
+        assertThat(cache.hits(), is(1L));
+        blob.release();
+
+        // still used by the second acquire
+        cache.invalidate(container, DIGEST);
+        assertThat(cache.openFiles(), is(0L));
+        assertThat(read(blob, 10, 5), is("KLMNO"));
+
+        blob.release();
+        expectedException.expect(ClosedChannelException.class);
+        read(blob, 10, 5);
+    }
+
+    @Test
+    public void testDeletedBlobIsNotServedAfterInvalidation() throws Exception {
+        BlobContentCache cache = new BlobContentCache(1024, 64, 4);
+        cache.acquire(container, DIGEST).release();
+        container.deleteBlob(DIGEST);
+        cache.invalidate(container, DIGEST);
+
+        expectedException.expect(DigestNotFoundException.class);
+        cache.acquire(container, DIGEST);
+    }
+
+    @Test
+    public void testInvalidateContainerRemovesAllItsBlobs() throws Exception {
+        BlobContainer otherContainer = new BlobContainer(tmpFolder.newFolder());
+        DigestBlob digestBlob = otherContainer.createBlob(DIGEST, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+
+        BlobContentCache cache = new BlobContentCache(1024, 10, 4);
+        BlobContentCache.CachedBlob blob = cache.acquire(container, DIGEST);
+        cache.acquire(otherContainer, DIGEST).release();
+        assertThat(cache.openFiles(), is(2L));
+
+        cache.invalidate(container);
+        assertThat(cache.openFiles(), is(1L));
+        // the channel stays open until the request using it released it
+        assertThat(read(blob, 0, 3), is("ABC"));
+        blob.release();
+
+        cache.acquire(otherContainer, DIGEST).release();
+        assertThat(cache.hits(), is(1L));
+    }
+
+    @Test
+    public void testBlobsOfOtherContainersAreNotShared() throws Exception {
+        BlobContentCache cache = new BlobContentCache(1024, 64, 4);
+        cache.acquire(container, DIGEST).release();
+
+        expectedException.expect(DigestNotFoundException.class);
+        cache.acquire(new BlobContainer(tmpFolder.newFolder()), DIGEST);
+    }
+}
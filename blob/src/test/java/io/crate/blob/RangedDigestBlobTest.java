@@ -0,0 +1,212 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class RangedDigestBlobTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private BlobContainer container;
+
+    @Before
+    public void prepare() throws Exception {
+        container = new BlobContainer(tmpFolder.getRoot());
+    }
+
+    private static String digest(byte[] content) throws Exception {
+        return Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+
+    private static BytesArray slice(byte[] content, int start, int end) {
+        return new BytesArray(content, start, end - start);
+    }
+
+    @Test
+    public void testRangesInReverseOrder() throws Exception {
+        byte[] content = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes();
+        String digest = digest(content);
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest, content.length);
+
+        assertThat(blob.write(20, slice(content, 20, 26)), is(RemoteDigestBlob.Status.PARTIAL));
+        assertThat(blob.write(10, slice(content, 10, 20)), is(RemoteDigestBlob.Status.PARTIAL));
+        assertThat(blob.receivedRanges().size(), is(1));
+        assertThat(blob.receivedRanges().get(0)[0], is(10L));
+        assertThat(blob.receivedRanges().get(0)[1], is(25L));
+        assertThat(blob.received(), is(16L));
+
+        assertThat(blob.write(0, slice(content, 0, 10)), is(RemoteDigestBlob.Status.FULL));
+        assertArrayEquals(content, Files.readAllBytes(container.getFile(digest).toPath()));
+        assertThat(container.stats().count(), is(1L));
+
+        // a late range of a completed blob is ignored
+        assertThat(blob.write(0, slice(content, 0, 10)), is(RemoteDigestBlob.Status.EXISTS));
+    }
+
+    @Test
+    public void testOverlappingRangesAndStatusQuery() throws Exception {
+        byte[] content = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes();
+        String digest = digest(content);
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest, content.length);
+
+        assertThat(blob.write(0, slice(content, 0, 5)), is(RemoteDigestBlob.Status.PARTIAL));
+        assertThat(blob.write(15, slice(content, 15, 20)), is(RemoteDigestBlob.Status.PARTIAL));
+        assertThat(blob.write(3, slice(content, 3, 8)), is(RemoteDigestBlob.Status.PARTIAL));
+        // empty writes don't change anything
+        assertThat(blob.write(0, new BytesArray(new byte[0])), is(RemoteDigestBlob.Status.PARTIAL));
+
+        List<long[]> ranges = blob.receivedRanges();
+        assertThat(ranges.size(), is(2));
+        assertArrayEquals(new long[]{0, 7}, ranges.get(0));
+        assertArrayEquals(new long[]{15, 19}, ranges.get(1));
+
+        assertThat(blob.write(6, slice(content, 6, 26)), is(RemoteDigestBlob.Status.FULL));
+        assertArrayEquals(content, Files.readAllBytes(container.getFile(digest).toPath()));
+    }
+
+    @Test
+    public void testReceivedBytesAreNotOverwritten() throws Exception {
+        byte[] content = "ABCDEFGHIJ".getBytes();
+        String digest = digest(content);
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest, content.length);
+
+        assertThat(blob.write(0, slice(content, 0, 5)), is(RemoteDigestBlob.Status.PARTIAL));
+        // the first two bytes overlap the received range and differ from it
+        assertThat(blob.write(3, new BytesArray("xyFGH".getBytes())), is(RemoteDigestBlob.Status.PARTIAL));
+        assertArrayEquals(new long[]{0, 7}, blob.receivedRanges().get(0));
+
+        assertThat(blob.write(0, new BytesArray("xxxxxxxxIJ".getBytes())), is(RemoteDigestBlob.Status.FULL));
+        assertArrayEquals(content, Files.readAllBytes(container.getFile(digest).toPath()));
+    }
+
+    @Test
+    public void testMismatch() throws Exception {
+        byte[] content = "ABCDEFGHIJ".getBytes();
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest("something else".getBytes()), content.length);
+        assertThat(blob.write(5, slice(content, 5, 10)), is(RemoteDigestBlob.Status.PARTIAL));
+        assertThat(blob.write(0, slice(content, 0, 5)), is(RemoteDigestBlob.Status.MISMATCH));
+        assertThat(blob.file().exists(), is(false));
+    }
+
+    @Test
+    public void testRangeExceedingSize() throws Exception {
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest(new byte[0]), 4);
+        expectedException.expect(ElasticsearchIllegalArgumentException.class);
+        blob.write(2, new BytesArray("ABC".getBytes()));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest(new byte[0]), 4);
+        blob.write(0, new BytesArray("AB".getBytes()));
+        blob.discard();
+        assertThat(blob.file().exists(), is(false));
+        assertThat(blob.write(2, new BytesArray("CD".getBytes())), is(RemoteDigestBlob.Status.FAILED));
+    }
+
+    @Test
+    public void testEmptyBlob() throws Exception {
+        RangedDigestBlob blob = new RangedDigestBlob(container, digest(new byte[0]), 0);
+        assertThat(blob.write(0, new BytesArray(new byte[0])), is(RemoteDigestBlob.Status.FULL));
+    }
+
+    @Test
+    public void testConcurrentRanges() throws Exception {
+        assertConcurrentRanges(true);
+    }
+
+    @Test
+    public void testConcurrentSequentialRanges() throws Exception {
+        // every write extends the digested prefix, so the digest is handed over between the writes
+        assertConcurrentRanges(false);
+    }
+
+    private void assertConcurrentRanges(boolean shuffle) throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(42).nextBytes(content);
+        final String digest = digest(content);
+        final RangedDigestBlob blob = new RangedDigestBlob(container, digest, content.length);
+
+        List<BytesArray> chunks = new ArrayList<>();
+        final List<Long> positions = new ArrayList<>();
+        int chunkSize = 10000;
+        for (int pos = 0; pos < content.length; pos += chunkSize) {
+            chunks.add(slice(content, pos, Math.min(content.length, pos + chunkSize)));
+            positions.add((long) pos);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            order.add(i);
+        }
+        if (shuffle) {
+            Collections.shuffle(order, new Random(42));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<RemoteDigestBlob.Status>> results = new ArrayList<>();
+            for (final Integer i : order) {
+                final BytesArray chunk = chunks.get(i);
+                results.add(executor.submit(new Callable<RemoteDigestBlob.Status>() {
+                    @Override
+                    public RemoteDigestBlob.Status call() throws Exception {
+                        return blob.write(positions.get(i), chunk);
+                    }
+                }));
+            }
+            int full = 0;
+            for (Future<RemoteDigestBlob.Status> result : results) {
+                if (result.get() == RemoteDigestBlob.Status.FULL) {
+                    full++;
+                }
+            }
+            assertThat(full, is(1));
+        } finally {
+            executor.shutdown();
+        }
+        assertArrayEquals(content, Files.readAllBytes(container.getFile(digest).toPath()));
+    }
+}
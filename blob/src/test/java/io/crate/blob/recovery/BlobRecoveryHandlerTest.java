@@ -0,0 +1,300 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob.recovery;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.DigestBlob;
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import io.crate.common.Hex;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.indices.IndicesLifecycle;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.recovery.*;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestHandler;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.transport.local.LocalTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * recovers the blobs of a source container into a target container,
+ * both ends of the recovery communicate using a local transport
+ */
+public class BlobRecoveryHandlerTest {
+
+    private static final String INDEX = ".blob_test";
+    private static final int CHUNK_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private final Random random = new Random();
+    private final AtomicInteger chunksInFlight = new AtomicInteger();
+    private final AtomicInteger maxChunksInFlight = new AtomicInteger();
+    private final AtomicInteger chunksReceived = new AtomicInteger();
+    private volatile int failingChunk = -1;
+
+    private ThreadPool threadPool;
+    private TransportService transportService;
+    private RecoverySettings recoverySettings;
+    private DiscoveryNode node;
+
+    /**
+     * delays every chunk a little, so that multiple chunks of a file are in flight,
+     * and fails the {@link #failingChunk}
+     */
+    private class DelayingChunkHandler implements TransportRequestHandler<TransportRequest> {
+
+        private final TransportRequestHandler<TransportRequest> delegate;
+
+        private DelayingChunkHandler(TransportRequestHandler<TransportRequest> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TransportRequest newInstance() {
+            return delegate.newInstance();
+        }
+
+        @Override
+        public void messageReceived(TransportRequest request, TransportChannel channel) throws Exception {
+            int inFlight = chunksInFlight.incrementAndGet();
+            int max = maxChunksInFlight.get();
+            while (inFlight > max && !maxChunksInFlight.compareAndSet(max, inFlight)) {
+                max = maxChunksInFlight.get();
+            }
+            try {
+                Thread.sleep(random.nextInt(20));
+                if (chunksReceived.incrementAndGet() == failingChunk) {
+                    throw new IllegalStateException("chunk " + failingChunk + " failed");
+                }
+                delegate.messageReceived(request, channel);
+            } finally {
+                chunksInFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String executor() {
+            return delegate.executor();
+        }
+
+        @Override
+        public boolean isForceExecution() {
+            return delegate.isForceExecution();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        threadPool = new ThreadPool(getClass().getName());
+        transportService = new TransportService(
+                new LocalTransport(ImmutableSettings.EMPTY, threadPool, Version.CURRENT), threadPool) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void registerHandler(String action, TransportRequestHandler handler) {
+                if (action.equals(BlobRecoveryTarget.Actions.TRANSFER_CHUNK)) {
+                    handler = new DelayingChunkHandler(handler);
+                }
+                super.registerHandler(action, handler);
+            }
+        };
+        transportService.start();
+        node = new DiscoveryNode("node", transportService.boundAddress().publishAddress(), Version.CURRENT);
+        transportService.connectToNode(node);
+
+        Settings settings = ImmutableSettings.builder()
+                .put(RecoverySettings.INDICES_RECOVERY_FILE_CHUNK_SIZE, CHUNK_SIZE + "b")
+                .build();
+        recoverySettings = new RecoverySettings(settings, new NodeSettingsService(settings));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recoverySettings.close();
+        transportService.stop();
+        threadPool.shutdown();
+    }
+
+    private static BlobShard blobShard(final BlobContainer container) {
+        BlobShard blobShard = mock(BlobShard.class);
+        when(blobShard.blobContainer()).thenReturn(container);
+        when(blobShard.currentDigests(anyByte())).thenAnswer(new Answer<byte[][]>() {
+            @Override
+            public byte[][] answer(InvocationOnMock invocation) throws Throwable {
+                return container.cleanAndReturnDigests((Byte) invocation.getArguments()[0]);
+            }
+        });
+        when(blobShard.delete(anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                return container.deleteBlob((String) invocation.getArguments()[0]);
+            }
+        });
+        return blobShard;
+    }
+
+    private String addBlob(BlobContainer container, byte[] content) throws Exception {
+        String digest = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(content));
+        DigestBlob digestBlob = container.createBlob(digest, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray(content), true);
+        digestBlob.commit();
+        return digest;
+    }
+
+    private byte[] randomContent(int length) {
+        byte[] content = new byte[length];
+        random.nextBytes(content);
+        return content;
+    }
+
+    private void recover(BlobShard sourceShard, BlobShard targetShard) throws Exception {
+        ShardId shardId = new ShardId(INDEX, 0);
+        long recoveryId = 1L;
+
+        // target
+        InternalIndexShard targetIndexShard = mock(InternalIndexShard.class);
+        when(targetIndexShard.shardId()).thenReturn(shardId);
+        RecoveryStatus recoveryStatus = new RecoveryStatus(recoveryId, targetIndexShard, node);
+        RecoveryTarget recoveryTarget = mock(RecoveryTarget.class);
+        when(recoveryTarget.recoveryStatus(targetIndexShard)).thenReturn(recoveryStatus);
+        Injector shardInjector = mock(Injector.class);
+        when(shardInjector.getInstance(BlobShard.class)).thenReturn(targetShard);
+        IndexService indexService = mock(IndexService.class);
+        when(indexService.shardSafe(0)).thenReturn(targetIndexShard);
+        when(indexService.shardInjectorSafe(0)).thenReturn(shardInjector);
+        IndicesService indicesService = mock(IndicesService.class);
+        when(indicesService.indexServiceSafe(INDEX)).thenReturn(indexService);
+        new BlobRecoveryTarget(ImmutableSettings.EMPTY, mock(IndicesLifecycle.class), recoveryTarget,
+                indicesService, transportService);
+
+        // source
+        BlobIndices blobIndices = mock(BlobIndices.class);
+        when(blobIndices.blobShardSafe(INDEX, 0)).thenReturn(sourceShard);
+        InternalIndexShard sourceIndexShard = mock(InternalIndexShard.class);
+        when(sourceIndexShard.state()).thenReturn(IndexShardState.STARTED);
+        StartRecoveryRequest request = new StartRecoveryRequest(shardId, node, node, false,
+                Collections.<String, StoreFileMetaData>emptyMap(), RecoveryState.Type.REPLICA, recoveryId);
+        BlobRecoveryHandler handler = new BlobRecoveryHandler(transportService, recoverySettings,
+                mock(BlobTransferTarget.class), blobIndices, sourceIndexShard, request);
+        handler.phase1();
+    }
+
+    @Test
+    public void testRecoverBlobsLargerThanChunkSize() throws Exception {
+        BlobContainer sourceContainer = new BlobContainer(tmpFolder.newFolder("source"));
+        BlobContainer targetContainer = new BlobContainer(tmpFolder.newFolder("target"));
+
+        // blobs sent in batches, within the start request and chunk by chunk
+        int[] sizes = new int[]{17, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 10 * CHUNK_SIZE, 10 * CHUNK_SIZE + 17};
+        String[] digests = new String[sizes.length];
+        byte[][] contents = new byte[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            contents[i] = randomContent(sizes[i]);
+            digests[i] = addBlob(sourceContainer, contents[i]);
+        }
+        String existingDigest = addBlob(sourceContainer, randomContent(2 * CHUNK_SIZE));
+        addBlob(targetContainer, Files.readAllBytes(sourceContainer.getFile(existingDigest).toPath()));
+        String deletedDigest = addBlob(targetContainer, randomContent(100));
+
+        recover(blobShard(sourceContainer), blobShard(targetContainer));
+
+        for (int i = 0; i < sizes.length; i++) {
+            File file = targetContainer.getFile(digests[i]);
+            assertThat(file.exists(), is(true));
+            assertThat(Files.readAllBytes(file.toPath()), is(contents[i]));
+        }
+        assertThat(targetContainer.getFile(existingDigest).exists(), is(true));
+        assertThat(targetContainer.getFile(deletedDigest).exists(), is(false));
+
+        // the chunks after the start request of the three files larger than the chunk size
+        assertThat(chunksReceived.get(), is(1 + 9 + 10));
+        assertThat(maxChunksInFlight.get(), greaterThan(1));
+
+        // no transfer file is left behind
+        final int[] numFiles = new int[1];
+        targetContainer.walkFiles(null, new BlobContainer.FileVisitor() {
+            @Override
+            public boolean visit(File file) {
+                numFiles[0]++;
+                return true;
+            }
+        });
+        assertThat(numFiles[0], is(sizes.length + 1));
+    }
+
+    @Test
+    public void testFailingChunkFailsRecovery() throws Exception {
+        BlobContainer sourceContainer = new BlobContainer(tmpFolder.newFolder("source"));
+        BlobContainer targetContainer = new BlobContainer(tmpFolder.newFolder("target"));
+        String digest = addBlob(sourceContainer, randomContent(20 * CHUNK_SIZE));
+        failingChunk = 3;
+
+        try {
+            recover(blobShard(sourceContainer), blobShard(targetContainer));
+            fail("recovery must fail if a chunk can't be transferred");
+        } catch (TransportException e) {
+            assertThat(e.getDetailedMessage(), containsString("chunk 3 failed"));
+        }
+        assertThat(targetContainer.getFile(digest).exists(), is(false));
+        // the source stops sending chunks once one failed
+        assertThat(chunksReceived.get(), lessThan(19));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.http.netty;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ByteRangesTest {
+
+    private static void assertRanges(List<long[]> ranges, long... startsAndEnds) {
+        assertThat(ranges, notNullValue());
+        assertThat(ranges.size() * 2, is(startsAndEnds.length));
+        for (int i = 0; i < ranges.size(); i++) {
+            assertThat(ranges.get(i)[0], is(startsAndEnds[2 * i]));
+            assertThat(ranges.get(i)[1], is(startsAndEnds[2 * i + 1]));
+        }
+    }
+
+    @Test
+    public void testSingleRanges() throws Exception {
+        assertRanges(ByteRanges.parse("bytes=8-", 26), 8, 25);
+        assertRanges(ByteRanges.parse("bytes=0-1", 26), 0, 1);
+        assertRanges(ByteRanges.parse("bytes=15-3000", 26), 15, 25);
+        assertRanges(ByteRanges.parse("bytes=-5", 26), 21, 25);
+        assertRanges(ByteRanges.parse("bytes=-100", 26), 0, 25);
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        assertRanges(ByteRanges.parse("bytes=0-1, 4-5,-2", 26), 0, 1, 4, 5, 24, 25);
+    }
+
+    @Test
+    public void testUnsatisfiableRangesAreSkipped() throws Exception {
+        assertRanges(ByteRanges.parse("bytes=40-58", 26));
+        assertRanges(ByteRanges.parse("bytes=26-", 26));
+        assertRanges(ByteRanges.parse("bytes=40-58,0-0", 26), 0, 0);
+        assertRanges(ByteRanges.parse("bytes=-0", 26));
+    }
+
+    @Test
+    public void testInvalidRanges() throws Exception {
+        assertThat(ByteRanges.parse("items=0-1", 26), nullValue());
+        assertThat(ByteRanges.parse("bytes=-", 26), nullValue());
+        assertThat(ByteRanges.parse("bytes=5-1", 26), nullValue());
+        assertThat(ByteRanges.parse("bytes=a-b", 26), nullValue());
+        assertThat(ByteRanges.parse("bytes=99999999999999999999-", 26), nullValue());
+    }
+
+    @Test
+    public void testTooManyRangesAreIgnored() throws Exception {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            header.append(",").append(i).append("-").append(i);
+        }
+        assertThat(ByteRanges.parse(header.toString(), 100), nullValue());
+    }
+
+    @Test
+    public void testContentRange() throws Exception {
+        assertThat(ByteRanges.parseContentRange("bytes 0-99/1000"), is(new long[]{0, 99, 1000}));
+        assertThat(ByteRanges.parseContentRange("bytes 999-999/1000"), is(new long[]{999, 999, 1000}));
+        assertThat(ByteRanges.parseContentRange("bytes */1000"), is(new long[]{-1, -1, 1000}));
+        assertThat(ByteRanges.parseContentRange("bytes 10-5/1000"), nullValue());
+        assertThat(ByteRanges.parseContentRange("bytes 0-1000/1000"), nullValue());
+        assertThat(ByteRanges.parseContentRange("bytes 0-99/*"), nullValue());
+        assertThat(ByteRanges.parseContentRange("items 0-99/1000"), nullValue());
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        assertThat(ByteRanges.format(ByteRanges.parse("bytes=0-99,200-", 300)), is("bytes=0-99,200-299"));
+    }
+}
@@ -147,6 +147,27 @@ public class BlobIntegrationTest extends BlobHttpIntegrationTest {
         assertEquals("z", EntityUtils.toString(res.getEntity()));
     }
 
+    @Test
+    public void testIfRangeUsesStrongComparison() throws IOException {
+        String digest = uploadTinyBlob();
+        CloseableHttpResponse res = get(blobUri(digest), new Header[]{
+                new BasicHeader("Range", "bytes=8-"),
+                new BasicHeader("If-Range", "\"" + digest + "\"")
+        });
+        assertEquals(206, res.getStatusLine().getStatusCode());
+        assertEquals("ijklmnopqrstuvwxyz", EntityUtils.toString(res.getEntity()));
+
+        // weak entity tags and wildcards don't match, so the full content is returned
+        for (String ifRange : new String[]{"W/\"" + digest + "\"", "*"}) {
+            res = get(blobUri(digest), new Header[]{
+                    new BasicHeader("Range", "bytes=8-"),
+                    new BasicHeader("If-Range", ifRange)
+            });
+            assertEquals(200, res.getStatusLine().getStatusCode());
+            assertEquals("abcdefghijklmnopqrstuvwxyz", EntityUtils.toString(res.getEntity()));
+        }
+    }
+
     @Test
     public void testInvalidByterange() throws IOException {
         String digest = uploadTinyBlob();
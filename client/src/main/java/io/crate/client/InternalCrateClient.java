@@ -60,6 +60,7 @@ public class InternalCrateClient {
     }
 
     public ActionFuture<SQLResponse> sql(final SQLRequest request) {
+        request.supportsColumnarFormat(true);
         return execute(SQLAction.INSTANCE, request);
     }
 
@@ -76,6 +77,7 @@ public class InternalCrateClient {
     }
 
     public void sql(final SQLRequest request, final ActionListener<SQLResponse> listener) {
+        request.supportsColumnarFormat(true);
         execute(SQLAction.INSTANCE, request, listener);
     }
 
@@ -208,4 +208,20 @@ public class CrateClientTest extends CrateIntegrationTest {
         assertThat(r.rowCount(), is(1L));
         assertTrue(r.rows()[0][0] instanceof Map);
     }
+
+    @Test
+    public void testResponseIsReceivedInColumnarFormat() throws Exception {
+        client.sql("create table test (a string, b int, c double) with (number_of_replicas=0)").actionGet();
+        ensureGreen();
+        client.sql("insert into test (a, b, c) values ('foo', 1, 1.5), (null, 2, null)").actionGet();
+        client.sql("refresh table test").actionGet();
+
+        SQLResponse r = client.sql("select a, b, c from test order by b").actionGet();
+
+        // the request announced the columnar format and the server used it for the response
+        assertThat(r.columnarFormat(), is(true));
+        assertThat(r.rowCount(), is(2L));
+        assertThat(r.rows()[0], is(new Object[]{"foo", 1, 1.5}));
+        assertThat(r.rows()[1], is(new Object[]{null, 2, null}));
+    }
 }
@@ -0,0 +1,361 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * column wise serialization of result rows.
+ *
+ * Every column is written using an encoding that is chosen by the column's {@link DataType}.
+ * Primitive columns are written without a type byte per value, their nulls are
+ * written as a bitmap in front of the values. Integral columns are delta encoded.
+ * If the values of a column don't match the class its type would produce
+ * (e.g. a long column containing integers) the column is written using
+ * {@link StreamOutput#writeGenericValue(Object)} so that the values are read back unchanged.
+ *
+ * The encoding of a column is written in front of it, so reading doesn't need the column types.
+ */
+final class ColumnStreamers {
+
+    private ColumnStreamers() {}
+
+    private static abstract class Encoding {
+
+        private final byte id;
+        private final Class<?> valueClass;
+
+        Encoding(int id, Class<?> valueClass) {
+            this.id = (byte) id;
+            this.valueClass = valueClass;
+        }
+
+        void writeValues(StreamOutput out, Object[][] rows, int column) throws IOException {
+            for (Object[] row : rows) {
+                if (row[column] != null) {
+                    writeValue(out, row[column]);
+                }
+            }
+        }
+
+        void readValues(StreamInput in, Object[][] rows, int column, @Nullable byte[] nulls) throws IOException {
+            for (int r = 0; r < rows.length; r++) {
+                if (nulls == null || !isSet(nulls, r)) {
+                    rows[r][column] = readValue(in);
+                }
+            }
+        }
+
+        abstract void writeValue(StreamOutput out, Object value) throws IOException;
+
+        abstract Object readValue(StreamInput in) throws IOException;
+    }
+
+    /**
+     * writes integral values as zig-zag encoded variable length delta to the previous value,
+     * which makes small, sorted or clustered values (ids, timestamps) take only a few bytes
+     */
+    private static abstract class DeltaEncoding extends Encoding {
+
+        DeltaEncoding(int id, Class<?> valueClass) {
+            super(id, valueClass);
+        }
+
+        abstract long toLong(Object value);
+
+        abstract Object fromLong(long value);
+
+        @Override
+        void writeValues(StreamOutput out, Object[][] rows, int column) throws IOException {
+            long previous = 0;
+            for (Object[] row : rows) {
+                if (row[column] != null) {
+                    long value = toLong(row[column]);
+                    writeZigZagVLong(out, value - previous);
+                    previous = value;
+                }
+            }
+        }
+
+        @Override
+        void readValues(StreamInput in, Object[][] rows, int column, @Nullable byte[] nulls) throws IOException {
+            long previous = 0;
+            for (int r = 0; r < rows.length; r++) {
+                if (nulls == null || !isSet(nulls, r)) {
+                    previous += readZigZagVLong(in);
+                    rows[r][column] = fromLong(previous);
+                }
+            }
+        }
+
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            writeZigZagVLong(out, toLong(value));
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return fromLong(readZigZagVLong(in));
+        }
+    }
+
+    private static final Encoding GENERIC = new Encoding(0, Object.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeGenericValue(value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readGenericValue();
+        }
+    };
+
+    private static final Encoding BOOLEAN = new Encoding(1, Boolean.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeBoolean((Boolean) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    private static final Encoding BYTE = new Encoding(2, Byte.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeByte((Byte) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readByte();
+        }
+    };
+
+    private static final Encoding SHORT = new Encoding(3, Short.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeShort((Short) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readShort();
+        }
+    };
+
+    private static final Encoding INTEGER = new DeltaEncoding(4, Integer.class) {
+        @Override
+        long toLong(Object value) {
+            return (Integer) value;
+        }
+
+        @Override
+        Object fromLong(long value) {
+            return (int) value;
+        }
+    };
+
+    private static final Encoding LONG = new DeltaEncoding(5, Long.class) {
+        @Override
+        long toLong(Object value) {
+            return (Long) value;
+        }
+
+        @Override
+        Object fromLong(long value) {
+            return value;
+        }
+    };
+
+    private static final Encoding FLOAT = new Encoding(6, Float.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeFloat((Float) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readFloat();
+        }
+    };
+
+    private static final Encoding DOUBLE = new Encoding(7, Double.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeDouble((Double) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    /**
+     * string values of a response have already been converted from BytesRef to String
+     */
+    private static final Encoding STRING = new Encoding(8, String.class) {
+        @Override
+        void writeValue(StreamOutput out, Object value) throws IOException {
+            out.writeString((String) value);
+        }
+
+        @Override
+        Object readValue(StreamInput in) throws IOException {
+            return in.readString();
+        }
+    };
+
+    private static final Encoding[] ENCODINGS = new Encoding[]{
+            GENERIC, BOOLEAN, BYTE, SHORT, INTEGER, LONG, FLOAT, DOUBLE, STRING
+    };
+
+    private static final ImmutableMap<DataType, Encoding> TYPE_ENCODINGS = ImmutableMap.<DataType, Encoding>builder()
+            .put(DataTypes.BOOLEAN, BOOLEAN)
+            .put(DataTypes.BYTE, BYTE)
+            .put(DataTypes.SHORT, SHORT)
+            .put(DataTypes.INTEGER, INTEGER)
+            .put(DataTypes.LONG, LONG)
+            .put(DataTypes.TIMESTAMP, LONG)
+            .put(DataTypes.FLOAT, FLOAT)
+            .put(DataTypes.DOUBLE, DOUBLE)
+            .put(DataTypes.STRING, STRING)
+            .put(DataTypes.IP, STRING)
+            .build();
+
+    /**
+     * @param types the types of the columns, if their number doesn't match
+     *              <code>numColumns</code> all columns are written generic.
+     */
+    static void writeRows(StreamOutput out, Object[][] rows, int numColumns, DataType[] types) throws IOException {
+        out.writeVInt(rows.length);
+        for (int c = 0; c < numColumns; c++) {
+            Encoding encoding = types.length == numColumns ? encoding(types[c], rows, c) : GENERIC;
+            out.writeByte(encoding.id);
+            if (encoding == GENERIC) {
+                for (Object[] row : rows) {
+                    out.writeGenericValue(row[c]);
+                }
+                continue;
+            }
+            writeNulls(out, rows, c);
+            encoding.writeValues(out, rows, c);
+        }
+    }
+
+    static Object[][] readRows(StreamInput in, int numColumns) throws IOException {
+        Object[][] rows = new Object[in.readVInt()][numColumns];
+        for (int c = 0; c < numColumns; c++) {
+            Encoding encoding = ENCODINGS[in.readByte()];
+            if (encoding == GENERIC) {
+                for (Object[] row : rows) {
+                    row[c] = in.readGenericValue();
+                }
+                continue;
+            }
+            encoding.readValues(in, rows, c, readNulls(in, rows.length));
+        }
+        return rows;
+    }
+
+    private static Encoding encoding(DataType type, Object[][] rows, int column) {
+        Encoding encoding = TYPE_ENCODINGS.get(type);
+        if (encoding == null) {
+            return GENERIC;
+        }
+        for (Object[] row : rows) {
+            Object value = row[column];
+            if (value != null && value.getClass() != encoding.valueClass) {
+                return GENERIC;
+            }
+        }
+        return encoding;
+    }
+
+    private static void writeNulls(StreamOutput out, Object[][] rows, int column) throws IOException {
+        byte[] nulls = null;
+        for (int r = 0; r < rows.length; r++) {
+            if (rows[r][column] == null) {
+                if (nulls == null) {
+                    nulls = new byte[(rows.length + 7) / 8];
+                }
+                nulls[r >>> 3] |= 1 << (r & 7);
+            }
+        }
+        if (nulls == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeBytes(nulls);
+        }
+    }
+
+    @Nullable
+    private static byte[] readNulls(StreamInput in, int numRows) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] nulls = new byte[(numRows + 7) / 8];
+        in.readBytes(nulls, 0, nulls.length);
+        return nulls;
+    }
+
+    /**
+     * unlike {@link StreamOutput#writeVLong(long)} this supports the full range of long,
+     * deltas of arbitrary longs might overflow into the sign bit
+     */
+    private static void writeZigZagVLong(StreamOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((byte) zigZag);
+    }
+
+    private static long readZigZagVLong(StreamInput in) throws IOException {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            zigZag |= (b & 0x7FL) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    private static boolean isSet(byte[] bitmap, int index) {
+        return (bitmap[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.executor.BytesRefUtils;
+import io.crate.executor.Page;
+import io.crate.executor.PageInfo;
+import io.crate.executor.PageableTaskResult;
+import io.crate.executor.TaskResult;
+import io.crate.types.DataType;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * passes the current page of a {@link io.crate.executor.PageableTaskResult} to the stream
+ * and fetches the next page once the stream is ready to receive it.
+ * Only one page is held at a time.
+ *
+ * Once the last page has been consumed the callback receives the number of streamed rows.
+ * If a page can't be fetched or the stream fails to receive it (e.g. the client went away)
+ * paging stops and the callback receives the failure. The paged result is closed in both cases.
+ */
+class PageStreamer implements FutureCallback<TaskResult> {
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final SQLResponseStream stream;
+    private final DataType[] outputTypes;
+    private final FutureCallback<Long> callback;
+    private PageInfo pageInfo;
+    private long rowCount = 0L;
+    private PageableTaskResult pageableResult;
+
+    PageStreamer(SQLResponseStream stream, DataType[] outputTypes, PageInfo pageInfo, FutureCallback<Long> callback) {
+        this.stream = stream;
+        this.outputTypes = outputTypes;
+        this.pageInfo = pageInfo;
+        this.callback = callback;
+    }
+
+    @Override
+    public void onSuccess(@Nullable TaskResult result) {
+        pageableResult = (PageableTaskResult) result;
+        assert pageableResult != null;
+        final boolean lastPage;
+        ListenableFuture<?> streamReady;
+        try {
+            Page page = pageableResult.page();
+            lastPage = page.size() < pageInfo.size();
+            Object[][] rows = new Object[(int) page.size()][];
+            int i = 0;
+            for (Object[] row : page) {
+                rows[i++] = row;
+            }
+            BytesRefUtils.ensureStringTypesAreStrings(outputTypes, rows);
+            rowCount += rows.length;
+            streamReady = stream.nextRows(rows);
+        } catch (Throwable t) {
+            onFailure(t);
+            return;
+        }
+        Futures.addCallback(streamReady, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object ignored) {
+                if (lastPage) {
+                    closeQuietly(pageableResult);
+                    callback.onSuccess(rowCount);
+                    return;
+                }
+                ListenableFuture<PageableTaskResult> nextPage;
+                try {
+                    pageInfo = pageInfo.nextPage();
+                    nextPage = pageableResult.fetch(pageInfo);
+                } catch (Throwable t) {
+                    PageStreamer.this.onFailure(t);
+                    return;
+                }
+                Futures.addCallback(nextPage, PageStreamer.this);
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                // the receiver went away, stop paging
+                PageStreamer.this.onFailure(t);
+            }
+        });
+    }
+
+    @Override
+    public void onFailure(@Nonnull Throwable t) {
+        if (pageableResult != null) {
+            closeQuietly(pageableResult);
+        }
+        callback.onFailure(t);
+    }
+
+    private void closeQuietly(PageableTaskResult result) {
+        try {
+            result.close();
+        } catch (IOException e) {
+            logger.error("error closing paged result", e);
+        }
+    }
+}
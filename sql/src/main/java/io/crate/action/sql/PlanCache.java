@@ -0,0 +1,279 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import io.crate.analyze.Analysis;
+import io.crate.planner.Plan;
+import io.crate.planner.symbol.ParameterLiteral;
+import io.crate.sql.tree.CurrentTime;
+import io.crate.sql.tree.DefaultTraversalVisitor;
+import io.crate.sql.tree.Query;
+import io.crate.sql.tree.Statement;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of analyzed and planned SELECT statements.
+ *
+ * Entries are keyed on the statement and the types of its parameters.
+ * The parameters are carried through the plan as {@link ParameterLiteral}s and the values
+ * of a request are bound into them by {@link Entry#bind(Object[])} before the plan is executed.
+ * If the analysis or the planner read a parameter value (e.g. for the routing, primary key
+ * lookups or partition pruning) the plan only fits this value, such plans aren't cached
+ * and are counted by {@link #valueDependent()}.
+ *
+ * Every entry remembers the version of the cluster state it was planned against,
+ * an entry planned against an outdated cluster state (schema, routing, ...) is dropped on lookup.
+ *
+ * Plan nodes are modified during execution (jobId, contextId), therefore an entry is
+ * removed from the cache by {@link #acquire(Key, long)} and only put back by
+ * {@link #release(Key, Entry)} once the execution has finished.
+ * Concurrent executions of the same statement plan on their own.
+ */
+public class PlanCache {
+
+    public static final String SETTING_SIZE = "sql.plan_cache.size";
+    public static final int DEFAULT_SIZE = 500;
+
+    private final Cache<Key, Entry> cache;
+    private final boolean enabled;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong valueDependent = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Inject
+    public PlanCache(Settings settings) {
+        this(settings.getAsInt(SETTING_SIZE, DEFAULT_SIZE));
+    }
+
+    PlanCache(int size) {
+        this.enabled = size > 0;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(size, 0))
+                .removalListener(new RemovalListener<Key, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, Entry> notification) {
+                        if (notification.wasEvicted()) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return true if analysis and plan of the statement don't depend on anything
+     * besides the statement, its parameters and the cluster state.
+     */
+    public static boolean isCacheable(Statement statement) {
+        if (!(statement instanceof Query)) {
+            return false;
+        }
+        CacheableStatementVisitor visitor = new CacheableStatementVisitor();
+        statement.accept(visitor, null);
+        return visitor.cacheable;
+    }
+
+    /**
+     * take the entry for the given key out of the cache
+     *
+     * @param clusterStateVersion the version of the current cluster state
+     * @return the entry or null if there is no entry for the current cluster state
+     */
+    @Nullable
+    public Entry acquire(Key key, long clusterStateVersion) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.asMap().remove(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.clusterStateVersion != clusterStateVersion) {
+            invalidations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * put an entry (back) into the cache once its plan isn't executed anymore
+     */
+    public void release(Key key, Entry entry) {
+        if (enabled) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * count a plan that isn't cached because it depends on the parameter values
+     */
+    public void planDependsOnValues() {
+        valueDependent.incrementAndGet();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of plans which weren't cached because they depend on the parameter values
+     */
+    public long valueDependent() {
+        return valueDependent.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long invalidations() {
+        return invalidations.get();
+    }
+
+    public static class Entry {
+
+        private final Analysis analysis;
+        private final Plan plan;
+        private final long clusterStateVersion;
+        private final List<ParameterLiteral> parameters;
+
+        public Entry(Analysis analysis, Plan plan, long clusterStateVersion) {
+            this.analysis = analysis;
+            this.plan = plan;
+            this.clusterStateVersion = clusterStateVersion;
+            this.parameters = analysis.parameterContext().parameterLiterals();
+        }
+
+        /**
+         * bind the parameter values of a request, they must be of the types of the cache key
+         */
+        public void bind(Object[] args) {
+            for (ParameterLiteral parameter : parameters) {
+                parameter.bind(args[parameter.index()]);
+            }
+        }
+
+        public Analysis analysis() {
+            return analysis;
+        }
+
+        public Plan plan() {
+            return plan;
+        }
+    }
+
+    public static class Key {
+
+        private final String stmt;
+        private final DataType[] argumentTypes;
+        /**
+         * the parameter values of the request, they aren't part of the key
+         */
+        private final Object[] args;
+
+        private Key(String stmt, DataType[] argumentTypes, Object[] args) {
+            this.stmt = stmt;
+            this.argumentTypes = argumentTypes;
+            this.args = args;
+        }
+
+        /**
+         * @return the key of the statement and the types of the given parameter values
+         * or null if the type of a value is unknown
+         */
+        @Nullable
+        public static Key of(String stmt, Object[] args) {
+            DataType[] argumentTypes = new DataType[args.length];
+            for (int i = 0; i < args.length; i++) {
+                try {
+                    argumentTypes[i] = DataTypes.guessType(args[i], true);
+                } catch (IllegalArgumentException e) {
+                    // e.g. mixed types inside an array, left to the analyzer to report
+                    return null;
+                }
+                if (argumentTypes[i] == null) {
+                    return null;
+                }
+            }
+            return new Key(stmt, argumentTypes, args);
+        }
+
+        public Object[] args() {
+            return args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return stmt.equals(key.stmt) && Arrays.equals(argumentTypes, key.argumentTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * stmt.hashCode() + Arrays.hashCode(argumentTypes);
+        }
+    }
+
+    /**
+     * CURRENT_TIMESTAMP is evaluated once during the analysis,
+     * statements using it must be analyzed on every execution.
+     */
+    private static class CacheableStatementVisitor extends DefaultTraversalVisitor<Void, Void> {
+
+        private boolean cacheable = true;
+
+        @Override
+        protected Void visitCurrentTime(CurrentTime node, Void context) {
+            cacheable = false;
+            return null;
+        }
+    }
+}
@@ -34,7 +34,15 @@ import java.util.Arrays;
 public class SQLRequest extends SQLBaseRequest {
 
     public final static Object[] EMPTY_ARGS = new Object[0];
+
+    /**
+     * written instead of the (always empty) headers flag of the TransportRequest if the sender is
+     * able to read columnar responses. Older versions read it as a boolean and ignore it.
+     */
+    private static final byte COLUMNAR_FORMAT_SUPPORTED = 2;
+
     private Object[] args;
+    private boolean supportsColumnarFormat = false;
 
     public SQLRequest() {} // used for serialization
 
@@ -72,11 +80,26 @@ public class SQLRequest extends SQLBaseRequest {
         this.args = Objects.firstNonNull(args, EMPTY_ARGS);
     }
 
+    /**
+     * @return true if the sender is able to read a {@link SQLResponse} in the columnar format
+     */
+    public boolean supportsColumnarFormat() {
+        return supportsColumnarFormat;
+    }
+
+    /**
+     * announce that the sender of this request is able to read a {@link SQLResponse} in the columnar format
+     */
+    public void supportsColumnarFormat(boolean supportsColumnarFormat) {
+        this.supportsColumnarFormat = supportsColumnarFormat;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         // doesn't call super to stay compatible with older crate version
 
-        in.readBoolean(); // read headers boolean / TransportRequest base class
+        // headers boolean of the TransportRequest base class or columnar format marker
+        supportsColumnarFormat = in.readByte() == COLUMNAR_FORMAT_SUPPORTED;
         stmt = in.readString();
         int length = in.readVInt();
         args = new Object[length];
@@ -91,7 +114,11 @@ public class SQLRequest extends SQLBaseRequest {
     public void writeTo(StreamOutput out) throws IOException {
         // doesn't call super to stay compatible with older crate version
 
-        out.writeBoolean(false); // headers == null from TransportRequest base class
+        if (supportsColumnarFormat) {
+            out.writeByte(COLUMNAR_FORMAT_SUPPORTED);
+        } else {
+            out.writeBoolean(false); // headers == null from TransportRequest base class
+        }
 
         out.writeString(stmt);
         out.writeVInt(args.length);
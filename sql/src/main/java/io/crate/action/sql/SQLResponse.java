@@ -23,6 +23,10 @@ package io.crate.action.sql;
 
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -34,8 +38,20 @@ public class SQLResponse extends SQLBaseResponse {
 
     public static final long NO_ROW_COUNT = -1L;
 
+    /**
+     * the row wise format starts with the (always empty) headers flag of the TransportResponse,
+     * so the columnar format is marked with a first byte that is neither true nor false.
+     */
+    private static final byte COLUMNAR_FORMAT = 2;
+
+    /**
+     * column data larger than this is compressed if the columnar format is used
+     */
+    static final int COMPRESSION_THRESHOLD = 64 * 1024;
+
     private Object[][] rows;
     private long rowCount = NO_ROW_COUNT;
+    private boolean columnarFormat = false;
 
     public SQLResponse() {
     }
@@ -91,10 +107,29 @@ public class SQLResponse extends SQLBaseResponse {
         this.rows = rows;
     }
 
+    /**
+     * write the rows column by column using typed encodings.
+     * Must only be enabled if the receiver has set {@link SQLRequest#supportsColumnarFormat(boolean)}.
+     */
+    public void columnarFormat(boolean columnarFormat) {
+        this.columnarFormat = columnarFormat;
+    }
+
+    /**
+     * @return true if the rows are written or have been read in the columnar format
+     */
+    public boolean columnarFormat() {
+        return columnarFormat;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         // don't user super.readFrom to stay binary backward compatible
-        in.readBoolean(); // headers in TransportResponse
+        byte format = in.readByte(); // headers in TransportResponse or format marker
+        if (format == COLUMNAR_FORMAT) {
+            readColumnarFrom(in);
+            return;
+        }
 
         boolean negative = in.readBoolean();
         rowCount = in.readVLong();
@@ -125,6 +160,10 @@ public class SQLResponse extends SQLBaseResponse {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         // don't user super.writeTo to stay binary backward compatible
+        if (columnarFormat) {
+            writeColumnarTo(out);
+            return;
+        }
 
         out.writeBoolean(false); // headers in TransportResponse
         out.writeBoolean(rowCount < 0);
@@ -146,6 +185,60 @@ public class SQLResponse extends SQLBaseResponse {
         }
     }
 
+    private void readColumnarFrom(StreamInput in) throws IOException {
+        boolean negative = in.readBoolean();
+        rowCount = in.readVLong();
+        if (negative) {
+            rowCount = -rowCount;
+        }
+        cols = in.readStringArray();
+        requestStartedTime = in.readVLong();
+        includeTypes = in.readBoolean();
+        int numColumnTypes = in.readVInt();
+        colTypes = new DataType[numColumnTypes];
+        for (int i = 0; i < numColumnTypes; i++) {
+            colTypes[i] = DataTypes.fromStream(in);
+        }
+        if (!includeTypes) {
+            colTypes = EMPTY_TYPES;
+        }
+        if (in.readBoolean()) {
+            BytesReference compressed = in.readBytesReference();
+            BytesReference uncompressed = CompressorFactory.uncompressIfNeeded(compressed);
+            rows = ColumnStreamers.readRows(uncompressed.streamInput(), cols.length);
+        } else {
+            rows = ColumnStreamers.readRows(in, cols.length);
+        }
+        columnarFormat = true;
+    }
+
+    private void writeColumnarTo(StreamOutput out) throws IOException {
+        out.writeByte(COLUMNAR_FORMAT);
+        out.writeBoolean(rowCount < 0);
+        out.writeVLong(Math.abs(rowCount));
+        out.writeStringArray(cols);
+        out.writeVLong(requestStartedTime);
+        out.writeBoolean(includeTypes);
+        // types are always needed to choose the column encodings but are only exposed if requested
+        out.writeVInt(colTypes.length);
+        for (DataType colType : colTypes) {
+            DataTypes.toStream(colType, out);
+        }
+
+        BytesStreamOutput columns = new BytesStreamOutput();
+        ColumnStreamers.writeRows(columns, rows, cols.length, colTypes);
+        if (columns.size() > COMPRESSION_THRESHOLD) {
+            BytesArray bytes = columns.bytes().toBytesArray();
+            byte[] compressed = CompressorFactory.defaultCompressor().compress(
+                    bytes.array(), bytes.arrayOffset(), bytes.length());
+            out.writeBoolean(true);
+            out.writeBytesReference(new BytesArray(compressed));
+        } else {
+            out.writeBoolean(false);
+            columns.bytes().writeTo(out);
+        }
+    }
+
     @Override
     public String toString() {
         return "SQLResponse{" +
@@ -0,0 +1,52 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.types.DataType;
+
+/**
+ * receiver of a result that is streamed in pages instead of being
+ * collected into a single {@link io.crate.action.sql.SQLResponse}.
+ *
+ * The methods are called in the order
+ * <code>start</code>, <code>nextRows</code> (zero or more times), <code>finish</code>.
+ * <code>fail</code> might be called at any time and ends the stream.
+ */
+public interface SQLResponseStream {
+
+    /**
+     * called once the statement has been planned, before any rows are available
+     */
+    void start(String[] outputNames, DataType[] outputTypes);
+
+    /**
+     * @param rows the rows of the next page
+     * @return a future that is done once the stream is ready to receive the next page.
+     *         If it fails, streaming is aborted.
+     */
+    ListenableFuture<?> nextRows(Object[][] rows);
+
+    void finish(long rowCount);
+
+    void fail(Throwable t);
+}
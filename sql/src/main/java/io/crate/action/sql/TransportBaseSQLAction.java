@@ -31,8 +31,11 @@ import io.crate.Constants;
 import io.crate.analyze.Analysis;
 import io.crate.analyze.Analyzer;
 import io.crate.exceptions.*;
+import io.crate.executor.BytesRefUtils;
 import io.crate.executor.Executor;
 import io.crate.executor.Job;
+import io.crate.executor.PageInfo;
+import io.crate.executor.PageableTask;
 import io.crate.executor.TaskResult;
 import io.crate.metadata.PartitionName;
 import io.crate.metadata.TableIdent;
@@ -94,6 +97,8 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     protected final Planner planner;
     private final Provider<Executor> executorProvider;
     private final StatsTables statsTables;
+    @Nullable
+    private final PlanCache planCache;
     private volatile boolean disabled;
 
     public TransportBaseSQLAction(ClusterService clusterService,
@@ -104,6 +109,7 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                                   Planner planner,
                                   Provider<Executor> executorProvider,
                                   StatsTables statsTables,
+                                  @Nullable PlanCache planCache,
                                   ActionFilters actionFilters) {
         super(settings, actionName, threadPool, actionFilters);
         this.clusterService = clusterService;
@@ -111,10 +117,20 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         this.planner = planner;
         this.executorProvider = executorProvider;
         this.statsTables = statsTables;
+        this.planCache = planCache;
     }
 
     public abstract Analysis getAnalysis(Statement statement, TRequest request);
 
+    /**
+     * @return the key under which analysis and plan of the request are cached
+     * or null if they must not be cached
+     */
+    @Nullable
+    protected PlanCache.Key planCacheKey(Statement statement, TRequest request) {
+        return null;
+    }
+
 
     /**
      * create an empty SQLBaseResponse instance with no rows
@@ -149,21 +165,8 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
      * @param request  the request that created which issued the execution
      */
     private TResponse createResponseFromResult(@Nullable List<TaskResult> result, Analysis analysis, TRequest request) {
-        String[] outputNames;
-        DataType[] outputTypes;
-        if (analysis.expectsAffectedRows()) {
-            outputNames = EMPTY_NAMES;
-            outputTypes = EMPTY_TYPES;
-        } else {
-            assert analysis.rootRelation() != null;
-            outputNames = new String[analysis.rootRelation().fields().size()];
-            outputTypes = new DataType[analysis.rootRelation().fields().size()];
-            for (int i = 0; i < analysis.rootRelation().fields().size(); i++) {
-                Field field = analysis.rootRelation().fields().get(i);
-                outputNames[i] = field.path().outputName();
-                outputTypes[i] = field.valueType();
-            }
-        }
+        String[] outputNames = outputNames(analysis);
+        DataType[] outputTypes = outputTypes(analysis);
         if (result == null) {
             return emptyResponse(request, outputNames, outputTypes);
         } else {
@@ -173,6 +176,32 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     }
 
 
+    private static String[] outputNames(Analysis analysis) {
+        if (analysis.expectsAffectedRows()) {
+            return EMPTY_NAMES;
+        }
+        assert analysis.rootRelation() != null;
+        List<Field> fields = analysis.rootRelation().fields();
+        String[] outputNames = new String[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            outputNames[i] = fields.get(i).path().outputName();
+        }
+        return outputNames;
+    }
+
+    private static DataType[] outputTypes(Analysis analysis) {
+        if (analysis.expectsAffectedRows()) {
+            return EMPTY_TYPES;
+        }
+        assert analysis.rootRelation() != null;
+        List<Field> fields = analysis.rootRelation().fields();
+        DataType[] outputTypes = new DataType[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            outputTypes[i] = fields.get(i).valueType();
+        }
+        return outputTypes;
+    }
+
     @Override
     protected void doExecute(TRequest request, ActionListener<TResponse> listener) {
         logger.debug("{}", request);
@@ -183,8 +212,30 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         }
         try {
             Statement statement = statementCache.get(request.stmt());
-            Analysis analysis = getAnalysis(statement, request);
-            processAnalysis(analysis, request, listener);
+            PlanCache.Key cacheKey = planCache == null ? null : planCacheKey(statement, request);
+            if (cacheKey == null) {
+                Analysis analysis = getAnalysis(statement, request);
+                processAnalysis(analysis, request, listener);
+            } else {
+                long clusterStateVersion = clusterService.state().version();
+                PlanCache.Entry entry = planCache.acquire(cacheKey, clusterStateVersion);
+                if (entry == null) {
+                    Analysis analysis = getAnalysis(statement, request);
+                    Plan plan = planner.plan(analysis);
+                    if (analysis.parameterContext().valuesRead()) {
+                        // the plan only fits these parameter values
+                        planCache.planDependsOnValues();
+                        tracePlan(plan);
+                        executePlan(analysis, plan, listener, request, null, null);
+                        return;
+                    }
+                    entry = new PlanCache.Entry(analysis, plan, clusterStateVersion);
+                } else {
+                    entry.bind(cacheKey.args());
+                }
+                tracePlan(entry.plan());
+                executePlan(entry.analysis(), entry.plan(), listener, request, cacheKey, entry);
+            }
         } catch (Throwable e) {
             logger.debug("Error executing SQLRequest", e);
             sendResponse(listener, buildSQLActionException(e));
@@ -204,13 +255,15 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     private void processAnalysis(Analysis analysis, TRequest request, ActionListener<TResponse> listener) {
         final Plan plan = planner.plan(analysis);
         tracePlan(plan);
-        executePlan(analysis, plan, listener, request);
+        executePlan(analysis, plan, listener, request, null, null);
     }
 
     private void executePlan(final Analysis analysis,
                              final Plan plan,
                              final ActionListener<TResponse> listener,
-                             final TRequest request) {
+                             final TRequest request,
+                             @Nullable final PlanCache.Key cacheKey,
+                             @Nullable final PlanCache.Entry cacheEntry) {
         Executor executor = executorProvider.get();
         Job job = executor.newJob(plan);
 
@@ -229,6 +282,10 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                             return;
                         }
                         statsTables.jobFinished(jobId, null);
+                        if (cacheKey != null) {
+                            assert planCache != null && cacheEntry != null;
+                            planCache.release(cacheKey, cacheEntry);
+                        }
                         sendResponse(listener, response);
                     }
 
@@ -243,6 +300,129 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         );
     }
 
+    /**
+     * execute the request and pass its result page by page to the given stream
+     * instead of building a single response containing all rows.
+     *
+     * Only plans that consist of a single {@link io.crate.executor.PageableTask} are executed paged,
+     * the next page is fetched once the stream has consumed the previous one.
+     * Results of all other plans are passed to the stream as a single page.
+     *
+     * @param pageSize the maximum number of rows fetched at once
+     */
+    public void executeStreaming(TRequest request, int pageSize, final SQLResponseStream stream) {
+        logger.debug("streaming {}", request);
+        statsTables.activeRequestsInc();
+        if (disabled) {
+            failStream(stream, new NodeDisconnectedException(clusterService.localNode(), actionName));
+            return;
+        }
+        Analysis analysis;
+        Job job;
+        try {
+            Statement statement = statementCache.get(request.stmt());
+            analysis = getAnalysis(statement, request);
+            Plan plan = planner.plan(analysis);
+            tracePlan(plan);
+            job = executorProvider.get().newJob(plan);
+        } catch (Throwable e) {
+            logger.debug("Error executing SQLRequest", e);
+            failStream(stream, buildSQLActionException(e));
+            return;
+        }
+
+        final UUID jobId = job.id();
+        assert jobId != null;
+        statsTables.jobStarted(jobId, request.stmt());
+        // once the job is started every failure must terminate the stream and finish the job
+        try {
+            DataType[] outputTypes = outputTypes(analysis);
+            stream.start(outputNames(analysis), outputTypes);
+
+            if (!analysis.expectsAffectedRows()
+                    && job.tasks().size() == 1
+                    && job.tasks().get(0) instanceof PageableTask) {
+                PageableTask task = (PageableTask) job.tasks().get(0);
+                PageInfo pageInfo = PageInfo.firstPage(pageSize);
+                task.start(pageInfo);
+                Futures.addCallback(task.result().get(0),
+                        new PageStreamer(stream, outputTypes, pageInfo, new FutureCallback<Long>() {
+                            @Override
+                            public void onSuccess(@Nullable Long rowCount) {
+                                assert rowCount != null;
+                                finishStream(jobId, stream, rowCount);
+                            }
+
+                            @Override
+                            public void onFailure(@Nonnull Throwable t) {
+                                onStreamFailure(jobId, stream, t);
+                            }
+                        }));
+            } else {
+                executeUnpaged(job, analysis.expectsAffectedRows(), stream, outputTypes);
+            }
+        } catch (Throwable t) {
+            onStreamFailure(jobId, stream, t);
+        }
+    }
+
+    private void executeUnpaged(final Job job,
+                                final boolean expectsAffectedRows,
+                                final SQLResponseStream stream,
+                                final DataType[] outputTypes) {
+        Futures.addCallback(Futures.allAsList(executorProvider.get().execute(job)), new FutureCallback<List<TaskResult>>() {
+            @Override
+            public void onSuccess(@Nullable List<TaskResult> result) {
+                final long rowCount;
+                try {
+                    Object[][] rows = result == null ? TaskResult.EMPTY_ROWS : result.get(0).rows();
+                    if (expectsAffectedRows) {
+                        rowCount = rows.length >= 1 && rows[0].length >= 1 ? ((Number) rows[0][0]).longValue() : 0L;
+                        rows = TaskResult.EMPTY_ROWS;
+                    } else {
+                        rowCount = rows.length;
+                        BytesRefUtils.ensureStringTypesAreStrings(outputTypes, rows);
+                    }
+                    Futures.addCallback(stream.nextRows(rows), new FutureCallback<Object>() {
+                        @Override
+                        public void onSuccess(@Nullable Object ignored) {
+                            finishStream(job.id(), stream, rowCount);
+                        }
+
+                        @Override
+                        public void onFailure(@Nonnull Throwable t) {
+                            onStreamFailure(job.id(), stream, t);
+                        }
+                    });
+                } catch (Throwable t) {
+                    onFailure(t);
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                onStreamFailure(job.id(), stream, t);
+            }
+        });
+    }
+
+    private void finishStream(UUID jobId, SQLResponseStream stream, long rowCount) {
+        statsTables.jobFinished(jobId, null);
+        stream.finish(rowCount);
+        statsTables.activeRequestsDec();
+    }
+
+    private void onStreamFailure(UUID jobId, SQLResponseStream stream, Throwable t) {
+        logger.debug("Error streaming SQLRequest", t);
+        statsTables.jobFinished(jobId, Exceptions.messageOf(t));
+        failStream(stream, buildSQLActionException(t));
+    }
+
+    private void failStream(SQLResponseStream stream, Throwable t) {
+        stream.fail(t);
+        statsTables.activeRequestsDec();
+    }
+
     private void tracePlan(Plan plan) {
         if (logger.isTraceEnabled()) {
             PlanPrinter printer = new PlanPrinter();
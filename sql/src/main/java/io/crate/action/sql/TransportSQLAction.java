@@ -58,9 +58,10 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
             Provider<Executor> executor,
             TransportService transportService,
             StatsTables statsTables,
+            PlanCache planCache,
             ActionFilters actionFilters) {
         super(clusterService, settings, SQLAction.NAME, threadPool,
-                analyzer, planner, executor, statsTables, actionFilters);
+                analyzer, planner, executor, statsTables, planCache, actionFilters);
         transportService.registerHandler(SQLAction.NAME, new TransportHandler());
     }
 
@@ -69,16 +70,27 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
         return analyzer.analyze(statement, request.args(), SQLBulkRequest.EMPTY_BULK_ARGS);
     }
 
+    @Nullable
+    @Override
+    protected PlanCache.Key planCacheKey(Statement statement, SQLRequest request) {
+        if (PlanCache.isCacheable(statement)) {
+            return PlanCache.Key.of(request.stmt(), request.args());
+        }
+        return null;
+    }
+
     @Override
     public SQLResponse emptyResponse(SQLRequest request,
                                      String[] outputNames,
                                      @Nullable DataType[] types) {
-        return new SQLResponse(outputNames,
+        SQLResponse response = new SQLResponse(outputNames,
                 TaskResult.EMPTY_RESULT.rows(),
                 types,
                 0L,
                 request.creationTime(),
                 request.includeTypesOnResponse());
+        response.columnarFormat(request.supportsColumnarFormat());
+        return response;
     }
 
     @Override
@@ -100,7 +112,7 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
             rowCount = rows.length;
         }
         BytesRefUtils.ensureStringTypesAreStrings(outputTypes, rows);
-        return new SQLResponse(
+        SQLResponse response = new SQLResponse(
                 outputNames,
                 rows,
                 outputTypes,
@@ -108,6 +120,8 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
                 request.creationTime(),
                 request.includeTypesOnResponse()
         );
+        response.columnarFormat(request.supportsColumnarFormat());
+        return response;
     }
 
     private class TransportHandler extends BaseTransportRequestHandler<SQLRequest> {
@@ -58,7 +58,7 @@ public class TransportSQLBulkAction extends TransportBaseSQLAction<SQLBulkReques
                                   StatsTables statsTables,
                                   ActionFilters actionFilters) {
         super(clusterService, settings, SQLBulkAction.NAME, threadPool, analyzer,
-                planner, executor, statsTables, actionFilters);
+                planner, executor, statsTables, null, actionFilters);
         transportService.registerHandler(SQLBulkAction.NAME, new TransportHandler());
     }
 
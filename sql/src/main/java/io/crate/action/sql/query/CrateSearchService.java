@@ -155,6 +155,11 @@ public class CrateSearchService extends InternalSearchService {
     public QuerySearchResult executeQueryPhase(QueryShardRequest request) {
         SearchContext context = createAndPutContext(request);
         try {
+            if (request.lastEmittedDoc() != null) {
+                // scrolled query phases search after the last emitted doc instead of collecting from + size docs
+                assert request.scroll().isPresent() : "keyset paging requires a scroll";
+                context.lastEmittedDoc(request.lastEmittedDoc());
+            }
             context.indexShard().searchService().onPreQueryPhase(context);
             long time = System.nanoTime();
             contextProcessing(context);
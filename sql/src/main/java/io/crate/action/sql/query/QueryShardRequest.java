@@ -25,10 +25,14 @@ import com.google.common.base.Optional;
 import io.crate.analyze.WhereClause;
 import io.crate.metadata.ReferenceInfo;
 import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.Scroll;
 
@@ -39,6 +43,10 @@ import java.util.List;
 
 public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
 
+    private static final byte NO_DOC = 0;
+    private static final byte SCORE_DOC = 1;
+    private static final byte FIELD_DOC = 2;
+
     private String index;
     private Integer shard;
     private List<? extends Symbol> outputs;
@@ -53,6 +61,12 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
     // used for paged QTF queries
     private Optional<Scroll> scroll;
 
+    /**
+     * lower bound for keyset paging, only docs sorting after it are collected
+     */
+    @Nullable
+    private ScoreDoc lastEmittedDoc;
+
     public QueryShardRequest() {}
 
     public QueryShardRequest(String index,
@@ -139,6 +153,12 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         } else {
             scroll = Optional.absent();
         }
+        byte docType = in.readByte();
+        if (docType == FIELD_DOC) {
+            lastEmittedDoc = Lucene.readFieldDoc(in);
+        } else if (docType == SCORE_DOC) {
+            lastEmittedDoc = Lucene.readScoreDoc(in);
+        }
     }
 
     @Override
@@ -181,6 +201,15 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         if (scroll.isPresent()) {
             scroll.get().writeTo(out);
         }
+        if (lastEmittedDoc == null) {
+            out.writeByte(NO_DOC);
+        } else if (lastEmittedDoc instanceof FieldDoc) {
+            out.writeByte(FIELD_DOC);
+            Lucene.writeFieldDoc(out, (FieldDoc) lastEmittedDoc);
+        } else {
+            out.writeByte(SCORE_DOC);
+            Lucene.writeScoreDoc(out, lastEmittedDoc);
+        }
     }
 
     public String index() {
@@ -227,6 +256,20 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         return scroll;
     }
 
+    @Nullable
+    public ScoreDoc lastEmittedDoc() {
+        return lastEmittedDoc;
+    }
+
+    /**
+     * only collect docs that sort after the given doc, e.g. the last doc emitted from this shard by a previous page.
+     * Requires a scroll.
+     */
+    public QueryShardRequest lastEmittedDoc(@Nullable ScoreDoc lastEmittedDoc) {
+        this.lastEmittedDoc = lastEmittedDoc;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -252,7 +295,16 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         } else if (scroll.isPresent() || request.scroll.isPresent()) {
             return false;
         }
-        return true;
+        if (lastEmittedDoc != null && request.lastEmittedDoc != null) {
+            if (lastEmittedDoc.doc != request.lastEmittedDoc.doc) {
+                return false;
+            }
+            if (lastEmittedDoc instanceof FieldDoc && request.lastEmittedDoc instanceof FieldDoc) {
+                return Arrays.equals(((FieldDoc) lastEmittedDoc).fields, ((FieldDoc) request.lastEmittedDoc).fields);
+            }
+            return !(lastEmittedDoc instanceof FieldDoc || request.lastEmittedDoc instanceof FieldDoc);
+        }
+        return lastEmittedDoc == null && request.lastEmittedDoc == null;
     }
 
     @Override
@@ -21,19 +21,22 @@
 
 package io.crate.analyze;
 
+import io.crate.planner.symbol.ParameterLiteral;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
-import static io.crate.planner.symbol.Literal.newLiteral;
-
 public class ParameterContext {
 
     final Object[] parameters;
     final Object[][] bulkParameters;
 
     private int currentIdx = 0;
+    private final List<ParameterLiteral> literals = new ArrayList<>();
+    private boolean parametersRead = false;
 
     public ParameterContext(Object[] parameters, Object[][] bulkParameters) {
         this.parameters = parameters;
@@ -69,19 +72,56 @@ public class ParameterContext {
         this.currentIdx = i;
     }
 
+    /**
+     * @return the current parameter values, reading them makes the analysis depend on them
+     */
     public Object[] parameters() {
+        Object[] currentParameters = currentParameters();
+        if (currentParameters.length > 0) {
+            parametersRead = true;
+        }
+        return currentParameters;
+    }
+
+    private Object[] currentParameters() {
         if (hasBulkParams()) {
             return bulkParameters[currentIdx];
         }
         return parameters;
     }
 
+    /**
+     * @return the literals created by {@link #getAsSymbol(int)}
+     */
+    public List<ParameterLiteral> parameterLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return true if a parameter value has been read (by {@link #parameters()} or from one of the
+     * {@link #parameterLiterals()}), so the analysis and the plan depend on the values
+     * and can't be re-used for other values.
+     */
+    public boolean valuesRead() {
+        if (parametersRead) {
+            return true;
+        }
+        for (ParameterLiteral literal : literals) {
+            if (literal.valueRead()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public io.crate.planner.symbol.Literal getAsSymbol(int index) {
         try {
-            Object value = parameters()[index];
+            Object value = currentParameters()[index];
             DataType type = guessTypeSafe(value);
             // use type.value because some types need conversion (String to BytesRef, List to Array)
-            return newLiteral(type, type.value(value));
+            ParameterLiteral literal = new ParameterLiteral<>(index, type, type.value(value));
+            literals.add(literal);
+            return literal;
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IllegalArgumentException(String.format(Locale.ENGLISH,
                     "Tried to resolve a parameter but the arguments provided with the " +
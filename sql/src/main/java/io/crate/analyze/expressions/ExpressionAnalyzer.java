@@ -105,6 +105,10 @@ public class ExpressionAnalyzer {
     @Nullable
     public Integer integerFromExpression(Optional<Expression> expression) {
         if (expression.isPresent()) {
+            if (expression.get() instanceof LongLiteral) {
+                // no need to read the parameters
+                return DataTypes.INTEGER.value(((LongLiteral) expression.get()).getValue());
+            }
             return DataTypes.INTEGER.value(
                     ExpressionToNumberVisitor.convert(expression.get(), parameterContext.parameters()));
         }
@@ -0,0 +1,161 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.analyze.where;
+
+import io.crate.metadata.PartitionIndex;
+import io.crate.operation.operator.*;
+import io.crate.planner.symbol.*;
+import io.crate.types.DataType;
+import io.crate.types.SetType;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * resolves the partitions that can match a query using a {@link PartitionIndex}.
+ *
+ * Only conditions of the form <code>partitionColumn [=, <, <=, >, >=, IN] literal</code>
+ * which are part of the top level conjunction are used, anything else doesn't restrict the partitions.
+ */
+class PartitionPruner extends SymbolVisitor<PartitionIndex, BitSet> {
+
+    private static final PartitionPruner INSTANCE = new PartitionPruner();
+
+    /**
+     * @return the positions of the partitions that can match or null if the query
+     *         doesn't restrict the partitions at all
+     */
+    @Nullable
+    static BitSet prune(PartitionIndex partitionIndex, Symbol query) {
+        return INSTANCE.process(query, partitionIndex);
+    }
+
+    @Override
+    public BitSet visitFunction(Function function, PartitionIndex partitionIndex) {
+        String name = function.info().ident().name();
+        if (name.equals(AndOperator.NAME)) {
+            BitSet result = null;
+            for (Symbol argument : function.arguments()) {
+                BitSet candidates = process(argument, partitionIndex);
+                if (candidates == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = candidates;
+                } else {
+                    result.and(candidates);
+                }
+            }
+            return result;
+        }
+        List<Symbol> arguments = function.arguments();
+        if (arguments.size() != 2) {
+            return null;
+        }
+        Symbol left = arguments.get(0);
+        Symbol right = arguments.get(1);
+        if (left.symbolType() == SymbolType.LITERAL && right.symbolType() == SymbolType.REFERENCE) {
+            name = swapComparison(name);
+            Symbol tmp = left;
+            left = right;
+            right = tmp;
+        }
+        if (name == null || left.symbolType() != SymbolType.REFERENCE || right.symbolType() != SymbolType.LITERAL) {
+            return null;
+        }
+        Reference reference = (Reference) left;
+        int columnIndex = partitionIndex.columnIndex(reference.info().ident().columnIdent());
+        if (columnIndex < 0) {
+            return null;
+        }
+        DataType columnType = partitionIndex.columnType(columnIndex);
+        Literal literal = (Literal) right;
+        if (name.equals(InOperator.NAME)) {
+            return in(partitionIndex, columnIndex, columnType, literal);
+        }
+        if (!columnType.equals(literal.valueType())) {
+            return null;
+        }
+        Object value = literal.value();
+        if (value == null) {
+            // comparisons with null never match
+            return new BitSet();
+        }
+        switch (name) {
+            case EqOperator.NAME:
+                return partitionIndex.eq(columnIndex, value);
+            case GtOperator.NAME:
+                return partitionIndex.range(columnIndex, value, false, null, false);
+            case GteOperator.NAME:
+                return partitionIndex.range(columnIndex, value, true, null, false);
+            case LtOperator.NAME:
+                return partitionIndex.range(columnIndex, null, false, value, false);
+            case LteOperator.NAME:
+                return partitionIndex.range(columnIndex, null, false, value, true);
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static BitSet in(PartitionIndex partitionIndex, int columnIndex, DataType columnType, Literal literal) {
+        if (!new SetType(columnType).equals(literal.valueType()) || literal.value() == null) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        for (Object value : (Collection) literal.value()) {
+            if (value != null) {
+                result.or(partitionIndex.eq(columnIndex, value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the operator to use if the arguments are swapped or null if not supported
+     */
+    @Nullable
+    private static String swapComparison(String name) {
+        switch (name) {
+            case EqOperator.NAME:
+                return EqOperator.NAME;
+            case GtOperator.NAME:
+                return LtOperator.NAME;
+            case GteOperator.NAME:
+                return LteOperator.NAME;
+            case LtOperator.NAME:
+                return GtOperator.NAME;
+            case LteOperator.NAME:
+                return GteOperator.NAME;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    protected BitSet visitSymbol(Symbol symbol, PartitionIndex partitionIndex) {
+        return null;
+    }
+}
@@ -160,7 +160,7 @@ public class WhereClauseAnalyzer {
         Symbol normalized = null;
         Map<Symbol, List<Literal>> queryPartitionMap = new HashMap<>();
 
-        for (PartitionName partitionName : tableInfo.partitions()) {
+        for (PartitionName partitionName : candidatePartitions(tableInfo, whereClause.query())) {
             for (PartitionExpression partitionExpression : partitionReferenceResolver.expressions()) {
                 partitionExpression.setNextRow(partitionName);
             }
@@ -197,6 +197,27 @@ public class WhereClauseAnalyzer {
         }
     }
 
+    /**
+     * uses the partition index of the table to skip partitions which can't match
+     * because of equality, range or IN conditions on partition columns.
+     * The remaining partitions still have to be evaluated using the normalizer.
+     */
+    private static List<PartitionName> candidatePartitions(TableInfo tableInfo, Symbol query) {
+        PartitionIndex partitionIndex = tableInfo.partitionIndex();
+        if (partitionIndex == null) {
+            return tableInfo.partitions();
+        }
+        BitSet candidates = PartitionPruner.prune(partitionIndex, query);
+        if (candidates == null) {
+            return tableInfo.partitions();
+        }
+        List<PartitionName> partitions = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            partitions.add(partitionIndex.partition(i));
+        }
+        return partitions;
+    }
+
     private static WhereClause tieBreakPartitionQueries(EvaluatingNormalizer normalizer,
                                                         Map<Symbol, List<Literal>> queryPartitionMap,
                                                         WhereClause whereClause) throws UnsupportedOperationException{
@@ -43,6 +43,7 @@ import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
@@ -64,6 +65,7 @@ public class LocalMergeTask extends JobTask {
     private final ClusterService clusterService;
     private final Settings settings;
     private final TransportActionProvider transportActionProvider;
+    private final BigArrays bigArrays;
     private final ImplementationSymbolVisitor symbolVisitor;
     private final ThreadPool threadPool;
     private final SettableFuture<TaskResult> result;
@@ -81,6 +83,7 @@ public class LocalMergeTask extends JobTask {
                           ClusterService clusterService,
                           Settings settings,
                           TransportActionProvider transportActionProvider,
+                          BigArrays bigArrays,
                           ImplementationSymbolVisitor implementationSymbolVisitor,
                           MergeNode mergeNode,
                           StatsTables statsTables,
@@ -90,6 +93,7 @@ public class LocalMergeTask extends JobTask {
         this.clusterService = clusterService;
         this.settings = settings;
         this.transportActionProvider = transportActionProvider;
+        this.bigArrays = bigArrays;
         this.symbolVisitor = implementationSymbolVisitor;
         this.mergeNode = mergeNode;
         this.statsTables = statsTables;
@@ -116,7 +120,7 @@ public class LocalMergeTask extends JobTask {
         final RamAccountingContext ramAccountingContext =
                 new RamAccountingContext(ramAccountingContextId, circuitBreaker);
         final MergeOperation mergeOperation = new MergeOperation(
-                clusterService, settings, transportActionProvider, symbolVisitor,
+                clusterService, settings, threadPool, transportActionProvider, bigArrays, symbolVisitor,
                 mergeNode, ramAccountingContext);
         final AtomicInteger countdown = new AtomicInteger(upstreamResults.size());
         statsTables.operationStarted(operationId, mergeNode.contextId(), mergeNode.id());
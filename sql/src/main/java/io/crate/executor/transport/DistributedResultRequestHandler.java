@@ -24,12 +24,18 @@ package io.crate.executor.transport;
 import io.crate.executor.transport.distributed.DistributedRequestContextManager;
 import io.crate.executor.transport.distributed.DistributedResultRequest;
 import io.crate.executor.transport.distributed.DistributedResultResponse;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.BaseTransportRequestHandler;
 import org.elasticsearch.transport.TransportChannel;
 
+import java.io.IOException;
+
 public class DistributedResultRequestHandler extends BaseTransportRequestHandler<DistributedResultRequest> {
 
+    private final ESLogger logger = Loggers.getLogger(getClass());
     private final DistributedRequestContextManager contextManager;
 
     public DistributedResultRequestHandler(DistributedRequestContextManager contextManager) {
@@ -42,10 +48,29 @@ public class DistributedResultRequestHandler extends BaseTransportRequestHandler
     }
 
     @Override
-    public void messageReceived(DistributedResultRequest request, TransportChannel channel) throws Exception {
+    public void messageReceived(DistributedResultRequest request, final TransportChannel channel) throws Exception {
         try {
-            contextManager.addToContext(request);
-            channel.sendResponse(new DistributedResultResponse());
+            // the response is only sent after the rows were merged,
+            // upstreams wait for it before they send more pages
+            contextManager.addToContext(request, new ActionListener<Boolean>() {
+                @Override
+                public void onResponse(Boolean needMore) {
+                    try {
+                        channel.sendResponse(new DistributedResultResponse(needMore));
+                    } catch (IOException e) {
+                        logger.error("failed to send response for distributed result", e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        channel.sendResponse(e);
+                    } catch (IOException e1) {
+                        logger.error("failed to send failure for distributed result", e1);
+                    }
+                }
+            });
         } catch (Exception ex) {
             channel.sendResponse(ex);
         }
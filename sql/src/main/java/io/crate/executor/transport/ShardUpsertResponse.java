@@ -23,10 +23,13 @@ package io.crate.executor.transport;
 
 import com.carrotsearch.hppc.IntArrayList;
 import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.ThrowableObjectInputStream;
+import org.elasticsearch.common.io.ThrowableObjectOutputStream;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -144,6 +147,8 @@ public class ShardUpsertResponse extends ActionResponse {
     private IntArrayList locations = new IntArrayList();
     private List<Response> responses = new ArrayList<>();
     private List<Failure> failures = new ArrayList<>();
+    @Nullable
+    private Throwable failure;
 
     public ShardUpsertResponse() {
     }
@@ -180,6 +185,20 @@ public class ShardUpsertResponse extends ActionResponse {
         return failures;
     }
 
+    /**
+     * the exception which stopped the processing of the request on the primary shard.
+     * Only set if the request didn't continue on errors, the items applied before are
+     * still contained in this response.
+     */
+    @Nullable
+    public Throwable failure() {
+        return failure;
+    }
+
+    public void failure(@Nullable Throwable failure) {
+        this.failure = failure;
+    }
+
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
@@ -202,6 +221,14 @@ public class ShardUpsertResponse extends ActionResponse {
                 failures.add(null);
             }
         }
+        if (in.readBoolean()) {
+            ThrowableObjectInputStream tis = new ThrowableObjectInputStream(in, getClass().getClassLoader());
+            try {
+                failure = (Throwable) tis.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("failed to read failure", e);
+            }
+        }
     }
 
     @Override
@@ -224,6 +251,14 @@ public class ShardUpsertResponse extends ActionResponse {
                 failures.get(i).writeTo(out);
             }
         }
+        if (failure == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            ThrowableObjectOutputStream tos = new ThrowableObjectOutputStream(out);
+            tos.writeObject(failure);
+            tos.flush();
+        }
     }
 
 }
@@ -29,6 +29,7 @@ import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
 import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -69,6 +70,17 @@ public class SymbolBasedShardUpsertRequest extends ShardReplicationOperationRequ
         @Nullable
         private Streamer[] insertValuesStreamer;
 
+        /**
+         * source and version of the document as written on the primary shard,
+         * set by the primary and used to apply the item on the replicas
+         */
+        @Nullable
+        private BytesReference source;
+        private long sourceVersion = Versions.NOT_FOUND;
+        @Nullable
+        private String parent;
+        @Nullable
+        private String timestamp;
 
         Item(@Nullable Streamer[] insertValuesStreamer) {
             this.insertValuesStreamer = insertValuesStreamer;
@@ -117,6 +129,47 @@ public class SymbolBasedShardUpsertRequest extends ShardReplicationOperationRequ
             return insertValues;
         }
 
+        /**
+         * @return the source written on the primary or null if the item wasn't applied on the primary
+         */
+        @Nullable
+        public BytesReference source() {
+            return source;
+        }
+
+        public long sourceVersion() {
+            return sourceVersion;
+        }
+
+        void source(BytesReference source, long version) {
+            this.source = source;
+            this.sourceVersion = version;
+        }
+
+        /**
+         * @return the parent of the document written on the primary
+         */
+        @Nullable
+        public String parent() {
+            return parent;
+        }
+
+        void parent(@Nullable String parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * @return the timestamp of the document written on the primary
+         */
+        @Nullable
+        public String timestamp() {
+            return timestamp;
+        }
+
+        void timestamp(@Nullable String timestamp) {
+            this.timestamp = timestamp;
+        }
+
         static Item readItem(StreamInput in, @Nullable Streamer[] streamers) throws IOException {
             Item item = new Item(streamers);
             item.readFrom(in);
@@ -143,6 +196,12 @@ public class SymbolBasedShardUpsertRequest extends ShardReplicationOperationRequ
             }
 
             version = Versions.readVersion(in);
+            if (in.readBoolean()) {
+                source = in.readBytesReference();
+                sourceVersion = Versions.readVersion(in);
+                parent = in.readOptionalString();
+                timestamp = in.readOptionalString();
+            }
         }
 
         @Override
@@ -168,6 +227,15 @@ public class SymbolBasedShardUpsertRequest extends ShardReplicationOperationRequ
             }
 
             Versions.writeVersion(version, out);
+            if (source != null) {
+                out.writeBoolean(true);
+                out.writeBytesReference(source);
+                Versions.writeVersion(sourceVersion, out);
+                out.writeOptionalString(parent);
+                out.writeOptionalString(timestamp);
+            } else {
+                out.writeBoolean(false);
+            }
         }
     }
 
@@ -34,16 +34,19 @@ import io.crate.planner.symbol.Reference;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.index.TransportIndexAction;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.action.support.replication.TransportShardReplicationOperationAction;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.operation.plain.Preference;
 import org.elasticsearch.common.collect.Tuple;
@@ -58,12 +61,14 @@ import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
 import org.elasticsearch.index.engine.DocumentMissingException;
 import org.elasticsearch.index.engine.DocumentSourceMissingException;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.SourceToParse;
 import org.elasticsearch.index.mapper.internal.ParentFieldMapper;
 import org.elasticsearch.index.mapper.internal.RoutingFieldMapper;
 import org.elasticsearch.index.mapper.internal.TTLFieldMapper;
-import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesService;
@@ -81,7 +86,7 @@ public class SymbolBasedTransportShardUpsertAction extends TransportShardReplica
     private final static String ACTION_NAME = "indices:crate/data/write/upsert_symbol_based";
     private final static SymbolToFieldExtractor SYMBOL_TO_FIELD_EXTRACTOR = new SymbolToFieldExtractor(new GetResultFieldExtractorFactory());
 
-    private final TransportIndexAction indexAction;
+    private final MappingUpdatedAction mappingUpdatedAction;
     private final IndicesService indicesService;
     private final Functions functions;
 
@@ -91,12 +96,12 @@ public class SymbolBasedTransportShardUpsertAction extends TransportShardReplica
                                                  ClusterService clusterService,
                                                  TransportService transportService,
                                                  ActionFilters actionFilters,
-                                                 TransportIndexAction indexAction,
+                                                 MappingUpdatedAction mappingUpdatedAction,
                                                  IndicesService indicesService,
                                                  ShardStateAction shardStateAction,
                                                  Functions functions) {
         super(settings, ACTION_NAME, transportService, clusterService, indicesService, threadPool, shardStateAction, actionFilters);
-        this.indexAction = indexAction;
+        this.mappingUpdatedAction = mappingUpdatedAction;
         this.indicesService = indicesService;
         this.functions = functions;
     }
@@ -131,39 +136,62 @@ public class SymbolBasedTransportShardUpsertAction extends TransportShardReplica
         return false;
     }
 
-    @Override
-    protected boolean ignoreReplicas() {
-        return true;
-    }
-
     @Override
     protected ShardIterator shards(ClusterState state, InternalRequest request) {
         return clusterService.operationRouting()
                 .getShards(state, request.request().index(), request.request().shardId(), Preference.PRIMARY.type());
     }
 
+    @Override
+    protected void doExecute(SymbolBasedShardUpsertRequest request, final ActionListener<ShardUpsertResponse> listener) {
+        super.doExecute(request, new ActionListener<ShardUpsertResponse>() {
+            @Override
+            public void onResponse(ShardUpsertResponse shardUpsertResponse) {
+                if (shardUpsertResponse.failure() != null) {
+                    listener.onFailure(shardUpsertResponse.failure());
+                } else {
+                    listener.onResponse(shardUpsertResponse);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
     @Override
     protected PrimaryResponse<ShardUpsertResponse, SymbolBasedShardUpsertRequest> shardOperationOnPrimary(ClusterState clusterState, PrimaryOperationRequest shardRequest) {
         ShardUpsertResponse shardUpsertResponse = new ShardUpsertResponse(shardRequest.shardId.getIndex());
         SymbolBasedShardUpsertRequest request = shardRequest.request;
-        for (int i = 0; i < request.locations().size(); i++) {
-            int location = request.locations().get(i);
-            SymbolBasedShardUpsertRequest.Item item = request.items().get(i);
-            try {
-                IndexResponse indexResponse = indexItem(
-                        request,
-                        item, shardRequest.shardId,
-                        item.insertValues() != null, // try insert first
-                        0);
-                shardUpsertResponse.add(location,
-                        new ShardUpsertResponse.Response(
-                                item.id(),
-                                indexResponse.getVersion(),
-                                indexResponse.isCreated()));
-            } catch (Throwable t) {
-                if (TransportActions.isShardNotAvailableException(t) || !request.continueOnError()) {
-                    throw t;
-                } else {
+        IndexShard indexShard = indicesService.indexServiceSafe(shardRequest.shardId.getIndex())
+                .shardSafe(shardRequest.shardId.id());
+        boolean mappingsModified = false;
+        try {
+            for (int i = 0; i < request.locations().size(); i++) {
+                int location = request.locations().get(i);
+                SymbolBasedShardUpsertRequest.Item item = request.items().get(i);
+                try {
+                    Engine.IndexingOperation operation = indexItem(
+                            clusterState,
+                            request,
+                            item,
+                            indexShard,
+                            item.insertValues() != null, // try insert first
+                            0);
+                    mappingsModified |= operation.parsedDoc().mappingsModified();
+                    item.source(operation.source(), operation.version());
+                    shardUpsertResponse.add(location,
+                            new ShardUpsertResponse.Response(
+                                    item.id(),
+                                    operation.version(),
+                                    !(operation instanceof Engine.Index) || ((Engine.Index) operation).created()));
+                } catch (Throwable t) {
+                    if (i == 0 && TransportActions.isShardNotAvailableException(t)) {
+                        // nothing applied yet, the whole request can be retried on another primary
+                        throw t;
+                    }
                     logger.debug("{} failed to execute update for [{}]/[{}]",
                             t, request.shardId(), request.type(), item.id());
                     shardUpsertResponse.add(location,
@@ -171,52 +199,152 @@ public class SymbolBasedTransportShardUpsertAction extends TransportShardReplica
                                     item.id(),
                                     ExceptionsHelper.detailedMessage(t),
                                     (t instanceof VersionConflictEngineException)));
+                    if (!request.continueOnError()) {
+                        // the items applied so far must still reach the replicas,
+                        // so the failure is returned with the response instead of being thrown
+                        shardUpsertResponse.failure(t);
+                        break;
+                    }
                 }
             }
+        } finally {
+            if (mappingsModified) {
+                updateMappingOnMaster(request.index(), request.type());
+            }
         }
-        return new PrimaryResponse<>(shardRequest.request, shardUpsertResponse, null);
+        // the items now carry the source and version written on the primary, the request is sent
+        // to the replicas as it is
+        return new PrimaryResponse<>(request, shardUpsertResponse, null);
     }
 
-
     @Override
     protected void shardOperationOnReplica(ReplicaOperationRequest shardRequest) {
-
+        IndexShard indexShard = indicesService.indexServiceSafe(shardRequest.request.index())
+                .shardSafe(shardRequest.shardId.id());
+        SymbolBasedShardUpsertRequest request = shardRequest.request;
+        for (SymbolBasedShardUpsertRequest.Item item : request) {
+            if (item.source() == null) {
+                // failed on the primary
+                continue;
+            }
+            try {
+                SourceToParse sourceToParse = SourceToParse.source(SourceToParse.Origin.REPLICA, item.source())
+                        .type(request.type())
+                        .id(item.id())
+                        .routing(item.routing())
+                        .parent(item.parent());
+                if (item.timestamp() != null) {
+                    sourceToParse.timestamp(item.timestamp());
+                }
+                Engine.Index index = indexShard.prepareIndex(
+                        sourceToParse,
+                        item.sourceVersion(),
+                        VersionType.INTERNAL.versionTypeForReplicationAndRecovery(),
+                        Engine.Operation.Origin.REPLICA,
+                        request.canHaveDuplicates());
+                indexShard.index(index);
+            } catch (Throwable t) {
+                // a newer version might have been replicated already
+                if (!ignoreReplicaException(t)) {
+                    throw t;
+                }
+            }
+        }
     }
 
-    public IndexResponse indexItem(SymbolBasedShardUpsertRequest request,
-                          SymbolBasedShardUpsertRequest.Item item,
-                          ShardId shardId,
-                          boolean tryInsertFirst,
-                          int retryCount) throws ElasticsearchException {
+    /**
+     * apply the item directly on the shard, without going through the {@link org.elasticsearch.action.index.TransportIndexAction}
+     */
+    public Engine.IndexingOperation indexItem(ClusterState clusterState,
+                                              SymbolBasedShardUpsertRequest request,
+                                              SymbolBasedShardUpsertRequest.Item item,
+                                              IndexShard indexShard,
+                                              boolean tryInsertFirst,
+                                              int retryCount) throws ElasticsearchException {
 
         try {
             IndexRequest indexRequest;
             if (tryInsertFirst) {
                 // try insert first without fetching the document
                 try {
-                    indexRequest = new IndexRequest(prepareInsert(request, item), request);
+                    indexRequest = prepareInsert(request, item);
                 } catch (IOException e) {
                     throw ExceptionsHelper.convertToElastic(e);
                 }
             } else {
-                indexRequest = new IndexRequest(prepareUpdate(request, item, shardId), request);
+                indexRequest = prepareUpdate(request, item, indexShard);
             }
-            return indexAction.execute(indexRequest).actionGet();
+            return indexOnPrimary(clusterState, request, item, indexRequest, indexShard);
         } catch (Throwable t) {
             if (t instanceof VersionConflictEngineException
                     && retryCount < item.retryOnConflict()) {
-                return indexItem(request, item, shardId, false, retryCount + 1);
+                return indexItem(clusterState, request, item, indexShard, false, retryCount + 1);
             } else if (tryInsertFirst && item.updateAssignments() != null
                     && t instanceof DocumentAlreadyExistsException) {
                 // insert failed, document already exists, try update
-                return indexItem(request, item, shardId, false, 0);
+                return indexItem(clusterState, request, item, indexShard, false, 0);
             } else {
                 throw t;
             }
         }
     }
 
+    private Engine.IndexingOperation indexOnPrimary(ClusterState clusterState,
+                                                    SymbolBasedShardUpsertRequest request,
+                                                    SymbolBasedShardUpsertRequest.Item item,
+                                                    IndexRequest indexRequest,
+                                                    IndexShard indexShard) {
+        // apply the routing, parent and timestamp defaults of the mapping like the TransportIndexAction does
+        MetaData metaData = clusterState.metaData();
+        MappingMetaData mappingMd = null;
+        if (metaData.hasIndex(request.index())) {
+            mappingMd = metaData.index(request.index()).mappingOrDefault(indexRequest.type());
+        }
+        indexRequest.process(metaData, mappingMd, false, request.index());
+        item.parent(indexRequest.parent());
+        item.timestamp(indexRequest.timestamp());
+
+        SourceToParse sourceToParse = SourceToParse.source(SourceToParse.Origin.PRIMARY, indexRequest.source())
+                .type(indexRequest.type())
+                .id(indexRequest.id())
+                .routing(indexRequest.routing())
+                .parent(indexRequest.parent())
+                .timestamp(indexRequest.timestamp());
+        boolean canHaveDuplicates = request.canHaveDuplicates();
+        if (indexRequest.opType() == IndexRequest.OpType.CREATE) {
+            Engine.Create create = indexShard.prepareCreate(
+                    sourceToParse,
+                    indexRequest.version(),
+                    indexRequest.versionType(),
+                    Engine.Operation.Origin.PRIMARY,
+                    canHaveDuplicates,
+                    false);
+            indexShard.create(create);
+            return create;
+        }
+        Engine.Index index = indexShard.prepareIndex(
+                sourceToParse,
+                indexRequest.version(),
+                indexRequest.versionType(),
+                Engine.Operation.Origin.PRIMARY,
+                canHaveDuplicates);
+        indexShard.index(index);
+        return index;
+    }
 
+    private void updateMappingOnMaster(String index, String type) {
+        try {
+            DocumentMapper documentMapper = indicesService.indexServiceSafe(index).mapperService().documentMapper(type);
+            IndexMetaData metaData = clusterService.state().metaData().index(index);
+            if (documentMapper == null || metaData == null) {
+                return;
+            }
+            documentMapper.refreshSource();
+            mappingUpdatedAction.updateMappingOnMaster(index, documentMapper, metaData.getUUID());
+        } catch (Throwable t) {
+            logger.warn("failed to update mapping on master for [{}]/[{}]", t, index, type);
+        }
+    }
 
     /**
      * Prepares an update request by converting it into an index request.
@@ -224,9 +352,7 @@ public class SymbolBasedTransportShardUpsertAction extends TransportShardReplica
      * TODO: detect a NOOP and return an update response if true
      */
     @SuppressWarnings("unchecked")
-    public IndexRequest prepareUpdate(SymbolBasedShardUpsertRequest request, SymbolBasedShardUpsertRequest.Item item, ShardId shardId) throws ElasticsearchException {
-        IndexService indexService = indicesService.indexServiceSafe(shardId.getIndex());
-        IndexShard indexShard = indexService.shardSafe(shardId.id());
+    public IndexRequest prepareUpdate(SymbolBasedShardUpsertRequest request, SymbolBasedShardUpsertRequest.Item item, IndexShard indexShard) throws ElasticsearchException {
         final GetResult getResult = indexShard.getService().get(request.type(), item.id(),
                 new String[]{RoutingFieldMapper.NAME, ParentFieldMapper.NAME, TTLFieldMapper.NAME},
                 true, item.version(), VersionType.INTERNAL, FetchSourceContext.FETCH_SOURCE, false);
@@ -51,6 +51,7 @@ import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.ArrayList;
@@ -70,6 +71,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
     private final Settings settings;
     private final ClusterService clusterService;
     private final TransportActionProvider transportActionProvider;
+    private final BigArrays bigArrays;
 
     private final ImplementationSymbolVisitor globalImplementationSymbolVisitor;
     private final ProjectionToProjectorVisitor globalProjectionToProjectionVisitor;
@@ -83,6 +85,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
     @Inject
     public TransportExecutor(Settings settings,
                              TransportActionProvider transportActionProvider,
+                             BigArrays bigArrays,
                              ThreadPool threadPool,
                              Functions functions,
                              ReferenceResolver referenceResolver,
@@ -94,6 +97,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
                              QueryThenFetchOperation queryThenFetchOperation) {
         this.settings = settings;
         this.transportActionProvider = transportActionProvider;
+        this.bigArrays = bigArrays;
         this.handlerSideDataCollectOperation = handlerSideDataCollectOperation;
         this.threadPool = threadPool;
         this.functions = functions;
@@ -107,7 +111,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
         this.globalImplementationSymbolVisitor = new ImplementationSymbolVisitor(
                 referenceResolver, functions, RowGranularity.CLUSTER);
         this.globalProjectionToProjectionVisitor = new ProjectionToProjectorVisitor(
-                clusterService, settings, transportActionProvider,
+                clusterService, settings, threadPool, transportActionProvider, bigArrays,
                 globalImplementationSymbolVisitor);
     }
 
@@ -260,6 +264,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
                         clusterService,
                         settings,
                         transportActionProvider,
+                        bigArrays,
                         globalImplementationSymbolVisitor,
                         node,
                         statsTables,
@@ -337,6 +342,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
             return singleTask(new SymbolBasedUpsertByIdTask(jobId,
                     clusterService,
                     settings,
+                    threadPool,
                     transportActionProvider.symbolBasedTransportShardUpsertActionDelegate(),
                     transportActionProvider.transportCreateIndexAction(),
                     node));
@@ -347,6 +353,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
             return singleTask(new UpsertByIdTask(jobId,
                     clusterService,
                     settings,
+                    threadPool,
                     transportActionProvider.transportShardUpsertActionDelegate(),
                     transportActionProvider.transportCreateIndexAction(),
                     node));
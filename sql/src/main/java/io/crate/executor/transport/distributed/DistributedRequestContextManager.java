@@ -66,7 +66,7 @@ public class DistributedRequestContextManager {
     private final ESLogger logger = Loggers.getLogger(getClass());
 
     private final Map<UUID, DownstreamOperationContext> activeMergeOperations = new HashMap<>();
-    private final Map<UUID, List<BytesReference>> unreadStreams = new HashMap<>();
+    private final Map<UUID, List<UnreadRequest>> unreadRequests = new HashMap<>();
     private final Set<UUID> unreadFailures = new HashSet<>();
     private final Object lock = new Object();
     private final DownstreamOperationFactory downstreamOperationFactory;
@@ -134,8 +134,12 @@ public class DistributedRequestContextManager {
 
     /**
      * merge to rows inside the request
+     *
+     * The listener is called with false if the context doesn't need any more rows, so the upstream can
+     * stop sending pages. If the context doesn't exist yet, the request is buffered and the listener is only
+     * called once the rows have been merged, so the upstream doesn't send further pages in the meantime.
      */
-    public void addToContext(DistributedResultRequest request) throws Exception {
+    public void addToContext(DistributedResultRequest request, ActionListener<Boolean> listener) throws Exception {
         logger.trace("addToContext: hasrows: {}", request.rowsRead());
         DownstreamOperationContext operationContext;
         if (request.rowsRead()) {
@@ -144,10 +148,12 @@ public class DistributedRequestContextManager {
             logger.trace("addToContext rowsRead: {}", operationContext);
             if (request.failure()) {
                 operationContext.addFailure(null);
-            } else {
-                operationContext.add(request.rows());
+                listener.onResponse(false);
+                return;
             }
+            boolean needMore = operationContext.add(request.rows(), request.lastPage());
             logger.trace("addToContext rowsRead succes");
+            listener.onResponse(needMore);
             return;
         }
         synchronized (lock) {
@@ -161,25 +167,30 @@ public class DistributedRequestContextManager {
                     logger.error("adding unread failure from distributed result for context: ", request.contextId());
                 } else {
                     assert request.memoryStream() != null;
-                    List<BytesReference> bytesStreamOutputs = unreadStreams.get(request.contextId());
-                    if (bytesStreamOutputs == null) {
-                        bytesStreamOutputs = new ArrayList<>();
-                        unreadStreams.put(request.contextId(), bytesStreamOutputs);
+                    List<UnreadRequest> requests = unreadRequests.get(request.contextId());
+                    if (requests == null) {
+                        requests = new ArrayList<>();
+                        unreadRequests.put(request.contextId(), requests);
                     }
-                    bytesStreamOutputs.add(request.memoryStream().bytes());
+                    requests.add(new UnreadRequest(request, listener));
+                    logger.trace("addToContext: finished, response deferred until the context exists");
+                    return;
                 }
             } else {
                 logger.trace("addToContext: with context norows failure: {}", request.failure());
                 if (request.failure()) {
                     operationContext.addFailure(null);
                     logger.error("addToContext: failure in distributed result");
+                    listener.onResponse(false);
                     return;
                 }
                 logger.trace("addToContext: using memory stream: ", request.memoryStream());
-                addFromBytesReference(request.memoryStream().bytes(), operationContext);
+                listener.onResponse(addFromMemoryStream(request, operationContext));
+                return;
             }
         }
         logger.trace("addToContext: finished");
+        listener.onResponse(false);
     }
 
     private SettableFuture<Object[][]> wrapActionListener(final Streamer<?>[] streamers,
@@ -200,27 +211,35 @@ public class DistributedRequestContextManager {
     }
 
     private void put(UUID contextId, DownstreamOperationContext downstreamOperationContext) {
-        List<BytesReference> bytesReferences;
+        List<UnreadRequest> requests;
         synchronized (lock) {
             logger.trace("put: {} {}", contextId, downstreamOperationContext);
             activeMergeOperations.put(contextId, downstreamOperationContext);
-            bytesReferences = unreadStreams.remove(contextId);
+            requests = unreadRequests.remove(contextId);
             if (unreadFailures.contains(contextId)) {
                 unreadFailures.remove(contextId);
                 downstreamOperationContext.addFailure(null);
             }
         }
-        if (bytesReferences != null) {
-            for (BytesReference bytes : bytesReferences) {
-                addFromBytesReference(bytes, downstreamOperationContext);
+        if (requests != null) {
+            for (UnreadRequest unreadRequest : requests) {
+                boolean needMore;
+                try {
+                    needMore = addFromMemoryStream(unreadRequest.request, downstreamOperationContext);
+                } catch (Throwable t) {
+                    unreadRequest.listener.onFailure(t);
+                    continue;
+                }
+                unreadRequest.listener.onResponse(needMore);
             }
         }
     }
 
-    private void addFromBytesReference(BytesReference bytesReference, DownstreamOperationContext ctx) {
+    private boolean addFromMemoryStream(DistributedResultRequest request, DownstreamOperationContext ctx) {
         // bytesReference must be wrapped into HandlesStreamInput because it has a different readString()
         // implementation than BytesStreamInput alone.
         // and the memoryOutputStream originates from a HandlesStreamOutput.
+        BytesReference bytesReference = request.memoryStream().bytes();
         HandlesStreamInput wrappedStream = new HandlesStreamInput(new BytesStreamInput(bytesReference));
         Object[][] rows = null;
         try {
@@ -228,10 +247,10 @@ public class DistributedRequestContextManager {
         } catch (IOException e) {
             ctx.addFailure(e);
             logger.error("unable to deserialize upstream result", e);
-            return;
+            return false;
         }
         assert rows != null;
-        ctx.add(rows);
+        return ctx.add(rows, request.lastPage());
     }
 
     public void setFailure(UUID contextId) {
@@ -245,6 +264,17 @@ public class DistributedRequestContextManager {
         }
     }
 
+    private static class UnreadRequest {
+
+        private final DistributedResultRequest request;
+        private final ActionListener<Boolean> listener;
+
+        private UnreadRequest(DistributedResultRequest request, ActionListener<Boolean> listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+
     public interface DoneCallback {
         public void finished();
     }
@@ -39,6 +39,16 @@ public class DistributedResultRequest extends TransportRequest {
     private Object[][] rows;
     private UUID contextId;
     private BytesStreamOutput memoryStream;
+    private boolean lastPage = true;
+
+    /**
+     * the failure flag is written as a byte, older versions read any value but 0 as failure.
+     * So a page which isn't the last one is rejected by them instead of being merged as
+     * the complete result of the upstream, while a last page is read by all versions.
+     */
+    private static final byte ROWS_LAST_PAGE = 0;
+    private static final byte FAILURE = 1;
+    private static final byte ROWS_MORE_PAGES = 2;
 
     // TODO: change failure flag to string or enum so that the receiver can recreate the
     // exception and the error handling in the DistributedMergeTask can be simplified.
@@ -69,6 +79,18 @@ public class DistributedResultRequest extends TransportRequest {
         this.rows = rows;
     }
 
+    /**
+     * a request can contain only a page of the rows of an upstream,
+     * the downstream considers the upstream finished after it received the last page.
+     */
+    public boolean lastPage() {
+        return lastPage;
+    }
+
+    public void lastPage(boolean lastPage) {
+        this.lastPage = lastPage;
+    }
+
     public boolean rowsRead() {
         return memoryStream == null;
     }
@@ -78,10 +100,12 @@ public class DistributedResultRequest extends TransportRequest {
         super.readFrom(in);
         contextId = new UUID(in.readLong(), in.readLong());
 
-        if (in.readBoolean()) {
-            failure= true;
+        byte flag = in.readByte();
+        if (flag == FAILURE) {
+            failure = true;
             return;
         }
+        lastPage = flag != ROWS_MORE_PAGES;
 
         final Optional<Streamer<?>[]> optStreamer = contextManager.getStreamer(contextId);
         if (optStreamer.isPresent()) {
@@ -121,10 +145,10 @@ public class DistributedResultRequest extends TransportRequest {
         out.writeLong(contextId.getLeastSignificantBits());
 
         if (failure) {
-            out.writeBoolean(true);
+            out.writeByte(FAILURE);
             return;
         }
-        out.writeBoolean(false);
+        out.writeByte(lastPage ? ROWS_LAST_PAGE : ROWS_MORE_PAGES);
 
         assert streamers != null;
         final int numColumns = streamers.length;
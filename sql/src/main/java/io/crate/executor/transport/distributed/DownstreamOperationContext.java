@@ -85,9 +85,20 @@ public class DownstreamOperationContext {
         }
     }
 
-    public void add(Object[][] rows) {
+    public boolean add(Object[][] rows) {
+        return add(rows, true);
+    }
+
+    /**
+     * merge a page of rows of an upstream.
+     * The upstream is considered finished after its last page was added.
+     *
+     * @return false if the downstream operation doesn't need any more rows
+     */
+    public boolean add(Object[][] rows, boolean lastPage) {
         assert rows != null;
-        logger.trace("add rows.size: {}", rows.length);
+        logger.trace("add rows.size: {} lastPage: {}", rows.length, lastPage);
+        boolean needMore;
         synchronized (lock) {
             if (needsMoreRows) {
                 try {
@@ -95,14 +106,17 @@ public class DownstreamOperationContext {
                 } catch (Exception e) {
                     logger.error("failed to add rows to downstreamOperation", e);
                     listener.setException(e);
+                    needsMoreRows = false;
                 }
             }
+            needMore = needsMoreRows;
         }
 
-        if (mergeOperationsLeft.decrementAndGet() == 0) {
+        if (lastPage && mergeOperationsLeft.decrementAndGet() == 0) {
             doneCallback.finished();
             downstreamOperation.finished();
         }
+        return needMore;
     }
 
     public Streamer<?>[] streamers() {
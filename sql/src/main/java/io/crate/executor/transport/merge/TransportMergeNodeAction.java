@@ -48,6 +48,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
@@ -70,6 +71,7 @@ public class TransportMergeNodeAction {
     public TransportMergeNodeAction(final ClusterService clusterService,
                                     final Settings settings,
                                     final TransportActionProvider transportActionProvider,
+                                    final BigArrays bigArrays,
                                     TransportService transportService,
                                     ReferenceResolver referenceResolver,
                                     final Functions functions,
@@ -92,7 +94,9 @@ public class TransportMergeNodeAction {
                 return new MergeOperation(
                         clusterService,
                         settings,
+                        threadPool,
                         transportActionProvider,
+                        bigArrays,
                         implementationSymbolVisitor,
                         node,
                         ramAccountingContext
@@ -48,6 +48,7 @@ import org.elasticsearch.index.engine.DocumentMissingException;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -72,6 +73,7 @@ public class SymbolBasedUpsertByIdTask extends JobTask {
     public SymbolBasedUpsertByIdTask(UUID jobId,
                                      ClusterService clusterService,
                                      Settings settings,
+                                     ThreadPool threadPool,
                                      SymbolBasedTransportShardUpsertActionDelegate transportShardUpsertActionDelegate,
                                      TransportCreateIndexAction transportCreateIndexAction,
                                      SymbolBasedUpsertByIdNode node) {
@@ -88,7 +90,7 @@ public class SymbolBasedUpsertByIdTask extends JobTask {
             resultList = new ArrayList<>(1);
             resultList.add(SettableFuture.<TaskResult>create());
         } else {
-            resultList = initializeBulkShardProcessor(settings);
+            resultList = initializeBulkShardProcessor(settings, threadPool);
         }
 
     }
@@ -168,10 +170,11 @@ public class SymbolBasedUpsertByIdTask extends JobTask {
         });
     }
 
-    private List<ListenableFuture<TaskResult>> initializeBulkShardProcessor(Settings settings) {
+    private List<ListenableFuture<TaskResult>> initializeBulkShardProcessor(Settings settings, ThreadPool threadPool) {
         bulkShardProcessor = new SymbolBasedBulkShardProcessor(
                 clusterService,
                 settings,
+                threadPool,
                 transportShardUpsertActionDelegate,
                 transportCreateIndexAction,
                 node.isPartitionedTable(),
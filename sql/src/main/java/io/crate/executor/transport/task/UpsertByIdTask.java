@@ -49,6 +49,7 @@ import org.elasticsearch.index.engine.DocumentMissingException;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -74,6 +75,7 @@ public class UpsertByIdTask extends JobTask {
     public UpsertByIdTask(UUID jobId,
                           ClusterService clusterService,
                           Settings settings,
+                          ThreadPool threadPool,
                           TransportShardUpsertActionDelegate transportShardUpsertActionDelegate,
                           TransportCreateIndexAction transportCreateIndexAction,
                           UpsertByIdNode node) {
@@ -96,7 +98,7 @@ public class UpsertByIdTask extends JobTask {
             resultList = new ArrayList<>(1);
             resultList.add(SettableFuture.<TaskResult>create());
         } else {
-            resultList = initializeBulkShardProcessor(settings);
+            resultList = initializeBulkShardProcessor(settings, threadPool);
         }
 
     }
@@ -183,10 +185,11 @@ public class UpsertByIdTask extends JobTask {
         });
     }
 
-    private List<ListenableFuture<TaskResult>> initializeBulkShardProcessor(Settings settings) {
+    private List<ListenableFuture<TaskResult>> initializeBulkShardProcessor(Settings settings, ThreadPool threadPool) {
         bulkShardProcessor = new BulkShardProcessor(
                 clusterService,
                 settings,
+                threadPool,
                 transportShardUpsertActionDelegate,
                 transportCreateIndexAction,
                 shardingProjector,
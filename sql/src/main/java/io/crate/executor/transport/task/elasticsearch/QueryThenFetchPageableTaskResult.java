@@ -96,14 +96,27 @@ class QueryThenFetchPageableTaskResult implements PageableTaskResult {
     }
 
     private ListenableFuture<PageableTaskResult> fetchWithNewQTF(final PageInfo pageInfo) {
-        final SettableFuture<PageableTaskResult> future = SettableFuture.create();
         QueryThenFetchNode oldNode = ctx.searchNode();
+        return fetchWithNewContext(pageInfo, operation.execute(
+                oldNode,
+                ctx.outputs(),
+                Optional.of(pageInfo)
+        ));
+    }
+
+    /**
+     * issue a new QTF that continues after the rows emitted so far,
+     * so that rows up to the cursor don't have to be queried again
+     */
+    private ListenableFuture<PageableTaskResult> fetchWithKeyset(final PageInfo pageInfo, long cursor) {
+        return fetchWithNewContext(pageInfo, operation.executeAfter(ctx, (int) cursor, pageInfo));
+    }
+
+    private ListenableFuture<PageableTaskResult> fetchWithNewContext(final PageInfo pageInfo,
+                                                                     ListenableFuture<QueryThenFetchOperation.QueryThenFetchContext> newContext) {
+        final SettableFuture<PageableTaskResult> future = SettableFuture.create();
         Futures.addCallback(
-                operation.execute(
-                        oldNode,
-                        ctx.outputs(),
-                        Optional.of(pageInfo)
-                ),
+                newContext,
                 new FutureCallback<QueryThenFetchOperation.QueryThenFetchContext>() {
                     @Override
                     public void onSuccess(@Nullable final QueryThenFetchOperation.QueryThenFetchContext newCtx) {
@@ -186,8 +199,9 @@ class QueryThenFetchPageableTaskResult implements PageableTaskResult {
         } else if (restSize <= 0) {
             if (gap + pageInfo.size() > MAX_GAP_PAGESIZE) {
                 // if we have to fetch more than default pagesize, issue another query
-                logger.trace("issue a new QTF query for page {}. gap is too big.", pageInfo);
-                return fetchWithNewQTF(pageInfo);
+                // which continues after the last emitted docs
+                logger.trace("issue a new keyset QTF query for page {}. gap is too big.", pageInfo);
+                return fetchWithKeyset(pageInfo, pageSourceEnd);
             } else {
                 logger.trace("fetch another page: {}, we only got a small gap.", pageInfo);
                 fetchFromSource(
@@ -24,6 +24,7 @@ package io.crate.lucene;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.spatial4j.core.context.jts.JtsSpatialContext;
 import com.spatial4j.core.shape.Rectangle;
 import com.spatial4j.core.shape.Shape;
@@ -35,6 +36,8 @@ import io.crate.lucene.match.MatchQueryBuilder;
 import io.crate.lucene.match.MultiMatchQueryBuilder;
 import io.crate.metadata.DocReferenceConverter;
 import io.crate.metadata.Functions;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.operation.ExpressionCompiler;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectInputSymbolVisitor;
 import io.crate.operation.collect.LuceneDocCollector;
@@ -48,6 +51,7 @@ import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.lucene.LuceneDocLevelReferenceResolver;
 import io.crate.operation.scalar.geo.DistanceFunction;
 import io.crate.operation.scalar.geo.WithinFunction;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.*;
 import io.crate.types.CollectionType;
 import io.crate.types.DataType;
@@ -183,12 +187,12 @@ public class LuceneQueryBuilder {
     static class Visitor extends SymbolVisitor<Context, Query> {
 
         private SearchContext searchContext;
-        private final CollectInputSymbolVisitor<LuceneCollectorExpression<?>> inputSymbolVisitor;
+        private final ExpressionCompiler<CollectInputSymbolVisitor.Context> expressionCompiler;
         private final IndexCache indexCache;
 
         public Visitor(CollectInputSymbolVisitor<LuceneCollectorExpression<?>> inputSymbolVisitor,
                        IndexCache indexCache) {
-            this.inputSymbolVisitor = inputSymbolVisitor;
+            this.expressionCompiler = new ExpressionCompiler<>(inputSymbolVisitor);
             this.indexCache = indexCache;
         }
 
@@ -294,12 +298,13 @@ public class LuceneQueryBuilder {
                 Literal literal = tuple.v2();
                 CollectionType dataType = ((CollectionType) literal.valueType());
                 QueryBuilderHelper builder = QueryBuilderHelper.forType(dataType.innerType());
-                BooleanQuery booleanQuery = new BooleanQuery();
-                Set values = (Set) literal.value();
-                for (Object value : values) {
-                    booleanQuery.add(builder.eq(field, value), BooleanClause.Occur.SHOULD);
+                // a constant score terms filter instead of one SHOULD clause per value:
+                // no max clause count limit, no scoring and the per-segment result is cached
+                Filter termsFilter = builder.termsFilter(field, (Set) literal.value());
+                if (termsFilter == null) {
+                    return Queries.newMatchNoDocsQuery();
                 }
-                return booleanQuery;
+                return new FilteredQuery(Queries.newMatchAllQuery(), indexCache.filter().cache(termsFilter));
             }
         }
 
@@ -749,6 +754,10 @@ public class LuceneQueryBuilder {
             return (GeoPointFieldMapper) mapper;
         }
 
+        private static final Set<DataType> DOC_VALUES_TYPES = ImmutableSet.<DataType>of(
+                DataTypes.BYTE, DataTypes.SHORT, DataTypes.INTEGER, DataTypes.LONG, DataTypes.TIMESTAMP,
+                DataTypes.FLOAT, DataTypes.DOUBLE, DataTypes.STRING, DataTypes.IP, DataTypes.BOOLEAN);
+
         private final EqQuery eqQuery = new EqQuery();
         private final LtQuery ltQuery = new LtQuery();
         private final LteQuery lteQuery = new LteQuery();
@@ -881,13 +890,20 @@ public class LuceneQueryBuilder {
             if (function.valueType() != DataTypes.BOOLEAN) {
                 raiseUnsupported(function);
             }
+            if (docValuesApplicable(function)) {
+                Filter filter = docValuesFunctionFilter(function);
+                if (isDeterministic(function)) {
+                    return indexCache.filter().cache(filter);
+                }
+                return filter;
+            }
             // avoid field-cache
             // reason1: analyzed columns or columns with index off wouldn't work
             //   substr(n, 1, 1) in the case of n => analyzed would throw an error because n would be an array
             // reason2: would have to load each value into the field cache
             function = (Function)DocReferenceConverter.convertIf(function, Predicates.<Reference>alwaysTrue());
 
-            final CollectInputSymbolVisitor.Context ctx = inputSymbolVisitor.process(function);
+            final CollectInputSymbolVisitor.Context ctx = expressionCompiler.process(function);
             assert ctx.topLevelInputs().size() == 1;
             @SuppressWarnings("unchecked")
             final Input<Boolean> condition = (Input<Boolean>) ctx.topLevelInputs().get(0);
@@ -921,6 +937,73 @@ public class LuceneQueryBuilder {
             };
         }
 
+        /**
+         * evaluates the function using the doc values of the referenced columns
+         * instead of loading the stored fields of every document.
+         */
+        private Filter docValuesFunctionFilter(Function function) {
+            final CollectInputSymbolVisitor.Context ctx = expressionCompiler.process(function);
+            assert ctx.topLevelInputs().size() == 1;
+            @SuppressWarnings("unchecked")
+            final Input<Boolean> condition = (Input<Boolean>) ctx.topLevelInputs().get(0);
+            @SuppressWarnings("unchecked")
+            final List<LuceneCollectorExpression> expressions = ctx.docLevelExpressions();
+            CollectorContext collectorContext = new CollectorContext();
+            collectorContext.searchContext(searchContext);
+            for (LuceneCollectorExpression expression : expressions) {
+                expression.startCollect(collectorContext);
+            }
+            return new DocValuesFunctionFilter(function, condition, expressions);
+        }
+
+        /**
+         * @return true if all columns used inside the function are not analyzed columns with doc values
+         * and the function can be evaluated without stored fields or the source.
+         */
+        private boolean docValuesApplicable(Function function) {
+            for (Symbol argument : function.arguments()) {
+                if (argument.symbolType() == SymbolType.FUNCTION) {
+                    if (!docValuesApplicable((Function) argument)) {
+                        return false;
+                    }
+                } else if (argument.symbolType() == SymbolType.REFERENCE) {
+                    if (!hasDocValues(((Reference) argument).info())) {
+                        return false;
+                    }
+                } else if (!argument.symbolType().isValueSymbol()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasDocValues(ReferenceInfo info) {
+            if (info.granularity() != RowGranularity.DOC
+                    || info.indexType() != ReferenceInfo.IndexType.NOT_ANALYZED
+                    || !DOC_VALUES_TYPES.contains(info.type())) {
+                return false;
+            }
+            String columnName = info.ident().columnIdent().fqn();
+            if (columnName.startsWith("_")) {
+                // system columns like _id, _doc or _raw
+                return false;
+            }
+            FieldMapper mapper = searchContext.smartNameFieldMapper(columnName);
+            return mapper != null && mapper.hasDocValues();
+        }
+
+        private boolean isDeterministic(Function function) {
+            if (!function.info().isDeterministic()) {
+                return false;
+            }
+            for (Symbol argument : function.arguments()) {
+                if (argument.symbolType() == SymbolType.FUNCTION && !isDeterministic((Function) argument)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         private Query genericFunctionQuery(Function function) {
             return new FilteredQuery(Queries.newMatchAllQuery(), genericFunctionFilter(function));
         }
@@ -969,6 +1052,62 @@ public class LuceneQueryBuilder {
             }
         }
 
+        /**
+         * Filter evaluating a function on top of doc values.
+         *
+         * Two filters on the same function are equal, so the per-segment result of a deterministic
+         * function can be cached by the filter cache and re-used across queries.
+         */
+        static class DocValuesFunctionFilter extends Filter {
+
+            private final Function function;
+            private final Input<Boolean> condition;
+            private final List<LuceneCollectorExpression> expressions;
+
+            DocValuesFunctionFilter(Function function,
+                                    Input<Boolean> condition,
+                                    List<LuceneCollectorExpression> expressions) {
+                this.function = function;
+                this.condition = condition;
+                this.expressions = expressions;
+            }
+
+            @Override
+            public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+                for (LuceneCollectorExpression expression : expressions) {
+                    expression.setNextReader(context);
+                }
+                return BitsFilteredDocIdSet.wrap(
+                        new FunctionDocSet(
+                                context.reader(),
+                                null,
+                                condition,
+                                expressions,
+                                context.reader().maxDoc(),
+                                acceptDocs
+                        ),
+                        acceptDocs
+                );
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (o == null || getClass() != o.getClass()) return false;
+                return function.equals(((DocValuesFunctionFilter) o).function);
+            }
+
+            @Override
+            public int hashCode() {
+                return function.hashCode();
+            }
+
+            @Override
+            public String toString() {
+                return "DocValuesFunctionFilter(" + SymbolFormatter.format("%s", function) + ")";
+            }
+        }
+
         private Query raiseUnsupported(Function function) {
             throw new UnsupportedOperationException(
                     SymbolFormatter.format("Cannot convert function %s into a query", function));
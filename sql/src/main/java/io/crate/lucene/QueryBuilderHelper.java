@@ -5,10 +5,18 @@ import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.TermFilter;
+import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lucene.BytesRefs;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public abstract class QueryBuilderHelper {
 
     private final static QueryBuilderHelper intQueryBuilder = new IntegerQueryBuilder();
@@ -64,6 +72,32 @@ public abstract class QueryBuilderHelper {
         return eq(columnName, value);
     }
 
+    /**
+     * @return the term under which the given value is indexed (full precision for numeric fields)
+     */
+    protected abstract BytesRef indexedTerm(Object value);
+
+    /**
+     * create a filter matching all documents that contain one of the given values.
+     * null values are skipped.
+     *
+     * @return the filter or null if there is no value to filter on
+     */
+    @Nullable
+    public Filter termsFilter(String columnName, Collection<?> values) {
+        List<BytesRef> terms = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value != null) {
+                terms.add(indexedTerm(value));
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        // sorts and de-duplicates the terms once, they are then seeked in order on every segment
+        return new TermsFilter(columnName, terms);
+    }
+
     static final class BooleanQueryBuilder extends QueryBuilderHelper {
         @Override
         public Filter rangeFilter(String columnName, Object from, Object to, boolean includeLower, boolean includeUpper) {
@@ -79,6 +113,11 @@ public abstract class QueryBuilderHelper {
         public Query eq(String columnName, Object value) {
             return new TermQuery(new Term(columnName, value == true ? "T" : "F"));
         }
+
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            return new BytesRef((Boolean) value ? "T" : "F");
+        }
     }
 
     static final class FloatQueryBuilder extends QueryBuilderHelper {
@@ -102,6 +141,13 @@ public abstract class QueryBuilderHelper {
         public Query rangeQuery(String columnName, Object from, Object to, boolean includeLower, boolean includeUpper) {
             return NumericRangeQuery.newFloatRange(columnName, toFloat(from), toFloat(to), includeLower, includeUpper);
         }
+
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            BytesRefBuilder builder = new BytesRefBuilder();
+            NumericUtils.intToPrefixCoded(NumericUtils.floatToSortableInt(toFloat(value)), 0, builder);
+            return builder.toBytesRef();
+        }
     }
 
     static final class DoubleQueryBuilder extends QueryBuilderHelper {
@@ -125,6 +171,13 @@ public abstract class QueryBuilderHelper {
         public Query rangeQuery(String columnName, Object from, Object to, boolean includeLower, boolean includeUpper) {
             return NumericRangeQuery.newDoubleRange(columnName, toDouble(from), toDouble(to), includeLower, includeUpper);
         }
+
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            BytesRefBuilder builder = new BytesRefBuilder();
+            NumericUtils.longToPrefixCoded(NumericUtils.doubleToSortableLong(toDouble(value)), 0, builder);
+            return builder.toBytesRef();
+        }
     }
 
     static final class LongQueryBuilder extends QueryBuilderHelper {
@@ -148,6 +201,13 @@ public abstract class QueryBuilderHelper {
         public Query rangeQuery(String columnName, Object from, Object to, boolean includeLower, boolean includeUpper) {
             return NumericRangeQuery.newLongRange(columnName, (Long)from, (Long)to, includeLower, includeUpper);
         }
+
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            BytesRefBuilder builder = new BytesRefBuilder();
+            NumericUtils.longToPrefixCoded(toLong(value), 0, builder);
+            return builder.toBytesRef();
+        }
     }
 
     static final class IntegerQueryBuilder extends QueryBuilderHelper {
@@ -171,6 +231,13 @@ public abstract class QueryBuilderHelper {
         public Query rangeQuery(String columnName, Object from, Object to, boolean includeLower, boolean includeUpper) {
             return NumericRangeQuery.newIntRange(columnName, toInt(from), toInt(to), includeLower, includeUpper);
         }
+
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            BytesRefBuilder builder = new BytesRefBuilder();
+            NumericUtils.intToPrefixCoded(toInt(value), 0, builder);
+            return builder.toBytesRef();
+        }
     }
 
     static final class StringQueryBuilder extends QueryBuilderHelper {
@@ -185,6 +252,11 @@ public abstract class QueryBuilderHelper {
             return new TermRangeQuery(columnName, BytesRefs.toBytesRef(from), BytesRefs.toBytesRef(to), includeLower, includeUpper);
         }
 
+        @Override
+        protected BytesRef indexedTerm(Object value) {
+            return BytesRefs.toBytesRef(value);
+        }
+
         @Override
         public Query eq(String columnName, Object value) {
             return new TermQuery(new Term(columnName, (BytesRef)value));
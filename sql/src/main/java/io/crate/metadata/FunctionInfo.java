@@ -77,6 +77,13 @@ public class FunctionInfo implements Comparable<FunctionInfo>, Streamable {
         return returnType;
     }
 
+    /**
+     * @return false if the function may return different results for the same arguments (e.g. random())
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
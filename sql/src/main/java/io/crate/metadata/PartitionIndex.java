@@ -0,0 +1,191 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata;
+
+import io.crate.types.DataType;
+import org.apache.lucene.util.BytesRef;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * index over the values of the partitions of a partitioned table.
+ *
+ * For every partition column the non-null values are kept sorted, so that
+ * partitions matching an equality or range condition on a single partition column
+ * can be looked up using binary search instead of evaluating every partition.
+ *
+ * Partitions are referenced by their position in the list given on creation,
+ * results are returned as BitSet of these positions.
+ */
+public class PartitionIndex {
+
+    private final List<PartitionName> partitions;
+    private final List<ReferenceInfo> partitionColumns;
+    private final ColumnValues[] columnValues;
+
+    public PartitionIndex(List<ReferenceInfo> partitionColumns, List<PartitionName> partitions) {
+        this.partitionColumns = partitionColumns;
+        this.partitions = partitions;
+        columnValues = new ColumnValues[partitionColumns.size()];
+        for (int i = 0; i < columnValues.length; i++) {
+            columnValues[i] = new ColumnValues(partitionColumns.get(i).type(), partitions, i);
+        }
+    }
+
+    public int size() {
+        return partitions.size();
+    }
+
+    public PartitionName partition(int position) {
+        return partitions.get(position);
+    }
+
+    /**
+     * @return the index of the partition column or -1 if the column is no partition column
+     */
+    public int columnIndex(ColumnIdent columnIdent) {
+        for (int i = 0; i < partitionColumns.size(); i++) {
+            if (partitionColumns.get(i).ident().columnIdent().equals(columnIdent)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public DataType columnType(int columnIndex) {
+        return partitionColumns.get(columnIndex).type();
+    }
+
+    public BitSet all() {
+        BitSet result = new BitSet(partitions.size());
+        result.set(0, partitions.size());
+        return result;
+    }
+
+    /**
+     * @return the partitions whose value of the given column equals <code>value</code>
+     */
+    public BitSet eq(int columnIndex, Object value) {
+        return range(columnIndex, value, true, value, true);
+    }
+
+    /**
+     * @param from lower bound or null if there is no lower bound
+     * @param to upper bound or null if there is no upper bound
+     * @return the partitions whose value of the given column is within the given range,
+     *         partitions with a null value never match.
+     */
+    public BitSet range(int columnIndex,
+                        @Nullable Object from, boolean includeFrom,
+                        @Nullable Object to, boolean includeTo) {
+        return columnValues[columnIndex].range(from, includeFrom, to, includeTo, partitions.size());
+    }
+
+    private static class ColumnValues {
+
+        private final DataType type;
+        private final Object[] values;
+        private final int[] positions;
+
+        @SuppressWarnings("unchecked")
+        ColumnValues(final DataType type, List<PartitionName> partitions, int valuesIndex) {
+            this.type = type;
+            final List<Object> unsortedValues = new ArrayList<>(partitions.size());
+            List<Integer> sortedPositions = new ArrayList<>(partitions.size());
+            for (int i = 0; i < partitions.size(); i++) {
+                BytesRef value = partitions.get(i).values().get(valuesIndex);
+                unsortedValues.add(value == null ? null : type.value(value));
+                if (value != null) {
+                    sortedPositions.add(i);
+                }
+            }
+            Collections.sort(sortedPositions, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return type.compareValueTo(unsortedValues.get(o1), unsortedValues.get(o2));
+                }
+            });
+            values = new Object[sortedPositions.size()];
+            positions = new int[sortedPositions.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = sortedPositions.get(i);
+                values[i] = unsortedValues.get(positions[i]);
+            }
+        }
+
+        BitSet range(@Nullable Object from, boolean includeFrom,
+                     @Nullable Object to, boolean includeTo,
+                     int numPartitions) {
+            int lower = 0;
+            if (from != null) {
+                lower = includeFrom ? lowerBound(from) : upperBound(from);
+            }
+            int upper = values.length;
+            if (to != null) {
+                upper = includeTo ? upperBound(to) : lowerBound(to);
+            }
+            BitSet result = new BitSet(numPartitions);
+            for (int i = lower; i < upper; i++) {
+                result.set(positions[i]);
+            }
+            return result;
+        }
+
+        /**
+         * @return the position of the first value which is greater than or equal to <code>value</code>
+         */
+        @SuppressWarnings("unchecked")
+        private int lowerBound(Object value) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (type.compareValueTo(values[mid], value) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the position of the first value which is greater than <code>value</code>
+         */
+        @SuppressWarnings("unchecked")
+        private int upperBound(Object value) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (type.compareValueTo(values[mid], value) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -208,6 +208,12 @@ public class BlobTableInfo implements TableInfo {
         return new ArrayList<>(0);
     }
 
+    @Nullable
+    @Override
+    public PartitionIndex partitionIndex() {
+        return null;
+    }
+
     @Override
     public List<ColumnIdent> partitionedBy() {
         return ImmutableList.of();
@@ -485,7 +485,8 @@ public class DocIndexMetaData {
             if (this.references.size() < other.references.size()) {
                 // this is older, update template and return other
                 updateTemplate(other, transportPutIndexTemplateAction);
-                return other;
+                // other might be cached and the returned instance might be updated by further merges
+                return other.copy();
             } else if (references().size() == other.references().size() &&
                     !references().keySet().equals(other.references().keySet())) {
                 XContentHelper.update(defaultMappingMap, other.defaultMappingMap, false);
@@ -499,6 +500,14 @@ public class DocIndexMetaData {
         }
     }
 
+    /**
+     * returns a new instance built from the same index meta data,
+     * its default mapping can be updated without affecting this instance.
+     */
+    private DocIndexMetaData copy() throws IOException {
+        return new DocIndexMetaData(metaData, ident).build();
+    }
+
     private void updateTemplate(DocIndexMetaData md,
                                 TransportPutIndexTemplateAction transportPutIndexTemplateAction) {
         String templateName = PartitionName.templateName(ident.schema(), ident.name());
@@ -524,6 +533,25 @@ public class DocIndexMetaData {
         return metaData.index();
     }
 
+    TableIdent ident() {
+        return ident;
+    }
+
+    /**
+     * @return the version of the index meta data this was built from
+     */
+    long version() {
+        return metaData.version();
+    }
+
+    String uuid() {
+        return metaData.uuid();
+    }
+
+    Map<String, Object> defaultMappingMap() {
+        return defaultMappingMap;
+    }
+
     public boolean isAlias() {
         return isAlias;
     }
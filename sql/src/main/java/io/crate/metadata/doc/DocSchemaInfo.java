@@ -21,7 +21,9 @@
 
 package io.crate.metadata.doc;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
@@ -56,6 +58,7 @@ import org.elasticsearch.cluster.metadata.IndexTemplateMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 
 public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
 
@@ -88,6 +91,14 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
             );
     private final Function<String, TableInfo> tableInfoFunction;
 
+    /**
+     * parsed meta data of concrete indices, e.g. all the partitions of a partitioned table.
+     * An entry is reused as long as the version and uuid of the index meta data don't change,
+     * so rebuilding a table info only needs to parse the changed indices.
+     */
+    private final ConcurrentMap<String, DocIndexMetaData> docIndexMetaDataCache =
+            ConcurrentCollections.newConcurrentMap();
+
     @Inject
     public DocSchemaInfo(ClusterService clusterService,
                          TransportPutIndexTemplateAction transportPutIndexTemplateAction) {
@@ -118,6 +129,19 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
         return builder.build();
     }
 
+    DocIndexMetaData docIndexMetaData(IndexMetaData indexMetaData, TableIdent ident) throws IOException {
+        DocIndexMetaData docIndexMetaData = docIndexMetaDataCache.get(indexMetaData.index());
+        if (docIndexMetaData != null
+                && docIndexMetaData.version() == indexMetaData.version()
+                && indexMetaData.isSameUUID(docIndexMetaData.uuid())
+                && docIndexMetaData.ident().equals(ident)) {
+            return docIndexMetaData;
+        }
+        docIndexMetaData = new DocIndexMetaData(indexMetaData, ident).build();
+        docIndexMetaDataCache.put(indexMetaData.index(), docIndexMetaData);
+        return docIndexMetaData;
+    }
+
     @Override
     public DocTableInfo getTableInfo(String name) {
         // TODO: implement index based tables
@@ -170,6 +194,14 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
 
     @Override
     public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged() && !docIndexMetaDataCache.isEmpty()) {
+            MetaData metaData = event.state().metaData();
+            for (Iterator<String> it = docIndexMetaDataCache.keySet().iterator(); it.hasNext(); ) {
+                if (!metaData.hasIndex(it.next())) {
+                    it.remove();
+                }
+            }
+        }
         if (event.metaDataChanged() && cache.size() > 0) {
             cache.invalidateAll(event.indicesDeleted());
 
@@ -223,7 +255,8 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
                     String possibleTemplateName = PartitionName.templateName(name(), tableName);
                     if (templates.contains(possibleTemplateName)) {
                         for (ObjectObjectCursor<String, IndexMetaData> indexEntry : indices) {
-                            if (PartitionName.isPartition(indexEntry.key)) {
+                            if (PartitionName.isPartition(indexEntry.key, name(), tableName)
+                                    && event.indexMetaDataChanged(indexEntry.value)) {
                                 cache.invalidate(tableName);
                                 break;
                             }
@@ -70,6 +70,7 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
 
     private final String[] indices;
     private final List<PartitionName> partitions;
+    private PartitionIndex partitionIndex;
 
     private final boolean isAlias;
     private final boolean hasAutoGeneratedPrimaryKey;
@@ -313,6 +314,19 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
         return partitions;
     }
 
+    @Nullable
+    @Override
+    public PartitionIndex partitionIndex() {
+        if (!isPartitioned()) {
+            return null;
+        }
+        if (partitionIndex == null) {
+            // the table info is rebuilt on cluster state changes, so the index is built at most once per change
+            partitionIndex = new PartitionIndex(partitionedByColumns, partitions);
+        }
+        return partitionIndex;
+    }
+
     @Override
     public boolean isPartitioned() {
         return isPartitioned;
@@ -110,13 +110,11 @@ public class DocTableInfoBuilder {
     }
 
     private DocIndexMetaData buildDocIndexMetaData(String index) {
-        DocIndexMetaData docIndexMetaData;
         try {
-            docIndexMetaData = new DocIndexMetaData(metaData.index(index), ident);
+            return docSchemaInfo.docIndexMetaData(metaData.index(index), ident);
         } catch (IOException e) {
             throw new UnhandledServerException("Unable to build DocIndexMetaData", e);
         }
-        return docIndexMetaData.build();
     }
 
     private DocIndexMetaData buildDocIndexMetaDataFromTemplate(String index, String templateName) {
@@ -114,6 +114,21 @@ public class SysNodesTableInfo extends SysTableInfo {
         register("process", DataTypes.LONG, ImmutableList.of("open_file_descriptors"));
         register("process", DataTypes.LONG, ImmutableList.of("max_open_file_descriptors"));
 
+        register("plan_cache", DataTypes.OBJECT, null);
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("size"));
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("hits"));
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("misses"));
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("value_dependent"));
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("evictions"));
+        register("plan_cache", DataTypes.LONG, ImmutableList.of("invalidations"));
+
+        register("blob_cache", DataTypes.OBJECT, null);
+        register("blob_cache", DataTypes.LONG, ImmutableList.of("size"));
+        register("blob_cache", DataTypes.LONG, ImmutableList.of("open_files"));
+        register("blob_cache", DataTypes.LONG, ImmutableList.of("hits"));
+        register("blob_cache", DataTypes.LONG, ImmutableList.of("misses"));
+        register("blob_cache", DataTypes.LONG, ImmutableList.of("evictions"));
+
         register("fs", DataTypes.OBJECT, null);
         register("fs", DataTypes.OBJECT, ImmutableList.of("total"));
         register("fs", DataTypes.LONG, ImmutableList.of("total", "size"));
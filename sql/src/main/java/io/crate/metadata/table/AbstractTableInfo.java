@@ -87,6 +87,12 @@ public abstract class AbstractTableInfo implements TableInfo {
         return new ArrayList<>(0);
     }
 
+    @Nullable
+    @Override
+    public PartitionIndex partitionIndex() {
+        return null;
+    }
+
     @Override
     public List<ColumnIdent> partitionedBy() {
         return ImmutableList.of();
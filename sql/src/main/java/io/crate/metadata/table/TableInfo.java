@@ -83,6 +83,14 @@ public interface TableInfo extends Iterable<ReferenceInfo> {
 
     public List<PartitionName> partitions();
 
+    /**
+     * index over the values of {@linkplain #partitions()} used to prune partitions
+     *
+     * @return null if the table isn't partitioned or doesn't support it
+     */
+    @Nullable
+    public PartitionIndex partitionIndex();
+
     /**
      * column idents of columns this table is partitioned by.
      *
@@ -0,0 +1,431 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation;
+
+/**
+ * The inputs generated by {@link ExpressionCompiler}.
+ *
+ * Every expression evaluates to a primitive value and sets its <code>isNull</code> flag,
+ * parents check the flag of their arguments instead of boxing and unboxing the values.
+ * Only the leaves read boxed values from the underlying inputs and only the root boxes
+ * its result if it is read with {@link Input#value()}.
+ *
+ * The expressions keep state between the evaluation of an expression and reading
+ * its null flag, so they must not be shared between threads.
+ */
+final class CompiledExpressions {
+
+    private CompiledExpressions() {
+    }
+
+    abstract static class LongExpression implements Input<Long> {
+
+        protected boolean isNull;
+
+        abstract long evaluateLong();
+
+        @Override
+        public Long value() {
+            long result = evaluateLong();
+            return isNull ? null : result;
+        }
+    }
+
+    abstract static class DoubleExpression implements Input<Double> {
+
+        protected boolean isNull;
+
+        abstract double evaluateDouble();
+
+        @Override
+        public Double value() {
+            double result = evaluateDouble();
+            return isNull ? null : result;
+        }
+    }
+
+    abstract static class BooleanExpression implements Input<Boolean> {
+
+        protected boolean isNull;
+
+        abstract boolean evaluateBoolean();
+
+        @Override
+        public Boolean value() {
+            boolean result = evaluateBoolean();
+            return isNull ? null : result;
+        }
+    }
+
+    static class LongConstant extends LongExpression {
+
+        private final long value;
+
+        LongConstant(Object value) {
+            this.isNull = value == null;
+            this.value = isNull ? 0L : ((Number) value).longValue();
+        }
+
+        @Override
+        long evaluateLong() {
+            return value;
+        }
+    }
+
+    static class DoubleConstant extends DoubleExpression {
+
+        private final double value;
+
+        DoubleConstant(Object value) {
+            this.isNull = value == null;
+            this.value = isNull ? 0.0d : ((Number) value).doubleValue();
+        }
+
+        @Override
+        double evaluateDouble() {
+            return value;
+        }
+    }
+
+    static class BooleanConstant extends BooleanExpression {
+
+        private final boolean value;
+
+        BooleanConstant(Object value) {
+            this.isNull = value == null;
+            this.value = !isNull && (Boolean) value;
+        }
+
+        @Override
+        boolean evaluateBoolean() {
+            return value;
+        }
+    }
+
+    static class LongInput extends LongExpression {
+
+        private final Input<?> input;
+
+        LongInput(Input<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        long evaluateLong() {
+            Object value = input.value();
+            if (value == null) {
+                isNull = true;
+                return 0L;
+            }
+            isNull = false;
+            return ((Number) value).longValue();
+        }
+    }
+
+    static class DoubleInput extends DoubleExpression {
+
+        private final Input<?> input;
+
+        DoubleInput(Input<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        double evaluateDouble() {
+            Object value = input.value();
+            if (value == null) {
+                isNull = true;
+                return 0.0d;
+            }
+            isNull = false;
+            return ((Number) value).doubleValue();
+        }
+    }
+
+    /**
+     * reads a long from an input which doesn't have to box it, e.g. a column of a batch
+     */
+    static class PrimitiveLongInput extends LongExpression {
+
+        private final PrimitiveInput<?> input;
+
+        PrimitiveLongInput(PrimitiveInput<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        long evaluateLong() {
+            isNull = input.isNull();
+            return isNull ? 0L : input.longValue();
+        }
+    }
+
+    static class PrimitiveDoubleInput extends DoubleExpression {
+
+        private final PrimitiveInput<?> input;
+
+        PrimitiveDoubleInput(PrimitiveInput<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        double evaluateDouble() {
+            isNull = input.isNull();
+            return isNull ? 0.0d : input.doubleValue();
+        }
+    }
+
+    static class BooleanInput extends BooleanExpression {
+
+        private final Input<?> input;
+
+        BooleanInput(Input<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        boolean evaluateBoolean() {
+            Object value = input.value();
+            if (value == null) {
+                isNull = true;
+                return false;
+            }
+            isNull = false;
+            return (Boolean) value;
+        }
+    }
+
+    static class LongToDouble extends DoubleExpression {
+
+        private final LongExpression arg;
+
+        LongToDouble(LongExpression arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        double evaluateDouble() {
+            long value = arg.evaluateLong();
+            isNull = arg.isNull;
+            return value;
+        }
+    }
+
+    abstract static class LongArithmetic extends LongExpression {
+
+        private final LongExpression left;
+        private final LongExpression right;
+
+        LongArithmetic(LongExpression left, LongExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract long apply(long left, long right);
+
+        @Override
+        long evaluateLong() {
+            long l = left.evaluateLong();
+            if (left.isNull) {
+                isNull = true;
+                return 0L;
+            }
+            long r = right.evaluateLong();
+            if (right.isNull) {
+                isNull = true;
+                return 0L;
+            }
+            isNull = false;
+            return apply(l, r);
+        }
+    }
+
+    abstract static class DoubleArithmetic extends DoubleExpression {
+
+        private final DoubleExpression left;
+        private final DoubleExpression right;
+
+        DoubleArithmetic(DoubleExpression left, DoubleExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract double apply(double left, double right);
+
+        @Override
+        double evaluateDouble() {
+            double l = left.evaluateDouble();
+            if (left.isNull) {
+                isNull = true;
+                return 0.0d;
+            }
+            double r = right.evaluateDouble();
+            if (right.isNull) {
+                isNull = true;
+                return 0.0d;
+            }
+            isNull = false;
+            return apply(l, r);
+        }
+    }
+
+    abstract static class LongComparison extends BooleanExpression {
+
+        private final LongExpression left;
+        private final LongExpression right;
+
+        LongComparison(LongExpression left, LongExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract boolean apply(long left, long right);
+
+        @Override
+        boolean evaluateBoolean() {
+            long l = left.evaluateLong();
+            if (left.isNull) {
+                isNull = true;
+                return false;
+            }
+            long r = right.evaluateLong();
+            if (right.isNull) {
+                isNull = true;
+                return false;
+            }
+            isNull = false;
+            return apply(l, r);
+        }
+    }
+
+    /**
+     * compares using {@link Double#compare(double, double)} to be consistent with
+     * {@link Double#compareTo(Double)} and {@link Double#equals(Object)} which are used
+     * by the operators, also for NaN and -0.0
+     */
+    abstract static class DoubleComparison extends BooleanExpression {
+
+        private final DoubleExpression left;
+        private final DoubleExpression right;
+
+        DoubleComparison(DoubleExpression left, DoubleExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract boolean apply(int comparisonResult);
+
+        @Override
+        boolean evaluateBoolean() {
+            double l = left.evaluateDouble();
+            if (left.isNull) {
+                isNull = true;
+                return false;
+            }
+            double r = right.evaluateDouble();
+            if (right.isNull) {
+                isNull = true;
+                return false;
+            }
+            isNull = false;
+            return apply(Double.compare(l, r));
+        }
+    }
+
+    /**
+     * three valued AND, the right argument isn't evaluated if the left one is false
+     */
+    static class And extends BooleanExpression {
+
+        private final BooleanExpression left;
+        private final BooleanExpression right;
+
+        And(BooleanExpression left, BooleanExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateBoolean() {
+            boolean l = left.evaluateBoolean();
+            if (!l && !left.isNull) {
+                isNull = false;
+                return false;
+            }
+            boolean r = right.evaluateBoolean();
+            if (!r && !right.isNull) {
+                isNull = false;
+                return false;
+            }
+            // both are true or null
+            isNull = left.isNull || right.isNull;
+            return !isNull;
+        }
+    }
+
+    /**
+     * three valued OR, the right argument isn't evaluated if the left one is true
+     */
+    static class Or extends BooleanExpression {
+
+        private final BooleanExpression left;
+        private final BooleanExpression right;
+
+        Or(BooleanExpression left, BooleanExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateBoolean() {
+            boolean l = left.evaluateBoolean();
+            if (l && !left.isNull) {
+                isNull = false;
+                return true;
+            }
+            boolean r = right.evaluateBoolean();
+            if (r && !right.isNull) {
+                isNull = false;
+                return true;
+            }
+            // both are false or null
+            isNull = left.isNull || right.isNull;
+            return false;
+        }
+    }
+
+    static class Not extends BooleanExpression {
+
+        private final BooleanExpression arg;
+
+        Not(BooleanExpression arg) {
+            this.arg = arg;
+        }
+
+        @Override
+        boolean evaluateBoolean() {
+            boolean value = arg.evaluateBoolean();
+            isNull = arg.isNull;
+            return !isNull && !value;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation;
+
+import com.google.common.collect.ImmutableSet;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Scalar;
+import io.crate.operation.CompiledExpressions.*;
+import io.crate.operation.aggregation.FunctionExpression;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolFormatter;
+import io.crate.planner.symbol.SymbolType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Converts normalized function trees into inputs like the {@link AbstractImplementationSymbolVisitor}
+ * but evaluates arithmetic on integral and decimal values, comparisons of numeric values and
+ * the boolean operators (AND, OR, NOT) on primitive values, see {@link CompiledExpressions}.
+ *
+ * All other functions fall back to the {@link FunctionExpression} of the interpreter with compiled
+ * arguments. References, input columns and other symbols are resolved using the visitor,
+ * so the context of the visitor is populated the same way as if the visitor processed the symbols.
+ */
+public class ExpressionCompiler<C extends AbstractImplementationSymbolVisitor.Context> {
+
+    private static final Set<DataType> INTEGRAL_TYPES = ImmutableSet.<DataType>of(
+            DataTypes.BYTE, DataTypes.SHORT, DataTypes.INTEGER, DataTypes.LONG, DataTypes.TIMESTAMP);
+    private static final Set<DataType> DECIMAL_TYPES = ImmutableSet.<DataType>of(
+            DataTypes.FLOAT, DataTypes.DOUBLE);
+
+    private final AbstractImplementationSymbolVisitor<C> visitor;
+
+    public ExpressionCompiler(AbstractImplementationSymbolVisitor<C> visitor) {
+        this.visitor = visitor;
+    }
+
+    public C process(CollectNode node) {
+        C context = visitor.newContext();
+        if (node.toCollect() != null) {
+            for (Symbol symbol : node.toCollect()) {
+                context.add(compile(symbol, context));
+            }
+        }
+        return context;
+    }
+
+    public C process(Symbol... symbols) {
+        C context = visitor.newContext();
+        for (Symbol symbol : symbols) {
+            context.add(compile(symbol, context));
+        }
+        return context;
+    }
+
+    public Input<?> compile(Symbol symbol, C context) {
+        if (symbol.symbolType() != SymbolType.FUNCTION) {
+            return visitor.process(symbol, context);
+        }
+        Function function = (Function) symbol;
+        Input<?> compiled = compileFunction(function, context);
+        if (compiled != null) {
+            return compiled;
+        }
+        return interpreted(function, context);
+    }
+
+    /**
+     * same as {@link AbstractImplementationSymbolVisitor#visitFunction(Function, AbstractImplementationSymbolVisitor.Context)}
+     * but with compiled arguments
+     */
+    @SuppressWarnings("unchecked")
+    private Input<?> interpreted(Function function, C context) {
+        FunctionImplementation functionImplementation = visitor.functions().get(function.info().ident());
+        if (functionImplementation == null || !(functionImplementation instanceof Scalar<?, ?>)) {
+            throw new IllegalArgumentException(
+                    SymbolFormatter.format("Cannot find implementation for function %s", function));
+        }
+        List<Symbol> arguments = function.arguments();
+        Scalar<?, ?> scalarImpl = ((Scalar) functionImplementation).compile(arguments);
+        Input[] argumentInputs = new Input[arguments.size()];
+        int i = 0;
+        for (Symbol argument : arguments) {
+            argumentInputs[i++] = compile(argument, context);
+        }
+        return new FunctionExpression<>(scalarImpl, argumentInputs);
+    }
+
+    /**
+     * @return the compiled function or null if the function isn't supported
+     */
+    @Nullable
+    private Input<?> compileFunction(Function function, C context) {
+        List<Symbol> arguments = function.arguments();
+        List<DataType> argumentTypes = function.info().ident().argumentTypes();
+        DataType returnType = function.info().returnType();
+        switch (function.info().ident().name()) {
+            case AndOperator.NAME:
+                return new And(compileBoolean(arguments.get(0), context), compileBoolean(arguments.get(1), context));
+            case OrOperator.NAME:
+                return new Or(compileBoolean(arguments.get(0), context), compileBoolean(arguments.get(1), context));
+            case NotPredicate.NAME:
+                return new Not(compileBoolean(arguments.get(0), context));
+            case EqOperator.NAME:
+            case GtOperator.NAME:
+            case GteOperator.NAME:
+            case LtOperator.NAME:
+            case LteOperator.NAME:
+                return compileComparison(function, context);
+            case AddFunction.NAME:
+            case SubtractFunction.NAME:
+            case MultiplyFunction.NAME:
+            case DivideFunction.NAME:
+            case ModulusFunction.NAME:
+                if (arguments.size() != 2) {
+                    return null;
+                }
+                if (returnType.equals(DataTypes.LONG)
+                        && INTEGRAL_TYPES.containsAll(argumentTypes)) {
+                    return compileLongArithmetic(function, context);
+                }
+                if (returnType.equals(DataTypes.DOUBLE)
+                        && numeric(argumentTypes.get(0)) && numeric(argumentTypes.get(1))) {
+                    return compileDoubleArithmetic(function, context);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * the operators are only registered for arguments of the same type,
+     * only numeric arguments are compiled
+     */
+    @Nullable
+    private BooleanExpression compileComparison(Function function, C context) {
+        List<DataType> argumentTypes = function.info().ident().argumentTypes();
+        if (argumentTypes.size() != 2 || !argumentTypes.get(0).equals(argumentTypes.get(1))) {
+            return null;
+        }
+        Symbol left = function.arguments().get(0);
+        Symbol right = function.arguments().get(1);
+        String name = function.info().ident().name();
+        if (INTEGRAL_TYPES.contains(argumentTypes.get(0))) {
+            return longComparison(name, compileLong(left, context), compileLong(right, context));
+        }
+        if (DECIMAL_TYPES.contains(argumentTypes.get(0))) {
+            return doubleComparison(name, compileDouble(left, context), compileDouble(right, context));
+        }
+        return null;
+    }
+
+    private static BooleanExpression longComparison(String name, LongExpression left, LongExpression right) {
+        switch (name) {
+            case EqOperator.NAME:
+                return new LongComparison(left, right) {
+                    @Override
+                    boolean apply(long left, long right) {
+                        return left == right;
+                    }
+                };
+            case GtOperator.NAME:
+                return new LongComparison(left, right) {
+                    @Override
+                    boolean apply(long left, long right) {
+                        return left > right;
+                    }
+                };
+            case GteOperator.NAME:
+                return new LongComparison(left, right) {
+                    @Override
+                    boolean apply(long left, long right) {
+                        return left >= right;
+                    }
+                };
+            case LtOperator.NAME:
+                return new LongComparison(left, right) {
+                    @Override
+                    boolean apply(long left, long right) {
+                        return left < right;
+                    }
+                };
+            case LteOperator.NAME:
+                return new LongComparison(left, right) {
+                    @Override
+                    boolean apply(long left, long right) {
+                        return left <= right;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown comparison " + name);
+        }
+    }
+
+    private static BooleanExpression doubleComparison(String name, DoubleExpression left, DoubleExpression right) {
+        switch (name) {
+            case EqOperator.NAME:
+                return new DoubleComparison(left, right) {
+                    @Override
+                    boolean apply(int comparisonResult) {
+                        return comparisonResult == 0;
+                    }
+                };
+            case GtOperator.NAME:
+                return new DoubleComparison(left, right) {
+                    @Override
+                    boolean apply(int comparisonResult) {
+                        return comparisonResult > 0;
+                    }
+                };
+            case GteOperator.NAME:
+                return new DoubleComparison(left, right) {
+                    @Override
+                    boolean apply(int comparisonResult) {
+                        return comparisonResult >= 0;
+                    }
+                };
+            case LtOperator.NAME:
+                return new DoubleComparison(left, right) {
+                    @Override
+                    boolean apply(int comparisonResult) {
+                        return comparisonResult < 0;
+                    }
+                };
+            case LteOperator.NAME:
+                return new DoubleComparison(left, right) {
+                    @Override
+                    boolean apply(int comparisonResult) {
+                        return comparisonResult <= 0;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown comparison " + name);
+        }
+    }
+
+    private LongExpression compileLongArithmetic(Function function, C context) {
+        LongExpression left = compileLong(function.arguments().get(0), context);
+        LongExpression right = compileLong(function.arguments().get(1), context);
+        switch (function.info().ident().name()) {
+            case AddFunction.NAME:
+                return new LongArithmetic(left, right) {
+                    @Override
+                    long apply(long left, long right) {
+                        return left + right;
+                    }
+                };
+            case SubtractFunction.NAME:
+                return new LongArithmetic(left, right) {
+                    @Override
+                    long apply(long left, long right) {
+                        return left - right;
+                    }
+                };
+            case MultiplyFunction.NAME:
+                return new LongArithmetic(left, right) {
+                    @Override
+                    long apply(long left, long right) {
+                        return left * right;
+                    }
+                };
+            case DivideFunction.NAME:
+                return new LongArithmetic(left, right) {
+                    @Override
+                    long apply(long left, long right) {
+                        return left / right;
+                    }
+                };
+            case ModulusFunction.NAME:
+                return new LongArithmetic(left, right) {
+                    @Override
+                    long apply(long left, long right) {
+                        return left % right;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown arithmetic function " + function.info().ident().name());
+        }
+    }
+
+    private DoubleExpression compileDoubleArithmetic(Function function, C context) {
+        DoubleExpression left = compileDouble(function.arguments().get(0), context);
+        DoubleExpression right = compileDouble(function.arguments().get(1), context);
+        switch (function.info().ident().name()) {
+            case AddFunction.NAME:
+                return new DoubleArithmetic(left, right) {
+                    @Override
+                    double apply(double left, double right) {
+                        return left + right;
+                    }
+                };
+            case SubtractFunction.NAME:
+                return new DoubleArithmetic(left, right) {
+                    @Override
+                    double apply(double left, double right) {
+                        return left - right;
+                    }
+                };
+            case MultiplyFunction.NAME:
+                return new DoubleArithmetic(left, right) {
+                    @Override
+                    double apply(double left, double right) {
+                        return left * right;
+                    }
+                };
+            case DivideFunction.NAME:
+                return new DoubleArithmetic(left, right) {
+                    @Override
+                    double apply(double left, double right) {
+                        return left / right;
+                    }
+                };
+            case ModulusFunction.NAME:
+                return new DoubleArithmetic(left, right) {
+                    @Override
+                    double apply(double left, double right) {
+                        return left % right;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown arithmetic function " + function.info().ident().name());
+        }
+    }
+
+    private LongExpression compileLong(Symbol symbol, C context) {
+        if (symbol.symbolType().isValueSymbol()) {
+            return new LongConstant(((Literal) symbol).value());
+        }
+        Input<?> input = compile(symbol, context);
+        if (input instanceof LongExpression) {
+            return (LongExpression) input;
+        }
+        if (input instanceof PrimitiveInput) {
+            return new PrimitiveLongInput((PrimitiveInput<?>) input);
+        }
+        return new LongInput(input);
+    }
+
+    private DoubleExpression compileDouble(Symbol symbol, C context) {
+        if (symbol.symbolType().isValueSymbol()) {
+            return new DoubleConstant(((Literal) symbol).value());
+        }
+        Input<?> input = compile(symbol, context);
+        if (input instanceof DoubleExpression) {
+            return (DoubleExpression) input;
+        }
+        if (input instanceof LongExpression) {
+            return new LongToDouble((LongExpression) input);
+        }
+        if (input instanceof PrimitiveInput) {
+            return new PrimitiveDoubleInput((PrimitiveInput<?>) input);
+        }
+        return new DoubleInput(input);
+    }
+
+    private BooleanExpression compileBoolean(Symbol symbol, C context) {
+        if (symbol.symbolType().isValueSymbol()) {
+            return new BooleanConstant(((Literal) symbol).value());
+        }
+        Input<?> input = compile(symbol, context);
+        if (input instanceof BooleanExpression) {
+            return (BooleanExpression) input;
+        }
+        return new BooleanInput(input);
+    }
+
+    private static boolean numeric(DataType dataType) {
+        return INTEGRAL_TYPES.contains(dataType) || DECIMAL_TYPES.contains(dataType);
+    }
+}
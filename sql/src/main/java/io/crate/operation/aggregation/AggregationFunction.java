@@ -24,12 +24,14 @@ package io.crate.operation.aggregation;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.operation.Input;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
 import javax.annotation.Nullable;
+import java.util.Locale;
 
 /**
  * A special FunctionImplementation that compute a single result from a set of input values
@@ -75,6 +77,52 @@ public abstract class AggregationFunction<TPartial, TFinal> implements FunctionI
      */
     public abstract TFinal terminatePartial(RamAccountingContext ramAccountingContext, TPartial state);
 
+    /**
+     * Called to transform a state into the partial value which is handed over to the next aggregation step.
+     * The partial value must be of type {@link #partialType()}.
+     *
+     * Aggregations which use a different (e.g. mutable) representation for their states during
+     * the aggregation must override this and {@link #reducePartial(RamAccountingContext, Object, Object)}.
+     */
+    public Object partialResult(RamAccountingContext ramAccountingContext, TPartial state) {
+        return state;
+    }
+
+    /**
+     * merge a partial value, created by {@link #partialResult(RamAccountingContext, Object)},
+     * into a state.
+     *
+     * @return the reduced state. This might be a new instance or the mutated state.
+     */
+    @SuppressWarnings("unchecked")
+    public TPartial reducePartial(RamAccountingContext ramAccountingContext, TPartial state, Object partialValue) {
+        return reduce(ramAccountingContext, state, (TPartial) partialValue);
+    }
+
+    /**
+     * @param column the column of the argument or null for aggregations without arguments
+     * @return true if {@link #iterateColumn(RamAccountingContext, Object, ColumnBatch.Column, int)}
+     *         can aggregate the values of the column
+     */
+    public boolean supportsColumn(@Nullable ColumnBatch.Column column) {
+        return false;
+    }
+
+    /**
+     * the "aggregate" function for the first <code>size</code> values of a column,
+     * used in batch mode if {@link #supportsColumn(ColumnBatch.Column)} returned true.
+     * Implementations iterate the primitive arrays of the column, so the values are not boxed.
+     *
+     * @return The new/changed state, like {@link #iterate(RamAccountingContext, Object, Input[])}
+     */
+    public TPartial iterateColumn(RamAccountingContext ramAccountingContext,
+                                  TPartial state,
+                                  @Nullable ColumnBatch.Column column,
+                                  int size) {
+        throw new UnsupportedOperationException(
+                String.format(Locale.ENGLISH, "aggregation %s can't iterate columns", info().ident().name()));
+    }
+
     public abstract DataType partialType();
 
     @Override
@@ -23,6 +23,8 @@ package io.crate.operation.aggregation;
 
 import io.crate.breaker.RamAccountingContext;
 import io.crate.operation.Input;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.planner.symbol.Aggregation;
 
 import java.util.Locale;
@@ -35,6 +37,7 @@ public class Aggregator {
 
     private final Input[] inputs;
     private final AggregationFunction aggregationFunction;
+    private final RamAccountingContext ramAccountingContext;
     private final FromImpl fromImpl;
     private final ToImpl toImpl;
 
@@ -74,6 +77,7 @@ public class Aggregator {
 
         this.inputs = inputs;
         this.aggregationFunction = aggregationFunction;
+        this.ramAccountingContext = ramAccountingContext;
     }
 
 
@@ -85,6 +89,42 @@ public class Aggregator {
         return fromImpl.processRow(value);
     }
 
+    /**
+     * @return true if this aggregator can aggregate the batch column by column
+     *         using {@link #processBatch(Object, ColumnBatch)}
+     */
+    public boolean supportsBatch(ColumnBatch batch) {
+        if (!(fromImpl instanceof FromIter)) {
+            return false;
+        }
+        if (inputs.length == 0) {
+            return aggregationFunction.supportsColumn(null);
+        }
+        return inputs.length == 1
+                && inputs[0] instanceof InputCollectExpression
+                && aggregationFunction.supportsColumn(batch.column(((InputCollectExpression) inputs[0]).position()));
+    }
+
+    /**
+     * aggregate all rows of the batch at once, see {@link #supportsBatch(ColumnBatch)}
+     */
+    @SuppressWarnings("unchecked")
+    public Object processBatch(Object state, ColumnBatch batch) {
+        ColumnBatch.Column column = null;
+        if (inputs.length > 0) {
+            column = batch.column(((InputCollectExpression) inputs[0]).position());
+        }
+        return aggregationFunction.iterateColumn(ramAccountingContext, state, column, batch.size());
+    }
+
+    /**
+     * merge two states of this aggregator, e.g. states which were gathered in different threads
+     */
+    @SuppressWarnings("unchecked")
+    public Object reduce(Object state1, Object state2) {
+        return aggregationFunction.reduce(ramAccountingContext, state1, state2);
+    }
+
     public Object finishCollect(Object state) {
         return toImpl.finishCollect(state);
     }
@@ -126,7 +166,7 @@ public class Aggregator {
         @Override
         @SuppressWarnings("unchecked")
         public Object processRow(Object value) {
-            return aggregationFunction.reduce(ramAccountingContext, value, inputs[0].value());
+            return aggregationFunction.reducePartial(ramAccountingContext, value, inputs[0].value());
         }
     }
 
@@ -147,8 +187,9 @@ public class Aggregator {
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public Object finishCollect(Object state) {
-            return state;
+            return aggregationFunction.partialResult(ramAccountingContext, state);
         }
     }
 
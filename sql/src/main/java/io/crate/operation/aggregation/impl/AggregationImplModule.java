@@ -53,6 +53,7 @@ public class AggregationImplModule extends AbstractModule {
         SumAggregation.register(this);
         CountAggregation.register(this);
         CollectSetAggregation.register(this);
+        ApproxCountDistinctAggregation.register(this);
 
         VarianceAggregation.register(this);
         GeometricMeanAggregation.register(this);
@@ -0,0 +1,190 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.carrotsearch.hppc.hash.MurmurHash3;
+import com.google.common.collect.ImmutableList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.types.DataType;
+import io.crate.types.DataTypeFactory;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus;
+
+import java.io.IOException;
+
+/**
+ * approximate count of distinct values using a HyperLogLog++ sketch per group.
+ *
+ * In contrast to <code>count(distinct col)</code> which is based on collect_set
+ * the state has a fixed upper size ({@link #PRECISION} determines the number of registers)
+ * and sketches of different nodes can be merged without losing precision.
+ */
+public class ApproxCountDistinctAggregation extends AggregationFunction<HyperLogLogPlusPlus, Long> {
+
+    public static final String NAME = "approx_count_distinct";
+
+    /**
+     * 2^12 one-byte registers per group, standard error is about 1.6%
+     */
+    static final int PRECISION = 12;
+
+    private final FunctionInfo info;
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType<?> t : DataTypes.PRIMITIVE_TYPES) {
+            mod.register(new ApproxCountDistinctAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, ImmutableList.<DataType>of(t)), DataTypes.LONG,
+                    FunctionInfo.Type.AGGREGATE)));
+        }
+    }
+
+    public static class HllStateType extends DataType<HyperLogLogPlusPlus>
+            implements Streamer<HyperLogLogPlusPlus>, DataTypeFactory {
+
+        public static final int ID = 16384;
+        public static final HllStateType INSTANCE = new HllStateType();
+
+        private HllStateType() {
+            DataTypes.register(ID, this);
+        }
+
+        @Override
+        public int id() {
+            return ID;
+        }
+
+        @Override
+        public String getName() {
+            return "hll_state";
+        }
+
+        @Override
+        public Streamer<?> streamer() {
+            return this;
+        }
+
+        @Override
+        public HyperLogLogPlusPlus value(Object value) throws IllegalArgumentException, ClassCastException {
+            return (HyperLogLogPlusPlus) value;
+        }
+
+        @Override
+        public int compareValueTo(HyperLogLogPlusPlus val1, HyperLogLogPlusPlus val2) {
+            return Long.compare(val1.cardinality(0), val2.cardinality(0));
+        }
+
+        @Override
+        public DataType<?> create() {
+            return INSTANCE;
+        }
+
+        @Override
+        public HyperLogLogPlusPlus readValueFrom(StreamInput in) throws IOException {
+            return HyperLogLogPlusPlus.readFrom(in, BigArrays.NON_RECYCLING_INSTANCE);
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Object v) throws IOException {
+            ((HyperLogLogPlusPlus) v).writeTo(0, out);
+        }
+    }
+
+    ApproxCountDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public HyperLogLogPlusPlus newState(RamAccountingContext ramAccountingContext) {
+        ramAccountingContext.addBytes(HyperLogLogPlusPlus.memoryUsage(PRECISION));
+        return new HyperLogLogPlusPlus(PRECISION, BigArrays.NON_RECYCLING_INSTANCE, 1);
+    }
+
+    @Override
+    public HyperLogLogPlusPlus iterate(RamAccountingContext ramAccountingContext,
+                                       HyperLogLogPlusPlus state,
+                                       Input... args) {
+        Object value = args[0].value();
+        if (value != null) {
+            state.collect(0, hash(value));
+        }
+        return state;
+    }
+
+    @Override
+    public HyperLogLogPlusPlus reduce(RamAccountingContext ramAccountingContext,
+                                      HyperLogLogPlusPlus state1,
+                                      HyperLogLogPlusPlus state2) {
+        if (state1 == null) {
+            return state2;
+        }
+        if (state2 == null) {
+            return state1;
+        }
+        state1.merge(0, state2, 0);
+        return state1;
+    }
+
+    @Override
+    public Long terminatePartial(RamAccountingContext ramAccountingContext, HyperLogLogPlusPlus state) {
+        return state.cardinality(0);
+    }
+
+    @Override
+    public DataType partialType() {
+        return HllStateType.INSTANCE;
+    }
+
+    static long hash(Object value) {
+        if (value instanceof BytesRef) {
+            return hash((BytesRef) value);
+        } else if (value instanceof String) {
+            return hash(new BytesRef((String) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            return MurmurHash3.hash(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            return MurmurHash3.hash(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return MurmurHash3.hash((Boolean) value ? 1L : 0L);
+        }
+        return MurmurHash3.hash((long) value.hashCode());
+    }
+
+    private static long hash(BytesRef bytesRef) {
+        return org.elasticsearch.common.hash.MurmurHash3.hash128(
+                bytesRef.bytes, bytesRef.offset, bytesRef.length, 0, new org.elasticsearch.common.hash.MurmurHash3.Hash128()).h1;
+    }
+}
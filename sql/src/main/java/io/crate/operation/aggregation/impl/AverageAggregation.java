@@ -27,7 +27,9 @@ import io.crate.breaker.RamAccountingContext;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
+import io.crate.operation.PrimitiveInput;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.types.DataType;
 import io.crate.types.DataTypeFactory;
 import io.crate.types.DataTypes;
@@ -35,8 +37,13 @@ import io.crate.types.FixedWidthType;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
+/**
+ * Values of {@link PrimitiveInput}s and of long, integer and double columns are aggregated
+ * without boxing them.
+ */
 public class AverageAggregation extends AggregationFunction<AverageAggregation.AverageState, Double> {
 
     public static final String[] NAMES = new String[] {"avg", "mean"};
@@ -157,13 +164,42 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
         this.info = info;
     }
 
+    private static void update(AverageState state, double value) {
+        state.count++;
+        state.sum += value;
+    }
+
     @Override
     public AverageState iterate(RamAccountingContext ramAccountingContext, AverageState state, Input... args) {
-        if (state != null) {
-            Number value = (Number) args[0].value();
-            if (value != null) {
-                state.count++;
-                state.sum += value.doubleValue();
+        if (args[0] instanceof PrimitiveInput) {
+            PrimitiveInput<?> input = (PrimitiveInput<?>) args[0];
+            if (!input.isNull()) {
+                update(state, input.doubleValue());
+            }
+            return state;
+        }
+        Object value = args[0].value();
+        if (value != null) {
+            update(state, ((Number) value).doubleValue());
+        }
+        return state;
+    }
+
+    @Override
+    public boolean supportsColumn(@Nullable ColumnBatch.Column column) {
+        return column instanceof ColumnBatch.LongColumn
+                || column instanceof ColumnBatch.IntColumn
+                || column instanceof ColumnBatch.DoubleColumn;
+    }
+
+    @Override
+    public AverageState iterateColumn(RamAccountingContext ramAccountingContext,
+                                      AverageState state,
+                                      ColumnBatch.Column column,
+                                      int size) {
+        for (int row = 0; row < size; row++) {
+            if (!column.isNull(row)) {
+                update(state, column.doubleValue(row));
             }
         }
         return state;
@@ -29,15 +29,17 @@ import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
-public class CountAggregation extends AggregationFunction<Long, Long> {
+public class CountAggregation extends AggregationFunction<LongState, Long> {
 
     public static final String NAME = "count";
     private final FunctionInfo info;
@@ -70,17 +72,35 @@ public class CountAggregation extends AggregationFunction<Long, Long> {
     }
 
     @Override
-    public Long iterate(RamAccountingContext ramAccountingContext, Long state, Input... args) {
+    public LongState iterate(RamAccountingContext ramAccountingContext, LongState state, Input... args) {
         if (!hasArgs || args[0].value() != null){
-            return state + 1;
+            state.value++;
         }
         return state;
     }
 
     @Override
-    public Long newState(RamAccountingContext ramAccountingContext) {
+    public boolean supportsColumn(@Nullable ColumnBatch.Column column) {
+        return hasArgs == (column != null);
+    }
+
+    @Override
+    public LongState iterateColumn(RamAccountingContext ramAccountingContext,
+                                   LongState state,
+                                   @Nullable ColumnBatch.Column column,
+                                   int size) {
+        if (hasArgs) {
+            state.value += size - column.countNulls(size);
+        } else {
+            state.value += size;
+        }
+        return state;
+    }
+
+    @Override
+    public LongState newState(RamAccountingContext ramAccountingContext) {
         ramAccountingContext.addBytes(DataTypes.LONG.fixedSize());
-        return 0L;
+        return new LongState();
     }
 
     @Override
@@ -110,12 +130,24 @@ public class CountAggregation extends AggregationFunction<Long, Long> {
     }
 
     @Override
-    public Long reduce(RamAccountingContext ramAccountingContext, Long state1, Long state2) {
-        return state1 + state2;
+    public LongState reduce(RamAccountingContext ramAccountingContext, LongState state1, LongState state2) {
+        state1.value += state2.value;
+        return state1;
+    }
+
+    @Override
+    public Long partialResult(RamAccountingContext ramAccountingContext, LongState state) {
+        return state.value;
     }
 
     @Override
-    public Long terminatePartial(RamAccountingContext ramAccountingContext, Long state) {
+    public LongState reducePartial(RamAccountingContext ramAccountingContext, LongState state, Object partialValue) {
+        state.value += (Long) partialValue;
         return state;
     }
+
+    @Override
+    public Long terminatePartial(RamAccountingContext ramAccountingContext, LongState state) {
+        return state.value;
+    }
 }
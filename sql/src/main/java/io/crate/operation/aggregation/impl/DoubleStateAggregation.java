@@ -0,0 +1,131 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.PrimitiveInput;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnBatch;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+
+/**
+ * aggregation of numeric values into a mutable {@link DoubleState}.
+ *
+ * Values of {@link PrimitiveInput}s and of long, integer and double columns are aggregated
+ * without boxing them, implementations only define how a value is merged into the state.
+ */
+abstract class DoubleStateAggregation extends AggregationFunction<DoubleState, Double> {
+
+    private final FunctionInfo info;
+
+    DoubleStateAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    /**
+     * merge a value into the state
+     */
+    protected abstract void update(DoubleState state, double value);
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public DataType partialType() {
+        return info.returnType();
+    }
+
+    @Override
+    public DoubleState newState(RamAccountingContext ramAccountingContext) {
+        ramAccountingContext.addBytes(DataTypes.DOUBLE.fixedSize());
+        return new DoubleState();
+    }
+
+    @Override
+    public DoubleState iterate(RamAccountingContext ramAccountingContext, DoubleState state, Input... args) {
+        if (args[0] instanceof PrimitiveInput) {
+            PrimitiveInput<?> input = (PrimitiveInput<?>) args[0];
+            if (!input.isNull()) {
+                update(state, input.doubleValue());
+            }
+            return state;
+        }
+        Object value = args[0].value();
+        if (value != null) {
+            update(state, ((Number) value).doubleValue());
+        }
+        return state;
+    }
+
+    @Override
+    public boolean supportsColumn(@Nullable ColumnBatch.Column column) {
+        return column instanceof ColumnBatch.LongColumn
+                || column instanceof ColumnBatch.IntColumn
+                || column instanceof ColumnBatch.DoubleColumn;
+    }
+
+    @Override
+    public DoubleState iterateColumn(RamAccountingContext ramAccountingContext,
+                                     DoubleState state,
+                                     ColumnBatch.Column column,
+                                     int size) {
+        for (int row = 0; row < size; row++) {
+            if (!column.isNull(row)) {
+                update(state, column.doubleValue(row));
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public DoubleState reduce(RamAccountingContext ramAccountingContext, DoubleState state1, DoubleState state2) {
+        if (state2.hasValue) {
+            update(state1, state2.value);
+        }
+        return state1;
+    }
+
+    @Override
+    public DoubleState reducePartial(RamAccountingContext ramAccountingContext, DoubleState state, Object partialValue) {
+        if (partialValue != null) {
+            update(state, ((Number) partialValue).doubleValue());
+        }
+        return state;
+    }
+
+    @Override
+    public Double partialResult(RamAccountingContext ramAccountingContext, DoubleState state) {
+        return terminatePartial(ramAccountingContext, state);
+    }
+
+    @Override
+    public Double terminatePartial(RamAccountingContext ramAccountingContext, DoubleState state) {
+        return state.hasValue ? state.value : null;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.PrimitiveInput;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnBatch;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.crate.types.FixedWidthType;
+
+import javax.annotation.Nullable;
+
+/**
+ * aggregation of long, timestamp or integer values into a mutable {@link LongState}.
+ *
+ * Values of {@link PrimitiveInput}s and of long and integer columns are aggregated without boxing them,
+ * implementations only define how a value is merged into the state.
+ * Results of integer aggregations are narrowed back to integers.
+ */
+abstract class LongStateAggregation extends AggregationFunction<LongState, Comparable> {
+
+    private final FunctionInfo info;
+    private final boolean integerResult;
+
+    LongStateAggregation(FunctionInfo info) {
+        this.info = info;
+        this.integerResult = info.returnType().equals(DataTypes.INTEGER);
+    }
+
+    /**
+     * merge a value into the state
+     */
+    protected abstract void update(LongState state, long value);
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public DataType partialType() {
+        return info.returnType();
+    }
+
+    @Override
+    public LongState newState(RamAccountingContext ramAccountingContext) {
+        ramAccountingContext.addBytes(((FixedWidthType) partialType()).fixedSize());
+        return new LongState();
+    }
+
+    @Override
+    public LongState iterate(RamAccountingContext ramAccountingContext, LongState state, Input... args) {
+        if (args[0] instanceof PrimitiveInput) {
+            PrimitiveInput<?> input = (PrimitiveInput<?>) args[0];
+            if (!input.isNull()) {
+                update(state, input.longValue());
+            }
+            return state;
+        }
+        Object value = args[0].value();
+        if (value != null) {
+            update(state, ((Number) value).longValue());
+        }
+        return state;
+    }
+
+    @Override
+    public boolean supportsColumn(@Nullable ColumnBatch.Column column) {
+        return column instanceof ColumnBatch.LongColumn || column instanceof ColumnBatch.IntColumn;
+    }
+
+    @Override
+    public LongState iterateColumn(RamAccountingContext ramAccountingContext,
+                                   LongState state,
+                                   ColumnBatch.Column column,
+                                   int size) {
+        for (int row = 0; row < size; row++) {
+            if (!column.isNull(row)) {
+                update(state, column.longValue(row));
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public LongState reduce(RamAccountingContext ramAccountingContext, LongState state1, LongState state2) {
+        if (state2.hasValue) {
+            update(state1, state2.value);
+        }
+        return state1;
+    }
+
+    @Override
+    public LongState reducePartial(RamAccountingContext ramAccountingContext, LongState state, Object partialValue) {
+        if (partialValue != null) {
+            update(state, ((Number) partialValue).longValue());
+        }
+        return state;
+    }
+
+    @Override
+    public Object partialResult(RamAccountingContext ramAccountingContext, LongState state) {
+        return terminatePartial(ramAccountingContext, state);
+    }
+
+    @Override
+    public Comparable terminatePartial(RamAccountingContext ramAccountingContext, LongState state) {
+        if (!state.hasValue) {
+            return null;
+        }
+        if (integerResult) {
+            return (int) state.value;
+        }
+        return state.value;
+    }
+}
@@ -45,7 +45,13 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
             FunctionInfo functionInfo = new FunctionInfo(
                     new FunctionIdent(NAME, ImmutableList.of(dataType)), dataType, FunctionInfo.Type.AGGREGATE);
 
-            if (dataType instanceof FixedWidthType) {
+            if (dataType.equals(DataTypes.LONG)
+                    || dataType.equals(DataTypes.TIMESTAMP)
+                    || dataType.equals(DataTypes.INTEGER)) {
+                mod.register(new LongMaximumAggregation(functionInfo));
+            } else if (dataType.equals(DataTypes.DOUBLE)) {
+                mod.register(new DoubleMaximumAggregation(functionInfo));
+            } else if (dataType instanceof FixedWidthType) {
                 mod.register(new FixedMaximumAggregation(functionInfo));
             } else {
                 mod.register(new VariableMaximumAggregation(functionInfo));
@@ -116,6 +122,41 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
         }
     }
 
+    /**
+     * maximum of long, timestamp or integer values
+     */
+    private static class LongMaximumAggregation extends LongStateAggregation {
+
+        LongMaximumAggregation(FunctionInfo info) {
+            super(info);
+        }
+
+        @Override
+        protected void update(LongState state, long value) {
+            if (!state.hasValue || value > state.value) {
+                state.set(value);
+            }
+        }
+    }
+
+    /**
+     * maximum of double values
+     */
+    private static class DoubleMaximumAggregation extends DoubleStateAggregation {
+
+        DoubleMaximumAggregation(FunctionInfo info) {
+            super(info);
+        }
+
+        @Override
+        protected void update(DoubleState state, double value) {
+            // Double.compare to order NaN and -0.0 like Double.compareTo
+            if (!state.hasValue || Double.compare(value, state.value) > 0) {
+                state.set(value);
+            }
+        }
+    }
+
     MaximumAggregation(FunctionInfo info) {
         this.info = info;
     }
@@ -45,7 +45,13 @@ public abstract class MinimumAggregation extends AggregationFunction<Comparable,
             FunctionInfo functionInfo = new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType)),
                     dataType, FunctionInfo.Type.AGGREGATE);
 
-            if (dataType instanceof FixedWidthType) {
+            if (dataType.equals(DataTypes.LONG)
+                    || dataType.equals(DataTypes.TIMESTAMP)
+                    || dataType.equals(DataTypes.INTEGER)) {
+                mod.register(new LongMinimumAggregation(functionInfo));
+            } else if (dataType.equals(DataTypes.DOUBLE)) {
+                mod.register(new DoubleMinimumAggregation(functionInfo));
+            } else if (dataType instanceof FixedWidthType) {
                 mod.register(new FixedMinimumAggregation(functionInfo));
             } else {
                 mod.register(new VariableMinimumAggregation(functionInfo));
@@ -116,6 +122,41 @@ public abstract class MinimumAggregation extends AggregationFunction<Comparable,
         }
     }
 
+    /**
+     * minimum of long, timestamp or integer values
+     */
+    private static class LongMinimumAggregation extends LongStateAggregation {
+
+        LongMinimumAggregation(FunctionInfo info) {
+            super(info);
+        }
+
+        @Override
+        protected void update(LongState state, long value) {
+            if (!state.hasValue || value < state.value) {
+                state.set(value);
+            }
+        }
+    }
+
+    /**
+     * minimum of double values
+     */
+    private static class DoubleMinimumAggregation extends DoubleStateAggregation {
+
+        DoubleMinimumAggregation(FunctionInfo info) {
+            super(info);
+        }
+
+        @Override
+        protected void update(DoubleState state, double value) {
+            // Double.compare to order NaN and -0.0 like Double.compareTo
+            if (!state.hasValue || Double.compare(value, state.value) < 0) {
+                state.set(value);
+            }
+        }
+    }
+
     MinimumAggregation(FunctionInfo info) {
         this.info = info;
     }
@@ -22,67 +22,38 @@
 package io.crate.operation.aggregation.impl;
 
 import com.google.common.collect.ImmutableList;
-import io.crate.breaker.RamAccountingContext;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
-import io.crate.operation.Input;
-import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
-import org.elasticsearch.common.breaker.CircuitBreakingException;
 
-public class SumAggregation extends AggregationFunction<Double, Double> {
+/**
+ * sum of numeric values, the state is a mutable {@link DoubleState}, the partial value a Double.
+ *
+ * see {@link DoubleStateAggregation} for the values which are summed up without boxing them.
+ */
+public class SumAggregation extends DoubleStateAggregation {
 
     public static final String NAME = "sum";
 
-    private final FunctionInfo info;
-
     public static void register(AggregationImplModule mod) {
         for (DataType t : DataTypes.NUMERIC_PRIMITIVE_TYPES) {
-            mod.register(new SumAggregation(new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(t)),
-                            DataTypes.DOUBLE, FunctionInfo.Type.AGGREGATE)));
+            FunctionInfo info = new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(t)),
+                    DataTypes.DOUBLE, FunctionInfo.Type.AGGREGATE);
+            mod.register(new SumAggregation(info));
         }
-
     }
 
     SumAggregation(FunctionInfo info) {
-        this.info = info;
-    }
-
-    @Override
-    public Double iterate(RamAccountingContext ramAccountingContext, Double state, Input... args) throws CircuitBreakingException {
-        return reduce(ramAccountingContext, state, DataTypes.DOUBLE.value(args[0].value()));
+        super(info);
     }
 
     @Override
-    public Double reduce(RamAccountingContext ramAccountingContext, Double state1, Double state2) {
-        if (state1 == null) {
-            return state2;
-        }
-        if (state2 == null) {
-            return state1;
+    protected void update(DoubleState state, double value) {
+        if (state.hasValue) {
+            state.value += value;
+        } else {
+            state.set(value);
         }
-        return state1 + state2;
-    }
-
-    @Override
-    public Double terminatePartial(RamAccountingContext ramAccountingContext, Double state) {
-        return state;
-    }
-
-    @Override
-    public Double newState(RamAccountingContext ramAccountingContext) {
-        ramAccountingContext.addBytes(DataTypes.DOUBLE.fixedSize());
-        return null;
-    }
-
-    @Override
-    public DataType partialType() {
-        return info.returnType();
-    }
-
-    @Override
-    public FunctionInfo info() {
-        return info;
     }
 }
@@ -32,13 +32,13 @@ import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.executor.TaskResult;
 import io.crate.executor.transport.TransportActionProvider;
-import io.crate.executor.transport.distributed.DistributedFailureRequest;
 import io.crate.executor.transport.distributed.DistributedResultRequest;
 import io.crate.executor.transport.distributed.DistributedResultResponse;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import io.crate.metadata.Functions;
 import io.crate.metadata.ReferenceResolver;
 import io.crate.operation.projectors.ResultProvider;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.cluster.ClusterService;
@@ -49,7 +49,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.BaseTransportResponseHandler;
@@ -71,35 +71,21 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
 
     private ESLogger logger = Loggers.getLogger(getClass());
 
+    /**
+     * the rows are sent to the downstreams in pages by the {@link DistributingProjector} at the end
+     * of the projector chain while the shards are collecting.
+     * Once all shards are finished the last pages (or failures) are sent.
+     */
     public static class DistributingShardCollectFuture extends ShardCollectFuture {
 
-        private final ESLogger logger = Loggers.getLogger(getClass());
+        private final DistributingProjector distributingProjector;
 
-        private final TransportService transportService;
-        private final DistributedResultRequest[] requests;
-        private final List<DiscoveryNode> downStreams;
-        private final int numDownStreams;
-        private final UUID jobId;
-
-
-        public DistributingShardCollectFuture(UUID jobId,
-                                              int numShards,
+        public DistributingShardCollectFuture(int numShards,
                                               ResultProvider resultProvider,
-                                              List<DiscoveryNode> downStreams,
-                                              TransportService transportService,
-                                              Streamer<?>[] streamers) {
+                                              DistributingProjector distributingProjector) {
             super(numShards, resultProvider);
-            Preconditions.checkNotNull(downStreams, "downstream nodes is null");
-            Preconditions.checkNotNull(jobId, "jobId is null");
-            this.jobId = jobId;
-            this.transportService = transportService;
-            this.downStreams = downStreams;
-            this.numDownStreams = this.downStreams.size();
-
-            this.requests = new DistributedResultRequest[numDownStreams];
-            for (int i=0, length = this.downStreams.size(); i<length; i++) {
-                this.requests[i] = new DistributedResultRequest(jobId, streamers);
-            }
+            Preconditions.checkNotNull(distributingProjector, "distributingProjector is null");
+            this.distributingProjector = distributingProjector;
         }
 
         @Override
@@ -107,109 +93,19 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
             Throwable throwable = lastException.get();
             if (throwable != null) {
                 setException(throwable);
-                forwardFailures();
+                distributingProjector.fail();
                 return;
             }
             super.set(TaskResult.EMPTY_RESULT.rows());
 
-            BucketingIterator bucketingIterator = new ModuloBucketingIterator(
-                    this.numDownStreams,
-                    resultProvider
-            );
-
-            // send requests
-            int i = 0;
-            for (List<Object[]> bucket : bucketingIterator) {
-                DistributedResultRequest request = this.requests[i];
-                request.rows(bucket.toArray(new Object[bucket.size()][]));
-                final DiscoveryNode node = downStreams.get(i);
-                if (logger.isTraceEnabled()) {
-                    logger.trace("[{}] sending distributing collect request to {} ...",
-                            jobId.toString(),
-                            node.id());
+            // if the chain ends with a result provider (e.g. ordered top-n)
+            // its rows are only available now and haven't passed the distributingProjector yet
+            for (Object[] row : resultProvider) {
+                if (!distributingProjector.setNextRow(row)) {
+                    break;
                 }
-                sendRequest(request, node);
-                i++;
             }
-        }
-
-        private void forwardFailures() {
-            int idx = 0;
-            for (DistributedResultRequest request : requests) {
-                request.failure(true);
-                sendRequest(request, downStreams.get(idx));
-                idx++;
-            }
-        }
-
-        private void sendRequest(final DistributedResultRequest request, final DiscoveryNode node) {
-            transportService.submitRequest(
-                node,
-                TransportMergeNodeAction.mergeRowsAction, // NOTICE: hard coded transport action, should be delivered by collectNode
-                request,
-                new BaseTransportResponseHandler<DistributedResultResponse>() {
-                    @Override
-                    public DistributedResultResponse newInstance() {
-                        return new DistributedResultResponse();
-                    }
-
-                    @Override
-                    public void handleResponse(DistributedResultResponse response) {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("[{}] successfully sent distributing collect request to {}",
-                                    jobId.toString(),
-                                    node.id());
-                        }
-                    }
-
-                    @Override
-                    public void handleException(TransportException exp) {
-                        Throwable cause = exp.getCause();
-                        if (cause instanceof EsRejectedExecutionException) {
-                            sendFailure(request.contextId(), node);
-                        } else {
-                            logger.error("[{}] Exception sending distributing collect request to {}",
-                                    exp, jobId, node.id());
-                            setException(cause);
-                        }
-                    }
-
-                    @Override
-                    public String executor() {
-                        return ThreadPool.Names.SAME;
-                    }
-                }
-            );
-        }
-
-        private void sendFailure(UUID contextId, final DiscoveryNode node) {
-            transportService.submitRequest(
-                    node,
-                    TransportMergeNodeAction.failAction,
-                    new DistributedFailureRequest(contextId),
-                    new BaseTransportResponseHandler<DistributedResultResponse>() {
-                        @Override
-                        public DistributedResultResponse newInstance() {
-                            return new DistributedResultResponse();
-                        }
-
-                        @Override
-                        public void handleResponse(DistributedResultResponse response) {
-                        }
-
-                        @Override
-                        public void handleException(TransportException exp) {
-                            logger.error("[{}] Exception sending distributing collect failure to {}",
-                                    exp, jobId, node.id());
-                            setException(exp.getCause());
-                        }
-
-                        @Override
-                        public String executor() {
-                            return ThreadPool.Names.SAME;
-                        }
-                    }
-            );
+            distributingProjector.finish();
         }
     }
 
@@ -229,6 +125,7 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
     public DistributingCollectOperation(ClusterService clusterService,
                                         Settings settings,
                                         TransportActionProvider transportActionProvider,
+                                        BigArrays bigArrays,
                                         Functions functions,
                                         ReferenceResolver referenceResolver,
                                         IndicesService indicesService,
@@ -236,10 +133,11 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
                                         TransportService transportService,
                                         PlanNodeStreamerVisitor streamerVisitor,
                                         CollectServiceResolver collectServiceResolver,
-                                        CrateCircuitBreakerService breakerService) {
-        super(clusterService, settings, transportActionProvider,
+                                        CrateCircuitBreakerService breakerService,
+                                        SysNodeStats sysNodeStats) {
+        super(clusterService, settings, transportActionProvider, bigArrays,
                 functions, referenceResolver, indicesService,
-                threadPool, collectServiceResolver);
+                threadPool, collectServiceResolver, sysNodeStats);
         this.transportService = transportService;
         this.streamerVisitor = streamerVisitor;
         this.circuitBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
@@ -339,20 +237,31 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
     }
 
     @Override
-    protected ShardCollectFuture getShardCollectFuture(
-            int numShards, ShardProjectorChain projectorChain, CollectNode collectNode) {
+    protected ShardProjectorChain newShardProjectorChain(int numShards,
+                                                         CollectNode collectNode,
+                                                         RamAccountingContext ramAccountingContext) {
         assert collectNode.jobId().isPresent();
-        PlanNodeStreamerVisitor.Context streamerContext = new PlanNodeStreamerVisitor.Context(null);
-        streamerVisitor.process(collectNode, streamerContext);
         Streamer<?>[] streamers = streamerVisitor.process(
                 collectNode, new RamAccountingContext("dummy", circuitBreaker)).outputStreamers();
-        return new DistributingShardCollectFuture(
+        DistributingProjector distributingProjector = new DistributingProjector(
                 collectNode.jobId().get(),
-                numShards,
-                projectorChain,
                 toDiscoveryNodes(collectNode.downStreamNodes()),
                 transportService,
-                streamers
+                streamers,
+                DistributingProjector.DEFAULT_PAGE_SIZE,
+                ramAccountingContext
+        );
+        return new ShardProjectorChain(
+                numShards, collectNode.projections(), projectorVisitor, ramAccountingContext, distributingProjector);
+    }
+
+    @Override
+    protected ShardCollectFuture getShardCollectFuture(
+            int numShards, ShardProjectorChain projectorChain, CollectNode collectNode) {
+        return new DistributingShardCollectFuture(
+                numShards,
+                projectorChain,
+                (DistributingProjector) projectorChain.finalDownstream()
         );
     }
 }
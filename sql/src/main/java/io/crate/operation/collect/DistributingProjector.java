@@ -0,0 +1,424 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.distributed.DistributedFailureRequest;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.ResultProvider;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportResponseHandler;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Projector at the end of a distributing shard collect.
+ *
+ * Rows are put into one bucket per downstream node using {@link ModuloBucketingIterator#bucket(int, Object[])}.
+ * A bucket is sent as a page as soon as it is full, so the downstreams can merge
+ * while collecting is still running instead of waiting for the slowest shard.
+ *
+ * At most {@link #MAX_PAGES_IN_FLIGHT} pages are sent to a downstream without having received a response.
+ * As the downstream only responds after it merged a page, further pages are held if a downstream
+ * can't keep up and are sent from the response handler. Held pages are accounted in the
+ * {@link RamAccountingContext} of the collect, so the circuit breaker trips if they pile up.
+ *
+ * Once {@link #MAX_PENDING_PAGES} pages of a bucket are held, the collecting thread which filled
+ * the bucket waits for a response, but at most {@link #PENDING_PAGES_WAIT_MS}. The downstream might
+ * merge on the same thread pool, so waiting without a limit could lead to a distributed deadlock.
+ * If a downstream responds that it doesn't need more rows, the rows for it are dropped.
+ *
+ * The upstreams only feed rows, once all of them are done either {@link #finish()} or
+ * {@link #fail()} must be called, which send the last page or a failure to every downstream.
+ */
+public class DistributingProjector implements Projector, ResultProvider {
+
+    public static final int DEFAULT_PAGE_SIZE = 10_000;
+    static final int MAX_PAGES_IN_FLIGHT = 2;
+    static final int MAX_PENDING_PAGES = 4;
+    static final long PENDING_PAGES_WAIT_MS = 1000;
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final UUID jobId;
+    private final TransportService transportService;
+    private final Streamer<?>[] streamers;
+    private final int pageSize;
+    private final RamAccountingContext ramAccountingContext;
+    private final Bucket[] buckets;
+    private final AtomicInteger bucketsNeedingRows;
+    private final SettableFuture<Object[][]> result = SettableFuture.create();
+
+    public DistributingProjector(UUID jobId,
+                                 List<DiscoveryNode> downStreams,
+                                 TransportService transportService,
+                                 Streamer<?>[] streamers,
+                                 int pageSize,
+                                 RamAccountingContext ramAccountingContext) {
+        this.jobId = jobId;
+        this.transportService = transportService;
+        this.streamers = streamers;
+        this.pageSize = pageSize;
+        this.ramAccountingContext = ramAccountingContext;
+        this.buckets = new Bucket[downStreams.size()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(downStreams.get(i));
+        }
+        this.bucketsNeedingRows = new AtomicInteger(buckets.length);
+    }
+
+    @Override
+    public void startProjection() {
+    }
+
+    @Override
+    public boolean setNextRow(Object... row) {
+        buckets[ModuloBucketingIterator.bucket(buckets.length, row)].add(row);
+        return bucketsNeedingRows.get() > 0;
+    }
+
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+    }
+
+    @Override
+    public void upstreamFinished() {
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+    }
+
+    /**
+     * send the remaining rows of every bucket as last page
+     */
+    public void finish() {
+        for (Bucket bucket : buckets) {
+            bucket.sendLastPage();
+        }
+        result.set(TaskResult.EMPTY_RESULT.rows());
+    }
+
+    /**
+     * inform every downstream about a failure instead of sending the last page
+     */
+    public void fail() {
+        for (Bucket bucket : buckets) {
+            bucket.sendFailure();
+        }
+        result.set(TaskResult.EMPTY_RESULT.rows());
+    }
+
+    @Override
+    public ListenableFuture<Object[][]> result() {
+        return result;
+    }
+
+    /**
+     * the rows have already been sent to the downstreams
+     */
+    @Override
+    public Iterator<Object[]> iterator() throws IllegalStateException {
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * rough estimate of the heap used by the rows of a page
+     */
+    static long estimateSize(Object[][] rows) {
+        long size = 16;
+        for (Object[] row : rows) {
+            size += 16 + row.length * 8;
+            for (Object value : row) {
+                if (value instanceof BytesRef) {
+                    size += 32 + ((BytesRef) value).length;
+                } else if (value instanceof String) {
+                    size += 40 + ((String) value).length() * 2;
+                } else if (value != null) {
+                    size += 16;
+                }
+            }
+        }
+        return RamAccountingContext.roundUp(size);
+    }
+
+    private static class PendingPage {
+
+        private final DistributedResultRequest request;
+        private final long accountedBytes;
+
+        private PendingPage(DistributedResultRequest request, long accountedBytes) {
+            this.request = request;
+            this.accountedBytes = accountedBytes;
+        }
+    }
+
+    private class Bucket {
+
+        private final DiscoveryNode node;
+        private final Deque<PendingPage> pendingPages = new ArrayDeque<>();
+        private List<Object[]> rows = new ArrayList<>();
+        private int pagesInFlight = 0;
+        private volatile boolean needMore = true;
+        private volatile boolean failed = false;
+
+        private Bucket(DiscoveryNode node) {
+            this.node = node;
+        }
+
+        private void add(Object[] row) {
+            List<DistributedResultRequest> toSend;
+            synchronized (this) {
+                if (!needMore) {
+                    return;
+                }
+                rows.add(row);
+                if (rows.size() < pageSize) {
+                    return;
+                }
+                queuePage(false);
+                toSend = pollSendablePages();
+            }
+            send(toSend);
+            awaitPendingPages();
+        }
+
+        private void sendLastPage() {
+            List<DistributedResultRequest> toSend;
+            synchronized (this) {
+                queuePage(true);
+                toSend = pollSendablePages();
+            }
+            send(toSend);
+        }
+
+        private void sendFailure() {
+            List<DistributedResultRequest> toSend;
+            synchronized (this) {
+                DistributedResultRequest request = new DistributedResultRequest(jobId, streamers);
+                request.failure(true);
+                rows = new ArrayList<>();
+                pendingPages.add(new PendingPage(request, 0));
+                toSend = pollSendablePages();
+            }
+            send(toSend);
+        }
+
+        /**
+         * the page is accounted unless it is the last one, so the circuit breaker can't trip while
+         * finishing. If the breaker trips the collect fails and the page is dropped.
+         */
+        private void queuePage(boolean lastPage) {
+            DistributedResultRequest request = new DistributedResultRequest(jobId, streamers);
+            request.rows(rows.toArray(new Object[rows.size()][]));
+            request.lastPage(lastPage);
+            rows = new ArrayList<>();
+            long bytes = 0;
+            if (!lastPage) {
+                bytes = estimateSize(request.rows());
+                ramAccountingContext.addBytes(bytes);
+            }
+            pendingPages.add(new PendingPage(request, bytes));
+        }
+
+        /**
+         * wait until less than {@link #MAX_PENDING_PAGES} pages are held,
+         * but at most {@link #PENDING_PAGES_WAIT_MS}
+         */
+        private synchronized void awaitPendingPages() {
+            long deadline = System.currentTimeMillis() + PENDING_PAGES_WAIT_MS;
+            while (pendingPages.size() >= MAX_PENDING_PAGES && needMore) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("[{}] {} pages are held for {}, continue collecting",
+                                jobId.toString(), pendingPages.size(), node.id());
+                    }
+                    return;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * remove the pending pages which can be sent as long as less than {@link #MAX_PAGES_IN_FLIGHT}
+         * pages are in flight, otherwise the pages are held until a response arrives.
+         * Must be called while holding the lock of the bucket, the returned pages must be sent
+         * after releasing it.
+         *
+         * The last page (or a failure) finishes the upstream on the downstream,
+         * so it is only sent once no other page is in flight.
+         */
+        private List<DistributedResultRequest> pollSendablePages() {
+            List<DistributedResultRequest> toSend = new ArrayList<>(MAX_PAGES_IN_FLIGHT);
+            while (!pendingPages.isEmpty() && pagesInFlight < MAX_PAGES_IN_FLIGHT) {
+                DistributedResultRequest request = pendingPages.peek().request;
+                boolean finishing = request.lastPage() || request.failure();
+                if (finishing && pagesInFlight > 0) {
+                    break;
+                }
+                ramAccountingContext.addBytes(-pendingPages.poll().accountedBytes);
+                if (!finishing && !needMore) {
+                    continue;
+                }
+                pagesInFlight++;
+                toSend.add(request);
+            }
+            notifyAll();
+            return toSend;
+        }
+
+        private void pageDone() {
+            List<DistributedResultRequest> toSend;
+            synchronized (this) {
+                pagesInFlight--;
+                toSend = pollSendablePages();
+            }
+            send(toSend);
+        }
+
+        private synchronized void stopSending() {
+            if (needMore) {
+                needMore = false;
+                bucketsNeedingRows.decrementAndGet();
+                notifyAll();
+            }
+        }
+
+        private void send(List<DistributedResultRequest> requests) {
+            for (DistributedResultRequest request : requests) {
+                if (request.lastPage() && failed) {
+                    sendFailAction();
+                    pageDone();
+                    continue;
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("[{}] sending page of distributing collect to {} lastPage: {}",
+                            jobId.toString(), node.id(), request.lastPage());
+                }
+                send(request);
+            }
+        }
+
+        private void send(final DistributedResultRequest request) {
+            transportService.submitRequest(
+                    node,
+                    TransportMergeNodeAction.mergeRowsAction, // NOTICE: hard coded transport action, should be delivered by collectNode
+                    request,
+                    new BaseTransportResponseHandler<DistributedResultResponse>() {
+                        @Override
+                        public DistributedResultResponse newInstance() {
+                            return new DistributedResultResponse();
+                        }
+
+                        @Override
+                        public void handleResponse(DistributedResultResponse response) {
+                            if (logger.isTraceEnabled()) {
+                                logger.trace("[{}] successfully sent distributing collect request to {}",
+                                        jobId.toString(),
+                                        node.id());
+                            }
+                            if (!response.needMore()) {
+                                stopSending();
+                            }
+                            pageDone();
+                        }
+
+                        @Override
+                        public void handleException(TransportException exp) {
+                            Throwable cause = exp.getCause();
+                            if (!(cause instanceof EsRejectedExecutionException)) {
+                                logger.error("[{}] Exception sending distributing collect request to {}",
+                                        exp, jobId, node.id());
+                                result.setException(cause);
+                            }
+                            // the downstream missed rows, it is informed about the failure instead of the last page
+                            if (request.lastPage()) {
+                                sendFailAction();
+                            } else {
+                                failed = true;
+                                stopSending();
+                            }
+                            pageDone();
+                        }
+
+                        @Override
+                        public String executor() {
+                            return ThreadPool.Names.SAME;
+                        }
+                    }
+            );
+        }
+
+        private void sendFailAction() {
+            transportService.submitRequest(
+                    node,
+                    TransportMergeNodeAction.failAction,
+                    new DistributedFailureRequest(jobId),
+                    new BaseTransportResponseHandler<DistributedResultResponse>() {
+                        @Override
+                        public DistributedResultResponse newInstance() {
+                            return new DistributedResultResponse();
+                        }
+
+                        @Override
+                        public void handleResponse(DistributedResultResponse response) {
+                        }
+
+                        @Override
+                        public void handleException(TransportException exp) {
+                            logger.error("[{}] Exception sending distributing collect failure to {}",
+                                    exp, jobId, node.id());
+                            result.setException(exp.getCause());
+                        }
+
+                        @Override
+                        public String executor() {
+                            return ThreadPool.Names.SAME;
+                        }
+                    }
+            );
+        }
+    }
+}
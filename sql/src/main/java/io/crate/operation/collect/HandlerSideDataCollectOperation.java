@@ -38,6 +38,8 @@ import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.List;
 import java.util.Set;
@@ -53,7 +55,9 @@ public class HandlerSideDataCollectOperation implements CollectOperation<Object[
     @Inject
     public HandlerSideDataCollectOperation(ClusterService clusterService,
                                            Settings settings,
+                                           ThreadPool threadPool,
                                            TransportActionProvider transportActionProvider,
+                                           BigArrays bigArrays,
                                            Functions functions,
                                            ReferenceResolver referenceResolver,
                                            InformationSchemaCollectService informationSchemaCollectService,
@@ -63,8 +67,8 @@ public class HandlerSideDataCollectOperation implements CollectOperation<Object[
         this.clusterNormalizer = new EvaluatingNormalizer(functions, RowGranularity.CLUSTER, referenceResolver);
         this.implementationVisitor = new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.CLUSTER);
         this.projectorVisitor = new ProjectionToProjectorVisitor(
-                clusterService, settings,
-                transportActionProvider,
+                clusterService, settings, threadPool,
+                transportActionProvider, bigArrays,
                 implementationVisitor, clusterNormalizer);
     }
 
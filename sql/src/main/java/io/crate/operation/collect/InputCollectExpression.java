@@ -22,33 +22,94 @@
 package io.crate.operation.collect;
 
 import io.crate.core.collections.Row;
+import io.crate.operation.PrimitiveInput;
+import io.crate.operation.projectors.ColumnBatch;
 
-public class InputCollectExpression<ReturnType> extends CollectExpression<ReturnType> {
+/**
+ * reads the value at a position of the current row.
+ *
+ * If it is moved to the row of a {@link ColumnBatch} the value is read from the column
+ * on access, so values of primitive columns are only boxed if they are read using {@link #value()}.
+ */
+public class InputCollectExpression<ReturnType> extends CollectExpression<ReturnType>
+        implements PrimitiveInput<ReturnType> {
 
     private final int position;
     private ReturnType value;
+    private ColumnBatch.Column column;
+    private int row;
 
     public InputCollectExpression(int position) {
         this.position = position;
     }
 
+    public int position() {
+        return position;
+    }
+
     @Override
     public boolean setNextRow(Object... args) {
+        column = null;
         value = (ReturnType) args[position];
         return true;
     }
 
     @Override
     public boolean setNextRow(Row row) {
+        column = null;
         value = (ReturnType) row.get(position);
         return true;
     }
 
+    /**
+     * move to a row of a batch, the batch must not change until the next row is set
+     */
+    public void setNextRow(ColumnBatch batch, int row) {
+        column = batch.column(position);
+        this.row = row;
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public ReturnType value() {
+        if (column != null) {
+            return (ReturnType) column.get(row);
+        }
         return value;
     }
 
+    @Override
+    public boolean isNull() {
+        if (column != null) {
+            return column.isNull(row);
+        }
+        return value == null;
+    }
+
+    @Override
+    public long longValue() {
+        if (column != null) {
+            return column.longValue(row);
+        }
+        return ((Number) value).longValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        if (column != null) {
+            return column.doubleValue(row);
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    @Override
+    public boolean isFloatingPoint() {
+        if (column != null) {
+            return column.isFloatingPoint(row);
+        }
+        return value instanceof Double || value instanceof Float;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
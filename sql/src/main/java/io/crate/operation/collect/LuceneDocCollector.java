@@ -29,9 +29,15 @@ import io.crate.breaker.RamAccountingContext;
 import io.crate.lucene.LuceneQueryBuilder;
 import io.crate.metadata.Functions;
 import io.crate.operation.Input;
+import io.crate.operation.projectors.BatchProjector;
+import io.crate.operation.projectors.BatchProjectors;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.RowCopyingProjector;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
+import io.crate.operation.reference.doc.lucene.FieldCacheExpression;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.types.DataType;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.FieldInfo;
@@ -62,8 +68,17 @@ import java.util.List;
  */
 public class LuceneDocCollector extends Collector implements CrateCollector {
 
+    /**
+     * number of documents buffered in columnar mode before the rows are handed to the downstream
+     */
+    static final int PAGE_SIZE = 1024;
+
     private final CollectorFieldsVisitor fieldsVisitor;
     private boolean visitorEnabled = false;
+    private boolean columnar = false;
+    private int[] pageDocIds;
+    private ColumnBatch page;
+    private int pageSize = 0;
     private AtomicReader currentReader;
     private RamAccountingContext ramAccountingContext;
 
@@ -71,6 +86,7 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
         final HashSet<String> requiredFields;
         private boolean required = false;
+        private boolean sourceRequired = false;
 
         public CollectorFieldsVisitor(int size) {
             requiredFields = new HashSet<>(size);
@@ -85,10 +101,20 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
             return required;
         }
 
+        /**
+         * mark the _source as required, it isn't loaded if only other stored fields are required
+         */
+        public void sourceRequired(boolean sourceRequired) {
+            this.sourceRequired = sourceRequired;
+            if (sourceRequired) {
+                required = true;
+            }
+        }
+
         @Override
         public Status needsField(FieldInfo fieldInfo) throws IOException {
             if (SourceFieldMapper.NAME.equals(fieldInfo.name)) {
-                return Status.YES;
+                return sourceRequired ? Status.YES : Status.NO;
             }
             return requiredFields.contains(fieldInfo.name) ? Status.YES : Status.NO;
         }
@@ -101,6 +127,7 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
     private final SearchContext searchContext;
     private Projector downstream;
     private final List<Input<?>> topLevelInputs;
+    private final List<DataType> outputTypes;
     private final List<LuceneCollectorExpression<?>> collectorExpressions;
 
     public LuceneDocCollector(ThreadPool threadPool,
@@ -112,6 +139,7 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
                               PageCacheRecycler pageCacheRecycler,
                               BigArrays bigArrays,
                               List<Input<?>> inputs,
+                              List<DataType> outputTypes,
                               List<LuceneCollectorExpression<?>> collectorExpressions,
                               Functions functions,
                               WhereClause whereClause,
@@ -120,6 +148,7 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         SearchShardTarget searchShardTarget = new SearchShardTarget(
                 clusterService.localNode().id(), shardId.getIndex(), shardId.id());
         this.topLevelInputs = inputs;
+        this.outputTypes = outputTypes;
         this.collectorExpressions = collectorExpressions;
         this.fieldsVisitor = new CollectorFieldsVisitor(collectorExpressions.size());
 
@@ -171,6 +200,13 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
                     CrateCircuitBreakerService.breakingExceptionMessage(ramAccountingContext.contextId(),
                             ramAccountingContext.limit()));
         }
+        if (columnar) {
+            pageDocIds[pageSize++] = doc;
+            if (pageSize == PAGE_SIZE) {
+                emitPage();
+            }
+            return;
+        }
         Object[] newRow = new Object[topLevelInputs.size()];
         if (visitorEnabled){
             fieldsVisitor.reset();
@@ -189,8 +225,55 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         }
     }
 
+    /**
+     * Read the values of the buffered documents column by column from the field data
+     * into the re-used page batch and hand it over to the downstream.
+     */
+    private void emitPage() throws IOException {
+        int numRows = pageSize;
+        pageSize = 0;
+        for (int c = 0; c < topLevelInputs.size(); c++) {
+            FieldCacheExpression<?, ?> expression = (FieldCacheExpression<?, ?>) topLevelInputs.get(c);
+            ColumnBatch.Column column = page.column(c);
+            for (int r = 0; r < numRows; r++) {
+                expression.setNextDocId(pageDocIds[r]);
+                expression.fillColumn(column, r);
+            }
+        }
+        page.size(numRows);
+        if (!BatchProjectors.setNextRows(downstream, page)) {
+            throw new CollectionAbortedException();
+        }
+    }
+
+    /**
+     * The columnar mode can be used if all columns are read from field data, so no stored fields have
+     * to be loaded, and if the downstream either consumes batches or doesn't keep the row arrays.
+     */
+    private boolean columnarModeApplicable() {
+        if (visitorEnabled
+                || !(downstream instanceof BatchProjector || downstream instanceof RowCopyingProjector)) {
+            return false;
+        }
+        for (LuceneCollectorExpression<?> collectorExpression : collectorExpressions) {
+            if (!(collectorExpression instanceof FieldCacheExpression)) {
+                return false;
+            }
+        }
+        for (Input<?> input : topLevelInputs) {
+            if (!(input instanceof FieldCacheExpression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) throws IOException {
+        if (pageSize > 0) {
+            // buffered documents belong to the previous reader
+            emitPage();
+        }
         this.currentReader = context.reader();
         for (LuceneCollectorExpression expr : collectorExpressions) {
             expr.setNextReader(context);
@@ -213,6 +296,11 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
             collectorExpression.startCollect(collectorContext);
         }
         visitorEnabled = fieldsVisitor.required();
+        columnar = columnarModeApplicable();
+        if (columnar) {
+            pageDocIds = new int[PAGE_SIZE];
+            page = new ColumnBatch(outputTypes, PAGE_SIZE);
+        }
         SearchContext.setCurrent(searchContext);
         Query query = searchContext.query();
         if (query == null) {
@@ -222,6 +310,9 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         // do the lucene search
         try {
             searchContext.searcher().search(query, this);
+            if (pageSize > 0) {
+                emitPage();
+            }
             downstream.upstreamFinished();
         } catch (CollectionAbortedException e) {
             // yeah, that's ok! :)
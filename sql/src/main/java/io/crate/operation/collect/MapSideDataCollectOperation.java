@@ -41,6 +41,7 @@ import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.node.dql.FileUriCollectNode;
@@ -48,9 +49,11 @@ import io.crate.planner.symbol.ValueSymbolVisitor;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.IndexShardMissingException;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.indices.IndexMissingException;
@@ -70,7 +73,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
 
     private final FileCollectInputSymbolVisitor fileInputSymbolVisitor;
     private final CollectServiceResolver collectServiceResolver;
-    private final ProjectionToProjectorVisitor projectorVisitor;
+    protected final ProjectionToProjectorVisitor projectorVisitor;
     private final ThreadPoolExecutor executor;
     private final int poolSize;
     private ESLogger logger = Loggers.getLogger(getClass());
@@ -101,22 +104,26 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
     protected final EvaluatingNormalizer nodeNormalizer;
     protected final ClusterService clusterService;
     private final ImplementationSymbolVisitor nodeImplementationSymbolVisitor;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
     public MapSideDataCollectOperation(ClusterService clusterService,
                                        Settings settings,
                                        TransportActionProvider transportActionProvider,
+                                       BigArrays bigArrays,
                                        Functions functions,
                                        ReferenceResolver referenceResolver,
                                        IndicesService indicesService,
                                        ThreadPool threadPool,
-                                       CollectServiceResolver collectServiceResolver) {
+                                       CollectServiceResolver collectServiceResolver,
+                                       SysNodeStats sysNodeStats) {
         executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH);
         poolSize = executor.getPoolSize();
         this.clusterService = clusterService;
         this.indicesService = indicesService;
         this.nodeNormalizer = new EvaluatingNormalizer(functions, RowGranularity.NODE, referenceResolver);
         this.collectServiceResolver = collectServiceResolver;
+        this.sysNodeStats = sysNodeStats;
         this.nodeImplementationSymbolVisitor = new ImplementationSymbolVisitor(
                 referenceResolver,
                 functions,
@@ -127,7 +134,9 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         this.projectorVisitor = new ProjectionToProjectorVisitor(
                 clusterService,
                 settings,
+                threadPool,
                 transportActionProvider,
+                bigArrays,
                 nodeImplementationSymbolVisitor
         );
     }
@@ -150,8 +159,13 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         String localNodeId = clusterService.localNode().id();
         if (collectNode.executionNodes().contains(localNodeId)) {
             if (!collectNode.routing().containsShards(localNodeId)) {
-                // node collect
-                return handleNodeCollect(collectNode, ramAccountingContext);
+                // node collect, all node expressions share the same stats
+                Releasable statsSnapshot = sysNodeStats.openSnapshot();
+                try {
+                    return handleNodeCollect(collectNode, ramAccountingContext);
+                } finally {
+                    statsSnapshot.close();
+                }
             } else {
                 // shard or doc level
                 return handleShardCollect(collectNode, ramAccountingContext);
@@ -240,8 +254,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         final int numShards = collectNode.routing().numShards(localNodeId);
 
         collectNode = collectNode.normalize(nodeNormalizer);
-        ShardProjectorChain projectorChain = new ShardProjectorChain(numShards,
-                collectNode.projections(), projectorVisitor, ramAccountingContext);
+        ShardProjectorChain projectorChain = newShardProjectorChain(numShards, collectNode, ramAccountingContext);
 
         final ShardCollectFuture result = getShardCollectFuture(numShards, projectorChain, collectNode);
 
@@ -361,6 +374,18 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         }
     }
 
+    /**
+     * create the projector chain the collected rows of all shards are passed to
+     *
+     * @param numShards   number of shards collecting into the chain
+     * @param collectNode the (normalized) collectNode containing the projections
+     */
+    protected ShardProjectorChain newShardProjectorChain(int numShards,
+                                                         CollectNode collectNode,
+                                                         RamAccountingContext ramAccountingContext) {
+        return new ShardProjectorChain(numShards, collectNode.projections(), projectorVisitor, ramAccountingContext);
+    }
+
     /**
      * chose the right ShardCollectFuture for this class
      *
@@ -32,11 +32,15 @@ public class ModuloBucketingIterator extends BucketingIterator {
         super(numBuckets, rowIterable);
     }
 
+    @Override
+    protected int getBucket(@Nullable Object[] row) {
+        return bucket(numBuckets, row);
+    }
+
     /**
      * get bucket number by doing modulo hashcode of first row-element
      */
-    @Override
-    protected int getBucket(@Nullable Object[] row) {
+    public static int bucket(int numBuckets, @Nullable Object[] row) {
         if (row == null || row.length == 0 || row[0] == null) {
             return 0;
         } else {
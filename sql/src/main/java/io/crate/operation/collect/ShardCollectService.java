@@ -30,6 +30,7 @@ import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.Functions;
 import io.crate.metadata.shard.ShardReferenceResolver;
 import io.crate.metadata.shard.blob.BlobShardReferenceResolver;
+import io.crate.operation.ExpressionCompiler;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.blobs.BlobDocCollector;
@@ -41,6 +42,7 @@ import io.crate.operation.reference.doc.lucene.LuceneDocLevelReferenceResolver;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbols;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.cluster.ClusterService;
@@ -58,6 +60,7 @@ import java.util.UUID;
 public class ShardCollectService {
 
     private final CollectInputSymbolVisitor<?> docInputSymbolVisitor;
+    private final ExpressionCompiler<CollectInputSymbolVisitor.Context> docExpressionCompiler;
     private final ThreadPool threadPool;
     private final ClusterService clusterService;
     private final ShardId shardId;
@@ -107,6 +110,7 @@ public class ShardCollectService {
                 functions,
                 resolver
         );
+        this.docExpressionCompiler = new ExpressionCompiler<>(docInputSymbolVisitor);
         this.shardImplementationSymbolVisitor = new ImplementationSymbolVisitor(
                 (isBlobShard ? blobShardReferenceResolver :referenceResolver),
                 functions,
@@ -120,7 +124,9 @@ public class ShardCollectService {
         this.projectorVisitor = new ProjectionToProjectorVisitor(
                 clusterService,
                 settings,
+                threadPool,
                 transportActionProvider,
+                bigArrays,
                 shardImplementationSymbolVisitor,
                 shardNormalizer,
                 shardId,
@@ -176,7 +182,7 @@ public class ShardCollectService {
     }
 
     private CrateCollector getLuceneIndexCollector(CollectNode collectNode, Projector downstream) throws Exception {
-        CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.process(collectNode);
+        CollectInputSymbolVisitor.Context docCtx = docExpressionCompiler.process(collectNode);
         return new LuceneDocCollector(
                 threadPool,
                 clusterService,
@@ -187,6 +193,7 @@ public class ShardCollectService {
                 pageCacheRecycler,
                 bigArrays,
                 docCtx.topLevelInputs(),
+                Symbols.extractTypes(collectNode.toCollect()),
                 docCtx.docLevelExpressions(),
                 functions,
                 collectNode.whereClause(),
@@ -33,6 +33,7 @@ import io.crate.operation.projectors.ResultProvider;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.Projection;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -73,6 +74,7 @@ public class ShardProjectorChain implements ResultProvider {
     private final RamAccountingContext ramAccountingContext;
     protected final List<Projector> shardProjectors;
     protected final List<Projector> nodeProjectors;
+    private final Projector finalDownstream;
     private Projector firstNodeProjector;
     private ResultProvider lastProjector;
     private int shardProjectionsIndex = -1;
@@ -82,12 +84,26 @@ public class ShardProjectorChain implements ResultProvider {
                                List<Projection> projections,
                                ProjectionToProjectorVisitor nodeProjectorVisitor,
                                RamAccountingContext ramAccountingContext) {
+        this(numShards, projections, nodeProjectorVisitor, ramAccountingContext, null);
+    }
+
+    /**
+     * @param finalDownstream if given, the rows leaving the chain are passed to this projector
+     *                        instead of being collected. It is not used if the last projector of the chain
+     *                        is a {@link ResultProvider} itself.
+     */
+    public <T extends Projector & ResultProvider> ShardProjectorChain(int numShards,
+                               List<Projection> projections,
+                               ProjectionToProjectorVisitor nodeProjectorVisitor,
+                               RamAccountingContext ramAccountingContext,
+                               @Nullable T finalDownstream) {
         this.projections = projections;
         this.ramAccountingContext = ramAccountingContext;
+        this.finalDownstream = finalDownstream;
         nodeProjectors = new ArrayList<>();
 
         if (projections.size() == 0) {
-            firstNodeProjector = new CollectingProjector();
+            firstNodeProjector = newFinalProjector();
             lastProjector = (ResultProvider) firstNodeProjector;
             nodeProjectors.add(firstNodeProjector);
             shardProjectors = ImmutableList.of();
@@ -123,7 +139,7 @@ public class ShardProjectorChain implements ResultProvider {
             // shardprojector will be created later
             if (nodeProjectors.isEmpty()) {
                 // no node projectors
-                firstNodeProjector = new CollectingProjector();
+                firstNodeProjector = newFinalProjector();
                 lastProjector = (ResultProvider)firstNodeProjector;
             }
         } else {
@@ -134,12 +150,20 @@ public class ShardProjectorChain implements ResultProvider {
             if (previousUpstream instanceof ResultProvider) {
                 lastProjector = (ResultProvider) previousUpstream;
             } else {
-                lastProjector = new CollectingProjector();
-                previousUpstream.downstream((Projector) lastProjector);
+                Projector projector = newFinalProjector();
+                lastProjector = (ResultProvider) projector;
+                previousUpstream.downstream(projector);
             }
         }
     }
 
+    private Projector newFinalProjector() {
+        if (finalDownstream != null) {
+            return finalDownstream;
+        }
+        return new CollectingProjector();
+    }
+
 
     /**
      * Creates a new shard downstream chain if needed and returns a projector to be used as downstream
@@ -165,6 +189,11 @@ public class ShardProjectorChain implements ResultProvider {
         return projector;
     }
 
+    @Nullable
+    public Projector finalDownstream() {
+        return finalDownstream;
+    }
+
     public ListenableFuture<Object[][]> result() {
         return lastProjector.result();
     }
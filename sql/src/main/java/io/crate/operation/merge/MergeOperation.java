@@ -32,6 +32,8 @@ import io.crate.operation.projectors.Projector;
 import io.crate.planner.node.dql.MergeNode;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -49,7 +51,9 @@ public class MergeOperation implements DownstreamOperation {
 
     public MergeOperation(ClusterService clusterService,
                           Settings settings,
+                          ThreadPool threadPool,
                           TransportActionProvider transportActionProvider,
+                          BigArrays bigArrays,
                           ImplementationSymbolVisitor symbolVisitor,
                           MergeNode mergeNode,
                           RamAccountingContext ramAccountingContext) {
@@ -57,7 +61,9 @@ public class MergeOperation implements DownstreamOperation {
                 new ProjectionToProjectorVisitor(
                         clusterService,
                         settings,
+                        threadPool,
                         transportActionProvider,
+                        bigArrays,
                         symbolVisitor),
                 ramAccountingContext
         );
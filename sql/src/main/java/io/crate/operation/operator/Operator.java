@@ -7,6 +7,7 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.ParameterLiteral;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
@@ -20,12 +21,13 @@ public abstract class Operator<I> extends Scalar<Boolean, I> implements Function
     }
 
     protected boolean containsNull(Symbol left, Symbol right) {
-        if (left.symbolType().isValueSymbol() && ((Input<?>)left).value() == null) {
-            return true;
-        }
-        if (right.symbolType().isValueSymbol() && ((Input<?>)right).value() == null) {
-            return true;
+        return isNullValue(left) || isNullValue(right);
+    }
+
+    private static boolean isNullValue(Symbol symbol) {
+        if (symbol instanceof ParameterLiteral) {
+            return ((ParameterLiteral) symbol).isNull();
         }
-        return false;
+        return symbol.symbolType().isValueSymbol() && ((Input<?>) symbol).value() == null;
     }
 }
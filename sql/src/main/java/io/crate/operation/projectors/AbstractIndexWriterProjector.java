@@ -45,6 +45,7 @@ import org.elasticsearch.action.bulk.TransportShardUpsertActionDelegate;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.lucene.BytesRefs;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -101,6 +102,7 @@ public abstract class AbstractIndexWriterProjector implements Projector, Project
 
     protected void createBulkShardProcessor(ClusterService clusterService,
                                             Settings settings,
+                                            ThreadPool threadPool,
                                             TransportShardUpsertActionDelegate transportShardUpsertAction,
                                             TransportCreateIndexAction transportCreateIndexAction,
                                             @Nullable Integer bulkActions,
@@ -111,6 +113,7 @@ public abstract class AbstractIndexWriterProjector implements Projector, Project
         bulkShardProcessor = new BulkShardProcessor(
                 clusterService,
                 settings,
+                threadPool,
                 transportShardUpsertAction,
                 transportCreateIndexAction,
                 shardingProjector,
@@ -31,12 +31,14 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class AggregationProjector implements Projector, ProjectorUpstream {
+public class AggregationProjector implements RowCopyingProjector, BatchProjector, ProjectorUpstream {
 
     private final Aggregator[] aggregators;
     private final Set<CollectExpression<?>> collectExpressions;
     private final Object[] row;
     private final Object[] states;
+    private final BatchRowCursor cursor;
+    private final boolean[] aggregatesBatch;
     private Projector downstream;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> upstreamFailure = new AtomicReference<>(null);
@@ -47,6 +49,8 @@ public class AggregationProjector implements Projector, ProjectorUpstream {
         row = new Object[aggregations.length];
         states = new Object[aggregations.length];
         this.collectExpressions = collectExpressions;
+        this.cursor = new BatchRowCursor(collectExpressions);
+        this.aggregatesBatch = new boolean[aggregations.length];
         aggregators = new Aggregator[aggregations.length];
         for (int i = 0; i < aggregators.length; i++) {
             aggregators[i] = new Aggregator(
@@ -80,16 +84,49 @@ public class AggregationProjector implements Projector, ProjectorUpstream {
 
     @Override
     public synchronized boolean setNextRow(Object... row) {
+        processRow(row);
+        //noinspection ThrowableResultOfMethodCallIgnored
+        return upstreamFailure.get() == null;
+    }
+
+    /**
+     * aggregations of a column which support it, like count, sum, min and max of numeric columns,
+     * aggregate the whole column at once.
+     * The other aggregations iterate the rows and read the values from the columns.
+     */
+    @Override
+    public synchronized boolean setNextRows(ColumnBatch batch) {
+        boolean iterateRows = false;
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregatesBatch[i] = aggregators[i].supportsBatch(batch);
+            if (aggregatesBatch[i]) {
+                states[i] = aggregators[i].processBatch(states[i], batch);
+            } else {
+                iterateRows = true;
+            }
+        }
+        if (iterateRows) {
+            for (int r = 0; r < batch.size(); r++) {
+                cursor.setNextRow(batch, r);
+                for (int i = 0; i < aggregators.length; i++) {
+                    if (!aggregatesBatch[i]) {
+                        states[i] = aggregators[i].processRow(states[i]);
+                    }
+                }
+            }
+        }
+        //noinspection ThrowableResultOfMethodCallIgnored
+        return upstreamFailure.get() == null;
+    }
+
+    private void processRow(Object[] row) {
         for (CollectExpression<?> collectExpression : collectExpressions) {
             collectExpression.setNextRow(row);
         }
         for (int i = 0; i < aggregators.length; i++) {
             Aggregator aggregator = aggregators[i];
             states[i] = aggregator.processRow(states[i]);
-
         }
-        //noinspection ThrowableResultOfMethodCallIgnored
-        return upstreamFailure.get() == null;
     }
 
     @Override
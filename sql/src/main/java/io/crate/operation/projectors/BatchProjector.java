@@ -0,0 +1,42 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+/**
+ * A Projector that can be fed with whole batches of rows instead of row by row.
+ *
+ * Upstreams should use {@link BatchProjectors#setNextRows(Projector, ColumnBatch)}
+ * to hand over batches, which falls back to row mode for downstreams without batch support.
+ */
+public interface BatchProjector extends Projector {
+
+    /**
+     * feed this Projector with the next batch of rows.
+     * The batch must not be used anymore once this method returned.
+     *
+     * This method must be thread safe.
+     *
+     * @return false if this projection does not need any more rows, true otherwise.
+     */
+    public boolean setNextRows(ColumnBatch batch);
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+public final class BatchProjectors {
+
+    private BatchProjectors() {
+    }
+
+    /**
+     * hand over a batch to the downstream, row by row if the downstream doesn't support batches.
+     * Row arrays are only re-used if the downstream copies the rows.
+     *
+     * @return false if the downstream does not need any more rows, true otherwise.
+     */
+    public static boolean setNextRows(Projector downstream, ColumnBatch batch) {
+        if (downstream instanceof BatchProjector) {
+            return ((BatchProjector) downstream).setNextRows(batch);
+        }
+        boolean reuseRow = downstream instanceof RowCopyingProjector;
+        Object[] row = null;
+        for (int r = 0; r < batch.size(); r++) {
+            if (row == null || !reuseRow) {
+                row = new Object[batch.numColumns()];
+            }
+            batch.fillRow(r, row);
+            if (!downstream.setNextRow(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the collect expressions of a projector to the rows of a {@link ColumnBatch}.
+ *
+ * If all expressions read input columns they read the values straight from the columns of the batch,
+ * so values of primitive columns are only boxed if an expression is read using its value().
+ * Otherwise every row is materialized into a re-used row array.
+ */
+class BatchRowCursor {
+
+    private final List<InputCollectExpression<?>> inputExpressions;
+    private final Iterable<? extends CollectExpression> expressions;
+    private Object[] row;
+
+    BatchRowCursor(Iterable<? extends CollectExpression> expressions) {
+        this.expressions = expressions;
+        List<InputCollectExpression<?>> inputExpressions = new ArrayList<>();
+        for (CollectExpression<?> expression : expressions) {
+            if (!(expression instanceof InputCollectExpression)) {
+                inputExpressions = null;
+                break;
+            }
+            inputExpressions.add((InputCollectExpression<?>) expression);
+        }
+        this.inputExpressions = inputExpressions;
+    }
+
+    void setNextRow(ColumnBatch batch, int row) {
+        if (inputExpressions != null) {
+            for (int i = 0; i < inputExpressions.size(); i++) {
+                inputExpressions.get(i).setNextRow(batch, row);
+            }
+            return;
+        }
+        if (this.row == null || this.row.length != batch.numColumns()) {
+            this.row = new Object[batch.numColumns()];
+        }
+        batch.fillRow(row, this.row);
+        for (CollectExpression expression : expressions) {
+            expression.setNextRow(this.row);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A batch of rows stored column by column.
+ *
+ * Integer, long and double columns are stored in primitive arrays, all other columns as objects.
+ * Null values are tracked in a bitmap per column.
+ *
+ * A batch is re-used by its producer, consumers must not keep a reference to it
+ * after {@link BatchProjector#setNextRows(ColumnBatch)} returned.
+ */
+public class ColumnBatch {
+
+    private final List<DataType> types;
+    private final Column[] columns;
+    private final int capacity;
+    private int size = 0;
+
+    public ColumnBatch(List<DataType> types, int capacity) {
+        this.types = types;
+        this.capacity = capacity;
+        this.columns = new Column[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = newColumn(types.get(i), capacity);
+        }
+    }
+
+    private static Column newColumn(DataType type, int capacity) {
+        if (type.equals(DataTypes.LONG) || type.equals(DataTypes.TIMESTAMP)) {
+            return new LongColumn(capacity);
+        } else if (type.equals(DataTypes.INTEGER)) {
+            return new IntColumn(capacity);
+        } else if (type.equals(DataTypes.DOUBLE)) {
+            return new DoubleColumn(capacity);
+        }
+        return new ObjectColumn(capacity);
+    }
+
+    /**
+     * @return a new empty batch with the same column types and capacity
+     */
+    public ColumnBatch newEmptyBatch() {
+        return new ColumnBatch(types, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void size(int size) {
+        assert size <= capacity : "size must not exceed the capacity";
+        this.size = size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    public Column column(int column) {
+        return columns[column];
+    }
+
+    @Nullable
+    public Object get(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    public void set(int row, int column, @Nullable Object value) {
+        columns[column].set(row, value);
+    }
+
+    /**
+     * copy the values of a row into the given row array
+     */
+    public void fillRow(int row, Object[] target) {
+        for (int c = 0; c < columns.length; c++) {
+            target[c] = columns[c].get(row);
+        }
+    }
+
+    /**
+     * copy a row of another batch with the same column types into this batch
+     */
+    public void copyRow(ColumnBatch source, int sourceRow, int row) {
+        for (int c = 0; c < columns.length; c++) {
+            columns[c].copy(source.columns[c], sourceRow, row);
+        }
+    }
+
+    public abstract static class Column {
+
+        protected final BitSet nulls;
+
+        Column(int capacity) {
+            nulls = new BitSet(capacity);
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Nullable
+        public Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return getNotNull(row);
+        }
+
+        public void set(int row, @Nullable Object value) {
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                nulls.clear(row);
+                setNotNull(row, value);
+            }
+        }
+
+        /**
+         * @return the number of null values within the first <code>size</code> rows
+         */
+        public int countNulls(int size) {
+            return nulls.get(0, size).cardinality();
+        }
+
+        /**
+         * @return the value of a non null row of a numeric column as long, primitive columns don't box it
+         */
+        public long longValue(int row) {
+            return ((Number) getNotNull(row)).longValue();
+        }
+
+        /**
+         * @return the value of a non null row of a numeric column as double, primitive columns don't box it
+         */
+        public double doubleValue(int row) {
+            return ((Number) getNotNull(row)).doubleValue();
+        }
+
+        /**
+         * @return true if the value of a non null row is a floating point number
+         */
+        public boolean isFloatingPoint(int row) {
+            Object value = getNotNull(row);
+            return value instanceof Double || value instanceof Float;
+        }
+
+        void copy(Column source, int sourceRow, int row) {
+            set(row, source.get(sourceRow));
+        }
+
+        protected abstract Object getNotNull(int row);
+
+        protected abstract void setNotNull(int row, Object value);
+    }
+
+    public static class LongColumn extends Column {
+
+        private final long[] values;
+
+        LongColumn(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long longValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double doubleValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isFloatingPoint(int row) {
+            return false;
+        }
+
+        public void setLong(int row, long value) {
+            nulls.clear(row);
+            values[row] = value;
+        }
+
+        @Override
+        void copy(Column source, int sourceRow, int row) {
+            if (source.isNull(sourceRow)) {
+                nulls.set(row);
+            } else {
+                setLong(row, ((LongColumn) source).values[sourceRow]);
+            }
+        }
+
+        @Override
+        protected Object getNotNull(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void setNotNull(int row, Object value) {
+            values[row] = ((Number) value).longValue();
+        }
+    }
+
+    public static class IntColumn extends Column {
+
+        private final int[] values;
+
+        IntColumn(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long longValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double doubleValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isFloatingPoint(int row) {
+            return false;
+        }
+
+        public void setInt(int row, int value) {
+            nulls.clear(row);
+            values[row] = value;
+        }
+
+        @Override
+        void copy(Column source, int sourceRow, int row) {
+            if (source.isNull(sourceRow)) {
+                nulls.set(row);
+            } else {
+                setInt(row, ((IntColumn) source).values[sourceRow]);
+            }
+        }
+
+        @Override
+        protected Object getNotNull(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void setNotNull(int row, Object value) {
+            values[row] = ((Number) value).intValue();
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+
+        private final double[] values;
+
+        DoubleColumn(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long longValue(int row) {
+            return (long) values[row];
+        }
+
+        @Override
+        public double doubleValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isFloatingPoint(int row) {
+            return true;
+        }
+
+        public void setDouble(int row, double value) {
+            nulls.clear(row);
+            values[row] = value;
+        }
+
+        @Override
+        void copy(Column source, int sourceRow, int row) {
+            if (source.isNull(sourceRow)) {
+                nulls.set(row);
+            } else {
+                setDouble(row, ((DoubleColumn) source).values[sourceRow]);
+            }
+        }
+
+        @Override
+        protected Object getNotNull(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void setNotNull(int row, Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+    }
+
+    public static class ObjectColumn extends Column {
+
+        private final Object[] values;
+
+        ObjectColumn(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+
+        @Override
+        protected Object getNotNull(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void setNotNull(int row, Object value) {
+            values[row] = value;
+        }
+    }
+}
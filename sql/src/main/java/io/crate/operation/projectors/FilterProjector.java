@@ -25,15 +25,18 @@ import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class FilterProjector implements Projector, ProjectorUpstream {
+public class FilterProjector implements BatchProjector, ProjectorUpstream {
 
     private final CollectExpression[] collectExpressions;
     private final Input<Boolean> condition;
+    private final BatchRowCursor cursor;
 
     private Projector downstream;
+    private ColumnBatch matchingRows;
     private AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> upstreamFailure = new AtomicReference<>(null);
 
@@ -41,6 +44,7 @@ public class FilterProjector implements Projector, ProjectorUpstream {
                            Input<Boolean> condition) {
         this.collectExpressions = collectExpressions;
         this.condition = condition;
+        this.cursor = new BatchRowCursor(Arrays.asList(collectExpressions));
     }
 
     @Override
@@ -67,6 +71,36 @@ public class FilterProjector implements Projector, ProjectorUpstream {
         return true;
     }
 
+    /**
+     * evaluates the condition for the whole batch and hands over the matching rows as one batch.
+     * The condition reads the values from the columns of the batch, matching rows are copied
+     * column by column, so primitive values are not boxed.
+     */
+    @Override
+    public synchronized boolean setNextRows(ColumnBatch batch) {
+        if (downstream == null) {
+            return true;
+        }
+        if (matchingRows == null
+                || matchingRows.capacity() < batch.size()
+                || matchingRows.numColumns() != batch.numColumns()) {
+            matchingRows = batch.newEmptyBatch();
+        }
+        int numMatching = 0;
+        for (int r = 0; r < batch.size(); r++) {
+            cursor.setNextRow(batch, r);
+            Boolean queryResult = condition.value();
+            if (queryResult != null && queryResult) {
+                matchingRows.copyRow(batch, r, numMatching++);
+            }
+        }
+        if (numMatching == 0) {
+            return true;
+        }
+        matchingRows.size(numMatching);
+        return BatchProjectors.setNextRows(downstream, matchingRows);
+    }
+
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
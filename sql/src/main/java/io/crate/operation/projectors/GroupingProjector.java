@@ -22,38 +22,51 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.breaker.SizeEstimator;
 import io.crate.breaker.SizeEstimatorFactory;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.aggregation.Aggregator;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.projectors.grouping.GroupKeys;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class GroupingProjector implements Projector, ProjectorUpstream {
+public class GroupingProjector implements RowCopyingProjector, BatchProjector, ProjectorUpstream {
 
     private final CollectExpression[] collectExpressions;
 
     private final ESLogger logger = Loggers.getLogger(getClass());
     private final RamAccountingContext ramAccountingContext;
+    private final List<? extends DataType> keyTypes;
+    private final BigArrays bigArrays;
+    @Nullable
+    private final Supplier<ImplementationSymbolVisitor.Context> contextSupplier;
 
     private Grouper grouper;
+    private PerThreadStates<HashGrouper> parallelGroupers;
     private Projector downstream;
     private AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> failure = new AtomicReference<>(null);
@@ -63,11 +76,37 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
                              CollectExpression[] collectExpressions,
                              AggregationContext[] aggregations,
                              RamAccountingContext ramAccountingContext) {
+        this(keyTypes, keyInputs, collectExpressions, aggregations, ramAccountingContext,
+                BigArrays.NON_RECYCLING_INSTANCE, null);
+    }
+
+    /**
+     * @param contextSupplier if given, creates a new set of key inputs (top level inputs),
+     *                        collect expressions and aggregations on every call.
+     *                        It enables the parallel mode if more than one upstream is registered:
+     *                        every thread feeding rows gets its own grouper and
+     *                        the groupers are merged once all upstreams are finished.
+     */
+    public GroupingProjector(List<? extends DataType> keyTypes,
+                             List<Input<?>> keyInputs,
+                             CollectExpression[] collectExpressions,
+                             AggregationContext[] aggregations,
+                             RamAccountingContext ramAccountingContext,
+                             BigArrays bigArrays,
+                             @Nullable Supplier<ImplementationSymbolVisitor.Context> contextSupplier) {
         assert keyTypes.size() == keyInputs.size() : "number of key types must match with number of key inputs";
         assert allTypesKnown(keyTypes) : "must have a known type for each key input";
         this.collectExpressions = collectExpressions;
         this.ramAccountingContext = ramAccountingContext;
+        this.keyTypes = keyTypes;
+        this.bigArrays = bigArrays;
+        this.contextSupplier = contextSupplier;
+        this.grouper = newGrouper(keyInputs, collectExpressions, aggregations);
+    }
 
+    private Grouper newGrouper(List<Input<?>> keyInputs,
+                               CollectExpression[] collectExpressions,
+                               AggregationContext[] aggregations) {
         Aggregator[] aggregators = new Aggregator[aggregations.length];
         for (int i = 0; i < aggregations.length; i++) {
             aggregators[i] = new Aggregator(
@@ -80,11 +119,21 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
 
         // grouper object size overhead
         ramAccountingContext.addBytes(8);
+        GroupKeys groupKeys = GroupKeys.create(keyInputs, keyTypes, bigArrays);
+        if (groupKeys != null) {
+            return new HashGrouper(groupKeys, keyInputs, collectExpressions, aggregators, bigArrays);
+        }
+        return newMapGrouper(keyInputs, collectExpressions, aggregators);
+    }
+
+    private MapGrouper newMapGrouper(List<Input<?>> keyInputs,
+                                     CollectExpression[] collectExpressions,
+                                     Aggregator[] aggregators) {
         if (keyInputs.size() == 1) {
-            grouper = new SingleKeyGrouper(keyInputs.get(0), keyTypes.get(0),
+            return new SingleKeyGrouper(keyInputs.get(0), keyTypes.get(0),
                     collectExpressions, aggregators);
         } else {
-            grouper = new ManyKeyGrouper(keyInputs, keyTypes,
+            return new ManyKeyGrouper(keyInputs, keyTypes,
                     collectExpressions, aggregators);
         }
     }
@@ -109,6 +158,20 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
         for (CollectExpression collectExpression : collectExpressions) {
             collectExpression.startCollect();
         }
+        if (contextSupplier != null && remainingUpstreams.get() > 1 && grouper instanceof HashGrouper) {
+            parallelGroupers = new PerThreadStates<>(new Supplier<HashGrouper>() {
+                @Override
+                public HashGrouper get() {
+                    ImplementationSymbolVisitor.Context context = contextSupplier.get();
+                    CollectExpression[] expressions = context.collectExpressions().toArray(
+                            new CollectExpression[context.collectExpressions().size()]);
+                    for (CollectExpression expression : expressions) {
+                        expression.startCollect();
+                    }
+                    return (HashGrouper) newGrouper(context.topLevelInputs(), expressions, context.aggregations());
+                }
+            });
+        }
 
         if (remainingUpstreams.get() <= 0) {
             upstreamFinished();
@@ -116,18 +179,46 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
     }
 
     @Override
-    public synchronized boolean setNextRow(final Object... row) {
+    public boolean setNextRow(final Object... row) {
         try {
-            return grouper.setNextRow(row);
+            if (parallelGroupers != null) {
+                return parallelGroupers.get().setNextRow(row);
+            }
+            synchronized (this) {
+                return grouper.setNextRow(row);
+            }
         } catch (CircuitBreakingException e) {
-            if (downstream != null) {
-                downstream.upstreamFailed(e);
-                downstream = null;
+            failDownstream(e);
+            throw e;
+        }
+    }
+
+    /**
+     * the keys and aggregation inputs are read from the columns of the batch,
+     * primitive keys are hashed without boxing them.
+     */
+    @Override
+    public boolean setNextRows(ColumnBatch batch) {
+        try {
+            if (parallelGroupers != null) {
+                return parallelGroupers.get().setNextRows(batch);
             }
+            synchronized (this) {
+                return grouper.setNextRows(batch);
+            }
+        } catch (CircuitBreakingException e) {
+            failDownstream(e);
             throw e;
         }
     }
 
+    private synchronized void failDownstream(Throwable t) {
+        if (downstream != null) {
+            downstream.upstreamFailed(t);
+            downstream = null;
+        }
+    }
+
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
@@ -137,6 +228,12 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
     public void upstreamFinished() {
         if (remainingUpstreams.decrementAndGet() <= 0) {
             if (grouper != null) {
+                if (parallelGroupers != null) {
+                    for (HashGrouper threadGrouper : parallelGroupers.drain()) {
+                        ((HashGrouper) grouper).merge(threadGrouper);
+                        threadGrouper.close();
+                    }
+                }
                 grouper.finish();
                 cleanUp();
             }
@@ -192,39 +289,312 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
     }
 
     private void cleanUp() {
+        if (grouper != null) {
+            grouper.close();
+        }
         grouper = null;
+        if (parallelGroupers != null) {
+            Releasables.close(parallelGroupers.drain());
+        }
     }
 
-    private interface Grouper {
+    private interface Grouper extends Releasable {
         boolean setNextRow(final Object... row);
+        boolean setNextRows(ColumnBatch batch);
         Object[][] finish();
     }
 
-    private class SingleKeyGrouper implements Grouper {
+    /**
+     * moves the collect expressions of a grouper to the rows of a batch
+     * and groups them one by one
+     */
+    private abstract static class AbstractGrouper implements Grouper {
 
-        private final Map<Object, Object[]> result;
+        protected final CollectExpression[] collectExpressions;
+        private final BatchRowCursor cursor;
+
+        AbstractGrouper(CollectExpression[] collectExpressions) {
+            this.collectExpressions = collectExpressions;
+            this.cursor = new BatchRowCursor(Arrays.asList(collectExpressions));
+        }
+
+        @Override
+        public boolean setNextRow(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            return groupCurrentRow();
+        }
+
+        @Override
+        public boolean setNextRows(ColumnBatch batch) {
+            for (int r = 0; r < batch.size(); r++) {
+                cursor.setNextRow(batch, r);
+                if (!groupCurrentRow()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * group the row the collect expressions have been moved to
+         */
+        protected abstract boolean groupCurrentRow();
+    }
+
+    /**
+     * Grouper for primitive and string keys.
+     *
+     * The keys are mapped to dense group ids by {@link GroupKeys} and the aggregation
+     * states are kept in one flat array where the states of a group start at
+     * <code>id * aggregators.length</code>.
+     * The ram accounting uses the actual size of the underlying big arrays.
+     *
+     * If an integral key receives a floating point value (e.g. from an untyped merge input)
+     * the groups are moved to a map based grouper which keeps the key values as they are.
+     */
+    private class HashGrouper extends AbstractGrouper {
+
+        private final GroupKeys groupKeys;
+        private final List<Input<?>> keyInputs;
+        private final int numKeys;
         private final Aggregator[] aggregators;
+        private final BigArrays bigArrays;
+        private ObjectArray<Object> states;
+        private long accountedBytes = 0;
+        @Nullable
+        private MapGrouper fallback;
+
+        public HashGrouper(GroupKeys groupKeys,
+                           List<Input<?>> keyInputs,
+                           CollectExpression[] collectExpressions,
+                           Aggregator[] aggregators,
+                           BigArrays bigArrays) {
+            super(collectExpressions);
+            this.groupKeys = groupKeys;
+            this.keyInputs = keyInputs;
+            this.numKeys = keyInputs.size();
+            this.aggregators = aggregators;
+            this.bigArrays = bigArrays;
+            this.states = bigArrays.newObjectArray(Math.max(1, aggregators.length));
+            accountRam();
+        }
+
+        private void accountRam() {
+            long bytesUsed = groupKeys.ramBytesUsed() + states.ramBytesUsed();
+            ramAccountingContext.addBytes(bytesUsed - accountedBytes);
+            accountedBytes = bytesUsed;
+        }
+
+        @Override
+        protected boolean groupCurrentRow() {
+            if (fallback != null) {
+                return fallback.groupCurrentRow();
+            }
+            long id;
+            try {
+                id = groupKeys.add();
+            } catch (GroupKeys.NonIntegralKeyException e) {
+                switchToMapGrouper();
+                return fallback.groupCurrentRow();
+            }
+            if (id >= 0) {
+                long offset = id * aggregators.length;
+                states = bigArrays.grow(states, offset + aggregators.length);
+                for (int i = 0; i < aggregators.length; i++) {
+                    Object state = aggregators[i].prepareState();
+                    states.set(offset + i, aggregators[i].processRow(state));
+                }
+                accountRam();
+            } else {
+                long offset = (-1 - id) * aggregators.length;
+                for (int i = 0; i < aggregators.length; i++) {
+                    states.set(offset + i, aggregators[i].processRow(states.get(offset + i)));
+                }
+            }
+            return true;
+        }
+
+        /**
+         * move all groups into a map based grouper and release the key hash and the states
+         */
+        private void switchToMapGrouper() {
+            MapGrouper mapGrouper = newMapGrouper(keyInputs, collectExpressions, aggregators);
+            mergeGroupsInto(mapGrouper);
+            Releasables.close(groupKeys, states);
+            states = null;
+            ramAccountingContext.addBytes(-accountedBytes);
+            accountedBytes = 0;
+            fallback = mapGrouper;
+        }
+
+        private void mergeGroupsInto(MapGrouper target) {
+            Object[] keyValues = new Object[numKeys];
+            long numGroups = groupKeys.size();
+            for (long id = 0; id < numGroups; id++) {
+                groupKeys.write(id, keyValues);
+                long offset = id * aggregators.length;
+                Object[] groupStates = new Object[aggregators.length];
+                for (int i = 0; i < aggregators.length; i++) {
+                    groupStates[i] = states.get(offset + i);
+                }
+                target.mergeGroup(keyValues, groupStates);
+            }
+        }
+
+        /**
+         * merge the groups of another grouper into this one
+         */
+        public void merge(HashGrouper other) {
+            if (fallback == null && other.fallback != null) {
+                switchToMapGrouper();
+            }
+            if (fallback != null) {
+                if (other.fallback != null) {
+                    other.fallback.mergeInto(fallback);
+                } else {
+                    other.mergeGroupsInto(fallback);
+                }
+                return;
+            }
+            Object[] keyValues = new Object[numKeys];
+            long numGroups = other.groupKeys.size();
+            for (long otherId = 0; otherId < numGroups; otherId++) {
+                other.groupKeys.write(otherId, keyValues);
+                long otherOffset = otherId * aggregators.length;
+                long id = groupKeys.add(keyValues);
+                if (id >= 0) {
+                    long offset = id * aggregators.length;
+                    states = bigArrays.grow(states, offset + aggregators.length);
+                    for (int i = 0; i < aggregators.length; i++) {
+                        states.set(offset + i, other.states.get(otherOffset + i));
+                    }
+                    accountRam();
+                } else {
+                    long offset = (-1 - id) * aggregators.length;
+                    for (int i = 0; i < aggregators.length; i++) {
+                        states.set(offset + i, aggregators[i].reduce(
+                                states.get(offset + i), other.states.get(otherOffset + i)));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Object[][] finish() {
+            if (fallback != null) {
+                return fallback.finish();
+            }
+            Throwable throwable = failure.get();
+            if (throwable != null && downstream != null) {
+                downstream.upstreamFailed(throwable);
+            }
+
+            int numGroups = (int) groupKeys.size();
+            // account the multi-dimension `rows` array
+            // 1st level
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + numGroups * 4));
+            // 2nd level
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 +
+                    (numKeys + aggregators.length) * 4));
+            Object[][] rows = new Object[numGroups][numKeys + aggregators.length];
+            boolean sendToDownStream = downstream != null;
+            for (int id = 0; id < numGroups; id++) {
+                Object[] row = rows[id];
+                groupKeys.write(id, row);
+                long offset = (long) id * aggregators.length;
+                for (int i = 0; i < aggregators.length; i++) {
+                    row[numKeys + i] = aggregators[i].finishCollect(states.get(offset + i));
+                }
+                if (sendToDownStream) {
+                    sendToDownStream = downstream.setNextRow(row);
+                }
+            }
+            if (downstream != null) {
+                downstream.upstreamFinished();
+            }
+            return rows;
+        }
+
+        @Override
+        public void close() {
+            if (fallback == null) {
+                Releasables.close(groupKeys, states);
+            }
+        }
+    }
+
+    /**
+     * Grouper which keeps the groups in a map with the key values as they are
+     */
+    private abstract class MapGrouper extends AbstractGrouper {
+
+        protected final Aggregator[] aggregators;
+
+        MapGrouper(CollectExpression[] collectExpressions, Aggregator[] aggregators) {
+            super(collectExpressions);
+            this.aggregators = aggregators;
+        }
+
+        /**
+         * add a group with the given key values and states,
+         * the states are reduced if the group exists already
+         */
+        abstract void mergeGroup(Object[] keyValues, Object[] states);
+
+        /**
+         * merge all groups of this grouper into the target
+         */
+        abstract void mergeInto(MapGrouper target);
+
+        protected void reduce(Object[] states, Object[] otherStates) {
+            for (int i = 0; i < aggregators.length; i++) {
+                states[i] = aggregators[i].reduce(states[i], otherStates[i]);
+            }
+        }
+    }
+
+    private class SingleKeyGrouper extends MapGrouper {
+
+        private final Map<Object, Object[]> result;
         private final Input keyInput;
-        private final CollectExpression[] collectExpressions;
         private final SizeEstimator<Object> sizeEstimator;
 
         public SingleKeyGrouper(Input keyInput,
                                 DataType keyInputType,
                                 CollectExpression[] collectExpressions,
                                 Aggregator[] aggregators) {
-            this.collectExpressions = collectExpressions;
+            super(collectExpressions, aggregators);
             this.result = new HashMap<>();
             this.keyInput = keyInput;
-            this.aggregators = aggregators;
             sizeEstimator = SizeEstimatorFactory.create(keyInputType);
         }
 
         @Override
-        public boolean setNextRow(Object... row) {
-            for (CollectExpression collectExpression : collectExpressions) {
-               collectExpression.setNextRow(row);
+        void mergeGroup(Object[] keyValues, Object[] states) {
+            Object key = keyValues[0];
+            Object[] existingStates = result.get(key);
+            if (existingStates == null) {
+                ramAccountingContext.addBytes(
+                        RamAccountingContext.roundUp(sizeEstimator.estimateSize(key)) + 24); // 24 bytes overhead per entry
+                result.put(key, states);
+            } else {
+                reduce(existingStates, states);
             }
+        }
 
+        @Override
+        void mergeInto(MapGrouper target) {
+            Object[] keyValues = new Object[1];
+            for (Map.Entry<Object, Object[]> entry : result.entrySet()) {
+                keyValues[0] = entry.getKey();
+                target.mergeGroup(keyValues, entry.getValue());
+            }
+        }
+
+        @Override
+        protected boolean groupCurrentRow() {
             Object key = keyInput.value();
 
             // HashMap.get requires some objects (iterators) and at least 2 integers
@@ -278,24 +648,25 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
             }
             return rows;
         }
+
+        @Override
+        public void close() {
+        }
     }
 
-    private class ManyKeyGrouper implements Grouper {
+    private class ManyKeyGrouper extends MapGrouper {
 
-        private final Aggregator[] aggregators;
         private final Map<List<Object>, Object[]> result;
         private final List<Input<?>> keyInputs;
-        private final CollectExpression[] collectExpressions;
         private final List<SizeEstimator<Object>> sizeEstimators;
 
         public ManyKeyGrouper(List<Input<?>> keyInputs,
                               List<? extends DataType> keyTypes,
                               CollectExpression[] collectExpressions,
                               Aggregator[] aggregators) {
-            this.collectExpressions = collectExpressions;
+            super(collectExpressions, aggregators);
             this.result = new HashMap<>();
             this.keyInputs = keyInputs;
-            this.aggregators = aggregators;
             sizeEstimators = new ArrayList<>(keyTypes.size());
             for (DataType dataType : keyTypes) {
                 sizeEstimators.add(SizeEstimatorFactory.create(dataType));
@@ -303,11 +674,31 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
         }
 
         @Override
-        public boolean setNextRow(Object... row) {
-            for (CollectExpression collectExpression : collectExpressions) {
-                collectExpression.setNextRow(row);
+        void mergeGroup(Object[] keyValues, Object[] states) {
+            List<Object> key = new ArrayList<>(Arrays.asList(keyValues));
+            Object[] existingStates = result.get(key);
+            if (existingStates == null) {
+                ramAccountingContext.addBytes(12);
+                for (int i = 0; i < keyValues.length; i++) {
+                    ramAccountingContext.addBytes(RamAccountingContext.roundUp(
+                            sizeEstimators.get(i).estimateSize(keyValues[i]) + 4) + 4);
+                }
+                ramAccountingContext.addBytes(24); // 24 bytes overhead per map entry
+                result.put(key, states);
+            } else {
+                reduce(existingStates, states);
             }
+        }
+
+        @Override
+        void mergeInto(MapGrouper target) {
+            for (Map.Entry<List<Object>, Object[]> entry : result.entrySet()) {
+                target.mergeGroup(entry.getKey().toArray(), entry.getValue());
+            }
+        }
 
+        @Override
+        protected boolean groupCurrentRow() {
             // key list ram accounting
             ramAccountingContext.addBytes(12);
             // TODO: use something with better equals() performance for the keys
@@ -371,5 +762,9 @@ public class GroupingProjector implements Projector, ProjectorUpstream {
             }
             return rows;
         }
+
+        @Override
+        public void close() {
+        }
     }
 }
@@ -40,6 +40,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -54,6 +55,7 @@ public class IndexWriterProjector extends AbstractIndexWriterProjector {
 
     public IndexWriterProjector(ClusterService clusterService,
                                 Settings settings,
+                                ThreadPool threadPool,
                                 TransportShardUpsertActionDelegate transportShardUpsertActionDelegate,
                                 TransportCreateIndexAction transportCreateIndexAction,
                                 String tableName,
@@ -89,6 +91,7 @@ public class IndexWriterProjector extends AbstractIndexWriterProjector {
         createBulkShardProcessor(
                 clusterService,
                 settings,
+                threadPool,
                 transportShardUpsertActionDelegate,
                 transportCreateIndexAction,
                 bulkActions,
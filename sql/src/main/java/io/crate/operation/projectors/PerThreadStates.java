@@ -0,0 +1,71 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import com.google.common.base.Supplier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds one state per thread that is feeding rows into a projector.
+ *
+ * Upstreams like shard collectors call {@link Projector#setNextRow(Object...)} concurrently,
+ * with a state per thread they don't have to synchronize on a shared one.
+ * Once all upstreams are finished the states can be merged.
+ *
+ * A thread only ever creates and accesses its own entry, so no additional locking is needed.
+ */
+public class PerThreadStates<T> {
+
+    private final ConcurrentMap<Thread, T> states = new ConcurrentHashMap<>();
+    private final Supplier<T> supplier;
+
+    public PerThreadStates(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * @return the state of the current thread, it is created if it doesn't exist yet
+     */
+    public T get() {
+        Thread thread = Thread.currentThread();
+        T state = states.get(thread);
+        if (state == null) {
+            state = supplier.get();
+            states.put(thread, state);
+        }
+        return state;
+    }
+
+    /**
+     * remove and return all states.
+     * Must only be called after all upstreams finished.
+     */
+    public List<T> drain() {
+        List<T> result = new ArrayList<>(states.values());
+        states.clear();
+        return result;
+    }
+}
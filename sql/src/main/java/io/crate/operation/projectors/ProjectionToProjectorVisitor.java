@@ -21,20 +21,25 @@
 
 package io.crate.operation.projectors;
 
+import com.google.common.base.Supplier;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.ColumnIdent;
+import io.crate.operation.ExpressionCompiler;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.collect.CollectInputSymbolVisitor;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.planner.projection.*;
 import io.crate.planner.symbol.*;
 import io.crate.types.StringType;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -46,8 +51,11 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
 
     private final ClusterService clusterService;
     private final Settings settings;
+    private final ThreadPool threadPool;
     private final TransportActionProvider transportActionProvider;
+    private final BigArrays bigArrays;
     private final ImplementationSymbolVisitor symbolVisitor;
+    private final ExpressionCompiler<ImplementationSymbolVisitor.Context> expressionCompiler;
     private final EvaluatingNormalizer normalizer;
     @Nullable
     private final ShardId shardId;
@@ -57,15 +65,20 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Settings settings,
+                                        ThreadPool threadPool,
                                         TransportActionProvider transportActionProvider,
+                                        BigArrays bigArrays,
                                         ImplementationSymbolVisitor symbolVisitor,
                                         EvaluatingNormalizer normalizer,
                                         @Nullable ShardId shardId,
                                         @Nullable CollectInputSymbolVisitor docInputSymbolVisitor) {
         this.clusterService = clusterService;
         this.settings = settings;
+        this.threadPool = threadPool;
         this.transportActionProvider = transportActionProvider;
+        this.bigArrays = bigArrays;
         this.symbolVisitor = symbolVisitor;
+        this.expressionCompiler = new ExpressionCompiler<>(symbolVisitor);
         this.normalizer = normalizer;
         this.shardId = shardId;
         this.docInputSymbolVisitor = docInputSymbolVisitor;
@@ -73,17 +86,22 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Settings settings,
+                                        ThreadPool threadPool,
                                         TransportActionProvider transportActionProvider,
+                                        BigArrays bigArrays,
                                         ImplementationSymbolVisitor symbolVisitor,
                                         EvaluatingNormalizer normalizer) {
-        this(clusterService, settings, transportActionProvider, symbolVisitor, normalizer, null, null);
+        this(clusterService, settings, threadPool, transportActionProvider, bigArrays, symbolVisitor, normalizer,
+                null, null);
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Settings settings,
+                                        ThreadPool threadPool,
                                         TransportActionProvider transportActionProvider,
+                                        BigArrays bigArrays,
                                         ImplementationSymbolVisitor symbolVisitor) {
-        this(clusterService, settings, transportActionProvider, symbolVisitor,
+        this(clusterService, settings, threadPool, transportActionProvider, bigArrays, symbolVisitor,
                 new EvaluatingNormalizer(
                         symbolVisitor.functions(),
                         symbolVisitor.rowGranularity(),
@@ -96,23 +114,28 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
     }
 
     @Override
-    public Projector visitTopNProjection(TopNProjection projection, Context context) {
+    public Projector visitTopNProjection(final TopNProjection projection, Context context) {
         Projector projector;
         List<Input<?>> inputs = new ArrayList<>();
         List<CollectExpression<?>> collectExpressions = new ArrayList<>();
 
-        ImplementationSymbolVisitor.Context ctx = symbolVisitor.process(projection.outputs());
-        inputs.addAll(ctx.topLevelInputs());
-        collectExpressions.addAll(ctx.collectExpressions());
-
         if (projection.isOrdered()) {
-            int numOutputs = inputs.size();
-            ImplementationSymbolVisitor.Context orderByCtx = symbolVisitor.process(projection.orderBy());
-
-            // append orderby inputs to row, needed for sorting on them
-            inputs.addAll(orderByCtx.topLevelInputs());
-            collectExpressions.addAll(orderByCtx.collectExpressions());
-
+            Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+                @Override
+                public ImplementationSymbolVisitor.Context get() {
+                    ImplementationSymbolVisitor.Context ctx = symbolVisitor.process(projection.outputs());
+                    // append orderby inputs to row, needed for sorting on them
+                    for (Symbol symbol : projection.orderBy()) {
+                        ctx.topLevelInputs().add(symbolVisitor.process(symbol, ctx));
+                    }
+                    return ctx;
+                }
+            };
+            ImplementationSymbolVisitor.Context ctx = contextSupplier.get();
+            inputs.addAll(ctx.topLevelInputs());
+            collectExpressions.addAll(ctx.collectExpressions());
+
+            int numOutputs = projection.outputs().size();
             int[] orderByIndices = new int[inputs.size() - numOutputs];
             int idx = 0;
             for (int i = numOutputs; i < inputs.size(); i++) {
@@ -127,8 +150,12 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
                     projection.reverseFlags(),
                     projection.nullsFirst(),
                     projection.limit(),
-                    projection.offset());
+                    projection.offset(),
+                    onlyInputCollectExpressions(ctx) ? contextSupplier : null);
         } else {
+            ImplementationSymbolVisitor.Context ctx = symbolVisitor.process(projection.outputs());
+            inputs.addAll(ctx.topLevelInputs());
+            collectExpressions.addAll(ctx.collectExpressions());
             projector = new SimpleTopNProjector(
                     inputs.toArray(new Input<?>[inputs.size()]),
                     collectExpressions.toArray(new CollectExpression[collectExpressions.size()]),
@@ -139,22 +166,42 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
     }
 
     @Override
-    public Projector visitGroupProjection(GroupProjection projection, Context context) {
-        ImplementationSymbolVisitor.Context symbolContext = symbolVisitor.process(projection.keys());
-        List<Input<?>> keyInputs = symbolContext.topLevelInputs();
-
-        for (Aggregation aggregation : projection.values()) {
-            symbolVisitor.process(aggregation, symbolContext);
-        }
+    public Projector visitGroupProjection(final GroupProjection projection, Context context) {
+        Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+            @Override
+            public ImplementationSymbolVisitor.Context get() {
+                ImplementationSymbolVisitor.Context symbolContext = symbolVisitor.process(projection.keys());
+                for (Aggregation aggregation : projection.values()) {
+                    symbolVisitor.process(aggregation, symbolContext);
+                }
+                return symbolContext;
+            }
+        };
+        ImplementationSymbolVisitor.Context symbolContext = contextSupplier.get();
         return new GroupingProjector(
                 Symbols.extractTypes(projection.keys()),
-                keyInputs,
+                symbolContext.topLevelInputs(),
                 symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]),
                 symbolContext.aggregations(),
-                context.ramAccountingContext
+                context.ramAccountingContext,
+                bigArrays,
+                onlyInputCollectExpressions(symbolContext) ? contextSupplier : null
         );
     }
 
+    /**
+     * input collect expressions are created per context, other collect expressions
+     * (e.g. resolved references) might be shared and can't be used by multiple threads.
+     */
+    private static boolean onlyInputCollectExpressions(ImplementationSymbolVisitor.Context symbolContext) {
+        for (CollectExpression<?> collectExpression : symbolContext.collectExpressions()) {
+            if (!(collectExpression instanceof InputCollectExpression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public Projector visitAggregationProjection(AggregationProjection projection, Context context) {
         ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
@@ -228,6 +275,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
         return new IndexWriterProjector(
                 clusterService,
                 settings,
+                threadPool,
                 transportActionProvider.transportShardUpsertActionDelegate(),
                 transportActionProvider.transportCreateIndexAction(),
                 projection.tableName(),
@@ -257,6 +305,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
         return new ColumnIndexWriterProjector(
                 clusterService,
                 settings,
+                threadPool,
                 transportActionProvider.transportShardUpsertActionDelegate(),
                 transportActionProvider.transportCreateIndexAction(),
                 projection.tableName(),
@@ -279,7 +328,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<ProjectionTo
 
         Input<Boolean> condition;
         if (projection.query() != null) {
-            condition = (Input)symbolVisitor.process(projection.query(), ctx);
+            condition = (Input)expressionCompiler.compile(projection.query(), ctx);
         } else {
             condition = Literal.newLiteral(true);
         }
@@ -27,13 +27,15 @@ import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class SimpleTopNProjector implements Projector, ProjectorUpstream {
+public class SimpleTopNProjector implements RowCopyingProjector, BatchProjector, ProjectorUpstream {
 
     private final Input<?>[] inputs;
     private final CollectExpression<?>[] collectExpressions;
+    private final BatchRowCursor cursor;
     private AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private Projector downstream;
 
@@ -49,6 +51,7 @@ public class SimpleTopNProjector implements Projector, ProjectorUpstream {
         Preconditions.checkArgument(offset>=0, "invalid offset");
         this.inputs = inputs;
         this.collectExpressions = collectExpressions;
+        this.cursor = new BatchRowCursor(Arrays.asList(collectExpressions));
         if (limit == TopN.NO_LIMIT) {
             limit = Constants.DEFAULT_SELECT_LIMIT;
         }
@@ -81,7 +84,44 @@ public class SimpleTopNProjector implements Projector, ProjectorUpstream {
         }
 
         if (downstream != null) {
-            Object[] evaluatedRow = generateNextRow(row);
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+        }
+        return emitCurrentRow();
+    }
+
+    @Override
+    public synchronized boolean setNextRows(ColumnBatch batch) {
+        int r = 0;
+        if (remainingOffset > 0 && toCollect > 0) {
+            r = Math.min(remainingOffset, batch.size());
+            remainingOffset -= r;
+        }
+        for (; r < batch.size(); r++) {
+            if (toCollect < 1) {
+                return false;
+            }
+            if (downstream != null) {
+                cursor.setNextRow(batch, r);
+            }
+            if (!emitCurrentRow()) {
+                return false;
+            }
+        }
+        return toCollect > 0 && failure.get() == null;
+    }
+
+    /**
+     * evaluates the inputs for the row the collect expressions have been moved to
+     */
+    private boolean emitCurrentRow() {
+        if (downstream != null) {
+            Object[] evaluatedRow = new Object[inputs.length];
+            int i = 0;
+            for (Input<?> input : inputs) {
+                evaluatedRow[i++] = input.value();
+            }
             if (!downstream.setNextRow(evaluatedRow)) {
                 toCollect = -1;
             }
@@ -92,18 +132,6 @@ public class SimpleTopNProjector implements Projector, ProjectorUpstream {
         return toCollect > 0 && failure.get() == null;
     }
 
-    private Object[] generateNextRow(Object[] row) {
-        Object[] evaluatedRow = new Object[inputs.length];
-        for (CollectExpression<?> collectExpression : collectExpressions) {
-            collectExpression.setNextRow(row);
-        }
-        int i = 0;
-        for (Input<?> input : inputs) {
-            evaluatedRow[i++] = input.value();
-        }
-        return evaluatedRow;
-    }
-
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
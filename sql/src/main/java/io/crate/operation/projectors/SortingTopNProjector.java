@@ -22,23 +22,31 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.Constants;
 import io.crate.core.collections.ArrayIterator;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.operation.projectors.sorting.RowPriorityQueue;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class SortingTopNProjector implements Projector, ProjectorUpstream, ResultProvider {
+public class SortingTopNProjector implements RowCopyingProjector, ProjectorUpstream, ResultProvider {
+
+    /**
+     * per thread queues are only used up to this size as every queue pre-allocates its heap
+     */
+    static final int MAX_PARALLEL_QUEUE_SIZE = Constants.DEFAULT_SELECT_LIMIT;
 
     private final int offset;
     private final int maxSize;
@@ -48,9 +56,23 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
     private final Comparator[] comparators;
     private final Input<?>[] inputs;
     private final CollectExpression<?>[] collectExpressions;
+    @Nullable
+    private final Supplier<ImplementationSymbolVisitor.Context> contextSupplier;
+    private PerThreadStates<RowCollector> parallelCollectors;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final SettableFuture<Object[][]> result = SettableFuture.create();
 
+    public SortingTopNProjector(Input<?>[] inputs,
+                                CollectExpression<?>[] collectExpressions,
+                                int numOutputs,
+                                int[] orderBy,
+                                boolean[] reverseFlags,
+                                Boolean[] nullsFirst,
+                                int limit,
+                                int offset) {
+        this(inputs, collectExpressions, numOutputs, orderBy, reverseFlags, nullsFirst, limit, offset, null);
+    }
+
     /**
      * @param inputs             contains output {@link io.crate.operation.Input}s and orderBy {@link io.crate.operation.Input}s
      * @param collectExpressions gathered from outputs and orderBy inputs
@@ -59,6 +81,10 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
      * @param reverseFlags       for every index orderBy a boolean indicates ascending (<code>false</code>) or descending (<code>true</code>) order
      * @param limit              the number of rows to gather, pass to upStream
      * @param offset             the initial offset, this number of rows are skipped
+     * @param contextSupplier    if given, creates new <code>inputs</code> (as top level inputs) and
+     *                           <code>collectExpressions</code> on every call. With more than one upstream
+     *                           every thread then fills its own queue, the queues are merged once
+     *                           all upstreams are finished.
      */
     public SortingTopNProjector(Input<?>[] inputs,
                                 CollectExpression<?>[] collectExpressions,
@@ -67,7 +93,8 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
                                 boolean[] reverseFlags,
                                 Boolean[] nullsFirst,
                                 int limit,
-                                int offset) {
+                                int offset,
+                                @Nullable Supplier<ImplementationSymbolVisitor.Context> contextSupplier) {
         Preconditions.checkArgument(limit >= TopN.NO_LIMIT, "invalid limit");
         Preconditions.checkArgument(offset >= 0, "invalid offset");
         assert nullsFirst.length == reverseFlags.length;
@@ -76,6 +103,7 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
         this.numOutputs = numOutputs;
         this.collectExpressions = collectExpressions;
         this.offset = offset;
+        this.contextSupplier = contextSupplier;
 
         if (limit == TopN.NO_LIMIT) {
             limit = Constants.DEFAULT_SELECT_LIMIT;
@@ -92,15 +120,33 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
     @Override
     public void startProjection() {
         pq = new RowPriorityQueue(maxSize, comparators);
+        if (contextSupplier != null && remainingUpstreams.get() > 1 && maxSize <= MAX_PARALLEL_QUEUE_SIZE) {
+            parallelCollectors = new PerThreadStates<>(new Supplier<RowCollector>() {
+                @Override
+                public RowCollector get() {
+                    ImplementationSymbolVisitor.Context context = contextSupplier.get();
+                    return new RowCollector(
+                            context.topLevelInputs().toArray(new Input<?>[context.topLevelInputs().size()]),
+                            context.collectExpressions().toArray(new CollectExpression<?>[context.collectExpressions().size()]),
+                            new RowPriorityQueue(maxSize, comparators));
+                }
+            });
+        }
         if (remainingUpstreams.get() <= 0) {
             upstreamFinished();
         }
     }
 
     @Override
-    public synchronized boolean setNextRow(Object... row) {
-        Object[] evaluatedRow = evaluateRow(row);
-        pq.insertWithOverflow(evaluatedRow);
+    public boolean setNextRow(Object... row) {
+        if (parallelCollectors != null) {
+            RowCollector collector = parallelCollectors.get();
+            collector.pq.insertWithOverflow(collector.evaluateRow(row));
+            return true;
+        }
+        synchronized (this) {
+            pq.insertWithOverflow(evaluateRow(inputs, collectExpressions, row));
+        }
         return true;
     }
 
@@ -109,7 +155,7 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
         remainingUpstreams.incrementAndGet();
     }
 
-    private Object[] evaluateRow(Object[] row) {
+    private static Object[] evaluateRow(Input<?>[] inputs, CollectExpression<?>[] collectExpressions, Object[] row) {
         for (CollectExpression<?> collectExpression : collectExpressions) {
             collectExpression.setNextRow(row);
         }
@@ -124,6 +170,7 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
     @Override
     public void upstreamFinished() {
         if (remainingUpstreams.decrementAndGet() <= 0) {
+            mergeParallelCollectors();
             generateResult();
         }
     }
@@ -131,10 +178,25 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
     @Override
     public void upstreamFailed(Throwable throwable) {
         if (remainingUpstreams.decrementAndGet() <= 0) {
+            if (parallelCollectors != null) {
+                parallelCollectors.drain();
+            }
             result.setException(throwable);
         }
     }
 
+    private void mergeParallelCollectors() {
+        if (parallelCollectors == null) {
+            return;
+        }
+        for (RowCollector collector : parallelCollectors.drain()) {
+            Object[] row;
+            while ((row = collector.pq.pop()) != null) {
+                pq.insertWithOverflow(row);
+            }
+        }
+    }
+
     private void generateResult() {
         final int resultSize = Math.max(pq.size() - offset, 0);
         Object[][] rows = new Object[resultSize][];
@@ -167,4 +229,26 @@ public class SortingTopNProjector implements Projector, ProjectorUpstream, Resul
         throw new UnsupportedOperationException(
                 "SortingTopNProjector is a ResultProvider. Doesn't support downstreams");
     }
+
+    private static class RowCollector {
+
+        private final Input<?>[] inputs;
+        private final CollectExpression<?>[] collectExpressions;
+        private final RowPriorityQueue pq;
+
+        private RowCollector(Input<?>[] inputs,
+                             CollectExpression<?>[] collectExpressions,
+                             RowPriorityQueue pq) {
+            this.inputs = inputs;
+            this.collectExpressions = collectExpressions;
+            this.pq = pq;
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.startCollect();
+            }
+        }
+
+        private Object[] evaluateRow(Object[] row) {
+            return SortingTopNProjector.evaluateRow(inputs, collectExpressions, row);
+        }
+    }
 }
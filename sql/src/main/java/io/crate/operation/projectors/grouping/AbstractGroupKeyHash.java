@@ -0,0 +1,169 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * base of the open-addressing hash tables used for grouping.
+ *
+ * Every distinct key gets a dense id (0, 1, 2, ...) in insertion order,
+ * which can be used as offset into flat arrays holding per-group data.
+ * The slots of the table only store <code>id + 1</code> (0 marks a free slot),
+ * the keys themselves are stored by id in the implementations.
+ *
+ * The null key is not stored in the table at all but just gets an id assigned.
+ *
+ * Like {@link org.elasticsearch.common.util.LongHash} the add methods return
+ * the new id if the key was added or <code>-1 - id</code> if the key already existed.
+ */
+public abstract class AbstractGroupKeyHash implements Releasable {
+
+    static final float LOAD_FACTOR = 0.6f;
+    static final long MIN_CAPACITY = 16;
+
+    protected final BigArrays bigArrays;
+
+    private LongArray slots;
+    private long mask;
+    private long maxSize;
+    private long size = 0;
+    private long nullId = -1;
+
+    protected AbstractGroupKeyHash(long expectedSize, BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        long capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        initSlots(capacity);
+    }
+
+    private void initSlots(long capacity) {
+        slots = bigArrays.newLongArray(capacity, true);
+        mask = capacity - 1;
+        maxSize = (long) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @return the number of distinct keys, including the null key
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isNull(long id) {
+        return id == nullId;
+    }
+
+    public long addNull() {
+        if (nullId >= 0) {
+            return -1 - nullId;
+        }
+        nullId = nextId();
+        return nullId;
+    }
+
+    /**
+     * @return the slot id stored at the given table position or -1 if the slot is free
+     */
+    protected final long idAt(long slot) {
+        return slots.get(slot) - 1;
+    }
+
+    protected final long slot(long hash) {
+        return hash & mask;
+    }
+
+    protected final long nextSlot(long slot) {
+        return (slot + 1) & mask;
+    }
+
+    /**
+     * must be called before a new key is inserted
+     */
+    protected final void ensureTableCapacity() {
+        if (size >= maxSize) {
+            rehash();
+        }
+    }
+
+    /**
+     * store a new id at the given (free) table position
+     */
+    protected final long insert(long slot) {
+        long id = nextId();
+        slots.set(slot, id + 1);
+        return id;
+    }
+
+    private long nextId() {
+        long id = size++;
+        growIdStorage(size);
+        return id;
+    }
+
+    private void rehash() {
+        LongArray oldSlots = slots;
+        initSlots((mask + 1) << 1);
+        try {
+            for (long id = 0; id < size; id++) {
+                if (id == nullId) {
+                    continue;
+                }
+                long slot = slot(hash(id));
+                while (slots.get(slot) != 0) {
+                    slot = nextSlot(slot);
+                }
+                slots.set(slot, id + 1);
+            }
+        } finally {
+            oldSlots.close();
+        }
+    }
+
+    /**
+     * @return the hash of the key stored under the given id
+     */
+    protected abstract long hash(long id);
+
+    /**
+     * make sure that the key storage can hold <code>numIds</code> keys
+     */
+    protected abstract void growIdStorage(long numIds);
+
+    /**
+     * @return the number of bytes of the key storage
+     */
+    protected abstract long idStorageBytesUsed();
+
+    public long ramBytesUsed() {
+        return slots.ramBytesUsed() + idStorageBytesUsed();
+    }
+
+    @Override
+    public void close() {
+        slots.close();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * group key hash for variable length keys.
+ *
+ * All keys are appended to one paged byte array, so there is no object per key.
+ */
+public class BytesRefGroupKeyHash extends AbstractGroupKeyHash {
+
+    private final BytesRef spare = new BytesRef();
+
+    private ByteArray bytes;
+    private LongArray startOffsets;
+    private IntArray hashes;
+
+    public BytesRefGroupKeyHash(long expectedSize, BigArrays bigArrays) {
+        super(expectedSize, bigArrays);
+        bytes = bigArrays.newByteArray(BigArrays.BYTE_PAGE_SIZE, false);
+        startOffsets = bigArrays.newLongArray(MIN_CAPACITY + 1, false);
+        startOffsets.set(0, 0);
+        hashes = bigArrays.newIntArray(MIN_CAPACITY, false);
+    }
+
+    public long add(BytesRef key) {
+        ensureTableCapacity();
+        int hash = StringHelper.murmurhash3_x86_32(key, 0);
+        long slot = slot(hash);
+        while (true) {
+            long id = idAt(slot);
+            if (id < 0) {
+                id = insert(slot);
+                append(id, key, hash);
+                return id;
+            }
+            if (hashes.get(id) == hash && get(id, spare).bytesEquals(key)) {
+                return -1 - id;
+            }
+            slot = nextSlot(slot);
+        }
+    }
+
+    private void append(long id, BytesRef key, int hash) {
+        long startOffset = startOffsets.get(id);
+        long endOffset = startOffset + key.length;
+        bytes = bigArrays.grow(bytes, endOffset);
+        bytes.set(startOffset, key.bytes, key.offset, key.length);
+        startOffsets.set(id + 1, endOffset);
+        hashes.set(id, hash);
+    }
+
+    /**
+     * read the key with the given id into <code>dest</code>.
+     *
+     * The returned BytesRef might point into the internal pages, copy it if it is kept around.
+     */
+    public BytesRef get(long id, BytesRef dest) {
+        long startOffset = startOffsets.get(id);
+        int length = (int) (startOffsets.get(id + 1) - startOffset);
+        bytes.get(startOffset, length, dest);
+        return dest;
+    }
+
+    @Override
+    protected long hash(long id) {
+        return hashes.get(id);
+    }
+
+    @Override
+    protected void growIdStorage(long numIds) {
+        startOffsets = bigArrays.grow(startOffsets, numIds + 1);
+        hashes = bigArrays.grow(hashes, numIds);
+        // start with an empty key, add() sets the real end offset afterwards.
+        // for the null key it stays empty.
+        startOffsets.set(numIds, startOffsets.get(numIds - 1));
+    }
+
+    @Override
+    protected long idStorageBytesUsed() {
+        return bytes.ramBytesUsed() + startOffsets.ramBytesUsed() + hashes.ramBytesUsed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            bytes.close();
+            startOffsets.close();
+            hashes.close();
+        } finally {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.operation.Input;
+import io.crate.operation.PrimitiveInput;
+import io.crate.types.*;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps the current values of the key inputs to a dense group id using
+ * one of the primitive group key hashes.
+ *
+ * Single keys of integral, floating point or string types are hashed directly,
+ * multiple keys are encoded into one byte sequence per row.
+ */
+public abstract class GroupKeys implements Releasable {
+
+    static final long EXPECTED_SIZE = 1024;
+
+    /**
+     * thrown if a floating point value is fed into an integral key, the key hash would truncate it
+     */
+    public static class NonIntegralKeyException extends RuntimeException {
+
+        NonIntegralKeyException(Object value) {
+            super("floating point value " + value + " for an integral group key");
+        }
+    }
+
+    enum Kind {
+        LONG,
+        DOUBLE,
+        BYTES
+    }
+
+    /**
+     * @return GroupKeys for the given key inputs or null if one of the key types isn't supported
+     */
+    @Nullable
+    public static GroupKeys create(List<Input<?>> keyInputs,
+                                   List<? extends DataType> keyTypes,
+                                   BigArrays bigArrays) {
+        Kind[] kinds = new Kind[keyTypes.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = kind(keyTypes.get(i));
+            if (kinds[i] == null) {
+                return null;
+            }
+        }
+        if (kinds.length == 1) {
+            switch (kinds[0]) {
+                case LONG:
+                    return new SingleLongKey(keyInputs.get(0), keyTypes.get(0), bigArrays);
+                case DOUBLE:
+                    return new SingleDoubleKey(keyInputs.get(0), keyTypes.get(0), bigArrays);
+                case BYTES:
+                    return new SingleBytesRefKey(keyInputs.get(0), bigArrays);
+            }
+        }
+        return new EncodedKeys(keyInputs, keyTypes, kinds, bigArrays);
+    }
+
+    @Nullable
+    static Kind kind(DataType dataType) {
+        switch (dataType.id()) {
+            case BooleanType.ID:
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+            case TimestampType.ID:
+                return Kind.LONG;
+            case FloatType.ID:
+            case DoubleType.ID:
+                return Kind.DOUBLE;
+            case StringType.ID:
+            case IpType.ID:
+                return Kind.BYTES;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * read the current key values and lookup or add the group.
+     *
+     * @return the id of the group if it is new, otherwise <code>-1 - id</code>
+     */
+    public abstract long add();
+
+    /**
+     * lookup or add the group of the given key values, used to merge groups
+     * that have been read by another instance.
+     *
+     * @return the id of the group if it is new, otherwise <code>-1 - id</code>
+     */
+    public abstract long add(Object[] keyValues);
+
+    /**
+     * write the key values of the given group into the first columns of row
+     */
+    public abstract void write(long id, Object[] row);
+
+    public abstract long size();
+
+    public abstract long ramBytesUsed();
+
+    static long longKey(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            throw new NonIntegralKeyException(value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    static long doubleKey(Object value) {
+        // equal to Double.equals, used by the map based grouping before
+        return Double.doubleToLongBits(((Number) value).doubleValue());
+    }
+
+    static BytesRef bytesRefKey(Object value) {
+        return StringType.INSTANCE.value(value);
+    }
+
+    static Object longValue(DataType dataType, long key) {
+        switch (dataType.id()) {
+            case BooleanType.ID:
+                return key != 0L;
+            case ByteType.ID:
+                return (byte) key;
+            case ShortType.ID:
+                return (short) key;
+            case IntegerType.ID:
+                return (int) key;
+            default:
+                return key;
+        }
+    }
+
+    static Object doubleValue(DataType dataType, long key) {
+        double value = Double.longBitsToDouble(key);
+        if (dataType.id() == FloatType.ID) {
+            return (float) value;
+        }
+        return value;
+    }
+
+    static class SingleLongKey extends GroupKeys {
+
+        private final Input<?> input;
+        /**
+         * the input if it can provide numeric values without boxing them, null otherwise
+         */
+        @Nullable
+        private final PrimitiveInput<?> primitiveInput;
+        protected final DataType dataType;
+        private final LongGroupKeyHash hash;
+
+        SingleLongKey(Input<?> input, DataType dataType, BigArrays bigArrays) {
+            this.input = input;
+            this.dataType = dataType;
+            this.primitiveInput = input instanceof PrimitiveInput && dataType.id() != BooleanType.ID
+                    ? (PrimitiveInput<?>) input : null;
+            this.hash = new LongGroupKeyHash(EXPECTED_SIZE, bigArrays);
+        }
+
+        protected long key(Object value) {
+            return longKey(value);
+        }
+
+        protected long key(PrimitiveInput<?> input) {
+            if (input.isFloatingPoint()) {
+                throw new NonIntegralKeyException(input.doubleValue());
+            }
+            return input.longValue();
+        }
+
+        protected Object value(long key) {
+            return longValue(dataType, key);
+        }
+
+        @Override
+        public long add() {
+            if (primitiveInput != null) {
+                if (primitiveInput.isNull()) {
+                    return hash.addNull();
+                }
+                return hash.add(key(primitiveInput));
+            }
+            return add(input.value());
+        }
+
+        @Override
+        public long add(Object[] keyValues) {
+            return add(keyValues[0]);
+        }
+
+        private long add(Object value) {
+            if (value == null) {
+                return hash.addNull();
+            }
+            return hash.add(key(value));
+        }
+
+        @Override
+        public void write(long id, Object[] row) {
+            row[0] = hash.isNull(id) ? null : value(hash.get(id));
+        }
+
+        @Override
+        public long size() {
+            return hash.size();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return hash.ramBytesUsed();
+        }
+
+        @Override
+        public void close() {
+            hash.close();
+        }
+    }
+
+    static class SingleDoubleKey extends SingleLongKey {
+
+        SingleDoubleKey(Input<?> input, DataType dataType, BigArrays bigArrays) {
+            super(input, dataType, bigArrays);
+        }
+
+        @Override
+        protected long key(Object value) {
+            return doubleKey(value);
+        }
+
+        @Override
+        protected long key(PrimitiveInput<?> input) {
+            return Double.doubleToLongBits(input.doubleValue());
+        }
+
+        @Override
+        protected Object value(long key) {
+            return doubleValue(dataType, key);
+        }
+    }
+
+    static class SingleBytesRefKey extends GroupKeys {
+
+        private final Input<?> input;
+        private final BytesRefGroupKeyHash hash;
+        private final BytesRef spare = new BytesRef();
+
+        SingleBytesRefKey(Input<?> input, BigArrays bigArrays) {
+            this.input = input;
+            this.hash = new BytesRefGroupKeyHash(EXPECTED_SIZE, bigArrays);
+        }
+
+        @Override
+        public long add() {
+            return add(input.value());
+        }
+
+        @Override
+        public long add(Object[] keyValues) {
+            return add(keyValues[0]);
+        }
+
+        private long add(Object value) {
+            if (value == null) {
+                return hash.addNull();
+            }
+            return hash.add(bytesRefKey(value));
+        }
+
+        @Override
+        public void write(long id, Object[] row) {
+            row[0] = hash.isNull(id) ? null : BytesRef.deepCopyOf(hash.get(id, spare));
+        }
+
+        @Override
+        public long size() {
+            return hash.size();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return hash.ramBytesUsed();
+        }
+
+        @Override
+        public void close() {
+            hash.close();
+        }
+    }
+
+    /**
+     * encodes all key values of a row into one byte sequence:
+     * a null marker byte per key followed by 8 bytes for long and double keys
+     * or a vInt length and the bytes for string keys.
+     */
+    static class EncodedKeys extends GroupKeys {
+
+        private final List<Input<?>> inputs;
+        private final List<? extends DataType> dataTypes;
+        private final Kind[] kinds;
+        private final BytesRefGroupKeyHash hash;
+        private final BytesRefBuilder scratch = new BytesRefBuilder();
+        private final BytesRef spare = new BytesRef();
+
+        EncodedKeys(List<Input<?>> inputs, List<? extends DataType> dataTypes, Kind[] kinds, BigArrays bigArrays) {
+            this.inputs = inputs;
+            this.dataTypes = dataTypes;
+            this.kinds = kinds;
+            this.hash = new BytesRefGroupKeyHash(EXPECTED_SIZE, bigArrays);
+        }
+
+        @Override
+        public long add() {
+            scratch.clear();
+            for (int i = 0; i < kinds.length; i++) {
+                encode(i, inputs.get(i).value());
+            }
+            return hash.add(scratch.get());
+        }
+
+        @Override
+        public long add(Object[] keyValues) {
+            scratch.clear();
+            for (int i = 0; i < kinds.length; i++) {
+                encode(i, keyValues[i]);
+            }
+            return hash.add(scratch.get());
+        }
+
+        private void encode(int i, Object value) {
+            if (value == null) {
+                scratch.append((byte) 0);
+                return;
+            }
+            scratch.append((byte) 1);
+            switch (kinds[i]) {
+                case LONG:
+                    writeLong(longKey(value));
+                    break;
+                case DOUBLE:
+                    writeLong(doubleKey(value));
+                    break;
+                case BYTES:
+                    BytesRef bytesRef = bytesRefKey(value);
+                    writeVInt(bytesRef.length);
+                    scratch.append(bytesRef);
+                    break;
+            }
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                scratch.append((byte) (value >>> shift));
+            }
+        }
+
+        private void writeVInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                scratch.append((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            scratch.append((byte) value);
+        }
+
+        @Override
+        public void write(long id, Object[] row) {
+            BytesRef encoded = hash.get(id, spare);
+            byte[] bytes = encoded.bytes;
+            int pos = encoded.offset;
+            for (int i = 0; i < kinds.length; i++) {
+                if (bytes[pos++] == 0) {
+                    row[i] = null;
+                    continue;
+                }
+                switch (kinds[i]) {
+                    case LONG:
+                    case DOUBLE:
+                        long value = 0;
+                        for (int b = 0; b < 8; b++) {
+                            value = (value << 8) | (bytes[pos++] & 0xFF);
+                        }
+                        row[i] = kinds[i] == Kind.LONG
+                                ? longValue(dataTypes.get(i), value)
+                                : doubleValue(dataTypes.get(i), value);
+                        break;
+                    case BYTES:
+                        int length = 0;
+                        int shift = 0;
+                        byte b;
+                        do {
+                            b = bytes[pos++];
+                            length |= (b & 0x7F) << shift;
+                            shift += 7;
+                        } while ((b & 0x80) != 0);
+                        row[i] = new BytesRef(Arrays.copyOfRange(bytes, pos, pos + length));
+                        pos += length;
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public long size() {
+            return hash.size();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return hash.ramBytesUsed();
+        }
+
+        @Override
+        public void close() {
+            hash.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import com.carrotsearch.hppc.hash.MurmurHash3;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * group key hash for primitive keys which fit into a long
+ * (all integral types, booleans and the bits of floating point values)
+ */
+public class LongGroupKeyHash extends AbstractGroupKeyHash {
+
+    private LongArray keys;
+
+    public LongGroupKeyHash(long expectedSize, BigArrays bigArrays) {
+        super(expectedSize, bigArrays);
+        keys = bigArrays.newLongArray(MIN_CAPACITY, false);
+    }
+
+    public long add(long key) {
+        ensureTableCapacity();
+        long slot = slot(MurmurHash3.hash(key));
+        while (true) {
+            long id = idAt(slot);
+            if (id < 0) {
+                id = insert(slot);
+                keys.set(id, key);
+                return id;
+            }
+            if (keys.get(id) == key) {
+                return -1 - id;
+            }
+            slot = nextSlot(slot);
+        }
+    }
+
+    public long get(long id) {
+        return keys.get(id);
+    }
+
+    @Override
+    protected long hash(long id) {
+        return MurmurHash3.hash(keys.get(id));
+    }
+
+    @Override
+    protected void growIdStorage(long numIds) {
+        keys = bigArrays.grow(keys, numIds);
+    }
+
+    @Override
+    protected long idStorageBytesUsed() {
+        return keys.ramBytesUsed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            keys.close();
+        } finally {
+            super.close();
+        }
+    }
+}
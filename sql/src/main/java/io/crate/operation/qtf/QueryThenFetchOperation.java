@@ -23,6 +23,7 @@ package io.crate.operation.qtf;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.action.sql.query.CrateResultSorter;
@@ -56,6 +57,7 @@ import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ObjectArray;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchShardTarget;
@@ -115,9 +117,30 @@ public class QueryThenFetchOperation {
     public ListenableFuture<QueryThenFetchContext> execute(QueryThenFetchNode searchNode,
                                                            List<Reference> outputs,
                                                            Optional<PageInfo> pageInfo) {
+        return execute(new QueryThenFetchContext(bigArrays, searchNode, outputs, pageInfo));
+    }
+
+    /**
+     * execute a new query then fetch for a page behind the rows emitted by a previous context.
+     *
+     * Instead of querying and sorting all rows up to the requested page again, every shard
+     * only collects the docs sorting after the doc it emitted last (keyset paging),
+     * so the cost depends on the distance to the cursor and not on the position of the page.
+     *
+     * @param previous the context which emitted the rows up to the cursor
+     * @param cursor the number of rows emitted by the previous context, excluding the offset of the query
+     * @param pageInfo the page to fetch, must not start before the cursor
+     */
+    public ListenableFuture<QueryThenFetchContext> executeAfter(QueryThenFetchContext previous,
+                                                                int cursor,
+                                                                PageInfo pageInfo) {
+        assert pageInfo.position() >= cursor : "keyset paging can't page backwards";
+        return execute(new QueryThenFetchContext(bigArrays, previous, cursor, pageInfo));
+    }
+
+    private ListenableFuture<QueryThenFetchContext> execute(QueryThenFetchContext ctx) {
         SettableFuture<QueryThenFetchContext> future = SettableFuture.create();
-        // do stuff
-        QueryThenFetchContext ctx = new QueryThenFetchContext(bigArrays, searchNode, outputs, pageInfo);
+        QueryThenFetchNode searchNode = ctx.searchNode;
         prepareRequests(ctx);
 
         if (!searchNode.routing().hasLocations() || ctx.requests.size() == 0) {
@@ -155,8 +178,8 @@ public class QueryThenFetchOperation {
 
         if (ctx.pageInfo.isPresent()) {
             // fetch all, including all offset stuff
-            queryLimit = ctx.searchNode.offset() + Math.min(
-                    ctx.searchNode.limit(),
+            queryLimit = ctx.offset + Math.min(
+                    ctx.limit,
                     ctx.pageInfo.get().position() + ctx.pageInfo.get().size());
             queryOffset = 0;
             keepAliveValue = Optional.of(DEFAULT_KEEP_ALIVE);
@@ -187,7 +210,7 @@ public class QueryThenFetchOperation {
                                     ctx.searchNode.whereClause(),
                                     ctx.searchNode.partitionBy(),
                                     keepAliveValue
-                            )
+                            ).lastEmittedDoc(ctx.searchAfter.get(new ShardId(index, shard)))
                     ));
                 }
             }
@@ -248,6 +271,7 @@ public class QueryThenFetchOperation {
         }
 
         final ScoreDoc[] lastEmittedDocPerShard = searchPhaseController.getLastEmittedDocPerShard(sortedShardList, pageContext.queryResults.length());
+        pageContext.queryThenFetchContext.updateLastEmittedDocs(lastEmittedDocPerShard, pageContext.queryResults);
 
         final AtomicInteger counter = new AtomicInteger(docIdsToLoad.asList().size());
 
@@ -292,13 +316,14 @@ public class QueryThenFetchOperation {
         if (ctx.pageInfo.isPresent()) {
             PageInfo pageInfo = ctx.pageInfo.get();
 
-            int sortLimit = ctx.searchNode.offset() + pageInfo.size() + pageInfo.position();
+            int sortLimit = ctx.offset + pageInfo.size() + pageInfo.position();
             ctx.sortedShardList = crateResultSorter.sortDocs(ctx.queryResults, 0, sortLimit);
             lastEmittedDocs = searchPhaseController.getLastEmittedDocPerShard(
                     ctx.sortedShardList,
                     ctx.numShards);
+            ctx.updateLastEmittedDocs(lastEmittedDocs, ctx.queryResults);
 
-            int fillOffset = pageInfo.position() + ctx.searchNode.offset();
+            int fillOffset = pageInfo.position() + ctx.offset;
 
             // create a fetchrequest for all documents even those hit by the offset
             // to set the lastemitteddoc on the shard
@@ -408,6 +433,23 @@ public class QueryThenFetchOperation {
         private final int numColumns;
         private final BigArrays bigArrays;
 
+        /**
+         * offset and limit of the rows this context queries, the pageInfo is relative to them.
+         * A context continuing after a cursor has consumed the offset already.
+         */
+        private final int offset;
+        private final int limit;
+
+        /**
+         * the docs the shards have to collect after, taken from a previous context
+         */
+        private final Map<ShardId, ScoreDoc> searchAfter;
+
+        /**
+         * the last doc emitted by every shard so far, used to continue with a new context
+         */
+        private final Map<ShardId, ScoreDoc> lastEmittedDocs = new ConcurrentHashMap<>();
+
         private final Map<SearchShardTarget, Long> searchContextIds;
 
         private final AtomicArray<IntArrayList> docIdsToLoad;
@@ -424,9 +466,35 @@ public class QueryThenFetchOperation {
                                      QueryThenFetchNode node,
                                      List<Reference> outputs,
                                      Optional<PageInfo> pageInfo) {
+            this(bigArrays, node, outputs, pageInfo, node.offset(), node.limit(), ImmutableMap.<ShardId, ScoreDoc>of());
+        }
+
+        private QueryThenFetchContext(BigArrays bigArrays,
+                                      QueryThenFetchContext previous,
+                                      int cursor,
+                                      PageInfo pageInfo) {
+            this(bigArrays,
+                    previous.searchNode,
+                    previous.outputs,
+                    Optional.of(new PageInfo(pageInfo.position() - cursor, pageInfo.size())),
+                    0,
+                    Math.max(0, previous.searchNode.limit() - cursor),
+                    ImmutableMap.copyOf(previous.lastEmittedDocs));
+        }
+
+        private QueryThenFetchContext(BigArrays bigArrays,
+                                      QueryThenFetchNode node,
+                                      List<Reference> outputs,
+                                      Optional<PageInfo> pageInfo,
+                                      int offset,
+                                      int limit,
+                                      Map<ShardId, ScoreDoc> searchAfter) {
             this.searchNode = node;
             this.outputs = outputs;
             this.pageInfo = pageInfo;
+            this.offset = offset;
+            this.limit = limit;
+            this.searchAfter = searchAfter;
             this.numShards = node.routing().numShards();
             this.nodes = clusterService.state().nodes();
             this.bigArrays = bigArrays;
@@ -532,6 +600,18 @@ public class QueryThenFetchOperation {
             return numShards;
         }
 
+        private void updateLastEmittedDocs(ScoreDoc[] lastEmittedDocPerShard,
+                                           AtomicArray<QuerySearchResult> results) {
+            for (int i = 0; i < lastEmittedDocPerShard.length; i++) {
+                ScoreDoc lastEmittedDoc = lastEmittedDocPerShard[i];
+                QuerySearchResult result = results.get(i);
+                if (lastEmittedDoc != null && result != null) {
+                    SearchShardTarget target = result.shardTarget();
+                    lastEmittedDocs.put(new ShardId(target.index(), target.shardId()), lastEmittedDoc);
+                }
+            }
+        }
+
         @Override
         public void close() throws IOException {
             releaseAllContexts();
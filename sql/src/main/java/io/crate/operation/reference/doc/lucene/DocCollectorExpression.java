@@ -41,7 +41,7 @@ public class DocCollectorExpression extends
 
     @Override
     public void startCollect(CollectorContext context) {
-        context.visitor().required(true);
+        context.visitor().sourceRequired(true);
         this.visitor = context.visitor();
     }
 
@@ -22,6 +22,7 @@
 package io.crate.operation.reference.doc.lucene;
 
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.projectors.ColumnBatch;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
@@ -52,6 +53,15 @@ public class DoubleColumnReference extends FieldCacheExpression<IndexNumericFiel
         values = indexFieldData.load(context).getDoubleValues();
     }
 
+    @Override
+    public void fillColumn(ColumnBatch.Column column, int row) {
+        if (column instanceof ColumnBatch.DoubleColumn && values.count() == 1) {
+            ((ColumnBatch.DoubleColumn) column).setDouble(row, values.valueAt(0));
+        } else {
+            super.fillColumn(column, row);
+        }
+    }
+
     @Override
     public void setNextDocId(int docId) {
         super.setNextDocId(docId);
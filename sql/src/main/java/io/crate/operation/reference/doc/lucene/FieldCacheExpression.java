@@ -22,6 +22,7 @@
 package io.crate.operation.reference.doc.lucene;
 
 import io.crate.Constants;
+import io.crate.operation.projectors.ColumnBatch;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.mapper.FieldMapper;
 
@@ -43,4 +44,12 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
                 (columnName, DEFAULT_MAPPING_TYPES);
         indexFieldData = (IFD) context.searchContext().fieldData().getForField(mapper);
     }
+
+    /**
+     * set the value of the current document into the given column of a batch.
+     * Implementations may override this to avoid boxing for primitive columns.
+     */
+    public void fillColumn(ColumnBatch.Column column, int row) {
+        column.set(row, value());
+    }
 }
@@ -22,6 +22,7 @@
 package io.crate.operation.reference.doc.lucene;
 
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.projectors.ColumnBatch;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
@@ -46,6 +47,15 @@ public class IntegerColumnReference extends FieldCacheExpression<IndexNumericFie
         }
     }
 
+    @Override
+    public void fillColumn(ColumnBatch.Column column, int row) {
+        if (column instanceof ColumnBatch.IntColumn && values.count() == 1) {
+            ((ColumnBatch.IntColumn) column).setInt(row, (int) values.valueAt(0));
+        } else {
+            super.fillColumn(column, row);
+        }
+    }
+
     @Override
     public void setNextDocId(int docId) {
         super.setNextDocId(docId);
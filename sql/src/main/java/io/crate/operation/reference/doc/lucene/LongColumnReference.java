@@ -22,6 +22,7 @@
 package io.crate.operation.reference.doc.lucene;
 
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.projectors.ColumnBatch;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
@@ -52,6 +53,15 @@ public class LongColumnReference extends FieldCacheExpression<IndexNumericFieldD
         values = indexFieldData.load(context).getLongValues();
     }
 
+    @Override
+    public void fillColumn(ColumnBatch.Column column, int row) {
+        if (column instanceof ColumnBatch.LongColumn && values.count() == 1) {
+            ((ColumnBatch.LongColumn) column).setLong(row, values.valueAt(0));
+        } else {
+            super.fillColumn(column, row);
+        }
+    }
+
     @Override
     public void setNextDocId(int docId) {
         super.setNextDocId(docId);
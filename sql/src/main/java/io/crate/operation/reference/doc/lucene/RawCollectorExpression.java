@@ -35,7 +35,7 @@ public class RawCollectorExpression extends
 
     @Override
     public void startCollect(CollectorContext context) {
-        context.visitor().required(true);
+        context.visitor().sourceRequired(true);
         this.visitor = context.visitor();
     }
 
@@ -23,7 +23,7 @@ package io.crate.operation.reference.sys.node;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.monitor.jvm.JvmService;
+import org.elasticsearch.monitor.jvm.JvmStats;
 
 public class NodeHeapExpression extends SysNodeObjectReference {
 
@@ -36,11 +36,11 @@ public class NodeHeapExpression extends SysNodeObjectReference {
     public static final String FREE = "free";
     public static final String USED = "used";
 
-    private final JvmService jvmService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeHeapExpression(JvmService jvmService) {
-        this.jvmService = jvmService;
+    public NodeHeapExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -48,19 +48,20 @@ public class NodeHeapExpression extends SysNodeObjectReference {
         childImplementations.put(FREE, new HeapExpression() {
             @Override
             public Long value() {
-                return jvmService.stats().mem().getHeapMax().bytes() - jvmService.stats().mem().getHeapUsed().bytes();
+                JvmStats.Mem mem = sysNodeStats.snapshot().jvm().mem();
+                return mem.getHeapMax().bytes() - mem.getHeapUsed().bytes();
             }
         });
         childImplementations.put(USED, new HeapExpression() {
             @Override
             public Long value() {
-                return jvmService.stats().mem().getHeapUsed().bytes();
+                return sysNodeStats.snapshot().jvm().mem().getHeapUsed().bytes();
             }
         });
         childImplementations.put(MAX, new HeapExpression() {
             @Override
             public Long value() {
-                return jvmService.stats().mem().getHeapMax().bytes();
+                return sysNodeStats.snapshot().jvm().mem().getHeapMax().bytes();
             }
         });
     }
@@ -23,22 +23,21 @@ package io.crate.operation.reference.sys.node;
 
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.node.service.NodeService;
 
 public class NodeHostnameExpression extends SysNodeExpression<BytesRef> {
 
     public static final String NAME = "hostname";
 
-    private final NodeService nodeService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeHostnameExpression(NodeService nodeService) {
-        this.nodeService = nodeService;
+    public NodeHostnameExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
     }
 
     @Override
     public BytesRef value() {
-        return new BytesRef(nodeService.stats().getHostname());
+        return new BytesRef(sysNodeStats.snapshot().nodeStats().getHostname());
     }
 
 }
@@ -23,7 +23,6 @@ package io.crate.operation.reference.sys.node;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.monitor.os.OsService;
 
 public class NodeLoadExpression extends SysNodeObjectReference {
 
@@ -33,11 +32,11 @@ public class NodeLoadExpression extends SysNodeObjectReference {
     public static final String FIVE = "5";
     public static final String FIFTEEN = "15";
 
-    private final OsService osService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeLoadExpression(OsService osService) {
-        this.osService = osService;
+    public NodeLoadExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         childImplementations.put(ONE, new LoadExpression(0));
         childImplementations.put(FIVE, new LoadExpression(1));
         childImplementations.put(FIFTEEN, new LoadExpression(2));
@@ -54,7 +53,7 @@ public class NodeLoadExpression extends SysNodeObjectReference {
         @Override
         public Double value() {
             try {
-                return osService.stats().loadAverage()[idx];
+                return sysNodeStats.snapshot().os().loadAverage()[idx];
             } catch (IndexOutOfBoundsException e) {
                 return null;
             }
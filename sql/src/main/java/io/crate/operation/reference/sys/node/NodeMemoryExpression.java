@@ -23,7 +23,6 @@ package io.crate.operation.reference.sys.node;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.monitor.os.OsService;
 
 public class NodeMemoryExpression extends SysNodeObjectReference {
 
@@ -37,11 +36,11 @@ public class NodeMemoryExpression extends SysNodeObjectReference {
     public static final String FREE_PERCENT = "free_percent";
     public static final String USED_PERCENT = "used_percent";
 
-    private final OsService osService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeMemoryExpression(OsService osService) {
-        this.osService = osService;
+    public NodeMemoryExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -49,25 +48,25 @@ public class NodeMemoryExpression extends SysNodeObjectReference {
         childImplementations.put(FREE, new MemoryExpression() {
             @Override
             public Long value() {
-                return osService.stats().mem().actualFree().bytes();
+                return sysNodeStats.snapshot().os().mem().actualFree().bytes();
             }
         });
         childImplementations.put(USED, new MemoryExpression() {
             @Override
             public Long value() {
-                return osService.stats().mem().actualUsed().bytes();
+                return sysNodeStats.snapshot().os().mem().actualUsed().bytes();
             }
         });
         childImplementations.put(FREE_PERCENT, new MemoryExpression() {
             @Override
             public Short value() {
-                return osService.stats().mem().freePercent();
+                return sysNodeStats.snapshot().os().mem().freePercent();
             }
         });
         childImplementations.put(USED_PERCENT, new MemoryExpression() {
             @Override
             public Short value() {
-                return osService.stats().mem().usedPercent();
+                return sysNodeStats.snapshot().os().mem().usedPercent();
             }
         });
     }
@@ -22,15 +22,14 @@
 package io.crate.operation.reference.sys.node;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
-import org.elasticsearch.monitor.network.NetworkService;
 
 class NodeNetworkTCPExpression extends SysNodeObjectReference {
 
     public static final String NAME = "tcp";
 
-    public NodeNetworkTCPExpression(NetworkService networkService) {
-        childImplementations.put(TCPConnectionsExpression.NAME, new TCPConnectionsExpression(networkService));
-        childImplementations.put(TCPPacketsExpression.NAME, new TCPPacketsExpression(networkService));
+    public NodeNetworkTCPExpression(SysNodeStats sysNodeStats) {
+        childImplementations.put(TCPConnectionsExpression.NAME, new TCPConnectionsExpression(sysNodeStats));
+        childImplementations.put(TCPPacketsExpression.NAME, new TCPPacketsExpression(sysNodeStats));
     }
 
     static class TCPConnectionsExpression extends SysNodeObjectReference {
@@ -43,10 +42,10 @@ class NodeNetworkTCPExpression extends SysNodeObjectReference {
         private static final String DROPPED = "dropped";
         private static final String EMBRYONIC_DROPPED = "embryonic_dropped";
 
-        private final NetworkService networkService;
+        private final SysNodeStats sysNodeStats;
 
-        protected TCPConnectionsExpression(NetworkService networkService) {
-            this.networkService = networkService;
+        protected TCPConnectionsExpression(SysNodeStats sysNodeStats) {
+            this.sysNodeStats = sysNodeStats;
             addChildImplementations();
         }
 
@@ -54,31 +53,31 @@ class NodeNetworkTCPExpression extends SysNodeObjectReference {
             childImplementations.put(INITIATED, new TCPConnectionsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().activeOpens();
+                    return sysNodeStats.snapshot().network().tcp().activeOpens();
                 }
             });
             childImplementations.put(ACCEPTED, new TCPConnectionsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().passiveOpens();
+                    return sysNodeStats.snapshot().network().tcp().passiveOpens();
                 }
             });
             childImplementations.put(CURR_ESTABLISHED, new TCPConnectionsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().currEstab();
+                    return sysNodeStats.snapshot().network().tcp().currEstab();
                 }
             });
             childImplementations.put(DROPPED, new TCPConnectionsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().estabResets();
+                    return sysNodeStats.snapshot().network().tcp().estabResets();
                 }
             });
             childImplementations.put(EMBRYONIC_DROPPED, new TCPConnectionsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().attemptFails();
+                    return sysNodeStats.snapshot().network().tcp().attemptFails();
                 }
             });
         }
@@ -98,10 +97,10 @@ class NodeNetworkTCPExpression extends SysNodeObjectReference {
         private static final String ERRORS_RECEIVED = "errors_received";
         private static final String RST_SENT = "rst_sent";
 
-        private final NetworkService networkService;
+        private final SysNodeStats sysNodeStats;
 
-        protected TCPPacketsExpression(NetworkService networkService) {
-            this.networkService = networkService;
+        protected TCPPacketsExpression(SysNodeStats sysNodeStats) {
+            this.sysNodeStats = sysNodeStats;
             addChildImplementations();
         }
 
@@ -109,31 +108,31 @@ class NodeNetworkTCPExpression extends SysNodeObjectReference {
             childImplementations.put(SENT, new TCPPacketsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().outSegs();
+                    return sysNodeStats.snapshot().network().tcp().outSegs();
                 }
             });
             childImplementations.put(RECEIVED, new TCPPacketsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().inSegs();
+                    return sysNodeStats.snapshot().network().tcp().inSegs();
                 }
             });
             childImplementations.put(RETRANSMITTED, new TCPPacketsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().retransSegs();
+                    return sysNodeStats.snapshot().network().tcp().retransSegs();
                 }
             });
             childImplementations.put(ERRORS_RECEIVED, new TCPPacketsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().inErrs();
+                    return sysNodeStats.snapshot().network().tcp().inErrs();
                 }
             });
             childImplementations.put(RST_SENT, new TCPPacketsChildExpression() {
                 @Override
                 public Long value() {
-                    return networkService.stats().tcp().outRsts();
+                    return sysNodeStats.snapshot().network().tcp().outRsts();
                 }
             });
         }
@@ -24,7 +24,6 @@ package io.crate.operation.reference.sys.node;
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.monitor.os.OsStats;
-import org.elasticsearch.node.service.NodeService;
 
 public class NodeOsCpuExpression extends SysNodeObjectReference {
 
@@ -39,11 +38,11 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
     public static final String USAGE = "used";
     public static final String STOLEN = "stolen";
 
-    private final NodeService nodeService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeOsCpuExpression(NodeService nodeService) {
-        this.nodeService = nodeService;
+    public NodeOsCpuExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -51,7 +50,7 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
         childImplementations.put(SYS, new CpuExpression() {
             @Override
             public Short value() {
-                OsStats os = nodeService.stats().getOs();
+                OsStats os = sysNodeStats.snapshot().os();
                 if (os != null) {
                     return os.cpu().sys();
                 } else {
@@ -62,7 +61,7 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
         childImplementations.put(USER, new CpuExpression() {
             @Override
             public Short value() {
-                OsStats os = nodeService.stats().getOs();
+                OsStats os = sysNodeStats.snapshot().os();
                 if (os != null) {
                     return os.cpu().user();
                 } else {
@@ -73,7 +72,7 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
         childImplementations.put(IDLE, new CpuExpression() {
             @Override
             public Short value() {
-                OsStats os = nodeService.stats().getOs();
+                OsStats os = sysNodeStats.snapshot().os();
                 if (os != null) {
                     return os.cpu().idle();
                 } else {
@@ -84,7 +83,7 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
         childImplementations.put(USAGE, new CpuExpression() {
             @Override
             public Short value() {
-                OsStats os = nodeService.stats().getOs();
+                OsStats os = sysNodeStats.snapshot().os();
                 if (os != null) {
                     return (short) (os.cpu().sys() + os.cpu().user());
                 } else {
@@ -95,7 +94,7 @@ public class NodeOsCpuExpression extends SysNodeObjectReference {
         childImplementations.put(STOLEN, new CpuExpression() {
             @Override
             public Short value() {
-                OsStats os = nodeService.stats().getOs();
+                OsStats os = sysNodeStats.snapshot().os();
                 if (os != null) {
                     return os.cpu().stolen();
                 } else {
@@ -23,7 +23,6 @@ package io.crate.operation.reference.sys.node;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.node.service.NodeService;
 
 
 public class NodeOsExpression extends SysNodeObjectReference {
@@ -37,11 +36,11 @@ public class NodeOsExpression extends SysNodeObjectReference {
     public static final String UPTIME = "uptime";
     public static final String TIMESTAMP = "timestamp";
 
-    private final NodeService nodeService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    public NodeOsExpression(NodeService nodeService) {
-        this.nodeService = nodeService;
+    public NodeOsExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -49,7 +48,7 @@ public class NodeOsExpression extends SysNodeObjectReference {
         childImplementations.put(UPTIME, new OsExpression() {
             @Override
             public Long value() {
-                return nodeService.stats().getOs().uptime().millis();
+                return sysNodeStats.snapshot().os().uptime().millis();
             }
         });
         childImplementations.put(TIMESTAMP, new OsExpression() {
@@ -59,7 +58,7 @@ public class NodeOsExpression extends SysNodeObjectReference {
             }
         });
         childImplementations.put(NodeOsCpuExpression.NAME,
-                new NodeOsCpuExpression(nodeService));
+                new NodeOsCpuExpression(sysNodeStats));
     }
 
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.sys.node;
+
+import io.crate.action.sql.PlanCache;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import org.elasticsearch.common.inject.Inject;
+
+public class NodePlanCacheExpression extends SysNodeObjectReference {
+
+    abstract class PlanCacheExpression extends SysNodeExpression<Long> {
+    }
+
+    public static final String NAME = "plan_cache";
+
+    public static final String SIZE = "size";
+    public static final String HITS = "hits";
+    public static final String MISSES = "misses";
+    public static final String VALUE_DEPENDENT = "value_dependent";
+    public static final String EVICTIONS = "evictions";
+    public static final String INVALIDATIONS = "invalidations";
+
+    private final PlanCache planCache;
+
+    @Inject
+    public NodePlanCacheExpression(PlanCache planCache) {
+        this.planCache = planCache;
+        addChildImplementations();
+    }
+
+    private void addChildImplementations() {
+        childImplementations.put(SIZE, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.size();
+            }
+        });
+        childImplementations.put(HITS, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.hits();
+            }
+        });
+        childImplementations.put(MISSES, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.misses();
+            }
+        });
+        childImplementations.put(VALUE_DEPENDENT, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.valueDependent();
+            }
+        });
+        childImplementations.put(EVICTIONS, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.evictions();
+            }
+        });
+        childImplementations.put(INVALIDATIONS, new PlanCacheExpression() {
+            @Override
+            public Long value() {
+                return planCache.invalidations();
+            }
+        });
+    }
+}
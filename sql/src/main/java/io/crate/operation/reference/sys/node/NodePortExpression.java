@@ -59,7 +59,7 @@ public class NodePortExpression extends SysNodeObjectReference {
         childImplementations.put(TRANSPORT, new PortExpression() {
             @Override
             public Integer value() {
-                return portFromAddress(nodeService.stats().getNode().address());
+                return portFromAddress(nodeService.info().getNode().address());
             }
         });
     }
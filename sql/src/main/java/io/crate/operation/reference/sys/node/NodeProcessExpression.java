@@ -38,10 +38,12 @@ public class NodeProcessExpression extends SysNodeObjectReference {
     public static final String MAX_OPEN_FILE_DESCRIPTORS = "max_open_file_descriptors";
 
     private final NodeService nodeService;
+    private final SysNodeStats sysNodeStats;
 
     @Inject
-    protected NodeProcessExpression(final NodeService nodeService) {
+    protected NodeProcessExpression(NodeService nodeService, SysNodeStats sysNodeStats) {
         this.nodeService = nodeService;
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -49,7 +51,7 @@ public class NodeProcessExpression extends SysNodeObjectReference {
         childImplementations.put(OPEN_FILE_DESCRIPTORS, new ProcessExpression() {
             @Override
             public Long value() {
-                ProcessStats processStats = nodeService.stats().getProcess();
+                ProcessStats processStats = sysNodeStats.snapshot().process();
                 if (processStats != null) {
                     return processStats.getOpenFileDescriptors();
                 } else { return -1L; }
@@ -46,6 +46,7 @@ public class SysNodeExpressionModule extends AbstractModule {
         refBinder = MapBinder.newMapBinder(binder(), ReferenceIdent.class, ReferenceImplementation.class);
         infos = SysNodesTableInfo.INFOS;
         bind(NodeSysExpression.class).asEagerSingleton();
+        bind(SysNodeStats.class).asEagerSingleton();
 
         bindExpr(NodeFsExpression.NAME, NodeFsExpression.class);
         bindExpr(NodeHostnameExpression.NAME, NodeHostnameExpression.class);
@@ -60,5 +61,7 @@ public class SysNodeExpressionModule extends AbstractModule {
         bindExpr(NodeNetworkExpression.NAME, NodeNetworkExpression.class);
         bindExpr(NodeOsExpression.NAME, NodeOsExpression.class);
         bindExpr(NodeProcessExpression.NAME, NodeProcessExpression.class);
+        bindExpr(NodePlanCacheExpression.NAME, NodePlanCacheExpression.class);
+        bindExpr(NodeBlobCacheExpression.NAME, NodeBlobCacheExpression.class);
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.operation.reference.sys.node.fs.FileSystems;
+import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.monitor.jvm.JvmService;
+import org.elasticsearch.monitor.jvm.JvmStats;
+import org.elasticsearch.monitor.network.NetworkService;
+import org.elasticsearch.monitor.network.NetworkStats;
+import org.elasticsearch.monitor.os.OsStats;
+import org.elasticsearch.monitor.process.ProcessStats;
+import org.elasticsearch.monitor.sigar.SigarService;
+import org.elasticsearch.node.service.NodeService;
+import org.hyperic.sigar.FileSystem;
+import org.hyperic.sigar.FileSystemUsage;
+import org.hyperic.sigar.SigarException;
+import org.hyperic.sigar.SigarPermissionDeniedException;
+
+import java.util.List;
+
+/**
+ * Provides the stats the sys.nodes expressions are computed from.
+ *
+ * A collect on sys.nodes opens a snapshot with {@link #openSnapshot()} which is bound
+ * to the collecting thread until it is released, so all expressions of that collect
+ * share the same stats. Every kind of stats is only probed once the first
+ * expression which needs it is evaluated, e.g. file systems and network stats are
+ * only taken if such a column is selected.
+ *
+ * If {@link #SETTING_CACHE_TTL} is set, a snapshot is reused by all collects
+ * within that time.
+ */
+public class SysNodeStats {
+
+    public static final String SETTING_CACHE_TTL = "stats.sys_nodes.cache_ttl";
+    public static final TimeValue DEFAULT_CACHE_TTL = TimeValue.timeValueMillis(0);
+
+    private static final ESLogger LOGGER = Loggers.getLogger(SysNodeStats.class);
+
+    private static final Releasable NOOP_RELEASABLE = new Releasable() {
+        @Override
+        public void close() {
+        }
+    };
+
+    private final ThreadLocal<Snapshot> currentSnapshot = new ThreadLocal<>();
+    private final long cacheTtlNanos;
+    private final NodeService nodeService;
+    private final JvmService jvmService;
+    private final NetworkService networkService;
+    private final SigarService sigarService;
+
+    private volatile Snapshot cachedSnapshot;
+
+    @Inject
+    public SysNodeStats(Settings settings,
+                        NodeService nodeService,
+                        JvmService jvmService,
+                        NetworkService networkService,
+                        SigarService sigarService) {
+        this(settings.getAsTime(SETTING_CACHE_TTL, DEFAULT_CACHE_TTL),
+                nodeService, jvmService, networkService, sigarService);
+    }
+
+    SysNodeStats(TimeValue cacheTtl,
+                 NodeService nodeService,
+                 JvmService jvmService,
+                 NetworkService networkService,
+                 SigarService sigarService) {
+        this.cacheTtlNanos = Math.max(cacheTtl.nanos(), 0L);
+        this.nodeService = nodeService;
+        this.jvmService = jvmService;
+        this.networkService = networkService;
+        this.sigarService = sigarService;
+    }
+
+    /**
+     * bind a snapshot to the current thread, until the returned releasable is closed
+     * every call to {@link #snapshot()} from this thread returns that snapshot.
+     *
+     * If a snapshot is already bound to the current thread, it is kept.
+     */
+    public Releasable openSnapshot() {
+        if (currentSnapshot.get() != null) {
+            return NOOP_RELEASABLE;
+        }
+        currentSnapshot.set(cachedOrNewSnapshot());
+        return new Releasable() {
+            @Override
+            public void close() {
+                currentSnapshot.remove();
+            }
+        };
+    }
+
+    /**
+     * @return the snapshot bound to the current thread or a cached or new one
+     * if no snapshot is bound.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = currentSnapshot.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return cachedOrNewSnapshot();
+    }
+
+    private Snapshot cachedOrNewSnapshot() {
+        if (cacheTtlNanos == 0) {
+            return new Snapshot(System.nanoTime());
+        }
+        long now = System.nanoTime();
+        Snapshot snapshot = cachedSnapshot;
+        if (snapshot == null || now - snapshot.createdNanos > cacheTtlNanos) {
+            snapshot = new Snapshot(now);
+            cachedSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * lazily taken stats, a snapshot might be shared by concurrent collects
+     * if it is served from the cache.
+     */
+    public class Snapshot {
+
+        private final long createdNanos;
+
+        private NodeStats nodeStats;
+        private JvmStats jvmStats;
+        private NetworkStats networkStats;
+        private List<Tuple<FileSystem, FileSystemUsage>> fileSystems;
+
+        private Snapshot(long createdNanos) {
+            this.createdNanos = createdNanos;
+        }
+
+        /**
+         * @return the node stats, only including the os and process stats
+         */
+        public synchronized NodeStats nodeStats() {
+            if (nodeStats == null) {
+                nodeStats = nodeService.stats(CommonStatsFlags.NONE,
+                        true,  // os
+                        true,  // process
+                        false, // jvm
+                        false, // threadPool
+                        false, // network
+                        false, // fs
+                        false, // transport
+                        false, // http
+                        false  // circuitBreaker
+                );
+            }
+            return nodeStats;
+        }
+
+        public OsStats os() {
+            return nodeStats().getOs();
+        }
+
+        public ProcessStats process() {
+            return nodeStats().getProcess();
+        }
+
+        public synchronized JvmStats jvm() {
+            if (jvmStats == null) {
+                jvmStats = jvmService.stats();
+            }
+            return jvmStats;
+        }
+
+        public synchronized NetworkStats network() {
+            if (networkStats == null) {
+                networkStats = networkService.stats();
+            }
+            return networkStats;
+        }
+
+        /**
+         * @return the supported file systems and their usage, file systems whose
+         * usage couldn't be retrieved are omitted.
+         * Empty if sigar is not available.
+         */
+        public synchronized List<Tuple<FileSystem, FileSystemUsage>> fileSystems() {
+            if (fileSystems == null) {
+                fileSystems = loadFileSystems();
+            }
+            return fileSystems;
+        }
+
+        private List<Tuple<FileSystem, FileSystemUsage>> loadFileSystems() {
+            if (!sigarService.sigarAvailable()) {
+                LOGGER.trace("sigar not available");
+                return ImmutableList.of();
+            }
+            ImmutableList.Builder<Tuple<FileSystem, FileSystemUsage>> builder = ImmutableList.builder();
+            try {
+                for (FileSystem fs : sigarService.sigar().getFileSystemList()) {
+                    if (!FileSystems.SUPPORTED_FS_TYPE.apply(fs)) {
+                        continue;
+                    }
+                    try {
+                        FileSystemUsage usage = sigarService.sigar().getFileSystemUsage(fs.getDirName());
+                        builder.add(new Tuple<>(fs, usage));
+                    } catch (SigarPermissionDeniedException e) {
+                        LOGGER.warn(String.format(
+                                "Permission denied: couldn't get file system usage for \"%s\"", fs.getDirName()));
+                    }
+                }
+            } catch (SigarException e) {
+                LOGGER.warn("error getting file system stats", e);
+                return ImmutableList.of();
+            }
+            return builder.build();
+        }
+    }
+}
@@ -26,14 +26,11 @@ import io.crate.metadata.ColumnIdent;
 import io.crate.operation.reference.sys.SysNodeObjectArrayReference;
 import io.crate.operation.reference.sys.SysNodeObjectReference;
 import io.crate.operation.reference.sys.SysObjectReference;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import org.apache.lucene.util.BytesRef;
-import org.elasticsearch.common.logging.ESLogger;
-import org.elasticsearch.common.logging.Loggers;
-import org.elasticsearch.monitor.sigar.SigarService;
+import org.elasticsearch.common.collect.Tuple;
 import org.hyperic.sigar.FileSystem;
 import org.hyperic.sigar.FileSystemUsage;
-import org.hyperic.sigar.SigarException;
-import org.hyperic.sigar.SigarPermissionDeniedException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,42 +38,23 @@ import java.util.List;
 public class NodeFsDisksExpression extends SysNodeObjectArrayReference {
 
     public static final String NAME = "disks";
-    private final ESLogger logger = Loggers.getLogger(getClass());
-    private final SigarService sigarService;
+    private final SysNodeStats sysNodeStats;
 
-    NodeFsDisksExpression(SigarService sigarService) {
+    NodeFsDisksExpression(SysNodeStats sysNodeStats) {
         super(new ColumnIdent(NodeFsExpression.NAME, ImmutableList.of(NAME)));
-        this.sigarService = sigarService;
+        this.sysNodeStats = sysNodeStats;
     }
 
     @Override
     protected List<SysObjectReference> getChildImplementations() {
-        List<SysObjectReference> diskRefs;
-        if (sigarService.sigarAvailable()) {
-            try {
-                FileSystem[] fileSystems = sigarService.sigar().getFileSystemList();
-                diskRefs = new ArrayList<>(fileSystems.length);
-                for (FileSystem fs : fileSystems) {
-                    // no disk usage possible for rootfs
-                    if (!FileSystems.SUPPORTED_FS_TYPE.apply(fs) || "rootfs".equals(fs.getDevName())) {
-                        continue;
-                    }
-                    try {
-                        FileSystemUsage usage = sigarService.sigar().getFileSystemUsage(fs.getDirName());
-                        diskRefs.add(new NodeFsDiskChildExpression(fs, usage));
-                    } catch (SigarPermissionDeniedException e) {
-                        logger.warn(String.format(
-                            "Permission denied: couldn't get file system usage for \"%s\"", fs.getDirName()));
-                    }
-                }
-            } catch (SigarException e) {
-                logger.warn("error getting disk stats", e);
-                diskRefs = ImmutableList.of();
+        List<Tuple<FileSystem, FileSystemUsage>> fileSystems = sysNodeStats.snapshot().fileSystems();
+        List<SysObjectReference> diskRefs = new ArrayList<>(fileSystems.size());
+        for (Tuple<FileSystem, FileSystemUsage> fs : fileSystems) {
+            // no disk usage possible for rootfs
+            if ("rootfs".equals(fs.v1().getDevName())) {
+                continue;
             }
-
-        } else {
-            logger.trace("sigar not available");
-            diskRefs = ImmutableList.of();
+            diskRefs.add(new NodeFsDiskChildExpression(fs.v1(), fs.v2()));
         }
         return diskRefs;
     }
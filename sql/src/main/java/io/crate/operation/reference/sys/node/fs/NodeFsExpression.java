@@ -22,6 +22,7 @@
 package io.crate.operation.reference.sys.node.fs;
 
 import io.crate.operation.reference.sys.SysNodeObjectReference;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.monitor.sigar.SigarService;
@@ -32,9 +33,10 @@ public class NodeFsExpression extends SysNodeObjectReference {
 
     @Inject
     public NodeFsExpression(SigarService sigarService,
-                            NodeEnvironment nodeEnvironment) {
-        childImplementations.put(NodeFsTotalExpression.NAME, new NodeFsTotalExpression(sigarService));
-        childImplementations.put(NodeFsDisksExpression.NAME, new NodeFsDisksExpression(sigarService));
+                            NodeEnvironment nodeEnvironment,
+                            SysNodeStats sysNodeStats) {
+        childImplementations.put(NodeFsTotalExpression.NAME, new NodeFsTotalExpression(sysNodeStats));
+        childImplementations.put(NodeFsDisksExpression.NAME, new NodeFsDisksExpression(sysNodeStats));
         childImplementations.put(NodeFsDataExpression.NAME, new NodeFsDataExpression(sigarService, nodeEnvironment));
     }
 
@@ -21,25 +21,14 @@
 
 package io.crate.operation.reference.sys.node.fs;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableList;
 import io.crate.operation.reference.sys.SysNodeObjectReference;
-import org.elasticsearch.common.logging.ESLogger;
-import org.elasticsearch.common.logging.Loggers;
-import org.elasticsearch.monitor.sigar.SigarService;
+import io.crate.operation.reference.sys.node.SysNodeStats;
+import org.elasticsearch.common.collect.Tuple;
 import org.hyperic.sigar.FileSystem;
 import org.hyperic.sigar.FileSystemUsage;
-import org.hyperic.sigar.SigarException;
-import org.hyperic.sigar.SigarPermissionDeniedException;
 
-import javax.annotation.Nonnull;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 public class NodeFsTotalExpression extends SysNodeObjectReference {
 
@@ -53,31 +42,10 @@ public class NodeFsTotalExpression extends SysNodeObjectReference {
     public static final String WRITES = "writes";
     public static final String BYTES_WRITTEN = "bytes_written";
 
-    private static final List<String> ALL_TOTALS = ImmutableList.of(
-            SIZE, USED, AVAILABLE, READS, BYTES_READ, WRITES, BYTES_WRITTEN);
-    private final ESLogger logger = Loggers.getLogger(getClass());
+    private final SysNodeStats sysNodeStats;
 
-    private final SigarService sigarService;
-
-    // cache that collects all totals at once, even if only one total value is queried
-    private final LoadingCache<String, Long> totals = CacheBuilder.newBuilder()
-            .expireAfterWrite(500, TimeUnit.MILLISECONDS)
-            .maximumSize(ALL_TOTALS.size())
-            .build(new CacheLoader<String, Long>() {
-                @Override
-                public Long load(@Nonnull String key) throws Exception {
-                    // actually not needed if only queried with getAll()
-                    throw new UnsupportedOperationException("load not supported on sys.nodes.fs.total cache");
-                }
-
-                @Override
-                public Map<String, Long> loadAll(@Nonnull Iterable<? extends String> keys) throws Exception {
-                    return getTotals();
-                }
-            });
-
-    protected NodeFsTotalExpression(SigarService sigarService) {
-        this.sigarService = sigarService;
+    protected NodeFsTotalExpression(SysNodeStats sysNodeStats) {
+        this.sysNodeStats = sysNodeStats;
         addChildImplementations();
     }
 
@@ -96,31 +64,15 @@ public class NodeFsTotalExpression extends SysNodeObjectReference {
         long size=-1L, used=-1L, available=-1L,
              reads=-1L, bytes_read=-1L,
              writes=-1L, bytes_written=-1L;
-        if (sigarService.sigarAvailable()) {
-            try {
-                for (FileSystem fs : sigarService.sigar().getFileSystemList()) {
-                    if (!FileSystems.SUPPORTED_FS_TYPE.apply(fs)) {
-                        continue;
-                    }
-                    try {
-                        FileSystemUsage usage = sigarService.sigar().getFileSystemUsage(fs.getDirName());
-                        size = setOrIncrementBy(size, usage.getTotal() * 1024);
-                        used = setOrIncrementBy(used, usage.getUsed());
-                        available = setOrIncrementBy(available, usage.getAvail() * 1024);
-                        reads = setOrIncrementBy(reads, usage.getDiskReads());
-                        bytes_read = setOrIncrementBy(bytes_read, usage.getDiskReadBytes());
-                        writes = setOrIncrementBy(writes, usage.getDiskWrites());
-                        bytes_written = setOrIncrementBy(bytes_written, usage.getDiskWriteBytes());
-                    } catch (SigarPermissionDeniedException e) {
-                        logger.warn(String.format(
-                            "Permission denied: couldn't get file system usage for \"%s\"", fs.getDirName()));
-                    }
-                }
-            } catch (SigarException e) {
-                logger.warn("error getting filesystem totals", e);
-            }
-        } else {
-            logger.trace("sigar not available");
+        for (Tuple<FileSystem, FileSystemUsage> fs : sysNodeStats.snapshot().fileSystems()) {
+            FileSystemUsage usage = fs.v2();
+            size = setOrIncrementBy(size, usage.getTotal() * 1024);
+            used = setOrIncrementBy(used, usage.getUsed());
+            available = setOrIncrementBy(available, usage.getAvail() * 1024);
+            reads = setOrIncrementBy(reads, usage.getDiskReads());
+            bytes_read = setOrIncrementBy(bytes_read, usage.getDiskReadBytes());
+            writes = setOrIncrementBy(writes, usage.getDiskWrites());
+            bytes_written = setOrIncrementBy(bytes_written, usage.getDiskWriteBytes());
         }
         totals.put(SIZE, size);
         totals.put(USED, used);
@@ -153,12 +105,7 @@ public class NodeFsTotalExpression extends SysNodeObjectReference {
 
         @Override
         public Long value() {
-            try {
-                return totals.getAll(ALL_TOTALS).get(name);
-            } catch (ExecutionException e) {
-                logger.trace("error getting fs {} total", e, name);
-                return null;
-            }
+            return getTotals().get(name);
         }
     }
 }
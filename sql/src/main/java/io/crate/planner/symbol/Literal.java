@@ -111,7 +111,7 @@ public class Literal<ReturnType>
     @Override
     @SuppressWarnings("unchecked")
     public int compareTo(Literal o) {
-        return type.compareValueTo(value, o.value);
+        return type.compareValueTo(value(), o.value());
     }
 
     @Override
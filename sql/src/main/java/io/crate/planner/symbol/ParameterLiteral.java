@@ -0,0 +1,95 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.planner.symbol;
+
+import io.crate.types.DataType;
+
+/**
+ * Literal of a statement parameter.
+ *
+ * It records whether its value has been read, which tells if the analysis and the plan
+ * depend on the value (e.g. routing, primary key lookups, partitions) or only carry it
+ * to the execution. In the latter case another value of the same type can be bound
+ * before the plan is executed again.
+ *
+ * Parameter literals are equal if they refer to the same parameter (and type), regardless of
+ * the current value. The literal is streamed as a plain {@link Literal}.
+ */
+public class ParameterLiteral<ReturnType> extends Literal<ReturnType> {
+
+    private final int index;
+    private boolean valueRead = false;
+
+    public ParameterLiteral(int index, DataType type, ReturnType value) {
+        super(type, value);
+        this.index = index;
+    }
+
+    /**
+     * @return the position of the parameter in the arguments of the statement
+     */
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public ReturnType value() {
+        valueRead = true;
+        return super.value();
+    }
+
+    /**
+     * null check which doesn't count as a read of the value.
+     * A null parameter is typed as undefined, so a plan built for another type never gets
+     * a null value bound.
+     */
+    public boolean isNull() {
+        return value == null;
+    }
+
+    /**
+     * @return true if the value has been read since the literal was created
+     */
+    public boolean valueRead() {
+        return valueRead;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        ParameterLiteral literal = (ParameterLiteral) obj;
+        return index == literal.index && type.equals(literal.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * index + type.hashCode();
+    }
+
+    /**
+     * replace the value with another one of the same type
+     */
+    public void bind(Object value) {
+        this.value = type.value(value);
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.plugin;
 import io.crate.service.SQLService;
 import org.elasticsearch.common.inject.AbstractModule;
 import io.crate.action.sql.DDLStatementDispatcher;
+import io.crate.action.sql.PlanCache;
 import io.crate.metadata.FulltextAnalyzerResolver;
 
 
@@ -33,6 +34,7 @@ public class SQLModule extends AbstractModule {
     protected void configure() {
         bind(SQLService.class).asEagerSingleton();
         bind(DDLStatementDispatcher.class).asEagerSingleton();
+        bind(PlanCache.class).asEagerSingleton();
         bind(FulltextAnalyzerResolver.class).asEagerSingleton();
     }
 }
\ No newline at end of file
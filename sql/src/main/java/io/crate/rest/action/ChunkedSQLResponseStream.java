@@ -0,0 +1,184 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.rest.action;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLResponseStream;
+import io.crate.http.netty.NettyHttpChannel;
+import io.crate.types.DataType;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+import java.io.IOException;
+
+import static org.elasticsearch.ExceptionsHelper.detailedMessage;
+
+/**
+ * writes a streamed SQL result as chunked HTTP response.
+ *
+ * The response has the same layout as a regular {@link io.crate.action.sql.SQLResponse}
+ * except that <code>rowcount</code> and <code>duration</code> follow the rows.
+ * Every page of rows is sent as a chunk of its own, the JSON generator is kept open
+ * between the chunks and only the bytes of the current chunk are buffered.
+ *
+ * If the execution fails after the first chunk has been sent, the status code
+ * can't be changed anymore. In that case the rows array is closed and an
+ * <code>error</code> object is appended to the response.
+ */
+public class ChunkedSQLResponseStream implements SQLResponseStream {
+
+    private static final ESLogger logger = Loggers.getLogger(ChunkedSQLResponseStream.class);
+
+    private final NettyHttpChannel channel;
+    private final boolean includeTypes;
+    private final long requestStartedTime;
+    private final BytesStreamOutput out = new BytesStreamOutput();
+    private final XContentBuilder builder;
+    private boolean started = false;
+
+    public ChunkedSQLResponseStream(NettyHttpChannel channel,
+                                    boolean includeTypes,
+                                    boolean pretty,
+                                    long requestStartedTime) throws IOException {
+        this.channel = channel;
+        this.includeTypes = includeTypes;
+        this.requestStartedTime = requestStartedTime;
+        this.builder = new XContentBuilder(XContentType.JSON.xContent(), out);
+        if (pretty) {
+            builder.prettyPrint();
+        }
+    }
+
+    @Override
+    public void start(String[] outputNames, DataType[] outputTypes) {
+        try {
+            builder.startObject();
+            builder.array("cols", outputNames);
+            if (includeTypes) {
+                builder.startArray("colTypes");
+                for (DataType outputType : outputTypes) {
+                    SQLBaseResponse.toXContentNestedDataType(builder, outputType);
+                }
+                builder.endArray();
+            }
+            builder.startArray("rows");
+            channel.startChunkedResponse(RestStatus.OK, builder.contentType().restContentType());
+            started = true;
+            sendChunk();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<?> nextRows(Object[][] rows) {
+        if (rows.length == 0) {
+            return Futures.immediateFuture(null);
+        }
+        try {
+            for (Object[] row : rows) {
+                builder.startArray();
+                for (Object value : row) {
+                    builder.value(value);
+                }
+                builder.endArray();
+            }
+            return toListenableFuture(sendChunk());
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public void finish(long rowCount) {
+        try {
+            builder.endArray();
+            builder.field("rowcount", rowCount);
+            builder.field("duration", System.currentTimeMillis() - requestStartedTime);
+            builder.endObject();
+            sendChunk();
+            channel.finishChunkedResponse();
+        } catch (IOException e) {
+            logger.error("failed to finish chunked response", e);
+            channel.finishChunkedResponse();
+        }
+    }
+
+    @Override
+    public void fail(Throwable t) {
+        try {
+            if (!started) {
+                channel.sendResponse(new CrateThrowableRestResponse(channel, t));
+                return;
+            }
+            builder.endArray();
+            builder.startObject("error");
+            builder.field("message", detailedMessage(t));
+            builder.field("code", t instanceof SQLActionException ? ((SQLActionException) t).errorCode() : 5000);
+            builder.endObject();
+            builder.endObject();
+            sendChunk();
+        } catch (Throwable e) {
+            logger.error("failed to send failure response", e);
+        }
+        if (started) {
+            channel.finishChunkedResponse();
+        }
+    }
+
+    /**
+     * send everything that has been written to the builder since the last chunk
+     */
+    private ChannelFuture sendChunk() throws IOException {
+        builder.flush();
+        ChannelFuture future = channel.sendChunk(out.bytes());
+        out.reset();
+        return future;
+    }
+
+    private static ListenableFuture<?> toListenableFuture(ChannelFuture channelFuture) {
+        final SettableFuture<Void> future = SettableFuture.create();
+        channelFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                if (channelFuture.isSuccess()) {
+                    future.set(null);
+                } else if (channelFuture.isCancelled()) {
+                    future.cancel(false);
+                } else {
+                    future.setException(channelFuture.getCause());
+                }
+            }
+        });
+        return future;
+    }
+}
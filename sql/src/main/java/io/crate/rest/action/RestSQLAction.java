@@ -25,6 +25,7 @@ import io.crate.action.sql.*;
 import io.crate.action.sql.parser.SQLXContentSourceContext;
 import io.crate.action.sql.parser.SQLXContentSourceParser;
 import io.crate.exceptions.SQLParseException;
+import io.crate.http.netty.NettyHttpChannel;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
@@ -34,14 +35,27 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.rest.*;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
 public class RestSQLAction extends BaseRestHandler {
 
+    /**
+     * number of rows fetched at once if the result is streamed
+     * and no <code>page_size</code> parameter is given
+     */
+    public static final int DEFAULT_STREAM_PAGE_SIZE = 1000;
+
+    private final TransportSQLAction transportSQLAction;
+
     @Inject
-    public RestSQLAction(Settings settings, Client client, RestController controller) {
+    public RestSQLAction(Settings settings,
+                         Client client,
+                         RestController controller,
+                         TransportSQLAction transportSQLAction) {
         super(settings, controller, client);
+        this.transportSQLAction = transportSQLAction;
 
         controller.registerHandler(RestRequest.Method.POST, "/_sql", this);
     }
@@ -76,6 +90,10 @@ public class RestSQLAction extends BaseRestHandler {
         }
         if (bulkArgs != null && bulkArgs.length > 0) {
             executeBulkRequest(context, request, channel, client);
+        } else if (request.paramAsBoolean("stream", false)
+                && channel instanceof NettyHttpChannel
+                && ((NettyHttpChannel) channel).supportsChunkedResponse()) {
+            executeStreamingRequest(context, request, (NettyHttpChannel) channel);
         } else {
             executeSimpleRequest(context, request, channel, client);
         }
@@ -89,6 +107,26 @@ public class RestSQLAction extends BaseRestHandler {
         requestBuilder.execute(RestSQLAction.<SQLResponse>newListener(request, channel));
     }
 
+    /**
+     * execute the request locally and send the rows page by page as chunked response
+     * so that only a single page has to be held in memory
+     */
+    private void executeStreamingRequest(SQLXContentSourceContext context,
+                                         RestRequest request,
+                                         NettyHttpChannel channel) throws IOException {
+        SQLRequest sqlRequest = new SQLRequest(context.stmt(), context.args());
+        boolean includeTypes = request.paramAsBoolean("types", false);
+        sqlRequest.includeTypesOnResponse(includeTypes);
+        int pageSize = request.paramAsInt("page_size", DEFAULT_STREAM_PAGE_SIZE);
+        if (pageSize <= 0) {
+            channel.sendResponse(new CrateThrowableRestResponse(channel,
+                    new SQLActionException("page_size must be greater than 0", 4000, RestStatus.BAD_REQUEST, null)));
+            return;
+        }
+        transportSQLAction.executeStreaming(sqlRequest, pageSize, new ChunkedSQLResponseStream(
+                channel, includeTypes, request.hasParam("pretty"), sqlRequest.creationTime()));
+    }
+
     private void executeBulkRequest(SQLXContentSourceContext context, RestRequest request, RestChannel channel, Client client) {
         final SQLBulkRequestBuilder requestBuilder = new SQLBulkRequestBuilder(client);
         requestBuilder.stmt(context.stmt());
@@ -35,27 +35,28 @@ import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
-import org.elasticsearch.action.support.AutoCreateIndex;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateObserver;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
-
 /**
  * Processor to do Bulk Inserts, similar to {@link BulkProcessor}
  * but less flexible (only supports IndexRequests)
@@ -73,7 +74,6 @@ public class BulkShardProcessor {
     private final boolean autoCreateIndices;
     private final int bulkSize;
     private final Map<ShardId, ShardUpsertRequest> requestsByShard = new HashMap<>();
-    private final AutoCreateIndex autoCreateIndex;
     private final AtomicInteger globalCounter = new AtomicInteger(0);
     private final AtomicInteger counter = new AtomicInteger(0);
     private final SettableFuture<BitSet> result;
@@ -84,12 +84,17 @@ public class BulkShardProcessor {
     private final Object responsesLock = new Object();
     private final boolean overwriteDuplicates;
     private volatile boolean closed = false;
-    private final Set<String> indicesCreated = new HashSet<>();
+    private final Set<String> indicesCreated = ConcurrentCollections.newConcurrentSet();
     private final ReadWriteLock retryLock = new ReadWriteLock();
     private final Semaphore executeLock = new Semaphore(1);
-    private final ScheduledExecutorService scheduledExecutorService =
-            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("bulkShardProcessor"));
+    private final ConcurrentMap<ShardId, Semaphore> inFlightRequests = ConcurrentCollections.newConcurrentMap();
+    private final int maxInFlightRequestsPerShard;
     private final TimeValue requestTimeout;
+
+    /**
+     * cluster state used to route the rows, refreshed whenever a batch of requests is sent
+     */
+    private volatile ClusterState clusterState;
     private final boolean continueOnErrors;
     private final ShardingProjector shardingProjector;
     private final AssignmentVisitorContext assignmentVisitorContext;
@@ -102,8 +107,15 @@ public class BulkShardProcessor {
 
     private final ESLogger logger = Loggers.getLogger(getClass());
 
+    /**
+     * retries are scheduled on the scheduler of the thread pool and run on its thread, so they must never block
+     */
+    private final ThreadPool threadPool;
+    private static final TimeValue RETRY_LOCK_POLL_INTERVAL = TimeValue.timeValueMillis(10);
+
     public BulkShardProcessor(ClusterService clusterService,
                               Settings settings,
+                              ThreadPool threadPool,
                               TransportShardUpsertActionDelegate transportShardUpsertActionDelegate,
                               TransportCreateIndexAction transportCreateIndexAction,
                               ShardingProjector shardingProjector,
@@ -115,6 +127,7 @@ public class BulkShardProcessor {
                               @Nullable Map<Reference, Symbol> insertAssignments) {
         assert updateAssignments != null | insertAssignments != null;
         this.clusterService = clusterService;
+        this.threadPool = threadPool;
         this.transportShardUpsertActionDelegate = transportShardUpsertActionDelegate;
         this.transportCreateIndexAction = transportCreateIndexAction;
         this.shardingProjector = shardingProjector;
@@ -126,8 +139,9 @@ public class BulkShardProcessor {
         this.insertAssignments = insertAssignments;
         responses = new BitSet();
         result = SettableFuture.create();
-        autoCreateIndex = new AutoCreateIndex(settings);
         requestTimeout = settings.getAsTime("insert_by_query.request_timeout", BulkShardRequest.DEFAULT_TIMEOUT);
+        maxInFlightRequestsPerShard = settings.getAsInt("insert_by_query.max_in_flight_requests_per_shard", 4);
+        clusterState = clusterService.state();
         assignmentVisitorContext = processAssignments(updateAssignments, insertAssignments);
     }
 
@@ -165,7 +179,7 @@ public class BulkShardProcessor {
                                          @Nullable String routing,
                                          @Nullable Long version) {
         ShardId shardId = clusterService.operationRouting().indexShards(
-                clusterService.state(),
+                clusterState,
                 indexName,
                 Constants.DEFAULT_MAPPING_TYPE,
                 id,
@@ -213,7 +227,6 @@ public class BulkShardProcessor {
     private void setFailure(Throwable e) {
         failure.compareAndSet(null, e);
         result.setException(e);
-        scheduledExecutorService.shutdown();
     }
 
     private void setResult() {
@@ -223,7 +236,6 @@ public class BulkShardProcessor {
         } else {
             result.setException(throwable);
         }
-        scheduledExecutorService.shutdown();
     }
 
     private void setResultIfDone(int successes) {
@@ -241,60 +253,83 @@ public class BulkShardProcessor {
     }
 
     private void executeRequests() {
+        Map<ShardId, ShardUpsertRequest> requests;
+        executeLock.acquireUninterruptibly();
         try {
-            executeLock.acquire();
-            for (Iterator<Map.Entry<ShardId, ShardUpsertRequest>> it = requestsByShard.entrySet().iterator(); it.hasNext(); ) {
-                Map.Entry<ShardId, ShardUpsertRequest> entry = it.next();
-                ShardUpsertRequest shardUpsertRequest = entry.getValue();
-                //shardUpdateRequest.timeout(requestTimeout);
-                execute(shardUpsertRequest);
-                it.remove();
+            if (requestsByShard.isEmpty()) {
+                return;
             }
-        } catch (InterruptedException e) {
-            Thread.interrupted();
-        } finally {
+            requests = new HashMap<>(requestsByShard);
+            requestsByShard.clear();
             counter.set(0);
+        } finally {
             executeLock.release();
         }
+        // the requests are sent without holding the lock so that new rows can be added meanwhile
+        clusterState = clusterService.state();
+        for (Map.Entry<ShardId, ShardUpsertRequest> entry : requests.entrySet()) {
+            execute(entry.getKey(), entry.getValue());
+        }
     }
 
-    private void execute(ShardUpsertRequest updateRequest) {
+    private void execute(ShardId shardId, ShardUpsertRequest updateRequest) {
         trace(String.format("execute shard request %d", updateRequest.shardId()));
-        transportShardUpsertActionDelegate.execute(updateRequest, new ResponseListener(updateRequest));
+        Semaphore inFlightPermits = inFlightRequests.get(shardId);
+        if (inFlightPermits == null) {
+            inFlightPermits = new Semaphore(maxInFlightRequestsPerShard);
+            Semaphore existing = inFlightRequests.putIfAbsent(shardId, inFlightPermits);
+            if (existing != null) {
+                inFlightPermits = existing;
+            }
+        }
+        // blocks if too many requests for this shard are still being processed
+        inFlightPermits.acquireUninterruptibly();
+        transportShardUpsertActionDelegate.execute(updateRequest, new ResponseListener(updateRequest, inFlightPermits));
     }
 
-    private void doRetry(final ShardUpsertRequest request, final boolean repeatingRetry) {
+    private void doRetry(final ShardUpsertRequest request, final Semaphore inFlightPermits, final boolean repeatingRetry) {
         trace("doRetry");
         if (repeatingRetry) {
-            try {
-                Thread.sleep(currentDelay.incrementAndGet());
-            } catch (InterruptedException e) {
-                Thread.interrupted();
-            }
-            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request));
+            // this retry still holds the write lock
+            threadPool.schedule(TimeValue.timeValueMillis(currentDelay.incrementAndGet()), ThreadPool.Names.SAME, new Runnable() {
+                @Override
+                public void run() {
+                    transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request, inFlightPermits));
+                }
+            });
         } else {
-            // new retries will be spawned in new thread because they can block
-            scheduledExecutorService.schedule(
-                    new Runnable() {
-                        @Override
-                        public void run() {
-                            // will block if other retries/writer are active
-                            try {
-                                retryLock.writeLock();
-                            } catch (InterruptedException e) {
-                                Thread.interrupted();
-                            }
-                            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request));
-                        }
-                    }, currentDelay.getAndIncrement(), TimeUnit.MILLISECONDS);
+            // new rows will block until the retry succeeded
+            retryLock.addWriter();
+            threadPool.schedule(TimeValue.timeValueMillis(currentDelay.getAndIncrement()), ThreadPool.Names.SAME,
+                    new RetryRunnable(request, inFlightPermits));
+        }
+    }
+
+    private class RetryRunnable implements Runnable {
+
+        private final ShardUpsertRequest request;
+        private final Semaphore inFlightPermits;
+
+        RetryRunnable(ShardUpsertRequest request, Semaphore inFlightPermits) {
+            this.request = request;
+            this.inFlightPermits = inFlightPermits;
+        }
+
+        @Override
+        public void run() {
+            if (!retryLock.tryWriteLock()) {
+                // another retry is active, check again later instead of blocking the shared scheduler
+                threadPool.schedule(RETRY_LOCK_POLL_INTERVAL, ThreadPool.Names.SAME, this);
+                return;
+            }
+            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request, inFlightPermits));
         }
     }
 
     private void createIndexIfRequired(final String indexName) {
-        if (!indicesCreated.contains(indexName) || autoCreateIndex.shouldAutoCreate(indexName, clusterService.state())) {
+        if (!indicesCreated.contains(indexName)) {
             try {
                 transportCreateIndexAction.execute(new CreateIndexRequest(indexName).cause("bulkShardProcessor")).actionGet();
-                indicesCreated.add(indexName);
             } catch (Throwable e) {
                 e = ExceptionsHelper.unwrapCause(e);
                 if (e instanceof IndexAlreadyExistsException) {
@@ -304,14 +339,60 @@ public class BulkShardProcessor {
                     if (logger.isTraceEnabled()) {
                         logger.trace("copy from index {}", e.getMessage());
                     }
-                    indicesCreated.add(indexName);
                 } else {
                     setFailure(e);
+                    return;
                 }
             }
+            try {
+                // the new index must be known to route the rows
+                clusterState = awaitIndex(clusterService, indexName, requestTimeout, logger);
+                indicesCreated.add(indexName);
+            } catch (Throwable e) {
+                setFailure(Exceptions.unwrap(e));
+            }
         }
     }
 
+    /**
+     * returns the current cluster state once it contains the routing of the given index.
+     * An index created by another node (or another processor) might not be contained in
+     * the local cluster state yet, in that case this blocks until it is applied.
+     */
+    static ClusterState awaitIndex(ClusterService clusterService,
+                                   final String indexName,
+                                   TimeValue timeout,
+                                   ESLogger logger) throws Exception {
+        ClusterStateObserver observer = new ClusterStateObserver(clusterService, timeout, logger);
+        ClusterState clusterState = observer.observedState();
+        if (clusterState.routingTable().hasIndex(indexName)) {
+            return clusterState;
+        }
+        final SettableFuture<ClusterState> future = SettableFuture.create();
+        observer.waitForNextChange(new ClusterStateObserver.Listener() {
+            @Override
+            public void onNewClusterState(ClusterState state) {
+                future.set(state);
+            }
+
+            @Override
+            public void onClusterServiceClose() {
+                future.setException(new IllegalStateException("cluster service closed"));
+            }
+
+            @Override
+            public void onTimeout(TimeValue timeout) {
+                future.setException(new IndexMissingException(new Index(indexName)));
+            }
+        }, new ClusterStateObserver.ValidationPredicate() {
+            @Override
+            protected boolean validate(ClusterState newState) {
+                return newState.routingTable().hasIndex(indexName);
+            }
+        });
+        return future.get();
+    }
+
     private void processResponse(ShardUpsertResponse shardUpsertResponse) {
         trace("execute response");
         for (int i = 0; i < shardUpsertResponse.locations().size(); i++) {
@@ -324,13 +405,14 @@ public class BulkShardProcessor {
         setResultIfDone(shardUpsertResponse.locations().size());
     }
 
-    private void processFailure(Throwable e, ShardUpsertRequest shardUpsertRequest, boolean repeatingRetry) {
+    private void processFailure(Throwable e, ShardUpsertRequest shardUpsertRequest, Semaphore inFlightPermits, boolean repeatingRetry) {
         trace("execute failure");
         e = Exceptions.unwrap(e);
         if (e instanceof EsRejectedExecutionException) {
             logger.trace("{}, retrying", e.getMessage());
-            doRetry(shardUpsertRequest, repeatingRetry);
+            doRetry(shardUpsertRequest, inFlightPermits, repeatingRetry);
         } else {
+            inFlightPermits.release();
             if (repeatingRetry) {
                 // release failed retry
                 try {
@@ -384,19 +466,22 @@ public class BulkShardProcessor {
     class ResponseListener implements ActionListener<ShardUpsertResponse> {
 
         protected final ShardUpsertRequest shardUpsertRequest;
+        protected final Semaphore inFlightPermits;
 
-        public ResponseListener(ShardUpsertRequest shardUpsertRequest) {
+        public ResponseListener(ShardUpsertRequest shardUpsertRequest, Semaphore inFlightPermits) {
             this.shardUpsertRequest = shardUpsertRequest;
+            this.inFlightPermits = inFlightPermits;
         }
 
         @Override
         public void onResponse(ShardUpsertResponse shardUpsertResponse) {
+            inFlightPermits.release();
             processResponse(shardUpsertResponse);
         }
 
         @Override
         public void onFailure(Throwable e) {
-            processFailure(e, shardUpsertRequest, false);
+            processFailure(e, shardUpsertRequest, inFlightPermits, false);
         }
     }
 
@@ -409,8 +494,8 @@ public class BulkShardProcessor {
 
     class RetryResponseListener extends ResponseListener {
 
-        public RetryResponseListener(ShardUpsertRequest shardUpsertRequest) {
-            super(shardUpsertRequest);
+        public RetryResponseListener(ShardUpsertRequest shardUpsertRequest, Semaphore inFlightPermits) {
+            super(shardUpsertRequest, inFlightPermits);
         }
 
         @Override
@@ -422,13 +507,14 @@ public class BulkShardProcessor {
             } catch (InterruptedException e) {
                 Thread.interrupted();
             }
+            inFlightPermits.release();
             processResponse(shardUpsertResponse);
         }
 
         @Override
         public void onFailure(Throwable e) {
             trace("BulkShardProcessor retry failure");
-            processFailure(e, shardUpsertRequest, true);
+            processFailure(e, shardUpsertRequest, inFlightPermits, true);
         }
     }
 
@@ -447,13 +533,24 @@ public class BulkShardProcessor {
         public ReadWriteLock() {
         }
 
-        public void writeLock() throws InterruptedException {
+        /**
+         * register a writer, readers will block from now on until all writers are unlocked
+         */
+        public void addWriter() {
             // check readLock permits to prevent deadlocks
             if (activeWriters.getAndIncrement() == 0 && readLock.availablePermits() == 1) {
                 // draining read permits, so all reads will block
                 readLock.drainPermits();
             }
-            writeLock.acquire();
+        }
+
+        /**
+         * acquire the lock for a writer registered using {@link #addWriter()}
+         *
+         * @return false if another writer currently holds the lock
+         */
+        public boolean tryWriteLock() {
+            return writeLock.tryAcquire();
         }
 
         public void writeUnlock() throws InterruptedException {
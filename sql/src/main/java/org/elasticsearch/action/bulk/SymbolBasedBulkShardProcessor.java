@@ -34,27 +34,25 @@ import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
-import org.elasticsearch.action.support.AutoCreateIndex;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
-
 /**
  * Processor to do Bulk Inserts, similar to {@link org.elasticsearch.action.bulk.BulkProcessor}
  * but less flexible (only supports IndexRequests)
@@ -70,7 +68,6 @@ public class SymbolBasedBulkShardProcessor {
     private final boolean autoCreateIndices;
     private final int bulkSize;
     private final Map<ShardId, SymbolBasedShardUpsertRequest> requestsByShard = new HashMap<>();
-    private final AutoCreateIndex autoCreateIndex;
     private final AtomicInteger globalCounter = new AtomicInteger(0);
     private final AtomicInteger counter = new AtomicInteger(0);
     private final SettableFuture<BitSet> result;
@@ -81,12 +78,17 @@ public class SymbolBasedBulkShardProcessor {
     private final Object responsesLock = new Object();
     private final boolean overwriteDuplicates;
     private volatile boolean closed = false;
-    private final Set<String> indicesCreated = new HashSet<>();
+    private final Set<String> indicesCreated = ConcurrentCollections.newConcurrentSet();
     private final ReadWriteLock retryLock = new ReadWriteLock();
     private final Semaphore executeLock = new Semaphore(1);
-    private final ScheduledExecutorService scheduledExecutorService =
-            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("symbolBasedBulkShardProcessor"));
+    private final ConcurrentMap<ShardId, Semaphore> inFlightRequests = ConcurrentCollections.newConcurrentMap();
+    private final int maxInFlightRequestsPerShard;
     private final TimeValue requestTimeout;
+
+    /**
+     * cluster state used to route the rows, refreshed whenever a batch of requests is sent
+     */
+    private volatile ClusterState clusterState;
     private final boolean continueOnError;
 
     private Reference[] missingAssignmentsColumns;
@@ -95,8 +97,15 @@ public class SymbolBasedBulkShardProcessor {
 
     private final ESLogger logger = Loggers.getLogger(getClass());
 
+    /**
+     * retries are scheduled on the scheduler of the thread pool and run on its thread, so they must never block
+     */
+    private final ThreadPool threadPool;
+    private static final TimeValue RETRY_LOCK_POLL_INTERVAL = TimeValue.timeValueMillis(10);
+
     public SymbolBasedBulkShardProcessor(ClusterService clusterService,
                                          Settings settings,
+                                         ThreadPool threadPool,
                                          SymbolBasedTransportShardUpsertActionDelegate transportShardUpsertActionDelegate,
                                          TransportCreateIndexAction transportCreateIndexAction,
                                          boolean autoCreateIndices,
@@ -107,6 +116,7 @@ public class SymbolBasedBulkShardProcessor {
                                          @Nullable Reference[] missingAssignmentsColumns) {
         assert assignmentsColumns != null | missingAssignmentsColumns != null;
         this.clusterService = clusterService;
+        this.threadPool = threadPool;
         this.transportShardUpsertActionDelegate = transportShardUpsertActionDelegate;
         this.transportCreateIndexAction = transportCreateIndexAction;
         this.autoCreateIndices = autoCreateIndices;
@@ -117,8 +127,9 @@ public class SymbolBasedBulkShardProcessor {
         this.missingAssignmentsColumns = missingAssignmentsColumns;
         responses = new BitSet();
         result = SettableFuture.create();
-        autoCreateIndex = new AutoCreateIndex(settings);
         requestTimeout = settings.getAsTime("insert_by_query.request_timeout", BulkShardRequest.DEFAULT_TIMEOUT);
+        maxInFlightRequestsPerShard = settings.getAsInt("insert_by_query.max_in_flight_requests_per_shard", 4);
+        clusterState = clusterService.state();
     }
 
     public boolean add(String indexName,
@@ -166,7 +177,7 @@ public class SymbolBasedBulkShardProcessor {
                                          @Nullable String routing,
                                          @Nullable Long version) {
         ShardId shardId = clusterService.operationRouting().indexShards(
-                clusterService.state(),
+                clusterState,
                 indexName,
                 Constants.DEFAULT_MAPPING_TYPE,
                 id,
@@ -209,7 +220,6 @@ public class SymbolBasedBulkShardProcessor {
     private void setFailure(Throwable e) {
         failure.compareAndSet(null, e);
         result.setException(e);
-        scheduledExecutorService.shutdown();
     }
 
     private void setResult() {
@@ -219,7 +229,6 @@ public class SymbolBasedBulkShardProcessor {
         } else {
             result.setException(throwable);
         }
-        scheduledExecutorService.shutdown();
     }
 
     private void setResultIfDone(int successes) {
@@ -237,60 +246,83 @@ public class SymbolBasedBulkShardProcessor {
     }
 
     private void executeRequests() {
+        Map<ShardId, SymbolBasedShardUpsertRequest> requests;
+        executeLock.acquireUninterruptibly();
         try {
-            executeLock.acquire();
-            for (Iterator<Map.Entry<ShardId, SymbolBasedShardUpsertRequest>> it = requestsByShard.entrySet().iterator(); it.hasNext(); ) {
-                Map.Entry<ShardId, SymbolBasedShardUpsertRequest> entry = it.next();
-                SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest = entry.getValue();
-                //shardUpdateRequest.timeout(requestTimeout);
-                execute(symbolBasedShardUpsertRequest);
-                it.remove();
+            if (requestsByShard.isEmpty()) {
+                return;
             }
-        } catch (InterruptedException e) {
-            Thread.interrupted();
-        } finally {
+            requests = new HashMap<>(requestsByShard);
+            requestsByShard.clear();
             counter.set(0);
+        } finally {
             executeLock.release();
         }
+        // the requests are sent without holding the lock so that new rows can be added meanwhile
+        clusterState = clusterService.state();
+        for (Map.Entry<ShardId, SymbolBasedShardUpsertRequest> entry : requests.entrySet()) {
+            execute(entry.getKey(), entry.getValue());
+        }
     }
 
-    private void execute(SymbolBasedShardUpsertRequest updateRequest) {
+    private void execute(ShardId shardId, SymbolBasedShardUpsertRequest updateRequest) {
         trace(String.format("execute shard request %d", updateRequest.shardId()));
-        transportShardUpsertActionDelegate.execute(updateRequest, new ResponseListener(updateRequest));
+        Semaphore inFlightPermits = inFlightRequests.get(shardId);
+        if (inFlightPermits == null) {
+            inFlightPermits = new Semaphore(maxInFlightRequestsPerShard);
+            Semaphore existing = inFlightRequests.putIfAbsent(shardId, inFlightPermits);
+            if (existing != null) {
+                inFlightPermits = existing;
+            }
+        }
+        // blocks if too many requests for this shard are still being processed
+        inFlightPermits.acquireUninterruptibly();
+        transportShardUpsertActionDelegate.execute(updateRequest, new ResponseListener(updateRequest, inFlightPermits));
     }
 
-    private void doRetry(final SymbolBasedShardUpsertRequest request, final boolean repeatingRetry) {
+    private void doRetry(final SymbolBasedShardUpsertRequest request, final Semaphore inFlightPermits, final boolean repeatingRetry) {
         trace("doRetry");
         if (repeatingRetry) {
-            try {
-                Thread.sleep(currentDelay.incrementAndGet());
-            } catch (InterruptedException e) {
-                Thread.interrupted();
-            }
-            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request));
+            // this retry still holds the write lock
+            threadPool.schedule(TimeValue.timeValueMillis(currentDelay.incrementAndGet()), ThreadPool.Names.SAME, new Runnable() {
+                @Override
+                public void run() {
+                    transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request, inFlightPermits));
+                }
+            });
         } else {
-            // new retries will be spawned in new thread because they can block
-            scheduledExecutorService.schedule(
-                    new Runnable() {
-                        @Override
-                        public void run() {
-                            // will block if other retries/writer are active
-                            try {
-                                retryLock.writeLock();
-                            } catch (InterruptedException e) {
-                                Thread.interrupted();
-                            }
-                            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request));
-                        }
-                    }, currentDelay.getAndIncrement(), TimeUnit.MILLISECONDS);
+            // new rows will block until the retry succeeded
+            retryLock.addWriter();
+            threadPool.schedule(TimeValue.timeValueMillis(currentDelay.getAndIncrement()), ThreadPool.Names.SAME,
+                    new RetryRunnable(request, inFlightPermits));
+        }
+    }
+
+    private class RetryRunnable implements Runnable {
+
+        private final SymbolBasedShardUpsertRequest request;
+        private final Semaphore inFlightPermits;
+
+        RetryRunnable(SymbolBasedShardUpsertRequest request, Semaphore inFlightPermits) {
+            this.request = request;
+            this.inFlightPermits = inFlightPermits;
+        }
+
+        @Override
+        public void run() {
+            if (!retryLock.tryWriteLock()) {
+                // another retry is active, check again later instead of blocking the shared scheduler
+                threadPool.schedule(RETRY_LOCK_POLL_INTERVAL, ThreadPool.Names.SAME, this);
+                return;
+            }
+            transportShardUpsertActionDelegate.execute(request, new RetryResponseListener(request, inFlightPermits));
         }
     }
 
     private void createIndexIfRequired(final String indexName) {
-        if (!indicesCreated.contains(indexName) || autoCreateIndex.shouldAutoCreate(indexName, clusterService.state())) {
+        if (!indicesCreated.contains(indexName)) {
             try {
                 transportCreateIndexAction.execute(new CreateIndexRequest(indexName).cause("symbolBasedBulkShardProcessor")).actionGet();
-                indicesCreated.add(indexName);
             } catch (Throwable e) {
                 e = ExceptionsHelper.unwrapCause(e);
                 if (e instanceof IndexAlreadyExistsException) {
@@ -300,11 +332,18 @@ public class SymbolBasedBulkShardProcessor {
                     if (logger.isTraceEnabled()) {
                         logger.trace("copy from index {}", e.getMessage());
                     }
-                    indicesCreated.add(indexName);
                 } else {
                     setFailure(e);
+                    return;
                 }
             }
+            try {
+                // the new index must be known to route the rows
+                clusterState = BulkShardProcessor.awaitIndex(clusterService, indexName, requestTimeout, logger);
+                indicesCreated.add(indexName);
+            } catch (Throwable e) {
+                setFailure(Exceptions.unwrap(e));
+            }
         }
     }
 
@@ -320,13 +359,14 @@ public class SymbolBasedBulkShardProcessor {
         setResultIfDone(shardUpsertResponse.locations().size());
     }
 
-    private void processFailure(Throwable e, SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest, boolean repeatingRetry) {
+    private void processFailure(Throwable e, SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest, Semaphore inFlightPermits, boolean repeatingRetry) {
         trace("execute failure");
         e = Exceptions.unwrap(e);
         if (e instanceof EsRejectedExecutionException) {
             logger.trace("{}, retrying", e.getMessage());
-            doRetry(symbolBasedShardUpsertRequest, repeatingRetry);
+            doRetry(symbolBasedShardUpsertRequest, inFlightPermits, repeatingRetry);
         } else {
+            inFlightPermits.release();
             if (repeatingRetry) {
                 // release failed retry
                 try {
@@ -348,19 +388,22 @@ public class SymbolBasedBulkShardProcessor {
     class ResponseListener implements ActionListener<ShardUpsertResponse> {
 
         protected final SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest;
+        protected final Semaphore inFlightPermits;
 
-        public ResponseListener(SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest) {
+        public ResponseListener(SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest, Semaphore inFlightPermits) {
             this.symbolBasedShardUpsertRequest = symbolBasedShardUpsertRequest;
+            this.inFlightPermits = inFlightPermits;
         }
 
         @Override
         public void onResponse(ShardUpsertResponse shardUpsertResponse) {
+            inFlightPermits.release();
             processResponse(shardUpsertResponse);
         }
 
         @Override
         public void onFailure(Throwable e) {
-            processFailure(e, symbolBasedShardUpsertRequest, false);
+            processFailure(e, symbolBasedShardUpsertRequest, inFlightPermits, false);
         }
     }
 
@@ -373,8 +416,8 @@ public class SymbolBasedBulkShardProcessor {
 
     class RetryResponseListener extends ResponseListener {
 
-        public RetryResponseListener(SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest) {
-            super(symbolBasedShardUpsertRequest);
+        public RetryResponseListener(SymbolBasedShardUpsertRequest symbolBasedShardUpsertRequest, Semaphore inFlightPermits) {
+            super(symbolBasedShardUpsertRequest, inFlightPermits);
         }
 
         @Override
@@ -386,13 +429,14 @@ public class SymbolBasedBulkShardProcessor {
             } catch (InterruptedException e) {
                 Thread.interrupted();
             }
+            inFlightPermits.release();
             processResponse(shardUpsertResponse);
         }
 
         @Override
         public void onFailure(Throwable e) {
             trace("BulkShardProcessor retry failure");
-            processFailure(e, symbolBasedShardUpsertRequest, true);
+            processFailure(e, symbolBasedShardUpsertRequest, inFlightPermits, true);
         }
     }
 
@@ -411,13 +455,24 @@ public class SymbolBasedBulkShardProcessor {
         public ReadWriteLock() {
         }
 
-        public void writeLock() throws InterruptedException {
+        /**
+         * register a writer, readers will block from now on until all writers are unlocked
+         */
+        public void addWriter() {
             // check readLock permits to prevent deadlocks
             if (activeWriters.getAndIncrement() == 0 && readLock.availablePermits() == 1) {
                 // draining read permits, so all reads will block
                 readLock.drainPermits();
             }
-            writeLock.acquire();
+        }
+
+        /**
+         * acquire the lock for a writer registered using {@link #addWriter()}
+         *
+         * @return false if another writer currently holds the lock
+         */
+        public boolean tryWriteLock() {
+            return writeLock.tryAcquire();
         }
 
         public void writeUnlock() throws InterruptedException {
@@ -0,0 +1,239 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.executor.ObjectArrayPage;
+import io.crate.executor.Page;
+import io.crate.executor.PageInfo;
+import io.crate.executor.PageableTaskResult;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class PageStreamerTest {
+
+    private static final DataType[] OUTPUT_TYPES = new DataType[]{DataTypes.LONG, DataTypes.STRING};
+
+    private static Object[][] rows(int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{(long) i, new BytesRef("row" + i)};
+        }
+        return rows;
+    }
+
+    /**
+     * pages through the given rows, failing to fetch the page at <code>failingPosition</code>
+     */
+    private static class TestPageableResult implements PageableTaskResult {
+
+        private final Object[][] rows;
+        private final Page page;
+        private final int failingPosition;
+        private final List<PageInfo> fetched;
+        private int closed = 0;
+
+        private TestPageableResult(Object[][] rows, PageInfo pageInfo, int failingPosition, List<PageInfo> fetched) {
+            this.rows = rows;
+            this.page = new ObjectArrayPage(rows, pageInfo.position(), pageInfo.size());
+            this.failingPosition = failingPosition;
+            this.fetched = fetched;
+        }
+
+        @Override
+        public ListenableFuture<PageableTaskResult> fetch(PageInfo pageInfo) {
+            fetched.add(pageInfo);
+            if (pageInfo.position() == failingPosition) {
+                return Futures.immediateFailedFuture(new IllegalStateException("fetch failed"));
+            }
+            TestPageableResult next = new TestPageableResult(rows, pageInfo, failingPosition, fetched);
+            return Futures.<PageableTaskResult>immediateFuture(next);
+        }
+
+        @Override
+        public Page page() {
+            return page;
+        }
+
+        @Override
+        public Object[][] rows() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nullable
+        @Override
+        public String errorMessage() {
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed++;
+        }
+    }
+
+    /**
+     * the returned futures of nextRows are completed by the test, like a client consuming the pages
+     */
+    private static class TestStream implements SQLResponseStream {
+
+        private final List<Object[][]> pages = new ArrayList<>();
+        private final List<SettableFuture<Void>> consumed = new ArrayList<>();
+
+        @Override
+        public void start(String[] outputNames, DataType[] outputTypes) {
+        }
+
+        @Override
+        public ListenableFuture<?> nextRows(Object[][] rows) {
+            pages.add(rows);
+            SettableFuture<Void> future = SettableFuture.create();
+            consumed.add(future);
+            return future;
+        }
+
+        @Override
+        public void finish(long rowCount) {
+        }
+
+        @Override
+        public void fail(Throwable t) {
+        }
+
+        void consumeLastPage() {
+            consumed.get(consumed.size() - 1).set(null);
+        }
+    }
+
+    private static class Callback implements FutureCallback<Long> {
+
+        private Long rowCount;
+        private Throwable failure;
+        private int calls = 0;
+
+        @Override
+        public void onSuccess(@Nullable Long result) {
+            rowCount = result;
+            calls++;
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable t) {
+            failure = t;
+            calls++;
+        }
+    }
+
+    private final List<PageInfo> fetched = new ArrayList<>();
+    private final TestStream stream = new TestStream();
+    private final Callback callback = new Callback();
+
+    private TestPageableResult stream(Object[][] rows, int pageSize, int failingPosition) {
+        PageInfo pageInfo = PageInfo.firstPage(pageSize);
+        TestPageableResult firstPage = new TestPageableResult(rows, pageInfo, failingPosition, fetched);
+        new PageStreamer(stream, OUTPUT_TYPES, pageInfo, callback).onSuccess(firstPage);
+        return firstPage;
+    }
+
+    @Test
+    public void testMultiplePages() throws Exception {
+        stream(rows(25), 10, -1);
+
+        for (int page = 0; page < 3; page++) {
+            assertThat(stream.pages.size(), is(page + 1));
+            // the next page is only fetched once the stream consumed the current one
+            assertThat(fetched.size(), is(page));
+            stream.consumeLastPage();
+        }
+
+        assertThat(fetched, contains(new PageInfo(10, 10), new PageInfo(20, 10)));
+        assertThat(stream.pages.get(0).length, is(10));
+        assertThat(stream.pages.get(2).length, is(5));
+        assertThat(stream.pages.get(2)[4], arrayContaining((Object) 24L, "row24"));
+        assertThat(callback.calls, is(1));
+        assertThat(callback.rowCount, is(25L));
+    }
+
+    @Test
+    public void testLastPageIsEmpty() throws Exception {
+        TestPageableResult firstPage = stream(rows(20), 10, -1);
+        for (int page = 0; page < 3; page++) {
+            stream.consumeLastPage();
+        }
+
+        assertThat(stream.pages.size(), is(3));
+        assertThat(stream.pages.get(2).length, is(0));
+        assertThat(callback.rowCount, is(20L));
+        // only the result of the last page is closed
+        assertThat(firstPage.closed, is(0));
+    }
+
+    @Test
+    public void testClientDisconnectStopsPaging() throws Exception {
+        TestPageableResult firstPage = stream(rows(100), 10, -1);
+        stream.consumeLastPage();
+        IOException disconnected = new IOException("connection reset by peer");
+        stream.consumed.get(1).setException(disconnected);
+
+        assertThat(stream.pages.size(), is(2));
+        assertThat(fetched.size(), is(1));
+        assertThat(callback.calls, is(1));
+        assertThat(callback.failure, sameInstance((Throwable) disconnected));
+        assertThat(callback.rowCount, nullValue());
+        assertThat(firstPage.closed, is(0));
+    }
+
+    @Test
+    public void testClientDisconnectClosesResult() throws Exception {
+        TestPageableResult firstPage = stream(rows(100), 10, -1);
+        stream.consumed.get(0).setException(new IOException("connection reset by peer"));
+
+        assertThat(fetched.size(), is(0));
+        assertThat(callback.failure, instanceOf(IOException.class));
+        assertThat(firstPage.closed, is(1));
+    }
+
+    @Test
+    public void testFetchFailure() throws Exception {
+        TestPageableResult firstPage = stream(rows(100), 10, 10);
+        stream.consumeLastPage();
+
+        assertThat(stream.pages.size(), is(1));
+        assertThat(callback.calls, is(1));
+        assertThat(callback.failure.getMessage(), is("fetch failed"));
+        assertThat(firstPage.closed, is(1));
+    }
+}
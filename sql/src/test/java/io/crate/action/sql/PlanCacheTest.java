@@ -0,0 +1,144 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.analyze.Analysis;
+import io.crate.analyze.ParameterContext;
+import io.crate.planner.NoopPlan;
+import io.crate.planner.symbol.Literal;
+import io.crate.sql.parser.SqlParser;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PlanCacheTest {
+
+    private static PlanCache.Entry newEntry(long clusterStateVersion) {
+        Analysis analysis = new Analysis(new ParameterContext(SQLRequest.EMPTY_ARGS, SQLBulkRequest.EMPTY_BULK_ARGS));
+        return new PlanCache.Entry(analysis, NoopPlan.INSTANCE, clusterStateVersion);
+    }
+
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+        PlanCache cache = new PlanCache(10);
+        PlanCache.Key key = PlanCache.Key.of("select * from t where x = ?", new Object[]{1});
+
+        assertThat(cache.acquire(key, 1L), nullValue());
+        cache.release(key, newEntry(1L));
+        assertThat(cache.size(), is(1L));
+
+        PlanCache.Entry entry = cache.acquire(key, 1L);
+        assertThat(entry, notNullValue());
+        // an acquired entry is not available for concurrent executions
+        assertThat(cache.size(), is(0L));
+        assertThat(cache.acquire(key, 1L), nullValue());
+        cache.release(key, entry);
+
+        assertThat(cache.acquire(PlanCache.Key.of("select * from t where x = ?", new Object[]{1}), 1L), notNullValue());
+        assertThat(cache.hits(), is(2L));
+        assertThat(cache.misses(), is(2L));
+    }
+
+    @Test
+    public void testParameterTypesArePartOfTheKey() throws Exception {
+        PlanCache cache = new PlanCache(10);
+        String stmt = "select * from t where x = ?";
+        cache.release(PlanCache.Key.of(stmt, new Object[]{1}), newEntry(1L));
+
+        assertThat(cache.acquire(PlanCache.Key.of(stmt, new Object[]{1L}), 1L), nullValue());
+        assertThat(cache.acquire(PlanCache.Key.of(stmt, new Object[]{"1"}), 1L), nullValue());
+        assertThat(cache.acquire(PlanCache.Key.of(stmt, new Object[]{new Object[]{1}}), 1L), nullValue());
+        assertThat(cache.acquire(PlanCache.Key.of(stmt, new Object[]{2}), 1L), notNullValue());
+    }
+
+    @Test
+    public void testKeyOfUnknownParameterType() throws Exception {
+        assertThat(PlanCache.Key.of("select * from t where x = ?", new Object[]{new Object()}), nullValue());
+        assertThat(PlanCache.Key.of("select * from t where x = ?", new Object[]{new Object[]{1, "a"}}), nullValue());
+    }
+
+    @Test
+    public void testBindParameterValues() throws Exception {
+        ParameterContext parameterContext = new ParameterContext(new Object[]{1}, SQLBulkRequest.EMPTY_BULK_ARGS);
+        Literal literal = parameterContext.getAsSymbol(0);
+        PlanCache.Entry entry = new PlanCache.Entry(new Analysis(parameterContext), NoopPlan.INSTANCE, 1L);
+
+        entry.bind(new Object[]{2});
+        assertThat((Integer) literal.value(), is(2));
+    }
+
+    @Test
+    public void testValueDependent() throws Exception {
+        PlanCache cache = new PlanCache(10);
+        cache.planDependsOnValues();
+        cache.planDependsOnValues();
+        assertThat(cache.valueDependent(), is(2L));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void testEntryOfOutdatedClusterStateIsInvalidated() throws Exception {
+        PlanCache cache = new PlanCache(10);
+        PlanCache.Key key = PlanCache.Key.of("select * from t", SQLRequest.EMPTY_ARGS);
+        cache.release(key, newEntry(1L));
+
+        assertThat(cache.acquire(key, 2L), nullValue());
+        assertThat(cache.invalidations(), is(1L));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        PlanCache cache = new PlanCache(1);
+        cache.release(PlanCache.Key.of("select 1 from t", SQLRequest.EMPTY_ARGS), newEntry(1L));
+        cache.release(PlanCache.Key.of("select 2 from t", SQLRequest.EMPTY_ARGS), newEntry(1L));
+
+        assertThat(cache.size(), is(1L));
+        assertThat(cache.evictions(), is(1L));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        PlanCache cache = new PlanCache(0);
+        PlanCache.Key key = PlanCache.Key.of("select * from t", SQLRequest.EMPTY_ARGS);
+        cache.release(key, newEntry(1L));
+
+        assertThat(cache.acquire(key, 1L), nullValue());
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void testIsCacheable() throws Exception {
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement("select * from t where x = ?")), is(true));
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement(
+                "select name, count(*) from sys.nodes group by name order by 2 limit 10")), is(true));
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement("select current_timestamp from t")), is(false));
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement(
+                "select * from t where ts < current_timestamp")), is(false));
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement("insert into t (x) values (?)")), is(false));
+        assertThat(PlanCache.isCacheable(SqlParser.createStatement("update t set x = 1")), is(false));
+    }
+}
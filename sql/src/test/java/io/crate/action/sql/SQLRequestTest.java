@@ -66,4 +66,39 @@ public class SQLRequestTest {
         assertThat(request.includeTypesOnResponse(), is(true));
         assertThat(request.stmt(), is("select * from users"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testColumnarFormatSupportIsStreamedInHeadersFlag() throws Exception {
+        SQLRequest request = new SQLRequest(
+                "select * from users",
+                new Object[] { "arg1", "arg2" }
+        );
+        request.creationTime = 0;
+        request.includeTypesOnResponse(true);
+        request.supportsColumnarFormat(true);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        // only the headers flag differs, older versions read it as boolean and ignore it
+        byte[] expectedBytes = new byte[]
+                {2,19,115,101,108,101,99,116,32,42,32,102,114,111,109,32,117,115,101,114,115,2,0,4,97,114,103,49,0,4,97,114,103, 50, 0, 1};
+        assertThat(out.bytes().toBytes(), is(expectedBytes));
+
+        SQLRequest request2 = new SQLRequest();
+        request2.readFrom(new BytesStreamInput(out.bytes()));
+        assertThat(request2.supportsColumnarFormat(), is(true));
+        assertThat(request2.stmt(), is("select * from users"));
+        assertThat(request2.args(), is(new Object[] { "arg1", "arg2" }));
+    }
+
+    @Test
+    public void testColumnarFormatIsNotSupportedByDefault() throws Exception {
+        byte[] buf = new byte[]
+                {0,19,115,101,108,101,99,116,32,42,32,102,114,111,109,32,117,115,101,114,115,2,0,4,97,114,103,49,0,4,97,114,103, 50, 0, 1};
+        SQLRequest request = new SQLRequest();
+        request.readFrom(new BytesStreamInput(buf, false));
+
+        assertThat(request.supportsColumnarFormat(), is(false));
+    }
+}
@@ -31,6 +31,8 @@ import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataTypes;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
@@ -71,4 +73,31 @@ public class QueryShardRequestTest {
         inRequest.readFrom(in);
         assertThat(request, equalTo(inRequest));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueryShardRequestWithLastEmittedDocSerialization() throws Exception {
+        Reference nameRef = createReference("name", DataTypes.STRING);
+        QueryShardRequest request = new QueryShardRequest(
+                "dummyTable",
+                1,
+                ImmutableList.of(nameRef),
+                ImmutableList.<Symbol>of(nameRef),
+                new boolean[] { false },
+                new Boolean[] { null },
+                10,
+                0,
+                WhereClause.MATCH_ALL,
+                ImmutableList.<ReferenceInfo>of(),
+                Optional.<TimeValue>absent()
+        ).lastEmittedDoc(new FieldDoc(42, Float.NaN, new Object[] { new BytesRef("Arthur") }));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        QueryShardRequest inRequest = new QueryShardRequest();
+        inRequest.readFrom(in);
+        assertThat(request, equalTo(inRequest));
+        assertThat(inRequest.lastEmittedDoc().doc, equalTo(42));
+    }
+}
@@ -22,8 +22,10 @@
 
 package io.crate.analyze;
 
+import io.crate.planner.symbol.Literal;
 import io.crate.testing.TestingHelpers;
 import io.crate.types.ArrayType;
+import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.junit.Rule;
@@ -132,4 +134,25 @@ public class ParameterContextTest {
         ParameterContext ctx = new ParameterContext(EMPTY_ARGS, bulkArgs);
         TestingHelpers.assertLiteralSymbol(ctx.getAsSymbol(0), bulkArgs[0][0], new ArrayType(new ArrayType(DataTypes.UNDEFINED)));
     }
+
+    @Test
+    public void testValuesRead() throws Exception {
+        ParameterContext ctx = new ParameterContext(new Object[]{ 1, "foo" }, EMPTY_BULK_ARGS);
+        Literal first = ctx.getAsSymbol(0);
+        Literal second = ctx.getAsSymbol(1);
+        assertThat(ctx.parameterLiterals().size(), is(2));
+        assertFalse(ctx.valuesRead());
+
+        assertThat(second.valueType(), is((DataType) DataTypes.STRING));
+        assertFalse(ctx.valuesRead());
+        assertThat((Integer) first.value(), is(1));
+        assertTrue(ctx.valuesRead());
+    }
+
+    @Test
+    public void testValuesReadByParameters() throws Exception {
+        ParameterContext ctx = new ParameterContext(new Object[]{ 1 }, EMPTY_BULK_ARGS);
+        ctx.parameters();
+        assertTrue(ctx.valuesRead());
+    }
 }
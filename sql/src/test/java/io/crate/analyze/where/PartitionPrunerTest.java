@@ -0,0 +1,127 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.analyze.where;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.metadata.*;
+import io.crate.operation.operator.*;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataTypes;
+import io.crate.types.SetType;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.createFunction;
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PartitionPrunerTest {
+
+    private static final TableIdent TABLE_IDENT = new TableIdent(null, "parted");
+    private static final ReferenceInfo DATE_INFO = new ReferenceInfo(
+            new ReferenceIdent(TABLE_IDENT, "date"), RowGranularity.PARTITION, DataTypes.TIMESTAMP);
+
+    private final Reference date = new Reference(DATE_INFO);
+    private final Reference name = createReference("name", DataTypes.STRING);
+    private final PartitionIndex partitionIndex = createIndex(1000);
+
+    private static PartitionIndex createIndex(int numPartitions) {
+        List<PartitionName> partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new PartitionName(TABLE_IDENT, ImmutableList.of(new BytesRef(Long.toString(i * 10L)))));
+        }
+        return new PartitionIndex(ImmutableList.of(DATE_INFO), partitions);
+    }
+
+    private static BitSet range(int fromInclusive, int toExclusive) {
+        BitSet bitSet = new BitSet();
+        bitSet.set(fromInclusive, toExclusive);
+        return bitSet;
+    }
+
+    private static Literal timestamp(long value) {
+        return Literal.newLiteral(DataTypes.TIMESTAMP, value);
+    }
+
+    private static Symbol op(String name, Symbol left, Symbol right) {
+        return createFunction(name, DataTypes.BOOLEAN, left, right);
+    }
+
+    @Test
+    public void testEq() throws Exception {
+        assertThat(PartitionPruner.prune(partitionIndex, op(EqOperator.NAME, date, timestamp(50L))),
+                is(range(5, 6)));
+    }
+
+    @Test
+    public void testRangeWithSwappedArguments() throws Exception {
+        // 100 <= date and date < 150
+        Symbol query = op(AndOperator.NAME,
+                op(LteOperator.NAME, timestamp(100L), date),
+                op(LtOperator.NAME, date, timestamp(150L)));
+        assertThat(PartitionPruner.prune(partitionIndex, query), is(range(10, 15)));
+    }
+
+    @Test
+    public void testIn() throws Exception {
+        Symbol query = op(InOperator.NAME, date,
+                Literal.newLiteral(new SetType(DataTypes.TIMESTAMP), ImmutableSet.<Object>of(20L, 25L, 9990L)));
+        BitSet expected = new BitSet();
+        expected.set(2);
+        expected.set(999);
+        assertThat(PartitionPruner.prune(partitionIndex, query), is(expected));
+    }
+
+    @Test
+    public void testConditionsOnOtherColumnsAreIgnored() throws Exception {
+        Symbol nameEq = op(EqOperator.NAME, name, Literal.newLiteral("foo"));
+        assertThat(PartitionPruner.prune(partitionIndex, nameEq), is(nullValue()));
+        assertThat(PartitionPruner.prune(partitionIndex,
+                op(AndOperator.NAME, nameEq, op(GtOperator.NAME, date, timestamp(9970L)))),
+                is(range(998, 1000)));
+    }
+
+    @Test
+    public void testOrIsNotPruned() throws Exception {
+        Symbol query = op(OrOperator.NAME,
+                op(EqOperator.NAME, date, timestamp(10L)),
+                op(EqOperator.NAME, name, Literal.newLiteral("foo")));
+        assertThat(PartitionPruner.prune(partitionIndex, query), is(nullValue()));
+    }
+
+    @Test
+    public void testComparisonWithNullMatchesNothing() throws Exception {
+        Symbol query = op(EqOperator.NAME, date, Literal.newLiteral(DataTypes.TIMESTAMP, null));
+        assertThat(PartitionPruner.prune(partitionIndex, query), is(new BitSet()));
+    }
+}
@@ -50,6 +50,7 @@ import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
@@ -133,6 +134,7 @@ public class LocalMergeTaskTest {
                     mock(ClusterService.class),
                     ImmutableSettings.EMPTY,
                     mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                    BigArrays.NON_RECYCLING_INSTANCE,
                     symbolVisitor,
                     mergeNode,
                     mock(StatsTables.class),
@@ -514,6 +514,57 @@ public class PagingTasksTest extends BaseTransportExecutorTest {
 
     }
 
+    @Test
+    public void testQueryThenFetchPageWithBigGapAndQueryOffsetAndLimit() throws Exception {
+        sqlExecutor.exec("create table ids (id long primary key) with (number_of_replicas=0)");
+        sqlExecutor.ensureGreen();
+        Object[][] bulkArgs = new Object[2048][];
+        for (int l = 0; l<2048; l++) {
+            bulkArgs[l] = new Object[] { l };
+        }
+        sqlExecutor.exec("insert into ids values (?)", bulkArgs);
+        sqlExecutor.refresh("ids");
+
+        DocTableInfo ids = docSchemaInfo.getTableInfo("ids");
+
+        QueryThenFetchNode qtfNode = new QueryThenFetchNode(
+                ids.getRouting(WhereClause.MATCH_ALL),
+                Arrays.<Symbol>asList(ref(ids, "id")),
+                Arrays.<Symbol>asList(ref(ids, "id")),
+                new boolean[]{false},
+                new Boolean[]{null},
+                2000,
+                10,
+                WhereClause.MATCH_ALL,
+                null
+        );
+
+        List<Task> tasks = executor.newTasks(qtfNode, UUID.randomUUID());
+        QueryThenFetchTask qtfTask = (QueryThenFetchTask)tasks.get(0);
+        PageInfo pageInfo = PageInfo.firstPage(2);
+        qtfTask.start(pageInfo);
+        PageableTaskResult pageableTaskResult = (PageableTaskResult)qtfTask.result().get(0).get();
+        closeMeWhenDone = pageableTaskResult;
+        assertThat(TestingHelpers.printedPage(pageableTaskResult.page()),
+                is("10\n" +
+                   "11\n")
+        );
+
+        // the gap is too big to be fetched from the current page source,
+        // the new query continues after the rows emitted by the first page
+        pageInfo = new PageInfo(1980, 30);
+        PageableTaskResult gappedResult = pageableTaskResult.fetch(pageInfo).get();
+        closeMeWhenDone = gappedResult;
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1990; i < 2010; i++) {
+            expected.append(i).append("\n");
+        }
+        // the limit of the query is respected
+        assertThat(TestingHelpers.printedPage(gappedResult.page()), is(expected.toString()));
+
+        assertThat(gappedResult.fetch(pageInfo.nextPage()).get().page().size(), is(0L));
+    }
+
     @TestLogging("io.crate.executor.transport.task.elasticsearch:TRACE")
     @Test
     public void testRandomQTFPaging() throws Exception {
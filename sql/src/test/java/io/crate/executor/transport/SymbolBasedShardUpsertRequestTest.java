@@ -31,6 +31,7 @@ import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
@@ -105,4 +106,32 @@ public class SymbolBasedShardUpsertRequestTest {
         assertThat(item2.retryOnConflict(), is(0));
     }
 
+    @Test
+    public void testStreamingOfPrimaryResult() throws Exception {
+        ShardId shardId = new ShardId("test", 1);
+        SymbolBasedShardUpsertRequest request = new SymbolBasedShardUpsertRequest(
+                shardId,
+                null,
+                new Reference[]{idRef, nameRef});
+        request.add(0, "99", null, new Object[]{99, new BytesRef("Marvin")}, null, null);
+        request.add(1, "42", null, new Object[]{42, new BytesRef("Deep Thought")}, null, null);
+        // first item was applied on the primary, the second one failed
+        request.items().get(0).source(new BytesArray("{\"id\": 99, \"name\": \"Marvin\"}"), 3L);
+        request.items().get(0).parent("1");
+        request.items().get(0).timestamp("1428000000000");
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+        SymbolBasedShardUpsertRequest request2 = new SymbolBasedShardUpsertRequest();
+        request2.readFrom(new BytesStreamInput(out.bytes()));
+
+        SymbolBasedShardUpsertRequest.Item item1 = request2.items().get(0);
+        assertThat(item1.source().toUtf8(), is("{\"id\": 99, \"name\": \"Marvin\"}"));
+        assertThat(item1.sourceVersion(), is(3L));
+        assertThat(item1.version(), is(Versions.MATCH_ANY));
+        assertThat(item1.parent(), is("1"));
+        assertThat(item1.timestamp(), is("1428000000000"));
+
+        assertNull(request2.items().get(1).source());
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.metadata.Functions;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.TableIdent;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Reference;
+import io.crate.types.DataTypes;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
+import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class SymbolBasedTransportShardUpsertActionTest {
+
+    private final ShardId shardId = new ShardId("characters", 0);
+    private final TableIdent charactersIdent = new TableIdent(null, "characters");
+    private final Reference idRef = new Reference(new ReferenceInfo(
+            new ReferenceIdent(charactersIdent, "id"), RowGranularity.DOC, DataTypes.INTEGER));
+    private final Reference nameRef = new Reference(new ReferenceInfo(
+            new ReferenceIdent(charactersIdent, "name"), RowGranularity.DOC, DataTypes.STRING));
+
+    private IndexShard indexShard;
+    private TestingAction action;
+
+    /**
+     * exposes the primary and replica operations which are only accessible from a subclass
+     */
+    static class TestingAction extends SymbolBasedTransportShardUpsertAction {
+
+        TestingAction(Settings settings, IndicesService indicesService) {
+            super(settings,
+                    mock(ThreadPool.class),
+                    mock(ClusterService.class),
+                    mock(TransportService.class),
+                    new ActionFilters(ImmutableSet.<ActionFilter>of()),
+                    mock(MappingUpdatedAction.class),
+                    indicesService,
+                    mock(ShardStateAction.class),
+                    mock(Functions.class));
+        }
+
+        PrimaryResponse<ShardUpsertResponse, SymbolBasedShardUpsertRequest> executeOnPrimary(
+                SymbolBasedShardUpsertRequest request) {
+            return shardOperationOnPrimary(mock(ClusterState.class),
+                    new PrimaryOperationRequest(request.shardId(), request.index(), request));
+        }
+
+        void executeOnReplica(SymbolBasedShardUpsertRequest request) {
+            ReplicaOperationRequest replicaRequest = mock(ReplicaOperationRequest.class);
+            replicaRequest.shardId = new ShardId(request.index(), request.shardId());
+            replicaRequest.request = request;
+            shardOperationOnReplica(replicaRequest);
+        }
+    }
+
+    @Before
+    public void prepare() throws Exception {
+        indexShard = mock(IndexShard.class);
+        IndexService indexService = mock(IndexService.class);
+        when(indexService.shardSafe(shardId.id())).thenReturn(indexShard);
+        IndicesService indicesService = mock(IndicesService.class);
+        when(indicesService.indexServiceSafe(shardId.getIndex())).thenReturn(indexService);
+
+        action = spy(new TestingAction(ImmutableSettings.EMPTY, indicesService));
+    }
+
+    private SymbolBasedShardUpsertRequest newRequest(boolean continueOnError) {
+        SymbolBasedShardUpsertRequest request = new SymbolBasedShardUpsertRequest(
+                shardId, null, new Reference[]{idRef, nameRef});
+        request.continueOnError(continueOnError);
+        request.add(0, "1", null, new Object[]{1, new BytesRef("Arthur")}, null, null);
+        request.add(1, "2", null, new Object[]{2, new BytesRef("Ford")}, null, null);
+        request.add(2, "3", null, new Object[]{3, new BytesRef("Trillian")}, null, null);
+        return request;
+    }
+
+    private Engine.Create created(String id, String source, long version) {
+        ParsedDocument doc = new ParsedDocument(null, new NumericDocValuesField("_version", -1L), id, "default", null, 0L, -1L,
+                ImmutableList.<ParseContext.Document>of(), null, new BytesArray(source), false);
+        Engine.Create create = new Engine.Create(null, new Term("_uid", "default#" + id), doc);
+        create.updateVersion(version);
+        return create;
+    }
+
+    private void stubItem(SymbolBasedShardUpsertRequest.Item item, Engine.IndexingOperation operation) {
+        doReturn(operation).when(action).indexItem(
+                any(ClusterState.class), any(SymbolBasedShardUpsertRequest.class), same(item),
+                any(IndexShard.class), anyBoolean(), anyInt());
+    }
+
+    private void stubItemFailure(SymbolBasedShardUpsertRequest.Item item, Throwable t) {
+        doThrow(t).when(action).indexItem(
+                any(ClusterState.class), any(SymbolBasedShardUpsertRequest.class), same(item),
+                any(IndexShard.class), anyBoolean(), anyInt());
+    }
+
+    @Test
+    public void testFailingItemStopsRequestButAppliedItemsAreReplicated() throws Exception {
+        SymbolBasedShardUpsertRequest request = newRequest(false);
+        stubItem(request.items().get(0), created("1", "{\"id\":1,\"name\":\"Arthur\"}", 1L));
+        DocumentAlreadyExistsException failure = new DocumentAlreadyExistsException(shardId, "default", "2");
+        stubItemFailure(request.items().get(1), failure);
+
+        TestingAction.PrimaryResponse<ShardUpsertResponse, SymbolBasedShardUpsertRequest>
+                primaryResponse = action.executeOnPrimary(request);
+
+        // the failure doesn't abort the replication, it is returned with the response
+        ShardUpsertResponse response = primaryResponse.response();
+        assertThat(response.failure(), is((Throwable) failure));
+        assertThat(response.locations().size(), is(2));
+        assertThat(response.responses().get(0).version(), is(1L));
+        assertNull(response.responses().get(1));
+        assertThat(response.failures().get(1).id(), is("2"));
+        // the item after the failing one isn't executed
+        verify(action, never()).indexItem(
+                any(ClusterState.class), any(SymbolBasedShardUpsertRequest.class), same(request.items().get(2)),
+                any(IndexShard.class), anyBoolean(), anyInt());
+
+        // the replica request goes over the wire and applies the first item only
+        BytesStreamOutput out = new BytesStreamOutput();
+        primaryResponse.replicaRequest().writeTo(out);
+        SymbolBasedShardUpsertRequest replicaRequest = new SymbolBasedShardUpsertRequest();
+        replicaRequest.readFrom(new BytesStreamInput(out.bytes()));
+        action.executeOnReplica(replicaRequest);
+
+        ArgumentCaptor<SourceToParse> sourceCaptor = ArgumentCaptor.forClass(SourceToParse.class);
+        verify(indexShard, times(1)).prepareIndex(sourceCaptor.capture(), eq(1L),
+                eq(VersionType.INTERNAL.versionTypeForReplicationAndRecovery()),
+                eq(Engine.Operation.Origin.REPLICA), anyBoolean());
+        assertThat(sourceCaptor.getValue().id(), is("1"));
+        assertThat(sourceCaptor.getValue().source().toUtf8(), is("{\"id\":1,\"name\":\"Arthur\"}"));
+    }
+
+    @Test
+    public void testFailingItemIsSkippedOnContinueOnError() throws Exception {
+        SymbolBasedShardUpsertRequest request = newRequest(true);
+        stubItem(request.items().get(0), created("1", "{\"id\":1,\"name\":\"Arthur\"}", 1L));
+        stubItemFailure(request.items().get(1), new DocumentAlreadyExistsException(shardId, "default", "2"));
+        stubItem(request.items().get(2), created("3", "{\"id\":3,\"name\":\"Trillian\"}", 1L));
+
+        ShardUpsertResponse response = action.executeOnPrimary(request).response();
+        assertNull(response.failure());
+        assertThat(response.locations().size(), is(3));
+        assertNotNull(response.responses().get(0));
+        assertThat(response.failures().get(1).id(), is("2"));
+        assertNotNull(response.responses().get(2));
+
+        action.executeOnReplica(request);
+        verify(indexShard, times(2)).prepareIndex(any(SourceToParse.class), anyLong(),
+                any(VersionType.class), eq(Engine.Operation.Origin.REPLICA), anyBoolean());
+    }
+
+    @Test
+    public void testReplicaUsesParentAndTimestampOfPrimary() throws Exception {
+        SymbolBasedShardUpsertRequest request = newRequest(true);
+        SymbolBasedShardUpsertRequest.Item item = request.items().get(0);
+        item.source(new BytesArray("{\"id\":1,\"name\":\"Arthur\"}"), 2L);
+        item.parent("42");
+        item.timestamp("1428000000000");
+
+        action.executeOnReplica(request);
+
+        ArgumentCaptor<SourceToParse> sourceCaptor = ArgumentCaptor.forClass(SourceToParse.class);
+        verify(indexShard, times(1)).prepareIndex(sourceCaptor.capture(), eq(2L),
+                any(VersionType.class), eq(Engine.Operation.Origin.REPLICA), anyBoolean());
+        assertThat(sourceCaptor.getValue().parent(), is("42"));
+        assertThat(sourceCaptor.getValue().timestamp(), is(1428000000000L));
+    }
+
+    @Test
+    public void testFailureIsStreamedWithResponse() throws Exception {
+        ShardUpsertResponse response = new ShardUpsertResponse(shardId.getIndex());
+        response.add(0, new ShardUpsertResponse.Failure("2", "already exists", false));
+        response.failure(new DocumentAlreadyExistsException(shardId, "default", "2"));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+        ShardUpsertResponse response2 = new ShardUpsertResponse();
+        response2.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(response2.locations().size(), is(1));
+        assertThat(response2.failure(), instanceOf(DocumentAlreadyExistsException.class));
+    }
+}
@@ -27,6 +27,7 @@ import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.transport.TransportRequest;
 import org.junit.Test;
 
 import java.util.UUID;
@@ -68,4 +69,59 @@ public class DistributedResultRequestTest {
         assertThat(r1.rows(), is(r2.rows()));
     }
 
+    @Test
+    public void testStreamingPage() throws Exception {
+        DistributedRequestContextManager cm = mock(DistributedRequestContextManager.class);
+
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.STRING.streamer()};
+        when(cm.getStreamer((UUID) anyObject())).thenReturn(Optional.of(streamers));
+
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), streamers);
+        r1.rows(new Object[][]{{new BytesRef("ab")}});
+        r1.lastPage(false);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        r1.writeTo(out);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        DistributedResultRequest r2 = new DistributedResultRequest(cm);
+        r2.readFrom(in);
+
+        assertThat(r2.lastPage(), is(false));
+        assertThat(r1.rows(), is(r2.rows()));
+    }
+
+    @Test
+    public void testStreamingIsCompatibleWithoutPages() throws Exception {
+        DistributedRequestContextManager cm = mock(DistributedRequestContextManager.class);
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.STRING.streamer()};
+        when(cm.getStreamer((UUID) anyObject())).thenReturn(Optional.of(streamers));
+        UUID uuid = UUID.randomUUID();
+
+        // request as written by versions which send all rows at once
+        BytesStreamOutput out = new BytesStreamOutput();
+        new TransportRequest.Empty().writeTo(out);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeBoolean(false);
+        out.writeVInt(1);
+        streamers[0].writeValueTo(out, new BytesRef("ab"));
+
+        DistributedResultRequest r1 = new DistributedResultRequest(cm);
+        r1.readFrom(new BytesStreamInput(out.bytes()));
+        assertThat(r1.lastPage(), is(true));
+        assertThat(r1.failure(), is(false));
+        assertThat(r1.rows(), is(new Object[][]{{new BytesRef("ab")}}));
+
+        // a page which isn't the last one is read as failure by these versions
+        DistributedResultRequest r2 = new DistributedResultRequest(uuid, streamers);
+        r2.rows(new Object[][]{{new BytesRef("ab")}});
+        r2.lastPage(false);
+        out = new BytesStreamOutput();
+        r2.writeTo(out);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        new TransportRequest.Empty().readFrom(in);
+        in.readLong();
+        in.readLong();
+        assertThat(in.readBoolean(), is(true));
+    }
 }
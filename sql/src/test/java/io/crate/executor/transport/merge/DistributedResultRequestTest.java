@@ -131,7 +131,20 @@ public class DistributedResultRequestTest {
         assertTrue(requestReceiver.memoryStream().size() > 0);
 
 
-        contextManager.addToContext(requestReceiver);
+        final SettableFuture<Boolean> needMore = SettableFuture.create();
+        contextManager.addToContext(requestReceiver, new ActionListener<Boolean>() {
+            @Override
+            public void onResponse(Boolean response) {
+                needMore.set(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                needMore.setException(e);
+            }
+        });
+        // the page is only acknowledged once it has been merged
+        assertFalse(needMore.isDone());
         final SettableFuture<Object[][]> result = SettableFuture.create();
 
         contextManager.createContext(dummyMergeNode, new ActionListener<NodeMergeResponse>() {
@@ -145,6 +158,7 @@ public class DistributedResultRequestTest {
             }
         });
 
+        assertTrue(needMore.isDone());
         Object[][] receivedRows = result.get();
         assertThat(receivedRows.length, is(3));
         for (int i = 0; i < rows.length; i++) {
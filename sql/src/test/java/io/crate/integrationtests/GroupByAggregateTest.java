@@ -1018,4 +1018,27 @@ public class GroupByAggregateTest extends SQLTransportIntegrationTest {
         assertThat((Double)response.rows()[0][4], is(1090.6875d));
         assertThat((Double)response.rows()[0][5], is(33.025558284456d));
     }
+
+    @Test
+    public void testAggregationsOverMultiplePagesOfDocuments() throws Exception {
+        // more documents per shard than are buffered by the collector in columnar mode
+        execute("create table t (id int, x long, name string) " +
+                "clustered into 1 shards with (number_of_replicas = 0)");
+        ensureYellow();
+        Object[][] bulkArgs = new Object[2500][];
+        for (int i = 0; i < bulkArgs.length; i++) {
+            bulkArgs[i] = new Object[] { i, (long) i, i % 2 == 0 ? "even" : "odd" };
+        }
+        execute("insert into t (id, x, name) values (?, ?, ?)", bulkArgs);
+        refresh();
+
+        execute("select count(*), sum(x), min(id), max(id) from t");
+        assertThat((Long) response.rows()[0][0], is(2500L));
+        assertThat((Double) response.rows()[0][1], is(3123750.0d));
+        assertThat((Integer) response.rows()[0][2], is(0));
+        assertThat((Integer) response.rows()[0][3], is(2499));
+
+        execute("select name, count(*), sum(x) from t group by name order by name");
+        assertThat(TestingHelpers.printedTable(response.rows()), is("even| 1250| 1561250.0\nodd| 1250| 1562500.0\n"));
+    }
 }
@@ -431,7 +431,7 @@ public class InformationSchemaTest extends SQLTransportIntegrationTest {
     @Test
     public void testDefaultColumns() throws Exception {
         execute("select * from information_schema.columns order by schema_name, table_name");
-        assertEquals(201L, response.rowCount());
+        assertEquals(213L, response.rowCount());
     }
 
     @Test
@@ -28,6 +28,8 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Functions;
 import io.crate.operation.operator.*;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.operation.scalar.arithmetic.AbsFunction;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Reference;
@@ -37,6 +39,7 @@ import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.SetType;
 import org.apache.lucene.queries.BooleanFilter;
+import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.sandbox.queries.regex.RegexQuery;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
@@ -44,30 +47,48 @@ import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.lucene.search.MatchNoDocsQuery;
 import org.elasticsearch.common.lucene.search.XConstantScoreQuery;
 import org.elasticsearch.index.cache.IndexCache;
+import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.search.internal.SearchContext;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static io.crate.testing.TestingHelpers.createFunction;
 import static io.crate.testing.TestingHelpers.createReference;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class LuceneQueryBuilderTest extends RandomizedTest {
 
     private LuceneQueryBuilder builder;
+    private Functions functions;
+    private IndexCache indexCache;
+    private FilterCache filterCache;
 
     @Before
     public void setUp() throws Exception {
-        Functions functions = new ModulesBuilder()
-                .add(new OperatorModule()).createInjector().getInstance(Functions.class);
+        functions = new ModulesBuilder()
+                .add(new OperatorModule())
+                .add(new ScalarFunctionModule()).createInjector().getInstance(Functions.class);
+        filterCache = mock(FilterCache.class);
+        when(filterCache.cache(any(Filter.class))).then(returnsFirstArg());
+        indexCache = mock(IndexCache.class, Answers.RETURNS_MOCKS.get());
+        when(indexCache.filter()).thenReturn(filterCache);
         builder = new LuceneQueryBuilder(functions,
                 mock(SearchContext.class, Answers.RETURNS_MOCKS.get()),
-                mock(IndexCache.class, Answers.RETURNS_MOCKS.get()));
+                indexCache);
     }
 
     @Test
@@ -144,7 +165,7 @@ public class LuceneQueryBuilderTest extends RandomizedTest {
     }
 
     @Test
-    public void testWhereRefInSetLiteralIsConvertedToBooleanQuery() throws Exception {
+    public void testWhereRefInSetLiteralIsConvertedToTermsFilter() throws Exception {
         DataType dataType = new SetType(DataTypes.STRING);
         Reference foo = createReference("foo", DataTypes.STRING);
         WhereClause whereClause = new WhereClause(
@@ -153,10 +174,68 @@ public class LuceneQueryBuilderTest extends RandomizedTest {
                         Literal.newLiteral(dataType, Sets.newHashSet(new BytesRef("foo"), new BytesRef("bar")))
                 ));
         Query query = convert(whereClause);
-        assertThat(query, instanceOf(BooleanQuery.class));
-        for (BooleanClause booleanClause : (BooleanQuery) query) {
-            assertThat(booleanClause.getQuery(), instanceOf(TermQuery.class));
+        assertThat(query, instanceOf(FilteredQuery.class));
+        Filter filter = ((FilteredQuery) query).getFilter();
+        assertThat(filter, instanceOf(TermsFilter.class));
+        assertThat(filter.toString(), is("foo:bar foo:foo"));
+    }
+
+    @Test
+    public void testWhereRefInLargeSetLiteralIsConvertedToTermsFilter() throws Exception {
+        // would exceed the max clause count of a boolean query
+        Set<Object> values = new HashSet<>();
+        for (long i = 0; i < 5000; i++) {
+            values.add(i);
         }
+        values.add(null);
+        WhereClause whereClause = new WhereClause(
+                createFunction(InOperator.NAME, DataTypes.BOOLEAN,
+                        createReference("x", DataTypes.LONG),
+                        Literal.newLiteral(new SetType(DataTypes.LONG), values)
+                ));
+        Query query = convert(whereClause);
+        assertThat(query, instanceOf(FilteredQuery.class));
+        assertThat(((FilteredQuery) query).getFilter(), instanceOf(TermsFilter.class));
+    }
+
+    @Test
+    public void testWhereRefInSetWithOnlyNullIsConvertedToNoMatch() throws Exception {
+        WhereClause whereClause = new WhereClause(
+                createFunction(InOperator.NAME, DataTypes.BOOLEAN,
+                        createReference("x", DataTypes.INTEGER),
+                        Literal.newLiteral(new SetType(DataTypes.INTEGER), Sets.newHashSet((Object) null))
+                ));
+        assertThat(convert(whereClause), instanceOf(MatchNoDocsQuery.class));
+    }
+
+    @Test
+    public void testScalarOnColumnWithDocValuesUsesCachedDocValuesFilter() throws Exception {
+        SearchContext searchContext = mock(SearchContext.class, Answers.RETURNS_MOCKS.get());
+        FieldMapper mapper = mock(FieldMapper.class);
+        when(mapper.hasDocValues()).thenReturn(true);
+        when(searchContext.smartNameFieldMapper("x")).thenReturn(mapper);
+        LuceneQueryBuilder docValuesBuilder = new LuceneQueryBuilder(functions, searchContext, indexCache);
+
+        Function abs = createFunction(AbsFunction.NAME, DataTypes.LONG, createReference("x", DataTypes.LONG));
+        Query query = docValuesBuilder.convert(whereClause(GtOperator.NAME, abs, Literal.newLiteral(5L))).query;
+        assertThat(query, instanceOf(FilteredQuery.class));
+        Filter filter = ((FilteredQuery) query).getFilter();
+        assertThat(filter, instanceOf(LuceneQueryBuilder.Visitor.DocValuesFunctionFilter.class));
+        verify(filterCache).cache(filter);
+
+        // same function results in an equal filter so that the cached bitsets can be re-used
+        Query query2 = docValuesBuilder.convert(whereClause(GtOperator.NAME, abs, Literal.newLiteral(5L))).query;
+        assertThat(((FilteredQuery) query2).getFilter(), is(filter));
+    }
+
+    @Test
+    public void testScalarOnColumnWithoutDocValuesUsesGenericFunctionFilter() throws Exception {
+        Function abs = createFunction(AbsFunction.NAME, DataTypes.LONG, createReference("x", DataTypes.LONG));
+        Query query = convert(whereClause(GtOperator.NAME, abs, Literal.newLiteral(5L)));
+        assertThat(query, instanceOf(FilteredQuery.class));
+        assertThat(((FilteredQuery) query).getFilter(),
+                not(instanceOf(LuceneQueryBuilder.Visitor.DocValuesFunctionFilter.class)));
+        verify(filterCache, never()).cache(any(Filter.class));
     }
 
     /**
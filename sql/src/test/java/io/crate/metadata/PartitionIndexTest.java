@@ -0,0 +1,107 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.planner.RowGranularity;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PartitionIndexTest {
+
+    private static final TableIdent TABLE_IDENT = new TableIdent(null, "parted");
+
+    private PartitionIndex partitionIndex;
+
+    private static PartitionName partition(String... values) {
+        List<BytesRef> bytesRefs = new ArrayList<>(values.length);
+        for (String value : values) {
+            bytesRefs.add(value == null ? null : new BytesRef(value));
+        }
+        return new PartitionName(TABLE_IDENT, bytesRefs);
+    }
+
+    private static BitSet bits(int... positions) {
+        BitSet bitSet = new BitSet();
+        for (int position : positions) {
+            bitSet.set(position);
+        }
+        return bitSet;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        List<ReferenceInfo> partitionColumns = ImmutableList.of(
+                new ReferenceInfo(new ReferenceIdent(TABLE_IDENT, "num"), RowGranularity.PARTITION, DataTypes.INTEGER),
+                new ReferenceInfo(new ReferenceIdent(TABLE_IDENT, "name"), RowGranularity.PARTITION, DataTypes.STRING)
+        );
+        partitionIndex = new PartitionIndex(partitionColumns, Arrays.asList(
+                partition("10", "b"),
+                partition("2", "a"),
+                partition(null, "c"),
+                partition("2", null),
+                partition("-5", "a")
+        ));
+    }
+
+    @Test
+    public void testColumnIndex() throws Exception {
+        assertThat(partitionIndex.columnIndex(new ColumnIdent("num")), is(0));
+        assertThat(partitionIndex.columnIndex(new ColumnIdent("name")), is(1));
+        assertThat(partitionIndex.columnIndex(new ColumnIdent("foo")), is(-1));
+    }
+
+    @Test
+    public void testEq() throws Exception {
+        assertThat(partitionIndex.eq(0, 2), is(bits(1, 3)));
+        assertThat(partitionIndex.eq(0, 3), is(bits()));
+        assertThat(partitionIndex.eq(1, new BytesRef("a")), is(bits(1, 4)));
+    }
+
+    @Test
+    public void testRangeComparesTypedValues() throws Exception {
+        // "10" < "2" as string, but not as integer
+        assertThat(partitionIndex.range(0, 2, false, null, false), is(bits(0)));
+        assertThat(partitionIndex.range(0, 2, true, null, false), is(bits(0, 1, 3)));
+        assertThat(partitionIndex.range(0, null, false, 2, false), is(bits(4)));
+        assertThat(partitionIndex.range(0, null, false, 2, true), is(bits(1, 3, 4)));
+        assertThat(partitionIndex.range(0, -5, false, 10, false), is(bits(1, 3)));
+    }
+
+    @Test
+    public void testNullValuesNeverMatch() throws Exception {
+        assertThat(partitionIndex.range(0, null, false, null, false), is(bits(0, 1, 3, 4)));
+        assertThat(partitionIndex.range(1, null, false, null, false), is(bits(0, 1, 2, 4)));
+        assertThat(partitionIndex.all(), is(bits(0, 1, 2, 3, 4)));
+    }
+}
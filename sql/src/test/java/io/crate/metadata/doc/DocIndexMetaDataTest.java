@@ -3,6 +3,7 @@ package io.crate.metadata.doc;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import io.crate.Constants;
 import io.crate.analyze.*;
@@ -15,7 +16,12 @@ import io.crate.types.ArrayType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.GeoPointType;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateResponse;
 import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemplateAction;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.*;
@@ -26,6 +32,8 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.indices.analysis.IndicesAnalysisService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
 import org.hamcrest.Matchers;
 import org.junit.Rule;
 import org.junit.Test;
@@ -80,6 +88,76 @@ public class DocIndexMetaDataTest {
         return new DocIndexMetaData(metaData, new TableIdent(null, name)).build();
     }
 
+    @Test
+    public void testDocIndexMetaDataIsCachedUntilIndexMetaDataChanges() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder()
+                .startObject()
+                .startObject("properties")
+                    .startObject("id")
+                        .field("type", "integer")
+                        .field("index", "not_analyzed")
+                    .endObject()
+                .endObject()
+                .endObject();
+        IndexMetaData metaData = getIndexMetaData("test1", builder);
+        DocSchemaInfo docSchemaInfo = new DocSchemaInfo(
+                mock(ClusterService.class), mock(TransportPutIndexTemplateAction.class));
+        TableIdent tableIdent = new TableIdent(null, "test1");
+
+        DocIndexMetaData md = docSchemaInfo.docIndexMetaData(metaData, tableIdent);
+        assertThat(md.references().get(new ColumnIdent("id")), notNullValue());
+        assertThat(docSchemaInfo.docIndexMetaData(metaData, tableIdent), sameInstance(md));
+
+        IndexMetaData changedMetaData = IndexMetaData.builder(metaData).version(metaData.version() + 1).build();
+        assertThat(docSchemaInfo.docIndexMetaData(changedMetaData, tableIdent), not(sameInstance(md)));
+    }
+
+    private static XContentBuilder mapping(String... columns) throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder()
+                .startObject()
+                .startObject("properties");
+        for (String column : columns) {
+            builder.startObject(column)
+                    .field("type", "integer")
+                    .field("index", "not_analyzed")
+                    .endObject();
+        }
+        return builder.endObject().endObject();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMergeDoesNotModifyCachedDocIndexMetaData() throws Exception {
+        // the template updates of merge are dropped
+        TransportPutIndexTemplateAction transportPutIndexTemplateAction = new TransportPutIndexTemplateAction(
+                ImmutableSettings.EMPTY, mock(TransportService.class), mock(ClusterService.class),
+                mock(ThreadPool.class), mock(MetaDataIndexTemplateService.class),
+                new ActionFilters(ImmutableSet.<ActionFilter>of())) {
+            @Override
+            protected void doExecute(PutIndexTemplateRequest request, ActionListener<PutIndexTemplateResponse> listener) {
+            }
+        };
+        DocSchemaInfo docSchemaInfo = new DocSchemaInfo(mock(ClusterService.class), transportPutIndexTemplateAction);
+        TableIdent tableIdent = new TableIdent(null, "test1");
+        IndexMetaData partitionMetaData = getIndexMetaData("test1_1", mapping("id", "name"));
+        DocIndexMetaData cached = docSchemaInfo.docIndexMetaData(partitionMetaData, tableIdent);
+
+        DocIndexMetaData merged = newMeta(getIndexMetaData("test1", mapping("id")), "test1")
+                .merge(cached, transportPutIndexTemplateAction, true);
+        assertThat(merged, not(sameInstance(cached)));
+        assertTrue(merged.schemaEquals(cached));
+
+        // updates the default mapping of the merged instance
+        merged.merge(newMeta(getIndexMetaData("test1_2", mapping("id", "title")), "test1"),
+                transportPutIndexTemplateAction, true);
+        Map<String, Object> properties = (Map<String, Object>) merged.defaultMappingMap().get("properties");
+        assertThat(properties.keySet(), hasItem("title"));
+
+        properties = (Map<String, Object>) cached.defaultMappingMap().get("properties");
+        assertThat(properties.keySet(), containsInAnyOrder("id", "name"));
+        assertThat(docSchemaInfo.docIndexMetaData(partitionMetaData, tableIdent), sameInstance(cached));
+    }
+
     @Test
     public void testNestedColumnIdent() throws Exception {
         XContentBuilder builder = XContentFactory.jsonBuilder()
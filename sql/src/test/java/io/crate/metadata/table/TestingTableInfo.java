@@ -199,6 +199,7 @@ public class TestingTableInfo extends AbstractDynamicTableInfo {
     private final boolean hasAutoGeneratedPrimaryKey;
     private final List<ColumnIdent> partitionedBy;
     private final List<PartitionName> partitions;
+    private PartitionIndex partitionIndex;
     private final ColumnPolicy columnPolicy;
     private final TableParameterInfo tableParameterInfo;
 
@@ -337,6 +338,18 @@ public class TestingTableInfo extends AbstractDynamicTableInfo {
         return partitions;
     }
 
+    @Nullable
+    @Override
+    public PartitionIndex partitionIndex() {
+        if (!isPartitioned()) {
+            return null;
+        }
+        if (partitionIndex == null) {
+            partitionIndex = new PartitionIndex(partitionedByColumns, partitions);
+        }
+        return partitionIndex;
+    }
+
     @Override
     public ColumnPolicy columnPolicy() {
         return columnPolicy;
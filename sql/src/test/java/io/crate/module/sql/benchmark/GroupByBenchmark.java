@@ -66,6 +66,8 @@ public class GroupByBenchmark extends BenchmarkBase {
     public static SQLRequest countStarRequest = new SQLRequest(String.format("select count(*) from %s group by continent", INDEX_NAME));
     public static SQLRequest countColumnRequest = new SQLRequest(String.format("select count(\"countryName\") from %s group by continent", INDEX_NAME));
     public static SQLRequest countDistinctRequest = new SQLRequest(String.format("select count(distinct \"countryName\") from %s group by continent", INDEX_NAME));
+    public static SQLRequest sumHighCardinalityRequest = new SQLRequest(String.format("select sum(\"areaInSqKm\") from %s group by \"population\"", INDEX_NAME));
+    public static SQLRequest multipleKeysRequest = new SQLRequest(String.format("select count(*) from %s group by continent, \"countryCode\"", INDEX_NAME));
     public static SQLRequest arbitraryRequest = new SQLRequest(String.format("select arbitrary(\"countryName\") from %s group by continent", INDEX_NAME));
 
     public static boolean dataGenerated = false;
@@ -185,4 +187,16 @@ public class GroupByBenchmark extends BenchmarkBase {
     public void testGroupByAnyPerformance() {
         getClient(false).execute(SQLAction.INSTANCE, arbitraryRequest).actionGet();
     }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testGroupBySumHighCardinalityPerformance() {
+        getClient(false).execute(SQLAction.INSTANCE, sumHighCardinalityRequest).actionGet();
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testGroupByMultipleKeysPerformance() {
+        getClient(false).execute(SQLAction.INSTANCE, multipleKeysRequest).actionGet();
+    }
 }
@@ -30,6 +30,7 @@ import io.crate.operation.AggregationContext;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.aggregation.impl.MinimumAggregation;
 import io.crate.operation.aggregation.impl.SumAggregation;
 import io.crate.operation.collect.CollectExpression;
@@ -128,4 +129,74 @@ public class GroupingProjectorBenchmark {
 
         groupingProjector.upstreamFinished();
     }
+
+    /**
+     * group by on a long key with many distinct values, this used to be dominated
+     * by boxing and HashMap entries
+     */
+    @Test
+    public void testGroupBySumLongHighCardinality() throws Exception {
+        Functions functions = new ModulesBuilder().add(new AggregationImplModule())
+                .createInjector().getInstance(Functions.class);
+
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(keyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[] { keyInput };
+
+        FunctionIdent functionIdent = new FunctionIdent(SumAggregation.NAME,
+                Arrays.<DataType>asList(DataTypes.LONG));
+        FunctionInfo functionInfo = new FunctionInfo(functionIdent, DataTypes.LONG, FunctionInfo.Type.AGGREGATE);
+        AggregationFunction sumAgg = (AggregationFunction) functions.get(functionIdent);
+        Aggregation aggregation = new Aggregation(functionInfo,
+                Arrays.<Symbol>asList(new InputColumn(0)), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        AggregationContext aggregationContext = new AggregationContext(sumAgg, aggregation);
+        aggregationContext.addInput(keyInput);
+        AggregationContext[] aggregations = new AggregationContext[] { aggregationContext };
+        GroupingProjector groupingProjector = new GroupingProjector(
+                Arrays.<DataType>asList(DataTypes.LONG), keyInputs, collectExpressions, aggregations, RAM_ACCOUNTING_CONTEXT);
+
+        groupingProjector.registerUpstream(null);
+        groupingProjector.startProjection();
+
+        for (long i = 0; i < 20_000_000; i++) {
+            groupingProjector.setNextRow(i % 2_000_000);
+        }
+
+        groupingProjector.upstreamFinished();
+    }
+
+    @Test
+    public void testGroupByCountMultipleKeys() throws Exception {
+        Functions functions = new ModulesBuilder().add(new AggregationImplModule())
+                .createInjector().getInstance(Functions.class);
+
+        InputCollectExpression firstKeyInput = new InputCollectExpression(0);
+        InputCollectExpression secondKeyInput = new InputCollectExpression(1);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(firstKeyInput, secondKeyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[] { firstKeyInput, secondKeyInput };
+
+        FunctionIdent functionIdent = new FunctionIdent(CountAggregation.NAME, Arrays.<DataType>asList());
+        FunctionInfo functionInfo = new FunctionInfo(functionIdent, DataTypes.LONG, FunctionInfo.Type.AGGREGATE);
+        AggregationFunction countAgg = (AggregationFunction) functions.get(functionIdent);
+        Aggregation aggregation = new Aggregation(functionInfo,
+                Arrays.<Symbol>asList(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        AggregationContext[] aggregations = new AggregationContext[] { new AggregationContext(countAgg, aggregation) };
+        GroupingProjector groupingProjector = new GroupingProjector(
+                Arrays.<DataType>asList(DataTypes.STRING, DataTypes.INTEGER),
+                keyInputs, collectExpressions, aggregations, RAM_ACCOUNTING_CONTEXT);
+
+        groupingProjector.registerUpstream(null);
+        groupingProjector.startProjection();
+
+        List<BytesRef> keys = new ArrayList<>(Locale.getISOCountries().length);
+        for (String s : Locale.getISOCountries()) {
+            keys.add(new BytesRef(s));
+        }
+
+        for (int i = 0; i < 20_000_000; i++) {
+            groupingProjector.setNextRow(keys.get(i % keys.size()), i % 1000);
+        }
+
+        groupingProjector.upstreamFinished();
+    }
 }
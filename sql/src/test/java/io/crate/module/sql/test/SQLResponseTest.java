@@ -172,6 +172,86 @@ public class SQLResponseTest {
 
 
 
+    private static SQLResponse streamed(SQLResponse response) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+        SQLResponse streamed = new SQLResponse();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+        return streamed;
+    }
+
+    @Test
+    public void testColumnarFormatStreamable() throws Exception {
+        Object[][] rows = new Object[][]{
+                new Object[]{1, 10L, 1.5d, "Arthur", true, new String[]{"towel"}},
+                new Object[]{null, null, null, null, null, null},
+                new Object[]{3, 30L, -0.5d, "Trillian", false, new String[]{}}
+        };
+        SQLResponse response = new SQLResponse(
+                new String[]{"i", "l", "d", "s", "b", "arr"},
+                rows,
+                new DataType[]{DataTypes.INTEGER, DataTypes.LONG, DataTypes.DOUBLE,
+                        DataTypes.STRING, DataTypes.BOOLEAN, new ArrayType(DataTypes.STRING)},
+                3L,
+                0,
+                true
+        );
+        response.columnarFormat(true);
+
+        SQLResponse streamed = streamed(response);
+        assertArrayEquals(response.cols(), streamed.cols());
+        assertArrayEquals(response.columnTypes(), streamed.columnTypes());
+        assertThat(streamed.rowCount(), is(3L));
+        assertThat(streamed.rows().length, is(3));
+        for (int i = 0; i < rows.length; i++) {
+            assertArrayEquals(rows[i], streamed.rows()[i]);
+        }
+    }
+
+    @Test
+    public void testColumnarFormatKeepsValuesThatDontMatchTheColumnType() throws Exception {
+        // values extracted from the source might not match the column type exactly
+        SQLResponse response = new SQLResponse(
+                new String[]{"l"},
+                new Object[][]{new Object[]{1}, new Object[]{2L}},
+                new DataType[]{DataTypes.LONG},
+                2L,
+                0,
+                false
+        );
+        response.columnarFormat(true);
+
+        SQLResponse streamed = streamed(response);
+        assertThat(streamed.rows()[0][0], is((Object) 1));
+        assertThat(streamed.rows()[1][0], is((Object) 2L));
+        assertThat(streamed.columnTypes().length, is(0));
+    }
+
+    @Test
+    public void testColumnarFormatIsSmallerAndCompressed() throws Exception {
+        int numRows = 10000;
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{i, (long) i * 1000, "name"};
+        }
+        String[] cols = new String[]{"id", "ts", "name"};
+        DataType[] types = new DataType[]{DataTypes.INTEGER, DataTypes.TIMESTAMP, DataTypes.STRING};
+
+        BytesStreamOutput rowWise = new BytesStreamOutput();
+        new SQLResponse(cols, rows, types, numRows, 0, false).writeTo(rowWise);
+
+        SQLResponse response = new SQLResponse(cols, rows, types, numRows, 0, false);
+        response.columnarFormat(true);
+        BytesStreamOutput columnar = new BytesStreamOutput();
+        response.writeTo(columnar);
+        assertThat(columnar.size() < rowWise.size() / 2, is(true));
+
+        SQLResponse streamed = new SQLResponse();
+        streamed.readFrom(new BytesStreamInput(columnar.bytes()));
+        assertThat(streamed.rows().length, is(numRows));
+        assertArrayEquals(rows[numRows - 1], streamed.rows()[numRows - 1]);
+    }
+
     /**
      * the serialization tests here with fixed bytes arrays ensure that backward-compatibility isn't broken.
      */
@@ -0,0 +1,178 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation;
+
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Functions;
+import io.crate.operation.aggregation.FunctionExpression;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.operation.scalar.arithmetic.AbsFunction;
+import io.crate.operation.scalar.arithmetic.AddFunction;
+import io.crate.operation.scalar.arithmetic.DivideFunction;
+import io.crate.operation.scalar.arithmetic.MultiplyFunction;
+import io.crate.operation.scalar.arithmetic.SubtractFunction;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ExpressionCompilerTest {
+
+    private Functions functions;
+    private ImplementationSymbolVisitor visitor;
+    private ExpressionCompiler<ImplementationSymbolVisitor.Context> compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        functions = new ModulesBuilder()
+                .add(new OperatorModule())
+                .add(new PredicateModule())
+                .add(new ScalarFunctionModule())
+                .createInjector().getInstance(Functions.class);
+        visitor = new ImplementationSymbolVisitor(null, functions, RowGranularity.DOC);
+        compiler = new ExpressionCompiler<>(visitor);
+    }
+
+    private Function function(String name, Symbol... arguments) {
+        DataType[] argumentTypes = new DataType[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            argumentTypes[i] = arguments[i].valueType();
+        }
+        FunctionImplementation impl = functions.get(new FunctionIdent(name, Arrays.asList(argumentTypes)));
+        return new Function(impl.info(), Arrays.asList(arguments));
+    }
+
+    /**
+     * evaluates the symbol compiled and interpreted for the given row
+     * and checks that both results are equal
+     */
+    private Object evaluate(Symbol symbol, Object... row) {
+        Object compiled = evaluate(compiler.process(symbol), row);
+        Object interpreted = evaluate(visitor.process(symbol), row);
+        assertThat(compiled, is(interpreted));
+        return compiled;
+    }
+
+    private static Object evaluate(ImplementationSymbolVisitor.Context context, Object... row) {
+        for (CollectExpression<?> collectExpression : context.collectExpressions()) {
+            collectExpression.setNextRow(row);
+        }
+        return context.topLevelInputs().get(0).value();
+    }
+
+    @Test
+    public void testLongArithmeticAndComparison() throws Exception {
+        // (in0 + in1) * 2 > 10
+        InputColumn in0 = new InputColumn(0, DataTypes.INTEGER);
+        InputColumn in1 = new InputColumn(1, DataTypes.LONG);
+        Function condition = function(GtOperator.NAME,
+                function(MultiplyFunction.NAME, function(AddFunction.NAME, in0, in1), Literal.newLiteral(2L)),
+                Literal.newLiteral(10L));
+
+        ImplementationSymbolVisitor.Context context = compiler.process(condition);
+        assertThat(context.topLevelInputs().get(0), instanceOf(CompiledExpressions.BooleanExpression.class));
+        assertThat(context.collectExpressions().size(), is(2));
+
+        assertThat((Boolean) evaluate(condition, 3, 3L), is(true));
+        assertThat((Boolean) evaluate(condition, 2, 3L), is(false));
+        assertThat(evaluate(condition, null, 3L), nullValue());
+        assertThat(evaluate(condition, 2, null), nullValue());
+
+        Function subtract = function(SubtractFunction.NAME, in0, in1);
+        assertThat((Long) evaluate(subtract, 3, 5L), is(-2L));
+        assertThat(evaluate(subtract, 3, null), nullValue());
+    }
+
+    @Test
+    public void testDoubleArithmeticAndComparison() throws Exception {
+        InputColumn in0 = new InputColumn(0, DataTypes.INTEGER);
+        InputColumn in1 = new InputColumn(1, DataTypes.DOUBLE);
+        Function divide = function(DivideFunction.NAME, in0, in1);
+        assertThat(divide.valueType(), is((DataType) DataTypes.DOUBLE));
+
+        assertThat((Double) evaluate(divide, 3, 2.0d), is(1.5d));
+        assertThat((Double) evaluate(divide, 3, 0.0d), is(Double.POSITIVE_INFINITY));
+        assertThat(evaluate(divide, null, 2.0d), nullValue());
+
+        Function eq = function(EqOperator.NAME, in1, Literal.newLiteral(Double.NaN));
+        assertThat((Boolean) evaluate(eq, 1, Double.NaN), is(true));
+        assertThat((Boolean) evaluate(eq, 1, 1.0d), is(false));
+
+        Function lt = function(LtOperator.NAME, in1, Literal.newLiteral(0.0d));
+        assertThat((Boolean) evaluate(lt, 1, -0.0d), is(true));
+        assertThat((Boolean) evaluate(lt, 1, 0.0d), is(false));
+    }
+
+    @Test
+    public void testThreeValuedLogic() throws Exception {
+        InputColumn in0 = new InputColumn(0, DataTypes.BOOLEAN);
+        InputColumn in1 = new InputColumn(1, DataTypes.BOOLEAN);
+        Function and = function(AndOperator.NAME, in0, in1);
+        Function or = function(OrOperator.NAME, in0, in1);
+        Function not = function(NotPredicate.NAME, in0);
+
+        Boolean[] values = new Boolean[]{true, false, null};
+        for (Boolean left : values) {
+            for (Boolean right : values) {
+                evaluate(and, left, right);
+                evaluate(or, left, right);
+            }
+            evaluate(not, left, null);
+        }
+    }
+
+    @Test
+    public void testUnsupportedFunctionFallsBackToInterpreter() throws Exception {
+        // abs(in0 - 10) >= 5
+        InputColumn in0 = new InputColumn(0, DataTypes.LONG);
+        Function abs = function(AbsFunction.NAME, function(SubtractFunction.NAME, in0, Literal.newLiteral(10L)));
+        Function condition = function(GteOperator.NAME, abs, Literal.newLiteral(5L));
+
+        ImplementationSymbolVisitor.Context context = compiler.process(abs);
+        assertThat(context.topLevelInputs().get(0), instanceOf(FunctionExpression.class));
+
+        assertThat((Boolean) evaluate(condition, 3L), is(true));
+        assertThat((Boolean) evaluate(condition, 7L), is(false));
+        assertThat(evaluate(condition, (Object) null), nullValue());
+
+        Function stringEq = function(EqOperator.NAME,
+                new InputColumn(0, DataTypes.STRING), Literal.newLiteral("foo"));
+        context = compiler.process(stringEq);
+        assertThat(context.topLevelInputs().get(0), instanceOf(FunctionExpression.class));
+    }
+}
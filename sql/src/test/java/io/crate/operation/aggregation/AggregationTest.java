@@ -65,6 +65,24 @@ public abstract class AggregationTest {
         functions = injector.getInstance(Functions.class);
     }
 
+    protected AggregationFunction aggregationFunction(String name, DataType dataType) {
+        return (AggregationFunction) functions.get(new FunctionIdent(name, ImmutableList.of(dataType)));
+    }
+
+    /**
+     * @return a new state of the aggregation which iterated the given values
+     */
+    @SuppressWarnings("unchecked")
+    protected Object iterate(AggregationFunction impl, Object... values) {
+        InputCollectExpression input = new InputCollectExpression(0);
+        Object state = impl.newState(ramAccountingContext);
+        for (Object value : values) {
+            input.setNextRow(value);
+            state = impl.iterate(ramAccountingContext, state, input);
+        }
+        return state;
+    }
+
     public Object[][] executeAggregation(String name, DataType dataType, Object[][] data) throws Exception {
 
         FunctionIdent fi;
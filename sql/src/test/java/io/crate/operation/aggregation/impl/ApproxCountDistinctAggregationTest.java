@@ -0,0 +1,113 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ApproxCountDistinctAggregationTest extends AggregationTest {
+
+    private Object[][] executeAggregation(DataType dataType, Object[][] data) throws Exception {
+        return executeAggregation("approx_count_distinct", dataType, data);
+    }
+
+    private AggregationFunction aggregation(DataType dataType) {
+        return (AggregationFunction) functions.get(
+                new FunctionIdent("approx_count_distinct", ImmutableList.of(dataType)));
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        assertEquals(DataTypes.LONG, aggregation(DataTypes.INTEGER).info().returnType());
+    }
+
+    @Test
+    public void testLong() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.LONG, new Object[][]{{7L}, {3L}, {3L}, {null}});
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.DOUBLE, new Object[][]{{0.7d}, {0.3d}, {0.3d}});
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    public void testString() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.STRING,
+                new Object[][]{{new BytesRef("Youri")}, {new BytesRef("Ruben")}, {new BytesRef("Ruben")}});
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    public void testBoolean() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.BOOLEAN, new Object[][]{{true}, {false}, {false}});
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMergeSerializedStates() throws Exception {
+        AggregationFunction impl = aggregation(DataTypes.LONG);
+        Object state1 = impl.newState(ramAccountingContext);
+        Object state2 = impl.newState(ramAccountingContext);
+        final long[] value = new long[1];
+        Input<Long> input = new Input<Long>() {
+            @Override
+            public Long value() {
+                return value[0];
+            }
+        };
+        for (long i = 0; i < 100000; i++) {
+            value[0] = i;
+            state1 = impl.iterate(ramAccountingContext, state1, input);
+            value[0] = i + 50000;
+            state2 = impl.iterate(ramAccountingContext, state2, input);
+        }
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        impl.partialType().streamer().writeValueTo(out, state2);
+        // dense sketch of 2^12 registers
+        assertThat(out.bytes().length(), lessThan(5000));
+        Object received = impl.partialType().streamer().readValueFrom(new BytesStreamInput(out.bytes()));
+
+        Long cardinality = (Long) impl.terminatePartial(ramAccountingContext,
+                impl.reduce(ramAccountingContext, state1, received));
+        // 150000 distinct values, standard error is ~1.6%
+        assertThat(cardinality, allOf(greaterThan(140000L), lessThan(160000L)));
+    }
+}
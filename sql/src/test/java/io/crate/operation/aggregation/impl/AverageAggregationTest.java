@@ -23,12 +23,15 @@ package io.crate.operation.aggregation.impl;
 
 import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationTest;
+import io.crate.operation.projectors.ColumnBatch;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AverageAggregationTest extends AggregationTest {
 
@@ -81,6 +84,30 @@ public class AverageAggregationTest extends AggregationTest {
         assertEquals(5d, result[0][0]);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testColumns() throws Exception {
+        ColumnBatch batch = new ColumnBatch(ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.INTEGER), 4);
+        batch.set(0, 0, 7L);
+        batch.set(1, 0, 3L);
+        batch.set(2, 0, null);
+        batch.set(0, 1, 4);
+        batch.set(1, 1, null);
+        batch.set(2, 1, 8);
+        batch.size(3);
+
+        AggregationFunction impl = aggregationFunction("avg", DataTypes.LONG);
+        assertTrue(impl.supportsColumn(batch.column(0)));
+        Object state = impl.iterateColumn(ramAccountingContext,
+                impl.newState(ramAccountingContext), batch.column(0), batch.size());
+        assertEquals(5d, impl.terminatePartial(ramAccountingContext, state));
+
+        impl = aggregationFunction("avg", DataTypes.INTEGER);
+        state = impl.iterateColumn(ramAccountingContext,
+                impl.newState(ramAccountingContext), batch.column(1), batch.size());
+        assertEquals(6d, impl.terminatePartial(ramAccountingContext, state));
+    }
+
     @Test(expected = NullPointerException.class)
     public void testUnsupportedType() throws Exception {
         Object[][] result = executeAggregation(DataTypes.STRING, new Object[][]{{"Youri"}, {"Ruben"}});
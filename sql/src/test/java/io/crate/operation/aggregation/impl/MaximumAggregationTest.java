@@ -23,6 +23,7 @@ package io.crate.operation.aggregation.impl;
 
 import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationTest;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
@@ -30,6 +31,7 @@ import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class MaximumAggregationTest extends AggregationTest {
 
@@ -90,4 +92,78 @@ public class MaximumAggregationTest extends AggregationTest {
     public void testUnsupportedType() throws Exception {
         Object[][] result = executeAggregation(DataTypes.OBJECT, new Object[][]{{new Object()}});
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLongStateReduce() throws Exception {
+        AggregationFunction impl = aggregationFunction("max", DataTypes.LONG);
+        Object state = impl.reduce(ramAccountingContext, iterate(impl, 8L, null), iterate(impl, 3L));
+        assertEquals(8L, impl.terminatePartial(ramAccountingContext, state));
+
+        state = impl.reduce(ramAccountingContext, iterate(impl), iterate(impl, 3L, null));
+        assertEquals(3L, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reduce(ramAccountingContext, iterate(impl, 8L), iterate(impl));
+        assertEquals(8L, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reduce(ramAccountingContext, iterate(impl), iterate(impl, (Object) null));
+        assertNull(impl.terminatePartial(ramAccountingContext, state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLongStatePartials() throws Exception {
+        AggregationFunction impl = aggregationFunction("max", DataTypes.TIMESTAMP);
+        Object state = iterate(impl, 8L, 3L);
+        assertEquals(8L, impl.partialResult(ramAccountingContext, state));
+        assertNull(impl.partialResult(ramAccountingContext, iterate(impl)));
+
+        state = impl.reducePartial(ramAccountingContext, state, null);
+        assertEquals(8L, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, state, 42L);
+        assertEquals(42L, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, iterate(impl), 5L);
+        assertEquals(5L, impl.terminatePartial(ramAccountingContext, state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIntegerStateIsNarrowedToInteger() throws Exception {
+        AggregationFunction impl = aggregationFunction("max", DataTypes.INTEGER);
+        Object state = iterate(impl, 8, null, 3);
+        assertEquals(8, impl.partialResult(ramAccountingContext, state));
+        assertEquals(8, impl.terminatePartial(ramAccountingContext, state));
+
+        state = impl.reducePartial(ramAccountingContext, state, 42);
+        state = impl.reduce(ramAccountingContext, state, iterate(impl, 5));
+        assertEquals(42, impl.terminatePartial(ramAccountingContext, state));
+        assertEquals(Integer.MIN_VALUE, impl.terminatePartial(ramAccountingContext,
+                impl.reducePartial(ramAccountingContext, iterate(impl), Integer.MIN_VALUE)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoubleStateReduce() throws Exception {
+        AggregationFunction impl = aggregationFunction("max", DataTypes.DOUBLE);
+        Object state = impl.reduce(ramAccountingContext, iterate(impl, 0.8d, null), iterate(impl, 0.3d));
+        assertEquals(0.8d, impl.terminatePartial(ramAccountingContext, state));
+        assertEquals(0.8d, impl.partialResult(ramAccountingContext, state));
+
+        state = impl.reduce(ramAccountingContext, iterate(impl), iterate(impl, (Object) null));
+        assertNull(impl.partialResult(ramAccountingContext, state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoubleStateReducePartialNaNAndNegativeZero() throws Exception {
+        AggregationFunction impl = aggregationFunction("max", DataTypes.DOUBLE);
+        Object state = impl.reducePartial(ramAccountingContext, iterate(impl, 0.0d), null);
+        assertEquals(0.0d, impl.terminatePartial(ramAccountingContext, state));
+
+        // -0.0 and NaN are ordered like Double.compareTo: -0.0 < 0.0 < NaN
+        state = impl.reducePartial(ramAccountingContext, state, -0.0d);
+        assertEquals(0.0d, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, state, Double.NaN);
+        assertEquals(Double.NaN, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, state, 1.0d);
+        assertEquals(Double.NaN, impl.terminatePartial(ramAccountingContext, state));
+    }
 }
@@ -23,12 +23,14 @@ package io.crate.operation.aggregation.impl;
 
 import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationTest;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class SumAggregationTest extends AggregationTest {
 
@@ -82,4 +84,46 @@ public class SumAggregationTest extends AggregationTest {
     public void testUnsupportedType() throws Exception {
         Object[][] result = executeAggregation(DataTypes.STRING, new Object[][]{{"Youri"}, {"Ruben"}});
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReduce() throws Exception {
+        AggregationFunction impl = aggregationFunction("sum", DataTypes.LONG);
+        Object state = impl.reduce(ramAccountingContext, iterate(impl, 7L, null), iterate(impl, 3L));
+        assertEquals(10.0d, impl.terminatePartial(ramAccountingContext, state));
+
+        state = impl.reduce(ramAccountingContext, iterate(impl), iterate(impl, 3L));
+        assertEquals(3.0d, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reduce(ramAccountingContext, iterate(impl), iterate(impl, (Object) null));
+        assertNull(impl.terminatePartial(ramAccountingContext, state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPartials() throws Exception {
+        AggregationFunction impl = aggregationFunction("sum", DataTypes.INTEGER);
+        Object state = iterate(impl, 7, 3);
+        // the partial value of a sum is always a double
+        assertEquals(10.0d, impl.partialResult(ramAccountingContext, state));
+        assertNull(impl.partialResult(ramAccountingContext, iterate(impl)));
+
+        state = impl.reducePartial(ramAccountingContext, state, null);
+        assertEquals(10.0d, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, state, 0.5d);
+        assertEquals(10.5d, impl.terminatePartial(ramAccountingContext, state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReducePartialNaNAndNegativeZero() throws Exception {
+        AggregationFunction impl = aggregationFunction("sum", DataTypes.DOUBLE);
+        Object state = impl.reducePartial(ramAccountingContext, iterate(impl), -0.0d);
+        assertEquals(-0.0d, impl.terminatePartial(ramAccountingContext, state));
+        state = impl.reducePartial(ramAccountingContext, state, 0.0d);
+        assertEquals(0.0d, impl.terminatePartial(ramAccountingContext, state));
+
+        state = impl.reducePartial(ramAccountingContext, state, Double.NaN);
+        state = impl.reducePartial(ramAccountingContext, state, 1.0d);
+        assertEquals(Double.NaN, impl.terminatePartial(ramAccountingContext, state));
+    }
 }
@@ -0,0 +1,291 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DistributingProjectorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private final List<DistributedResultRequest> sentRequests = new ArrayList<>();
+    private final List<DiscoveryNode> targetNodes = new ArrayList<>();
+    private TransportService transportService;
+    private DiscoveryNode node1;
+    private DiscoveryNode node2;
+    private final List<TransportResponseHandler<DistributedResultResponse>> pendingHandlers = new ArrayList<>();
+    private boolean needMore = true;
+    private boolean respond = true;
+    private RamAccountingContext ramAccountingContext =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void prepare() throws Exception {
+        node1 = mock(DiscoveryNode.class);
+        when(node1.id()).thenReturn("n1");
+        node2 = mock(DiscoveryNode.class);
+        when(node2.id()).thenReturn("n2");
+
+        transportService = mock(TransportService.class);
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Object[] args = invocation.getArguments();
+                targetNodes.add((DiscoveryNode) args[0]);
+                sentRequests.add((DistributedResultRequest) args[2]);
+                TransportResponseHandler<DistributedResultResponse> handler =
+                        (TransportResponseHandler<DistributedResultResponse>) args[3];
+                if (respond) {
+                    handler.handleResponse(new DistributedResultResponse(needMore));
+                } else {
+                    pendingHandlers.add(handler);
+                }
+                return null;
+            }
+        }).when(transportService).submitRequest(any(DiscoveryNode.class),
+                Matchers.same(TransportMergeNodeAction.mergeRowsAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+    }
+
+    private DistributingProjector newProjector(int pageSize) {
+        return new DistributingProjector(
+                UUID.randomUUID(),
+                Arrays.asList(node1, node2),
+                transportService,
+                new Streamer[]{DataTypes.INTEGER.streamer()},
+                pageSize,
+                ramAccountingContext);
+    }
+
+    @Test
+    public void testPagesAreSentWhileCollecting() throws Exception {
+        DistributingProjector projector = newProjector(2);
+        projector.startProjection();
+
+        // Integer.hashCode() is the value itself, so even values end up in the first bucket
+        projector.setNextRow(0);
+        projector.setNextRow(1);
+        assertThat(sentRequests.size(), is(0));
+        projector.setNextRow(2);
+        assertThat(sentRequests.size(), is(1));
+        assertThat(targetNodes.get(0), is(node1));
+        assertThat(sentRequests.get(0).lastPage(), is(false));
+        assertThat(sentRequests.get(0).rows().length, is(2));
+
+        projector.setNextRow(4);
+        projector.finish();
+
+        assertThat(sentRequests.size(), is(3));
+        assertThat(targetNodes.get(1), is(node1));
+        assertThat(sentRequests.get(1).lastPage(), is(true));
+        assertThat((Integer) sentRequests.get(1).rows()[0][0], is(4));
+        assertThat(targetNodes.get(2), is(node2));
+        assertThat(sentRequests.get(2).lastPage(), is(true));
+        assertThat((Integer) sentRequests.get(2).rows()[0][0], is(1));
+        assertThat(projector.result().isDone(), is(true));
+    }
+
+    @Test
+    public void testRowsAreDroppedIfDownstreamNeedsNoMore() throws Exception {
+        needMore = false;
+        DistributingProjector projector = newProjector(1);
+        projector.startProjection();
+
+        assertThat(projector.setNextRow(0), is(true));
+        assertThat(sentRequests.size(), is(1));
+        projector.setNextRow(2);
+        assertThat(sentRequests.size(), is(1));
+
+        // both downstreams don't need any more rows
+        assertThat(projector.setNextRow(1), is(false));
+        projector.finish();
+        assertThat(sentRequests.size(), is(4));
+        assertThat(sentRequests.get(2).rows().length, is(0));
+        assertThat(sentRequests.get(3).rows().length, is(0));
+    }
+
+    @Test
+    public void testFailureIsSentToEveryDownstream() throws Exception {
+        DistributingProjector projector = newProjector(10);
+        projector.startProjection();
+        projector.setNextRow(0);
+        projector.fail();
+
+        assertThat(sentRequests.size(), is(2));
+        assertThat(sentRequests.get(0).failure(), is(true));
+        assertThat(sentRequests.get(1).failure(), is(true));
+    }
+
+    @Test
+    public void testPagesAreHeldWithoutBlockingIfDownstreamIsSlow() throws Exception {
+        respond = false;
+        DistributingProjector projector = newProjector(1);
+        projector.startProjection();
+
+        // only even values, all go to the first downstream, every row is a page
+        for (int i = 0; i < 10; i += 2) {
+            projector.setNextRow(i);
+        }
+        assertThat(sentRequests.size(), is(DistributingProjector.MAX_PAGES_IN_FLIGHT));
+
+        projector.finish();
+        // the last page of the second downstream has no pages in flight
+        assertThat(sentRequests.size(), is(DistributingProjector.MAX_PAGES_IN_FLIGHT + 1));
+        assertThat(targetNodes.get(DistributingProjector.MAX_PAGES_IN_FLIGHT), is(node2));
+
+        // every response sends the next held page, the last page is sent after all others are done
+        while (!pendingHandlers.isEmpty()) {
+            pendingHandlers.remove(0).handleResponse(new DistributedResultResponse(true));
+        }
+        List<DistributedResultRequest> node1Requests = new ArrayList<>();
+        for (int i = 0; i < sentRequests.size(); i++) {
+            if (targetNodes.get(i) == node1) {
+                node1Requests.add(sentRequests.get(i));
+            }
+        }
+        assertThat(node1Requests.size(), is(6));
+        for (int i = 0; i < 5; i++) {
+            assertThat(node1Requests.get(i).lastPage(), is(false));
+            assertThat((Integer) node1Requests.get(i).rows()[0][0], is(i * 2));
+        }
+        assertThat(node1Requests.get(5).lastPage(), is(true));
+    }
+
+    @Test
+    public void testCollectingWaitsIfTooManyPagesAreHeld() throws Exception {
+        respond = false;
+        final DistributingProjector projector = newProjector(1);
+        projector.startProjection();
+
+        int pages = DistributingProjector.MAX_PAGES_IN_FLIGHT + DistributingProjector.MAX_PENDING_PAGES - 1;
+        for (int i = 0; i < pages; i++) {
+            projector.setNextRow(i * 2);
+        }
+        final CountDownLatch collected = new CountDownLatch(1);
+        Thread collector = new Thread() {
+            @Override
+            public void run() {
+                projector.setNextRow(100);
+                collected.countDown();
+            }
+        };
+        collector.start();
+        assertThat(collected.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        // a response sends a held page which lets the collector continue
+        pendingHandlers.remove(0).handleResponse(new DistributedResultResponse(true));
+        assertThat(collected.await(DistributingProjector.PENDING_PAGES_WAIT_MS, TimeUnit.MILLISECONDS), is(true));
+        collector.join();
+    }
+
+    @Test
+    public void testCollectingContinuesAfterWaitingForHeldPages() throws Exception {
+        respond = false;
+        DistributingProjector projector = newProjector(1);
+        projector.startProjection();
+
+        int pages = DistributingProjector.MAX_PAGES_IN_FLIGHT + DistributingProjector.MAX_PENDING_PAGES;
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < pages; i++) {
+            projector.setNextRow(i * 2);
+        }
+        assertThat(System.currentTimeMillis() - started,
+                greaterThanOrEqualTo(DistributingProjector.PENDING_PAGES_WAIT_MS));
+        assertThat(sentRequests.size(), is(DistributingProjector.MAX_PAGES_IN_FLIGHT));
+    }
+
+    @Test
+    public void testHeldPagesAreAccounted() throws Exception {
+        CircuitBreaker breaker = mock(CircuitBreaker.class);
+        doThrow(new CircuitBreakingException("too many held pages"))
+                .when(breaker).addEstimateBytesAndMaybeBreak(anyLong(), anyString());
+        ramAccountingContext = new RamAccountingContext("test", breaker);
+        respond = false;
+        DistributingProjector projector = new DistributingProjector(
+                UUID.randomUUID(),
+                Arrays.asList(node1),
+                transportService,
+                new Streamer[]{DataTypes.STRING.streamer()},
+                1,
+                ramAccountingContext);
+        projector.startProjection();
+
+        BytesRef value = new BytesRef(new byte[(int) RamAccountingContext.FLUSH_BUFFER_SIZE / 2]);
+        for (int i = 0; i < DistributingProjector.MAX_PAGES_IN_FLIGHT + 1; i++) {
+            projector.setNextRow(value);
+        }
+        // the pages in flight have been released again
+        assertThat(ramAccountingContext.totalBytes(), is(0L));
+        expectedException.expect(CircuitBreakingException.class);
+        projector.setNextRow(value);
+    }
+
+    @Test
+    public void testEstimateSize() throws Exception {
+        long empty = DistributingProjector.estimateSize(new Object[][]{new Object[]{null}});
+        assertThat(DistributingProjector.estimateSize(new Object[][]{new Object[]{new BytesRef(new byte[100])}}),
+                greaterThan(empty + 100));
+        assertThat(DistributingProjector.estimateSize(new Object[][]{new Object[]{1}, new Object[]{2}}),
+                greaterThan(empty));
+    }
+}
@@ -40,6 +40,7 @@ import io.crate.operation.Input;
 import io.crate.operation.operator.AndOperator;
 import io.crate.operation.operator.EqOperator;
 import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import io.crate.operation.reference.sys.shard.SysShardExpression;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
@@ -71,6 +72,7 @@ import org.elasticsearch.common.inject.*;
 import org.elasticsearch.common.inject.multibindings.MapBinder;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.discovery.DiscoveryService;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.service.IndexService;
@@ -82,6 +84,10 @@ import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.monitor.jvm.JvmService;
+import org.elasticsearch.monitor.network.NetworkService;
+import org.elasticsearch.monitor.sigar.SigarService;
+import org.elasticsearch.node.service.NodeService;
 import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.InternalSearchService;
@@ -330,13 +336,19 @@ public class LocalDataCollectTest {
                 injector.getInstance(ClusterService.class),
                 ImmutableSettings.EMPTY,
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 functions, injector.getInstance(ReferenceResolver.class), indicesService, testThreadPool,
                 new CollectServiceResolver(discoveryService,
                     new SystemCollectService(
                             discoveryService,
                             functions,
                             new StatsTables(ImmutableSettings.EMPTY, nodeSettingsService))
-                )
+                ),
+                new SysNodeStats(ImmutableSettings.EMPTY,
+                        mock(NodeService.class),
+                        mock(JvmService.class),
+                        mock(NetworkService.class),
+                        mock(SigarService.class))
         );
     }
 
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.*;
+import io.crate.operation.reference.sys.node.SysNodeStats;
 import io.crate.planner.node.dql.FileUriCollectNode;
 import io.crate.planner.projection.Projection;
 import io.crate.planner.symbol.Literal;
@@ -33,8 +34,13 @@ import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.discovery.DiscoveryService;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.monitor.jvm.JvmService;
+import org.elasticsearch.monitor.network.NetworkService;
+import org.elasticsearch.monitor.sigar.SigarService;
+import org.elasticsearch.node.service.NodeService;
 import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Test;
@@ -81,6 +87,7 @@ public class MapSideDataCollectOperationTest {
                 clusterService,
                 ImmutableSettings.EMPTY,
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 functions,
                 referenceResolver,
                 indicesService,
@@ -91,7 +98,12 @@ public class MapSideDataCollectOperationTest {
                             functions,
                             new StatsTables(ImmutableSettings.EMPTY, nodeSettingsService)
                     )
-                )
+                ),
+                new SysNodeStats(ImmutableSettings.EMPTY,
+                        mock(NodeService.class),
+                        mock(JvmService.class),
+                        mock(NetworkService.class),
+                        mock(SigarService.class))
         );
 
         File tmpFile = File.createTempFile("fileUriCollectOperation", ".json");
@@ -54,8 +54,10 @@ import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.search.highlight.HighlightModule;
 import org.elasticsearch.test.cluster.NoopClusterService;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -109,7 +111,9 @@ public class ShardProjectorChainTest {
         projectionToProjectorVisitor = new ProjectionToProjectorVisitor(
                 new NoopClusterService(),
                 ImmutableSettings.EMPTY,
+                mock(ThreadPool.class),
                 mock(TransportActionProvider.class),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 implementationSymbolVisitor,
                 null
         );
@@ -46,6 +46,8 @@ import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
@@ -109,7 +111,9 @@ public class MergeOperationTest {
         MergeOperation mergeOperation = new MergeOperation(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                mock(ThreadPool.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 symbolVisitor,
                 mergeNode,
                 ramAccountingContext
@@ -143,7 +147,9 @@ public class MergeOperationTest {
         MergeOperation mergeOperation = new MergeOperation(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                mock(ThreadPool.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 symbolVisitor,
                 mergeNode,
                 ramAccountingContext
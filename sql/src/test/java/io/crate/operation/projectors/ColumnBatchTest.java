@@ -0,0 +1,301 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.Input;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.planner.RowGranularity;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ColumnBatchTest {
+
+    private static final List<DataType> TYPES = ImmutableList.<DataType>of(
+            DataTypes.LONG, DataTypes.INTEGER, DataTypes.DOUBLE, DataTypes.STRING);
+
+    private static ColumnBatch newBatch(int numRows) {
+        ColumnBatch batch = new ColumnBatch(TYPES, 16);
+        for (int r = 0; r < numRows; r++) {
+            batch.set(r, 0, (long) r);
+            batch.set(r, 1, r % 3 == 0 ? null : r);
+            batch.set(r, 2, r / 2.0d);
+            batch.set(r, 3, new BytesRef("r" + r));
+        }
+        batch.size(numRows);
+        return batch;
+    }
+
+    private static final Functions FUNCTIONS = new ModulesBuilder()
+            .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private static Aggregation aggregation(String name, DataType returnType, int column) {
+        List<DataType> argumentTypes = column < 0
+                ? ImmutableList.<DataType>of() : ImmutableList.of(TYPES.get(column));
+        List<Symbol> inputs = column < 0
+                ? ImmutableList.<Symbol>of() : ImmutableList.<Symbol>of(new InputColumn(column, TYPES.get(column)));
+        return new Aggregation(new FunctionInfo(new FunctionIdent(name, argumentTypes), returnType),
+                inputs, Aggregation.Step.ITER, Aggregation.Step.FINAL);
+    }
+
+    /**
+     * count(*), count(int), sum(long), sum(double), min(int), max(double), max(long), avg(long)
+     * are aggregated column by column, min(string) iterates the rows
+     */
+    private static ImplementationSymbolVisitor.Context aggregationContext(Symbol... keys) {
+        ImplementationSymbolVisitor symbolVisitor = new ImplementationSymbolVisitor(null, FUNCTIONS, RowGranularity.DOC);
+        ImplementationSymbolVisitor.Context context = symbolVisitor.process(keys);
+        for (Aggregation aggregation : Arrays.asList(
+                aggregation("count", DataTypes.LONG, -1),
+                aggregation("count", DataTypes.LONG, 1),
+                aggregation("sum", DataTypes.DOUBLE, 0),
+                aggregation("sum", DataTypes.DOUBLE, 2),
+                aggregation("min", DataTypes.INTEGER, 1),
+                aggregation("max", DataTypes.DOUBLE, 2),
+                aggregation("max", DataTypes.LONG, 0),
+                aggregation("avg", DataTypes.DOUBLE, 0),
+                aggregation("min", DataTypes.STRING, 3))) {
+            symbolVisitor.process(aggregation, context);
+        }
+        return context;
+    }
+
+    private static <P extends BatchProjector & ProjectorUpstream> Object[][] projectRows(P projector, ColumnBatch... batches) throws Exception {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        for (ColumnBatch batch : batches) {
+            for (int r = 0; r < batch.size(); r++) {
+                Object[] row = new Object[batch.numColumns()];
+                batch.fillRow(r, row);
+                projector.setNextRow(row);
+            }
+        }
+        projector.upstreamFinished();
+        return collectingProjector.result().get();
+    }
+
+    private static <P extends BatchProjector & ProjectorUpstream> Object[][] projectBatches(P projector, ColumnBatch... batches) throws Exception {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        for (ColumnBatch batch : batches) {
+            assertThat(projector.setNextRows(batch), is(true));
+        }
+        projector.upstreamFinished();
+        return collectingProjector.result().get();
+    }
+
+    private static AggregationProjector aggregationProjector() {
+        ImplementationSymbolVisitor.Context context = aggregationContext();
+        return new AggregationProjector(context.collectExpressions(), context.aggregations(), RAM_ACCOUNTING_CONTEXT);
+    }
+
+    private static GroupingProjector groupingProjector(DataType keyType, Symbol key) {
+        ImplementationSymbolVisitor.Context context = aggregationContext(key);
+        return new GroupingProjector(
+                ImmutableList.of(keyType),
+                context.topLevelInputs(),
+                context.collectExpressions().toArray(new CollectExpression[context.collectExpressions().size()]),
+                context.aggregations(),
+                RAM_ACCOUNTING_CONTEXT);
+    }
+
+    @Test
+    public void testPrimitiveColumns() throws Exception {
+        ColumnBatch batch = newBatch(4);
+
+        assertThat(batch.column(0), instanceOf(ColumnBatch.LongColumn.class));
+        assertThat(batch.column(1), instanceOf(ColumnBatch.IntColumn.class));
+        assertThat(batch.column(2), instanceOf(ColumnBatch.DoubleColumn.class));
+        assertThat(batch.column(3), instanceOf(ColumnBatch.ObjectColumn.class));
+
+        assertThat(((ColumnBatch.LongColumn) batch.column(0)).getLong(2), is(2L));
+        assertThat(batch.column(1).isNull(0), is(true));
+        assertThat(batch.column(1).isNull(1), is(false));
+
+        Object[] row = new Object[4];
+        batch.fillRow(3, row);
+        assertThat(row, arrayContaining((Object) 3L, null, 1.5d, new BytesRef("r3")));
+
+        ((ColumnBatch.IntColumn) batch.column(1)).setInt(3, 42);
+        assertThat(batch.get(3, 1), is((Object) 42));
+    }
+
+    @Test
+    public void testCopyRow() throws Exception {
+        ColumnBatch batch = newBatch(4);
+        ColumnBatch copy = batch.newEmptyBatch();
+        copy.copyRow(batch, 3, 0);
+        copy.copyRow(batch, 1, 1);
+        copy.size(2);
+
+        Object[] row = new Object[4];
+        copy.fillRow(0, row);
+        assertThat(row, arrayContaining((Object) 3L, null, 1.5d, new BytesRef("r3")));
+        copy.fillRow(1, row);
+        assertThat(row, arrayContaining((Object) 1L, 1, 0.5d, new BytesRef("r1")));
+    }
+
+    @Test
+    public void testRowModeFallback() throws Exception {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        assertThat(BatchProjectors.setNextRows(collectingProjector, newBatch(3)), is(true));
+
+        // collecting projector keeps the rows, so every row must be a new array
+        assertThat(collectingProjector.rows.size(), is(3));
+        assertThat(collectingProjector.rows.get(0)[0], is((Object) 0L));
+        assertThat(collectingProjector.rows.get(1)[0], is((Object) 1L));
+        assertThat(collectingProjector.rows.get(2)[0], is((Object) 2L));
+    }
+
+    @Test
+    public void testFilterProjectorBatch() throws Exception {
+        final InputCollectExpression<Long> idInput = new InputCollectExpression<>(0);
+        Input<Boolean> condition = new Input<Boolean>() {
+            @Override
+            public Boolean value() {
+                return idInput.value() % 2 == 0;
+            }
+        };
+        FilterProjector filterProjector = new FilterProjector(new CollectExpression[]{idInput}, condition);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        filterProjector.downstream(collectingProjector);
+        filterProjector.registerUpstream(null);
+        filterProjector.startProjection();
+        collectingProjector.startProjection();
+
+        assertThat(filterProjector.setNextRows(newBatch(10)), is(true));
+        assertThat(filterProjector.setNextRows(newBatch(3)), is(true));
+        filterProjector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(7));
+        assertThat(rows[4], arrayContaining((Object) 8L, 8, 4.0d, new BytesRef("r8")));
+        assertThat(rows[6][0], is((Object) 2L));
+    }
+
+    @Test
+    public void testSimpleTopNProjectorBatch() throws Exception {
+        InputCollectExpression<Long> idInput = new InputCollectExpression<>(0);
+        SimpleTopNProjector projector = new SimpleTopNProjector(
+                new Input<?>[]{idInput}, new CollectExpression[]{idInput}, 5, 12);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        projector.startProjection();
+
+        // the first batch is skipped completely by the offset
+        assertThat(projector.setNextRows(newBatch(10)), is(true));
+        assertThat(projector.setNextRows(newBatch(10)), is(false));
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(5));
+        assertThat(rows[0][0], is((Object) 2L));
+        assertThat(rows[4][0], is((Object) 6L));
+    }
+
+    @Test
+    public void testAggregationProjectorBatch() throws Exception {
+        Object[][] expected = projectRows(aggregationProjector(), newBatch(16), newBatch(5));
+        Object[][] rows = projectBatches(aggregationProjector(), newBatch(16), newBatch(5));
+
+        assertThat(rows.length, is(1));
+        assertThat(rows[0], is(expected[0]));
+        // count(*), count(int) without the nulls of every third row, sum(long), min(int), avg(long)
+        assertThat(rows[0][0], is((Object) 21L));
+        assertThat(rows[0][1], is((Object) 13L));
+        assertThat(rows[0][2], is((Object) 130.0d));
+        assertThat(rows[0][4], is((Object) 1));
+        assertThat(rows[0][7], is((Object) (130.0d / 21)));
+    }
+
+    @Test
+    public void testAggregationProjectorEmptyBatch() throws Exception {
+        Object[][] rows = projectBatches(aggregationProjector(), newBatch(0));
+        assertThat(rows.length, is(1));
+        assertThat(rows[0], arrayContaining((Object) 0L, 0L, null, null, null, null, null, null, null));
+    }
+
+    @Test
+    public void testGroupingProjectorBatch() throws Exception {
+        for (int keyColumn = 0; keyColumn < TYPES.size(); keyColumn++) {
+            DataType keyType = TYPES.get(keyColumn);
+            InputColumn key = new InputColumn(keyColumn, keyType);
+            Object[][] expected = projectRows(groupingProjector(keyType, key), newBatch(16), newBatch(5));
+            Object[][] rows = projectBatches(groupingProjector(keyType, key), newBatch(16), newBatch(5));
+
+            assertThat(rows.length, is(expected.length));
+            for (int i = 0; i < rows.length; i++) {
+                assertThat(rows[i], is(expected[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testGroupingProjectorBatchWithNullKeys() throws Exception {
+        InputColumn key = new InputColumn(1, DataTypes.INTEGER);
+        Object[][] rows = projectBatches(groupingProjector(DataTypes.INTEGER, key), newBatch(7));
+
+        // keys 1, 2, 4, 5 and null for the rows 0, 3 and 6
+        assertThat(rows.length, is(5));
+        for (Object[] row : rows) {
+            if (row[0] == null) {
+                assertThat(row[1], is((Object) 3L));
+                assertThat(row[2], is((Object) 0L));
+                assertThat(row[3], is((Object) 9.0d));
+            } else {
+                assertThat(row[1], is((Object) 1L));
+                assertThat(row[2], is((Object) 1L));
+                assertThat(row[5], is(row[0]));
+            }
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package io.crate.operation.projectors;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Functions;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
@@ -18,12 +23,17 @@ import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.util.BigArrays;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
@@ -78,6 +88,229 @@ public class GroupingProjectorTest {
         assertThat(rows[0][1], instanceOf(Long.class));
     }
 
+    @Test
+    public void testGroupByLongKeyWithNulls() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction)functions.get(countInfo.ident()),
+                countAggregation);
+
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        RamAccountingContext ramAccountingContext =
+                new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+        GroupingProjector projector = new GroupingProjector(
+                Arrays.asList(DataTypes.LONG),
+                ImmutableList.<Input<?>>of(keyInput),
+                new CollectExpression[] { keyInput },
+                new AggregationContext[] { aggregationContext },
+                ramAccountingContext
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        for (long i = 0; i < 400_000; i++) {
+            projector.setNextRow(i % 200_000);
+        }
+        projector.setNextRow(new Object[] { null });
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(200_001));
+        assertThat((Long) rows[42][0], is(42L));
+        assertThat((Long) rows[42][1], is(2L));
+        assertThat(rows[200_000][0], nullValue());
+        assertThat((Long) rows[200_000][1], is(1L));
+        // keys and states are accounted with the size of the underlying arrays
+        assertThat(ramAccountingContext.totalBytes(), greaterThan(200_000L * 8 * 2));
+    }
+
+    @Test
+    public void testParallelGroupingWithMultipleUpstreams() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        final Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+
+        final ImplementationSymbolVisitor symbolVisitor =
+                new ImplementationSymbolVisitor(null, functions, RowGranularity.DOC);
+
+        Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+            @Override
+            public ImplementationSymbolVisitor.Context get() {
+                ImplementationSymbolVisitor.Context context =
+                        symbolVisitor.process(new InputColumn(0, DataTypes.LONG));
+                symbolVisitor.process(countAggregation, context);
+                return context;
+            }
+        };
+        ImplementationSymbolVisitor.Context context = contextSupplier.get();
+        final GroupingProjector projector = new GroupingProjector(
+                Arrays.asList(DataTypes.LONG),
+                context.topLevelInputs(),
+                context.collectExpressions().toArray(new CollectExpression[context.collectExpressions().size()]),
+                context.aggregations(),
+                RAM_ACCOUNTING_CONTEXT,
+                BigArrays.NON_RECYCLING_INSTANCE,
+                contextSupplier
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+
+        int numUpstreams = 4;
+        for (int i = 0; i < numUpstreams; i++) {
+            projector.registerUpstream(null);
+        }
+        projector.startProjection();
+
+        Thread[] threads = new Thread[numUpstreams];
+        for (int i = 0; i < numUpstreams; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long key = 0; key < 10_000; key++) {
+                        projector.setNextRow(key % 1_000);
+                    }
+                    projector.upstreamFinished();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(1_000));
+        for (Object[] row : rows) {
+            assertThat((Long) row[1], is(40L));
+        }
+    }
+
+    @Test
+    public void testFloatingPointValuesForIntegralKey() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction)functions.get(countInfo.ident()),
+                countAggregation);
+
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        GroupingProjector projector = new GroupingProjector(
+                Arrays.asList(DataTypes.INTEGER),
+                ImmutableList.<Input<?>>of(keyInput),
+                new CollectExpression[] { keyInput },
+                new AggregationContext[] { aggregationContext },
+                RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow(1);
+        projector.setNextRow(2);
+        projector.setNextRow(1);
+        // the groups are moved to the generic grouper which keeps the key values as they are
+        projector.setNextRow(2.5d);
+        projector.setNextRow(2.5d);
+        projector.setNextRow(1);
+        projector.upstreamFinished();
+
+        Map<Object, Long> counts = new HashMap<>();
+        for (Object[] row : collectingProjector.result().get()) {
+            counts.put(row[0], (Long) row[1]);
+        }
+        assertThat(counts.size(), is(3));
+        assertThat(counts.get(1), is(3L));
+        assertThat(counts.get(2), is(1L));
+        assertThat(counts.get(2.5d), is(2L));
+    }
+
+    @Test
+    public void testParallelGroupingWithFloatingPointValuesForIntegralKey() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        final Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+
+        final ImplementationSymbolVisitor symbolVisitor =
+                new ImplementationSymbolVisitor(null, functions, RowGranularity.DOC);
+
+        Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+            @Override
+            public ImplementationSymbolVisitor.Context get() {
+                ImplementationSymbolVisitor.Context context =
+                        symbolVisitor.process(new InputColumn(0, DataTypes.LONG));
+                symbolVisitor.process(countAggregation, context);
+                return context;
+            }
+        };
+        ImplementationSymbolVisitor.Context context = contextSupplier.get();
+        final GroupingProjector projector = new GroupingProjector(
+                Arrays.asList(DataTypes.LONG),
+                context.topLevelInputs(),
+                context.collectExpressions().toArray(new CollectExpression[context.collectExpressions().size()]),
+                context.aggregations(),
+                RAM_ACCOUNTING_CONTEXT,
+                BigArrays.NON_RECYCLING_INSTANCE,
+                contextSupplier
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+
+        int numUpstreams = 3;
+        for (int i = 0; i < numUpstreams; i++) {
+            projector.registerUpstream(null);
+        }
+        projector.startProjection();
+
+        Thread[] threads = new Thread[numUpstreams];
+        for (int i = 0; i < numUpstreams; i++) {
+            // only the second upstream feeds floating point values
+            final boolean floatingPoint = i == 1;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long key = 0; key < 1_000; key++) {
+                        if (floatingPoint) {
+                            projector.setNextRow((key % 10) + 0.5d);
+                        } else {
+                            projector.setNextRow(key % 10);
+                        }
+                    }
+                    projector.upstreamFinished();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(20));
+        for (Object[] row : rows) {
+            if (row[0] instanceof Double) {
+                assertThat((Long) row[1], is(100L));
+            } else {
+                assertThat((Long) row[1], is(200L));
+            }
+        }
+    }
+
     class DummyInput implements Input<BytesRef> {
 
         private final BytesRef[] values;
@@ -49,6 +49,8 @@ import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
@@ -94,7 +96,9 @@ public class ProjectionToProjectorVisitorTest {
         visitor = new ProjectionToProjectorVisitor(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                mock(ThreadPool.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                BigArrays.NON_RECYCLING_INSTANCE,
                 symbolvisitor);
 
         countInfo = new FunctionInfo(new FunctionIdent(CountAggregation.NAME, Arrays.<DataType>asList(DataTypes.STRING)), DataTypes.LONG);
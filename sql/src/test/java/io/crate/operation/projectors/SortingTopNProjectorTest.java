@@ -21,10 +21,14 @@
 
 package io.crate.operation.projectors;
 
+import com.google.common.base.Supplier;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.collect.InputCollectExpression;
+import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Literal;
+import io.crate.types.DataTypes;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -353,4 +357,57 @@ public class SortingTopNProjectorTest {
         assertThat(iterateLength, is(20));
 
     }
+
+    @Test
+    public void testParallelOrderByWithMultipleUpstreams() throws Exception {
+        Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+            @Override
+            public ImplementationSymbolVisitor.Context get() {
+                ImplementationSymbolVisitor.Context context = new ImplementationSymbolVisitor.Context();
+                context.topLevelInputs().add(context.collectExpressionFor(new InputColumn(0, DataTypes.INTEGER)));
+                return context;
+            }
+        };
+        ImplementationSymbolVisitor.Context context = contextSupplier.get();
+        final SortingTopNProjector projector = new SortingTopNProjector(
+                context.topLevelInputs().toArray(new Input<?>[1]),
+                context.collectExpressions().toArray(new CollectExpression[1]),
+                1,
+                new int[]{0},
+                new boolean[]{true},
+                new Boolean[]{null},
+                5,
+                2,
+                contextSupplier);
+        int numUpstreams = 4;
+        for (int i = 0; i < numUpstreams; i++) {
+            projector.registerUpstream(null);
+        }
+        projector.startProjection();
+
+        Thread[] threads = new Thread[numUpstreams];
+        for (int i = 0; i < numUpstreams; i++) {
+            final int upstream = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int value = upstream; value < 1_000; value += 4) {
+                        projector.setNextRow(value);
+                    }
+                    projector.upstreamFinished();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(5));
+        for (int i = 0; i < 5; i++) {
+            // 997 --> 993
+            assertThat((Integer) rows[i][0], is(997 - i));
+        }
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors.grouping;
+
+import io.crate.operation.Input;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class GroupKeysTest {
+
+    static class ValueInput implements Input<Object> {
+
+        Object value;
+
+        @Override
+        public Object value() {
+            return value;
+        }
+    }
+
+    @Test
+    public void testLongKeyHashRehash() throws Exception {
+        LongGroupKeyHash hash = new LongGroupKeyHash(1, BigArrays.NON_RECYCLING_INSTANCE);
+        long bytesBefore = hash.ramBytesUsed();
+        for (long i = 0; i < 10_000; i++) {
+            assertThat(hash.add(i * 31), is(i));
+        }
+        for (long i = 0; i < 10_000; i++) {
+            assertThat(hash.add(i * 31), is(-1 - i));
+            assertThat(hash.get(i), is(i * 31));
+        }
+        assertThat(hash.size(), is(10_000L));
+        assertThat(hash.ramBytesUsed(), greaterThan(bytesBefore + 10_000 * 8));
+        hash.close();
+    }
+
+    @Test
+    public void testBytesRefKeyHashRehash() throws Exception {
+        BytesRefGroupKeyHash hash = new BytesRefGroupKeyHash(1, BigArrays.NON_RECYCLING_INSTANCE);
+        assertThat(hash.addNull(), is(0L));
+        for (long i = 1; i < 10_000; i++) {
+            assertThat(hash.add(new BytesRef("key" + i)), is(i));
+        }
+        assertThat(hash.addNull(), is(-1L));
+        assertThat(hash.add(new BytesRef("")), is(10_000L));
+
+        BytesRef spare = new BytesRef();
+        for (long i = 1; i < 10_000; i++) {
+            assertThat(hash.add(new BytesRef("key" + i)), is(-1 - i));
+            assertThat(hash.get(i, spare).utf8ToString(), is("key" + i));
+        }
+        assertThat(hash.isNull(0), is(true));
+        assertThat(hash.get(0, spare).length, is(0));
+        hash.close();
+    }
+
+    @Test
+    public void testSingleIntegerKey() throws Exception {
+        ValueInput input = new ValueInput();
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(input),
+                Arrays.<DataType>asList(DataTypes.INTEGER), BigArrays.NON_RECYCLING_INSTANCE);
+
+        input.value = 10;
+        assertThat(groupKeys.add(), is(0L));
+        input.value = null;
+        assertThat(groupKeys.add(), is(1L));
+        input.value = 10;
+        assertThat(groupKeys.add(), is(-1L));
+        input.value = null;
+        assertThat(groupKeys.add(), is(-2L));
+
+        Object[] row = new Object[1];
+        groupKeys.write(0, row);
+        assertThat(row[0], instanceOf(Integer.class));
+        assertThat((Integer) row[0], is(10));
+        groupKeys.write(1, row);
+        assertThat(row[0], nullValue());
+        groupKeys.close();
+    }
+
+    @Test
+    public void testSingleDoubleKey() throws Exception {
+        ValueInput input = new ValueInput();
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(input),
+                Arrays.<DataType>asList(DataTypes.FLOAT), BigArrays.NON_RECYCLING_INSTANCE);
+
+        input.value = 1.5f;
+        assertThat(groupKeys.add(), is(0L));
+        input.value = -0.0f;
+        assertThat(groupKeys.add(), is(1L));
+        input.value = 0.0f;
+        assertThat(groupKeys.add(), is(2L));
+        input.value = 1.5f;
+        assertThat(groupKeys.add(), is(-1L));
+
+        Object[] row = new Object[1];
+        groupKeys.write(0, row);
+        assertThat(row[0], instanceOf(Float.class));
+        assertThat((Float) row[0], is(1.5f));
+        groupKeys.close();
+    }
+
+    @Test
+    public void testMultipleKeys() throws Exception {
+        ValueInput name = new ValueInput();
+        ValueInput age = new ValueInput();
+        ValueInput married = new ValueInput();
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(name, age, married),
+                Arrays.<DataType>asList(DataTypes.STRING, DataTypes.LONG, DataTypes.BOOLEAN),
+                BigArrays.NON_RECYCLING_INSTANCE);
+
+        name.value = new BytesRef("Arthur");
+        age.value = 42L;
+        married.value = false;
+        assertThat(groupKeys.add(), is(0L));
+
+        name.value = "Arthur";
+        assertThat(groupKeys.add(), is(-1L));
+
+        married.value = null;
+        assertThat(groupKeys.add(), is(1L));
+
+        name.value = null;
+        age.value = null;
+        assertThat(groupKeys.add(), is(2L));
+
+        Object[] row = new Object[3];
+        groupKeys.write(0, row);
+        assertThat((BytesRef) row[0], is(new BytesRef("Arthur")));
+        assertThat((Long) row[1], is(42L));
+        assertThat((Boolean) row[2], is(false));
+
+        groupKeys.write(1, row);
+        assertThat((BytesRef) row[0], is(new BytesRef("Arthur")));
+        assertThat((Long) row[1], is(42L));
+        assertThat(row[2], nullValue());
+
+        groupKeys.write(2, row);
+        assertThat(row, is(new Object[] { null, null, null }));
+        groupKeys.close();
+    }
+
+    @Test(expected = GroupKeys.NonIntegralKeyException.class)
+    public void testFloatingPointValueForIntegerKey() throws Exception {
+        ValueInput input = new ValueInput();
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(input),
+                Arrays.<DataType>asList(DataTypes.INTEGER), BigArrays.NON_RECYCLING_INSTANCE);
+        input.value = 1;
+        assertThat(groupKeys.add(), is(0L));
+        input.value = 1.5d;
+        groupKeys.add();
+    }
+
+    @Test(expected = GroupKeys.NonIntegralKeyException.class)
+    public void testFloatingPointValueForPrimitiveLongKey() throws Exception {
+        InputCollectExpression<Object> input = new InputCollectExpression<>(0);
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(input),
+                Arrays.<DataType>asList(DataTypes.LONG), BigArrays.NON_RECYCLING_INSTANCE);
+        input.setNextRow(1L);
+        assertThat(groupKeys.add(), is(0L));
+        input.setNextRow(1.5f);
+        groupKeys.add();
+    }
+
+    @Test
+    public void testUnsupportedKeyType() throws Exception {
+        GroupKeys groupKeys = GroupKeys.create(Arrays.<Input<?>>asList(new ValueInput()),
+                Arrays.<DataType>asList(DataTypes.OBJECT), BigArrays.NON_RECYCLING_INSTANCE);
+        assertThat(groupKeys, nullValue());
+    }
+}
@@ -38,6 +38,7 @@ import io.crate.operation.reference.sys.node.fs.NodeFsExpression;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.admin.cluster.node.info.NodeInfo;
 import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.inject.AbstractModule;
@@ -145,7 +146,9 @@ public class TestSysNodesExpressions {
 
             NodeService nodeService = mock(NodeService.class);
             NodeStats nodeStats = mock(NodeStats.class);
-            when(nodeService.stats()).thenReturn(nodeStats);
+            when(nodeService.stats(any(CommonStatsFlags.class), anyBoolean(), anyBoolean(), anyBoolean(),
+                    anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean()))
+                    .thenReturn(nodeStats);
             when(nodeStats.getHostname()).thenReturn("localhost");
 
             DiscoveryNode node = mock(DiscoveryNode.class);
@@ -166,6 +169,7 @@ public class TestSysNodesExpressions {
 
             NodeInfo nodeInfo = mock(NodeInfo.class);
             when(nodeService.info()).thenReturn(nodeInfo);
+            when(nodeInfo.getNode()).thenReturn(node);
 
             ProcessInfo processInfo = mock(ProcessInfo.class);
             when(nodeInfo.getProcess()).thenReturn(processInfo);
@@ -523,6 +527,33 @@ public class TestSysNodesExpressions {
         assertEquals(1000L, (long) v.get("max_open_file_descriptors"));
     }
 
+    @Test
+    public void testPlanCache() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "plan_cache");
+        SysObjectReference planCacheRef = (SysObjectReference)resolver.getImplementation(ident);
+
+        Map<String, Object> v = planCacheRef.value();
+        assertEquals(0L, (long) v.get("size"));
+        assertEquals(0L, (long) v.get("hits"));
+        assertEquals(0L, (long) v.get("misses"));
+        assertEquals(0L, (long) v.get("value_dependent"));
+        assertEquals(0L, (long) v.get("evictions"));
+        assertEquals(0L, (long) v.get("invalidations"));
+    }
+
+    @Test
+    public void testBlobCache() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "blob_cache");
+        SysObjectReference blobCacheRef = (SysObjectReference)resolver.getImplementation(ident);
+
+        Map<String, Object> v = blobCacheRef.value();
+        assertEquals(0L, (long) v.get("size"));
+        assertEquals(0L, (long) v.get("open_files"));
+        assertEquals(0L, (long) v.get("hits"));
+        assertEquals(0L, (long) v.get("misses"));
+        assertEquals(0L, (long) v.get("evictions"));
+    }
+
     @Test
     public void testNestedBytesRefExpressionsString() throws Exception {
         ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "version");
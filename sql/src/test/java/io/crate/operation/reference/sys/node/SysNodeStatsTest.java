@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.monitor.jvm.JvmService;
+import org.elasticsearch.monitor.network.NetworkService;
+import org.elasticsearch.monitor.sigar.SigarService;
+import org.elasticsearch.node.service.NodeService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SysNodeStatsTest {
+
+    private NodeService nodeService;
+    private JvmService jvmService;
+    private NetworkService networkService;
+    private SigarService sigarService;
+
+    @Before
+    public void setUp() throws Exception {
+        nodeService = mock(NodeService.class);
+        when(nodeService.stats(any(CommonStatsFlags.class), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenReturn(mock(NodeStats.class));
+        jvmService = mock(JvmService.class);
+        networkService = mock(NetworkService.class);
+        sigarService = mock(SigarService.class);
+    }
+
+    private SysNodeStats sysNodeStats(TimeValue cacheTtl) {
+        return new SysNodeStats(cacheTtl, nodeService, jvmService, networkService, sigarService);
+    }
+
+    private void verifyNodeStatsTaken(int times) {
+        verify(nodeService, times(times)).stats(any(CommonStatsFlags.class), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testSnapshotIsSharedWithinCollect() throws Exception {
+        SysNodeStats sysNodeStats = sysNodeStats(TimeValue.timeValueMillis(0));
+
+        Releasable releasable = sysNodeStats.openSnapshot();
+        try {
+            SysNodeStats.Snapshot snapshot = sysNodeStats.snapshot();
+            assertThat(sysNodeStats.snapshot(), sameInstance(snapshot));
+            sysNodeStats.snapshot().os();
+            sysNodeStats.snapshot().process();
+            sysNodeStats.snapshot().nodeStats();
+            verifyNodeStatsTaken(1);
+        } finally {
+            releasable.close();
+        }
+
+        sysNodeStats.snapshot().os();
+        verifyNodeStatsTaken(2);
+    }
+
+    @Test
+    public void testStatsAreOnlyTakenIfNeeded() throws Exception {
+        SysNodeStats sysNodeStats = sysNodeStats(TimeValue.timeValueMillis(0));
+
+        Releasable releasable = sysNodeStats.openSnapshot();
+        try {
+            sysNodeStats.snapshot().os();
+        } finally {
+            releasable.close();
+        }
+        verifyNodeStatsTaken(1);
+        verifyZeroInteractions(jvmService, networkService, sigarService);
+    }
+
+    @Test
+    public void testFileSystemsWithoutSigar() throws Exception {
+        when(sigarService.sigarAvailable()).thenReturn(false);
+        SysNodeStats sysNodeStats = sysNodeStats(TimeValue.timeValueMillis(0));
+
+        Releasable releasable = sysNodeStats.openSnapshot();
+        try {
+            assertThat(sysNodeStats.snapshot().fileSystems().size(), is(0));
+            sysNodeStats.snapshot().fileSystems();
+        } finally {
+            releasable.close();
+        }
+        verify(sigarService, times(1)).sigarAvailable();
+        verify(sigarService, never()).sigar();
+    }
+
+    @Test
+    public void testNestedSnapshotKeepsOuterSnapshot() throws Exception {
+        SysNodeStats sysNodeStats = sysNodeStats(TimeValue.timeValueMillis(0));
+
+        Releasable outer = sysNodeStats.openSnapshot();
+        try {
+            SysNodeStats.Snapshot snapshot = sysNodeStats.snapshot();
+            sysNodeStats.openSnapshot().close();
+            assertThat(sysNodeStats.snapshot(), sameInstance(snapshot));
+        } finally {
+            outer.close();
+        }
+    }
+
+    @Test
+    public void testCachedSnapshot() throws Exception {
+        SysNodeStats cached = sysNodeStats(TimeValue.timeValueHours(1));
+        assertThat(cached.snapshot(), sameInstance(cached.snapshot()));
+        cached.snapshot().os();
+        cached.snapshot().os();
+        verifyNodeStatsTaken(1);
+
+        SysNodeStats uncached = sysNodeStats(TimeValue.timeValueMillis(0));
+        assertThat(uncached.snapshot(), not(sameInstance(uncached.snapshot())));
+    }
+}
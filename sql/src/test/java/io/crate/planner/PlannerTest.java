@@ -3,6 +3,7 @@ package io.crate.planner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.crate.Constants;
+import io.crate.analyze.Analysis;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.BaseAnalyzerTest;
 import io.crate.analyze.WhereClause;
@@ -246,6 +247,22 @@ public class PlannerTest {
         return planner.plan(analyzer.analyze(SqlParser.createStatement(statement)));
     }
 
+    private boolean planReadsParameterValues(String statement, Object... args) {
+        Analysis analysis = analyzer.analyze(SqlParser.createStatement(statement), args, new Object[0][]);
+        planner.plan(analysis);
+        return analysis.parameterContext().valuesRead();
+    }
+
+    @Test
+    public void testPlanDependsOnParameterValues() throws Exception {
+        assertThat(planReadsParameterValues("select name from users where name = ?", "Arthur"), is(false));
+        assertThat(planReadsParameterValues("select name from users where name = ?", (Object) null), is(false));
+        // the doc keys and the routing are resolved from the literals on execution
+        assertThat(planReadsParameterValues("select name from users where id = ?", 1L), is(false));
+        assertThat(planReadsParameterValues("select name from users limit ?", 1), is(true));
+        assertThat(planReadsParameterValues("select id from parted where date = ?", 1395961200000L), is(true));
+    }
+
     @Test
     public void testGroupByWithAggregationStringLiteralArguments() {
         CollectNode collectNode = ((DistributedGroupBy) plan("select count('foo'), name from users group by name")).collectNode();
@@ -0,0 +1,145 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.rest.action;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.http.netty.NettyHttpChannel;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.Channels;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ChunkedSQLResponseStreamTest {
+
+    private NettyHttpChannel channel;
+    private BytesStreamOutput content;
+    private int numChunks;
+
+    @Before
+    public void setUpChannel() throws Exception {
+        content = new BytesStreamOutput();
+        numChunks = 0;
+        final ChannelFuture succeeded = Channels.succeededFuture(mock(Channel.class));
+        channel = mock(NettyHttpChannel.class);
+        RestRequest request = mock(RestRequest.class);
+        when(request.method()).thenReturn(RestRequest.Method.POST);
+        when(channel.request()).thenReturn(request);
+        when(channel.newBuilder()).thenCallRealMethod();
+        when(channel.startChunkedResponse(any(RestStatus.class), anyString())).thenReturn(succeeded);
+        when(channel.finishChunkedResponse()).thenReturn(succeeded);
+        when(channel.sendChunk(any(BytesReference.class))).thenAnswer(new Answer<ChannelFuture>() {
+            @Override
+            public ChannelFuture answer(InvocationOnMock invocation) throws Throwable {
+                BytesReference chunk = (BytesReference) invocation.getArguments()[0];
+                assertThat("empty chunks terminate the response", chunk.length(), greaterThan(0));
+                chunk.writeTo(content);
+                numChunks++;
+                return succeeded;
+            }
+        });
+    }
+
+    private Map<String, Object> responseAsMap() {
+        return XContentHelper.convertToMap(content.bytes(), false).v2();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRowsAreSentInChunks() throws Exception {
+        ChunkedSQLResponseStream stream = new ChunkedSQLResponseStream(channel, true, false, System.currentTimeMillis());
+        stream.start(new String[]{"name", "age"}, new DataType[]{DataTypes.STRING, DataTypes.INTEGER});
+        assertThat(numChunks, is(1));
+
+        assertThat(stream.nextRows(new Object[][]{
+                new Object[]{"Arthur", 42},
+                new Object[]{"Trillian", 30}
+        }).isDone(), is(true));
+        stream.nextRows(new Object[0][]);
+        stream.nextRows(new Object[][]{new Object[]{"Ford", null}});
+        stream.finish(3L);
+
+        assertThat(numChunks, is(4));
+        verify(channel).startChunkedResponse(RestStatus.OK, "application/json; charset=UTF-8");
+        verify(channel).finishChunkedResponse();
+
+        Map<String, Object> response = responseAsMap();
+        assertThat((List<String>) response.get("cols"), contains("name", "age"));
+        assertThat((List<Integer>) response.get("colTypes"), contains(4, 9));
+        List<List<Object>> rows = (List<List<Object>>) response.get("rows");
+        assertThat(rows.size(), is(3));
+        assertThat(rows.get(0), is(Arrays.<Object>asList("Arthur", 42)));
+        assertThat(rows.get(2), is(Arrays.<Object>asList("Ford", null)));
+        assertThat((Integer) response.get("rowcount"), is(3));
+        assertThat(response.containsKey("duration"), is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailureAfterStartIsAppended() throws Exception {
+        ChunkedSQLResponseStream stream = new ChunkedSQLResponseStream(channel, false, false, System.currentTimeMillis());
+        stream.start(new String[]{"name"}, new DataType[]{DataTypes.STRING});
+        stream.nextRows(new Object[][]{new Object[]{"Arthur"}});
+        stream.fail(new SQLActionException("shard failure", 5000, RestStatus.INTERNAL_SERVER_ERROR, null));
+
+        verify(channel).finishChunkedResponse();
+        verify(channel, never()).sendResponse(any(RestResponse.class));
+
+        Map<String, Object> response = responseAsMap();
+        assertThat(response.containsKey("colTypes"), is(false));
+        assertThat(((List<Object>) response.get("rows")).size(), is(1));
+        assertThat(response.containsKey("rowcount"), is(false));
+        Map<String, Object> error = (Map<String, Object>) response.get("error");
+        assertThat((String) error.get("message"), containsString("shard failure"));
+        assertThat((Integer) error.get("code"), is(5000));
+    }
+
+    @Test
+    public void testFailureBeforeStartIsSentAsRegularResponse() throws Exception {
+        ChunkedSQLResponseStream stream = new ChunkedSQLResponseStream(channel, false, false, System.currentTimeMillis());
+        stream.fail(new SQLActionException("line 1:1: no viable alternative", 4000, RestStatus.BAD_REQUEST, null));
+
+        verify(channel).sendResponse(any(RestResponse.class));
+        verify(channel, never()).startChunkedResponse(any(RestStatus.class), anyString());
+        assertThat(numChunks, is(0));
+    }
+}
@@ -32,23 +32,37 @@ import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
+import io.crate.testing.TestingHelpers;
 import io.crate.types.DataTypes;
 import io.crate.types.IntegerType;
 import io.crate.types.StringType;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.TimeoutClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.RoutingTable;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.operation.OperationRouting;
+import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -56,10 +70,13 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -82,9 +99,17 @@ public class BulkShardProcessorTest {
     @Mock(answer = Answers.RETURNS_MOCKS)
     ClusterService clusterService;
 
+    private ThreadPool threadPool;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        threadPool = new ThreadPool(getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadPool.shutdownNow();
     }
 
     @Test
@@ -115,6 +140,7 @@ public class BulkShardProcessorTest {
         final BulkShardProcessor bulkShardProcessor = new BulkShardProcessor(
                 clusterService,
                 ImmutableSettings.EMPTY,
+                threadPool,
                 transportShardBulkActionDelegate,
                 mock(TransportCreateIndexAction.class),
                 shardingProjector,
@@ -172,6 +198,7 @@ public class BulkShardProcessorTest {
         final BulkShardProcessor bulkShardProcessor = new BulkShardProcessor(
                 clusterService,
                 ImmutableSettings.EMPTY,
+                threadPool,
                 transportShardUpsertActionDelegate,
                 mock(TransportCreateIndexAction.class),
                 shardingProjector,
@@ -212,6 +239,142 @@ public class BulkShardProcessorTest {
         assertTrue(hadBlocked.get());
     }
 
+    @Test
+    public void testRequestsPerShardAreLimitedToMaxInFlightRequests() throws Exception {
+        ClusterService clusterService = mock(ClusterService.class);
+        OperationRouting operationRouting = mock(OperationRouting.class);
+
+        mockShard(operationRouting, 1);
+        when(clusterService.operationRouting()).thenReturn(operationRouting);
+
+        final BlockingQueue<ActionListener<ShardUpsertResponse>> listeners = new LinkedBlockingQueue<>();
+        TransportShardUpsertActionDelegate transportShardUpsertActionDelegate = new TransportShardUpsertActionDelegate() {
+            @Override
+            public void execute(ShardUpsertRequest request, ActionListener<ShardUpsertResponse> listener) {
+                listeners.add(listener);
+            }
+        };
+
+        Map<Reference, Symbol> insertAssignments = new HashMap<Reference, Symbol>(){{
+            put(idRef, new InputColumn(0, IntegerType.INSTANCE));
+            put(fooRef, new InputColumn(1, StringType.INSTANCE));
+        }};
+
+        ShardingProjector shardingProjector = new ShardingProjector(
+                ImmutableList.of(idRef.ident().columnIdent()),
+                ImmutableList.<Symbol>of(new InputColumn(0, IntegerType.INSTANCE)),
+                null
+        );
+        shardingProjector.startProjection();
+
+        final BulkShardProcessor bulkShardProcessor = new BulkShardProcessor(
+                clusterService,
+                ImmutableSettings.builder().put("insert_by_query.max_in_flight_requests_per_shard", 1).build(),
+                threadPool,
+                transportShardUpsertActionDelegate,
+                mock(TransportCreateIndexAction.class),
+                shardingProjector,
+                false,
+                false,
+                1,
+                false,
+                null,
+                insertAssignments
+        );
+
+        bulkShardProcessor.add("foo", new Object[]{1, "bar1"}, null);
+        assertThat(listeners.size(), is(1));
+
+        final CountDownLatch added = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                bulkShardProcessor.add("foo", new Object[]{1, "bar2"}, null);
+                added.countDown();
+            }
+        });
+        // the second request must wait for the response of the first one
+        assertFalse(added.await(50, TimeUnit.MILLISECONDS));
+
+        listeners.take().onResponse(new ShardUpsertResponse());
+        assertTrue(added.await(5, TimeUnit.SECONDS));
+        assertThat(listeners.size(), is(1));
+        executorService.shutdown();
+    }
+
+    private ClusterState clusterState(boolean withIndex) {
+        ClusterState.Builder builder = ClusterState.builder(ClusterName.DEFAULT);
+        if (withIndex) {
+            builder.version(2);
+            IndexMetaData indexMetaData = IndexMetaData.builder("foo")
+                    .settings(ImmutableSettings.builder()
+                            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                            .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0))
+                    .build();
+            builder.metaData(MetaData.builder().put(indexMetaData, false))
+                    .routingTable(RoutingTable.builder().addAsNew(indexMetaData));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testAwaitIndexReturnsCurrentStateIfIndexIsKnown() throws Exception {
+        ClusterService clusterService = mock(ClusterService.class);
+        ClusterState state = clusterState(true);
+        when(clusterService.state()).thenReturn(state);
+
+        ClusterState result = BulkShardProcessor.awaitIndex(
+                clusterService, "foo", TimeValue.timeValueSeconds(1), Loggers.getLogger(getClass()));
+        assertThat(result, is(state));
+    }
+
+    @Test
+    public void testAwaitIndexWaitsForIndexCreatedByOtherNode() throws Exception {
+        // IndexAlreadyExistsException was thrown but the local cluster state doesn't contain the index yet
+        ClusterService clusterService = mock(ClusterService.class);
+        final ClusterState stateWithoutIndex = clusterState(false);
+        final ClusterState stateWithIndex = clusterState(true);
+        when(clusterService.state()).thenReturn(stateWithoutIndex);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final TimeoutClusterStateListener listener = (TimeoutClusterStateListener) invocation.getArguments()[1];
+                threadPool.generic().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.clusterChanged(new ClusterChangedEvent("index created", stateWithIndex, stateWithoutIndex));
+                    }
+                });
+                return null;
+            }
+        }).when(clusterService).add(any(TimeValue.class), any(TimeoutClusterStateListener.class));
+
+        ClusterState result = BulkShardProcessor.awaitIndex(
+                clusterService, "foo", TimeValue.timeValueSeconds(5), Loggers.getLogger(getClass()));
+        assertThat(result, is(stateWithIndex));
+    }
+
+    @Test
+    public void testAwaitIndexFailsIfIndexIsNotAppliedInTime() throws Exception {
+        expectedException.expect(ExecutionException.class);
+        expectedException.expectCause(TestingHelpers.cause(IndexMissingException.class));
+
+        ClusterService clusterService = mock(ClusterService.class);
+        when(clusterService.state()).thenReturn(clusterState(false));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                TimeoutClusterStateListener listener = (TimeoutClusterStateListener) invocation.getArguments()[1];
+                listener.onTimeout((TimeValue) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(clusterService).add(any(TimeValue.class), any(TimeoutClusterStateListener.class));
+
+        BulkShardProcessor.awaitIndex(
+                clusterService, "foo", TimeValue.timeValueMillis(10), Loggers.getLogger(getClass()));
+    }
+
     private void mockShard(OperationRouting operationRouting, Integer shardId) {
         ShardIterator shardIterator = mock(ShardIterator.class);
         when(operationRouting.indexShards(
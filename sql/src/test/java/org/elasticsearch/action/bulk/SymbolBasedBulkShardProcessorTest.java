@@ -38,6 +38,8 @@ import org.elasticsearch.cluster.routing.operation.OperationRouting;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -71,9 +73,17 @@ public class SymbolBasedBulkShardProcessorTest {
     @Mock(answer = Answers.RETURNS_MOCKS)
     ClusterService clusterService;
 
+    private ThreadPool threadPool;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        threadPool = new ThreadPool(getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadPool.shutdownNow();
     }
 
     @Test
@@ -92,6 +102,7 @@ public class SymbolBasedBulkShardProcessorTest {
         final SymbolBasedBulkShardProcessor bulkShardProcessor = new SymbolBasedBulkShardProcessor(
                 clusterService,
                 ImmutableSettings.EMPTY,
+                threadPool,
                 transportShardBulkActionDelegate,
                 mock(TransportCreateIndexAction.class),
                 false,
@@ -136,6 +147,7 @@ public class SymbolBasedBulkShardProcessorTest {
         final SymbolBasedBulkShardProcessor bulkShardProcessor = new SymbolBasedBulkShardProcessor(
                 clusterService,
                 ImmutableSettings.EMPTY,
+                threadPool,
                 transportShardUpsertActionDelegate,
                 mock(TransportCreateIndexAction.class),
                 false,